@@ -0,0 +1,215 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import com.engflow.bazel.invocation.analyzer.traceeventformat.RawArguments;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.TraceEventFormatConstants;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * Finds the "args" object of each event in a range of the "traceEvents" array of a memory-mapped
+ * profile, in step with parsing the events, so that the objects can be skipped while parsing and
+ * only decoded when the arguments are accessed.
+ *
+ * <p>Like {@link TraceEventsChunks}, this only tracks strings and nesting, which is much cheaper
+ * than decoding the arguments. Only objects whose values are strings, numbers or booleans are
+ * located; other arguments are left to be decoded while parsing, so that invalid arguments are
+ * reported the same way. Once the range contains anything that is not plain JSON, such as the
+ * lenient syntax accepted by the parser, no further arguments are located.
+ */
+class ArgumentsLocator {
+  private static final byte[] ARGS_KEY =
+      TraceEventFormatConstants.EVENT_ARGUMENTS.getBytes(StandardCharsets.UTF_8);
+
+  private final MappedFile file;
+  private final long end;
+  private long position;
+  private int segmentIndex;
+  private ByteBuffer segment;
+  private long segmentStart;
+  private long segmentEnd;
+  private boolean failed;
+
+  /**
+   * @param file the mapped profile
+   * @param start the position of the first event of the range, or of whitespace preceding it
+   * @param end the position after the last event of the range
+   */
+  ArgumentsLocator(MappedFile file, long start, long end) {
+    this.file = file;
+    this.end = end;
+    this.position = start;
+    int index = 0;
+    while (index + 1 < file.getSegmentCount() && file.getSegmentStart(index + 1) <= start) {
+      index++;
+    }
+    selectSegment(index);
+  }
+
+  private void selectSegment(int index) {
+    segmentIndex = index;
+    segment = file.getSegment(index);
+    segmentStart = file.getSegmentStart(index);
+    segmentEnd = segmentStart + segment.limit();
+  }
+
+  /** Returns the next byte of the range, or -1 at its end. */
+  private int read() {
+    if (position >= end) {
+      return -1;
+    }
+    while (position >= segmentEnd) {
+      selectSegment(segmentIndex + 1);
+    }
+    return segment.get((int) (position++ - segmentStart)) & 0xFF;
+  }
+
+  /**
+   * Moves on to the next event of the range.
+   *
+   * @return the location of the "args" object of the event, or {@code null} if it has none or its
+   *     arguments are to be decoded while parsing
+   */
+  @Nullable
+  RawArguments next() {
+    if (failed) {
+      return null;
+    }
+    int b;
+    do {
+      b = read();
+    } while (b == ',' || isWhitespace(b));
+    if (b != '{') {
+      failed = true;
+      return null;
+    }
+    int depth = 1;
+    // Whether the next string of the event object is a key, and whether the last key was "args".
+    boolean expectKey = true;
+    boolean afterArgsKey = false;
+    boolean expectArgsValue = false;
+    // The last "args" object of the event, which is the one the parser keeps.
+    long argsStart = -1;
+    long argsEnd = -1;
+    boolean inArgs = false;
+    boolean argsSupported = false;
+    boolean expectArgsMemberValue = false;
+    boolean afterLiteral = false;
+    while (depth > 0) {
+      b = read();
+      if (b == -1) {
+        failed = true;
+        return null;
+      }
+      if (isWhitespace(b)) {
+        afterLiteral = false;
+        continue;
+      }
+      if (depth == 1 && expectArgsValue) {
+        expectArgsValue = false;
+        if (b == '{') {
+          inArgs = true;
+          argsSupported = true;
+          argsStart = position - 1;
+        } else {
+          argsStart = -1;
+        }
+      } else if (inArgs && depth == 2 && expectArgsMemberValue) {
+        expectArgsMemberValue = false;
+        // Null values are invalid, and nested values are rarely used, leave those to the parser.
+        argsSupported &= b != 'n' && b != '{' && b != '[';
+      }
+      switch (b) {
+        case '"':
+          if (afterLiteral) {
+            // Only part of a lenient, unquoted string.
+            failed = true;
+            return null;
+          }
+          boolean matchesKey = depth == 1 && expectKey;
+          int keyIndex = 0;
+          while ((b = read()) != '"') {
+            if (b == -1) {
+              failed = true;
+              return null;
+            }
+            if (b == '\\') {
+              matchesKey = false;
+              if (read() == -1) {
+                failed = true;
+                return null;
+              }
+            } else {
+              matchesKey &= keyIndex < ARGS_KEY.length && ARGS_KEY[keyIndex] == b;
+              keyIndex++;
+            }
+          }
+          if (depth == 1 && expectKey) {
+            afterArgsKey = matchesKey && keyIndex == ARGS_KEY.length;
+          }
+          break;
+        case ':':
+          if (depth == 1) {
+            expectKey = false;
+            expectArgsValue = afterArgsKey;
+            afterArgsKey = false;
+          } else if (inArgs && depth == 2) {
+            expectArgsMemberValue = true;
+          }
+          break;
+        case ',':
+          if (depth == 1) {
+            expectKey = true;
+          }
+          break;
+        case '{':
+        case '[':
+          depth++;
+          break;
+        case '}':
+        case ']':
+          depth--;
+          if (inArgs && depth == 1) {
+            inArgs = false;
+            argsEnd = position;
+            if (!argsSupported) {
+              argsStart = -1;
+            }
+          }
+          break;
+        case '\'':
+        case '\\':
+        case '/':
+        case '#':
+        case ';':
+        case '=':
+          // Lenient syntax the structure of which is not tracked.
+          failed = true;
+          return null;
+        default:
+          afterLiteral = true;
+          continue;
+      }
+      afterLiteral = false;
+    }
+    return argsStart == -1 ? null : new RawArguments(file, argsStart, argsEnd);
+  }
+
+  private static boolean isWhitespace(int b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+  }
+}
@@ -20,27 +20,73 @@ import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileCon
 import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.CAT_REMOTE_ACTION_EXECUTION;
 import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.CAT_REMOTE_EXECUTION_UPLOAD_TIME;
 import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.CAT_REMOTE_OUTPUT_DOWNLOAD;
+import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.COMPLETE_REMOTE_DOWNLOAD;
 import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD;
 import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD_OUTPUTS;
 import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.COMPLETE_SUBPROCESS_RUN;
+import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.PREDEFINED_SYMBOLS;
 import static com.engflow.bazel.invocation.analyzer.time.DurationUtil.formatDuration;
 
 import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.SymbolTable;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 
 public final class BazelEventsUtil {
+  // Ids of the predefined symbols, which are the same in every symbol table of a Bazel profile.
+  private static final int CAT_GENERAL_INFORMATION_ID = getSymbolId(CAT_GENERAL_INFORMATION);
+  private static final int CAT_LOCAL_ACTION_EXECUTION_ID = getSymbolId(CAT_LOCAL_ACTION_EXECUTION);
+  private static final int CAT_REMOTE_ACTION_CACHE_CHECK_ID =
+      getSymbolId(CAT_REMOTE_ACTION_CACHE_CHECK);
+  private static final int CAT_REMOTE_ACTION_EXECUTION_ID =
+      getSymbolId(CAT_REMOTE_ACTION_EXECUTION);
+  private static final int CAT_REMOTE_EXECUTION_UPLOAD_TIME_ID =
+      getSymbolId(CAT_REMOTE_EXECUTION_UPLOAD_TIME);
+  private static final int CAT_REMOTE_OUTPUT_DOWNLOAD_ID = getSymbolId(CAT_REMOTE_OUTPUT_DOWNLOAD);
+  private static final int COMPLETE_REMOTE_DOWNLOAD_ID = getSymbolId(COMPLETE_REMOTE_DOWNLOAD);
+  private static final int COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD_ID =
+      getSymbolId(COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD);
+  private static final int COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD_OUTPUTS_ID =
+      getSymbolId(COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD_OUTPUTS);
+  private static final int COMPLETE_SUBPROCESS_RUN_ID = getSymbolId(COMPLETE_SUBPROCESS_RUN);
+
   private BazelEventsUtil() {}
 
+  private static int getSymbolId(String symbol) {
+    int id = PREDEFINED_SYMBOLS.indexOf(symbol);
+    Preconditions.checkState(id != SymbolTable.NO_SYMBOL, "\"%s\" is not predefined.", symbol);
+    return id;
+  }
+
+  /**
+   * Returns whether the event was read with a symbol table of a Bazel profile, so that its name and
+   * category can be matched by comparing their ids with those of the predefined symbols.
+   */
+  private static boolean hasPredefinedSymbols(CompleteEvent event) {
+    SymbolTable symbols = event.getSymbolTable();
+    return symbols != null && symbols.getPredefinedSymbols() == PREDEFINED_SYMBOLS;
+  }
+
+  private static boolean hasCategory(CompleteEvent event, String category, int categoryId) {
+    return hasPredefinedSymbols(event)
+        ? event.getCategoryId() == categoryId
+        : category.equals(event.category);
+  }
+
+  private static boolean hasName(CompleteEvent event, String name, int nameId) {
+    return hasPredefinedSymbols(event) ? event.getNameId() == nameId : name.equals(event.name);
+  }
+
   /** The event indicates that an action was executed locally. */
   public static boolean indicatesLocalExecution(CompleteEvent event) {
-    return CAT_LOCAL_ACTION_EXECUTION.equals(event.category)
-        || (CAT_GENERAL_INFORMATION.equals(event.category)
-            && COMPLETE_SUBPROCESS_RUN.equals(event.name));
+    return hasCategory(event, CAT_LOCAL_ACTION_EXECUTION, CAT_LOCAL_ACTION_EXECUTION_ID)
+        || (hasCategory(event, CAT_GENERAL_INFORMATION, CAT_GENERAL_INFORMATION_ID)
+            && hasName(event, COMPLETE_SUBPROCESS_RUN, COMPLETE_SUBPROCESS_RUN_ID));
   }
 
   /** The event indicates that an action was executed remotely. */
   public static boolean indicatesRemoteExecution(CompleteEvent event) {
-    return CAT_REMOTE_ACTION_EXECUTION.equals(event.category);
+    return hasCategory(event, CAT_REMOTE_ACTION_EXECUTION, CAT_REMOTE_ACTION_EXECUTION_ID);
   }
 
   /**
@@ -48,7 +94,7 @@ public final class BazelEventsUtil {
    * configured by {@code --remote_cache} or {@code --disk_cache}.
    */
   public static boolean indicatesRemoteCacheCheck(CompleteEvent event) {
-    return CAT_REMOTE_ACTION_CACHE_CHECK.equals(event.category);
+    return hasCategory(event, CAT_REMOTE_ACTION_CACHE_CHECK, CAT_REMOTE_ACTION_CACHE_CHECK_ID);
   }
 
   /**
@@ -60,9 +106,9 @@ public final class BazelEventsUtil {
     // https://github.com/bazelbuild/bazel/blob/4a29f0851d1cde0240793cdc7a2e2cab926d31b7/src/main/java/com/google/devtools/build/lib/profiler/ProfilerTask.java#L88
     // and
     // https://github.com/bazelbuild/bazel/blob/b2cca31705419ba1cd3744c23be4b1d9bdb5c467/src/main/java/com/google/devtools/build/lib/remote/RemoteExecutionService.java#L1211C79-L1211C79
-    return CAT_REMOTE_OUTPUT_DOWNLOAD.equals(event.category)
-        || (CAT_GENERAL_INFORMATION.equals(event.category)
-            && BazelProfileConstants.COMPLETE_REMOTE_DOWNLOAD.equals(event.name));
+    return hasCategory(event, CAT_REMOTE_OUTPUT_DOWNLOAD, CAT_REMOTE_OUTPUT_DOWNLOAD_ID)
+        || (hasCategory(event, CAT_GENERAL_INFORMATION, CAT_GENERAL_INFORMATION_ID)
+            && hasName(event, COMPLETE_REMOTE_DOWNLOAD, COMPLETE_REMOTE_DOWNLOAD_ID));
   }
 
   /** The event documents uploading outputs to a remote cache. */
@@ -71,9 +117,15 @@ public final class BazelEventsUtil {
     // https://github.com/bazelbuild/bazel/blob/7d10999fc0357596824f2b6022bbbd895f245a3c/src/main/java/com/google/devtools/build/lib/remote/RemoteExecutionService.java#L1417
     // and
     // https://github.com/bazelbuild/bazel/blob/7d10999fc0357596824f2b6022bbbd895f245a3c/src/main/java/com/google/devtools/build/lib/remote/RemoteSpawnRunner.java#L359
-    return CAT_REMOTE_EXECUTION_UPLOAD_TIME.equals(event.category)
-        && (COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD_OUTPUTS.equals(event.name)
-            || COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD.equals(event.name));
+    return hasCategory(event, CAT_REMOTE_EXECUTION_UPLOAD_TIME, CAT_REMOTE_EXECUTION_UPLOAD_TIME_ID)
+        && (hasName(
+                event,
+                COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD_OUTPUTS,
+                COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD_OUTPUTS_ID)
+            || hasName(
+                event,
+                COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD,
+                COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD_ID));
   }
 
   public static String summarizeCompleteEvent(CompleteEvent event) {
@@ -19,15 +19,24 @@ import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
 import com.engflow.bazel.invocation.analyzer.core.DuplicateProviderException;
+import com.engflow.bazel.invocation.analyzer.core.Tracer;
 import com.engflow.bazel.invocation.analyzer.dataproviders.BazelVersion;
 import com.engflow.bazel.invocation.analyzer.time.DurationUtil;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEventIntervalIndex;
 import com.engflow.bazel.invocation.analyzer.traceeventformat.CounterEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.DecodedTraceEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.RawArguments;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.SymbolTable;
 import com.engflow.bazel.invocation.analyzer.traceeventformat.TraceEventFormatConstants;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
-import com.google.gson.JsonParser;
 import com.google.gson.stream.JsonReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -40,29 +49,66 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipException;
+import javax.annotation.Nullable;
 
 public class BazelProfile implements Datum {
   // Best effort to get somewhat good alignment when outputting a list of thread names.
   private static final int THREAD_NAME_MIN_OUTPUT_LENGTH = "\"Garbage Collector\"".length() + 1;
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+  // Each core should have at least one of "skyframe-evaluator [x]", "skyframe-evaluator-[x]" and
+  // "skyframe-evaluator-cpu-heavy-[x]".
+  private static final Pattern SKYFRAME_EVALUATOR_REGEX =
+      Pattern.compile("skyframe-evaluator[^\\d]*(\\d*)");
+  // The name of the events Bazel writes in place of many short events, e.g. "merged 5 events".
 
   public static BazelProfile createFromPath(String path) throws IllegalArgumentException {
+    return createFromPath(path, ParseOptions.defaults());
+  }
+
+  /**
+   * Parses the Bazel profile at the specified path. Uncompressed profiles are memory-mapped and
+   * large ones are parsed on multiple threads, gzipped profiles are inflated on a separate thread,
+   * and arguments of events are decoded lazily or dropped, as configured by the passed-in options.
+   */
+  public static BazelProfile createFromPath(String path, ParseOptions options)
+      throws IllegalArgumentException {
     File bazelProfileFile = new File(path);
 
+    if (options.getMemoryMapping() && !path.endsWith(".gz")) {
+      MappedFile mappedFile = null;
+      try {
+        mappedFile = MappedFile.map(bazelProfileFile.toPath());
+      } catch (IOException | UnsupportedOperationException ex) {
+        // Let reading the file as a stream below report the problem.
+      }
+      if (mappedFile != null) {
+        return createFromMappedFile(mappedFile, options);
+      }
+    }
+
     InputStream inputStream;
     try {
       inputStream = new FileInputStream(bazelProfileFile);
       if (path.endsWith(".gz")) {
         try {
-          inputStream = new GZIPInputStream(inputStream);
+          inputStream = new GZIPInputStream(inputStream, GZIP_BUFFER_SIZE);
         } catch (ZipException ex) {
           throw new IllegalArgumentException(
               String.format("bazel_profile is set to %s, but it could not be gunzipped.", path),
               ex);
         }
+        if (options.getReadAhead()) {
+          // Inflate on another thread while parsing.
+          inputStream = new ReadAheadInputStream(inputStream);
+        }
       }
     } catch (FileNotFoundException ex) {
       throw new IllegalArgumentException(
@@ -73,21 +119,92 @@ public class BazelProfile implements Datum {
           String.format("Could not parse bazel_profile at %s.", path), ex);
     }
 
-    return createFromInputStream(inputStream);
+    try (InputStream profileInputStream = inputStream) {
+      return createFromInputStream(profileInputStream, options);
+    } catch (IOException ex) {
+      throw new IllegalArgumentException(
+          String.format("Could not parse bazel_profile at %s.", path), ex);
+    }
+  }
+
+  private static BazelProfile createFromMappedFile(MappedFile mappedFile, ParseOptions options) {
+    boolean parallel =
+        options.getParallelism() > 1 && mappedFile.size() >= 2 * options.getMinChunkSize();
+    // Locating the arguments of events requires the bounds of the "traceEvents" array, so split
+    // the file into a single chunk if it is not parsed in parallel.
+    if (parallel || options.getLazyArguments()) {
+      Optional<TraceEventsChunks> chunks;
+      try (Tracer.Span span = startParseSpan(options, "Split traceEvents")) {
+        chunks =
+            TraceEventsChunks.split(
+                mappedFile,
+                parallel
+                    ? TraceEventsChunks.getChunkSize(mappedFile.size(), options)
+                    : mappedFile.size());
+      }
+      if (chunks.isPresent()) {
+        SymbolTable symbols = ProfileThread.newSymbolTable();
+        Map<ThreadId, ProfileThread> threads;
+        try (Tracer.Span span = startParseSpan(options, "Parse traceEvents")) {
+          threads = chunks.get().parse(parallel ? options.getParallelism() : 1, symbols, options);
+        } catch (IllegalStateException | IOException e) {
+          throw new IllegalArgumentException("Could not parse Bazel profile.", e);
+        }
+        return new BazelProfile(
+            new JsonReader(chunks.get().newReaderWithoutTraceEvents()),
+            options,
+            symbols,
+            threads);
+      }
+    }
+    return new BazelProfile(new JsonReader(mappedFile.newReader(0, mappedFile.size())), options);
   }
 
   public static BazelProfile createFromInputStream(InputStream inputStream)
       throws IllegalArgumentException {
+    return createFromInputStream(inputStream, ParseOptions.defaults());
+  }
+
+  /**
+   * Parses the Bazel profile read from the passed-in stream. Of the passed-in options, only those
+   * that do not require memory mapping apply.
+   */
+  public static BazelProfile createFromInputStream(InputStream inputStream, ParseOptions options)
+      throws IllegalArgumentException {
     return new BazelProfile(
-        new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+        new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)), options);
   }
 
   private final BazelVersion bazelVersion;
   private final Map<String, String> otherData = new HashMap<>();
   private final Map<ThreadId, ProfileThread> threads = new HashMap<>();
+  private final SymbolTable symbols;
+
+  // The threads with specific roles, classified once the profile was parsed.
+  private final ProfileThread mainThread;
+  @Nullable private final ProfileThread criticalPath;
+  @Nullable private final ProfileThread garbageCollectorThread;
+  private final ImmutableListMultimap<Integer, ProfileThread> skyframeEvaluators;
+  // Built when the events of a category are first requested.
+  private final Supplier<CompleteEventIndex> completeEventIndex =
+      Suppliers.memoize(() -> new CompleteEventIndex(threads.values()));
+
+  private BazelProfile(JsonReader profileReader, ParseOptions options) {
+    this(profileReader, options, ProfileThread.newSymbolTable(), Map.of());
+  }
 
-  private BazelProfile(JsonReader profileReader) {
-    try {
+  /**
+   * Parses the profile from the passed-in reader, adding its trace events to the threads that were
+   * already parsed from the same profile using the passed-in symbol table.
+   */
+  private BazelProfile(
+      JsonReader profileReader,
+      ParseOptions options,
+      SymbolTable symbols,
+      Map<ThreadId, ProfileThread> parsedThreads) {
+    this.symbols = symbols;
+    threads.putAll(parsedThreads);
+    try (Tracer.Span span = startParseSpan(options, "Read profile")) {
       boolean hasOtherData = false;
       boolean hasTraceEvents = false;
       profileReader.beginObject();
@@ -103,32 +220,7 @@ public class BazelProfile implements Datum {
             break;
           case TraceEventFormatConstants.SECTION_TRACE_EVENTS:
             hasTraceEvents = true;
-            profileReader.beginArray();
-            while (profileReader.hasNext()) {
-              var traceEvent = JsonParser.parseReader(profileReader).getAsJsonObject();
-              int pid;
-              int tid;
-              try {
-                pid = traceEvent.get(TraceEventFormatConstants.EVENT_PROCESS_ID).getAsInt();
-                tid = traceEvent.get(TraceEventFormatConstants.EVENT_THREAD_ID).getAsInt();
-              } catch (Exception e) {
-                // Skip events that do not have a valid pid or tid.
-                continue;
-              }
-              ThreadId threadId = new ThreadId(pid, tid);
-              ProfileThread profileThread =
-                  threads.compute(
-                      threadId,
-                      (key, t) -> {
-                        if (t == null) {
-                          t = new ProfileThread(threadId);
-                        }
-                        return t;
-                      });
-              // TODO: Use success response to take action on errant events.
-              profileThread.addEvent(traceEvent);
-            }
-            profileReader.endArray();
+            readTraceEvents(profileReader, threads, symbols, options.getProjection(), null);
             break;
           default:
             // We only care about otherData and traceEvents.
@@ -146,24 +238,130 @@ public class BazelProfile implements Datum {
     } catch (IllegalStateException | IOException e) {
       throw new IllegalArgumentException("Could not parse Bazel profile.", e);
     }
+    // Sort the events of all threads once, so that they can be read concurrently afterwards.
+    try (Tracer.Span span = startParseSpan(options, "Freeze threads")) {
+      threads.values().parallelStream().forEach(ProfileThread::freeze);
+    }
 
-    this.bazelVersion =
-        BazelVersion.parse(otherData.get(BazelProfileConstants.OTHER_DATA_BAZEL_VERSION));
+    try (Tracer.Span span = startParseSpan(options, "Classify threads")) {
+      this.bazelVersion =
+          BazelVersion.parse(otherData.get(BazelProfileConstants.OTHER_DATA_BAZEL_VERSION));
+
+      this.mainThread =
+          findThread(BazelProfile::isMainThread)
+              .orElseThrow(
+                  () ->
+                      new IllegalArgumentException(
+                          String.format(
+                              "Invalid Bazel profile, JSON file missing \"%s\".",
+                              BazelProfileConstants.THREAD_MAIN)));
+      this.criticalPath = findThread(BazelProfile::isCriticalPathThread).orElse(null);
+      this.garbageCollectorThread = findThread(BazelProfile::isGarbageCollectorThread).orElse(null);
+      ImmutableListMultimap.Builder<Integer, ProfileThread> skyframeEvaluators =
+          ImmutableListMultimap.builder();
+      for (ProfileThread thread : threads.values()) {
+        Integer index = getSkyframeEvaluatorIndex(thread);
+        if (index != null) {
+          skyframeEvaluators.put(index, thread);
+        }
+      }
+      this.skyframeEvaluators = skyframeEvaluators.build();
+    }
+  }
 
-    if (!containsMainThread()) {
-      throw new IllegalArgumentException(
-          String.format(
-              "Invalid Bazel profile, JSON file missing \"%s\".",
-              BazelProfileConstants.THREAD_MAIN));
+  /** Starts a span that records a stage of parsing a profile with the passed-in options. */
+  static Tracer.Span startParseSpan(ParseOptions options, String stage) {
+    return options.getTracer().startSpan(Tracer.CATEGORY_PARSE, stage, Map.of());
+  }
+
+  /**
+   * Reads the "traceEvents" array and adds the events to the threads they belong to, creating the
+   * threads with the passed-in symbol table as needed.
+   *
+   * <p>Of the complete events that are skipped, the threads keep a summary of their intervals, see
+   * {@link ProfileThread#hasCompleteEventContainedIn}, and whether any of them was merged, see
+   * {@link ProfileThread#hasMergedEvents()}.
+   *
+   * @param projection the events that are kept, all others are skipped
+   * @param argumentsLocator if not {@code null}, locates the arguments of the events read, so that
+   *     they are decoded lazily
+   */
+  static void readTraceEvents(
+      JsonReader reader,
+      Map<ThreadId, ProfileThread> threads,
+      SymbolTable symbols,
+      ProfileProjection projection,
+      @Nullable ArgumentsLocator argumentsLocator)
+      throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) {
+      RawArguments rawArguments = argumentsLocator == null ? null : argumentsLocator.next();
+      var traceEvent =
+          DecodedTraceEvent.decode(reader, rawArguments, projection.getArgumentsCategories());
+      if (!projection.keepsEvent(traceEvent)) {
+        summarizeSkippedEvent(traceEvent, threads, symbols);
+        continue;
+      }
+      int pid;
+      int tid;
+      try {
+        pid = traceEvent.getProcessId();
+        tid = traceEvent.getThreadId();
+      } catch (Exception e) {
+        // Skip events that do not have a valid pid or tid.
+        continue;
+      }
+      ProfileThread profileThread = getOrCreateThread(threads, new ThreadId(pid, tid), symbols);
+      // TODO: Use success response to take action on errant events.
+      profileThread.addEvent(traceEvent);
+    }
+    reader.endArray();
+  }
+
+  /**
+   * Keeps what is needed of a trace event that the projection skips: the interval of a complete
+   * event and whether it is a merged event.
+   */
+  private static void summarizeSkippedEvent(
+      DecodedTraceEvent traceEvent, Map<ThreadId, ProfileThread> threads, SymbolTable symbols) {
+    long start;
+    long end;
+    ThreadId threadId;
+    String name;
+    try {
+      if (!TraceEventFormatConstants.PHASE_COMPLETE.equals(traceEvent.getPhase())) {
+        return;
+      }
+      start = traceEvent.getTimestamp();
+      end = start + traceEvent.getDuration();
+      threadId = new ThreadId(traceEvent.getProcessId(), traceEvent.getThreadId());
+      name =
+          traceEvent.has(TraceEventFormatConstants.EVENT_NAME) ? traceEvent.getName() : null;
+    } catch (Exception e) {
+      // Malformed complete events would not have been added to their thread either.
+      return;
     }
+    getOrCreateThread(threads, threadId, symbols).addDroppedCompleteEvent(start, end, name);
+  }
+
+  private static ProfileThread getOrCreateThread(
+      Map<ThreadId, ProfileThread> threads, ThreadId threadId, SymbolTable symbols) {
+    return threads.compute(
+        threadId,
+        (key, t) -> {
+          if (t == null) {
+            t = new ProfileThread(threadId, symbols);
+          }
+          return t;
+        });
   }
 
   /**
    * This method is called from the constructor. Either it needs to stay private or it must be
    * declared final, so that it cannot be overridden.
    */
-  private boolean containsMainThread() {
-    return threads.values().stream().anyMatch(BazelProfile::isMainThread);
+  private Optional<ProfileThread> findThread(Predicate<ProfileThread> predicate) {
+    return threads.values().stream().filter(predicate).findAny();
   }
 
   /**
@@ -193,8 +391,7 @@ public class BazelProfile implements Datum {
    */
   @VisibleForTesting
   static boolean isGarbageCollectorThread(ProfileThread thread) {
-    return thread.getCompleteEvents().stream()
-        .anyMatch(event -> event.category.equals(BazelProfileConstants.CAT_GARBAGE_COLLECTION));
+    return thread.hasCompleteEventOfCategory(BazelProfileConstants.CAT_GARBAGE_COLLECTION);
   }
 
   /**
@@ -207,6 +404,32 @@ public class BazelProfile implements Datum {
     return BazelProfileConstants.THREAD_CRITICAL_PATH.equals(thread.getName());
   }
 
+  /**
+   * Returns the index of the skyframe evaluator the passed-in thread looks like, as included in its
+   * name.
+   *
+   * @param thread the thread to check
+   * @return the index of the skyframe evaluator, or {@code null} if the thread does not look like
+   *     one
+   */
+  @VisibleForTesting
+  @Nullable
+  static Integer getSkyframeEvaluatorIndex(ProfileThread thread) {
+    String name = thread.getName();
+    if (name == null) {
+      return null;
+    }
+    Matcher matcher = SKYFRAME_EVALUATOR_REGEX.matcher(name);
+    if (!matcher.matches() || matcher.group(1).isEmpty()) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(matcher.group(1));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
   public ImmutableMap<String, String> getOtherData() {
     return ImmutableMap.copyOf(otherData);
   }
@@ -223,20 +446,99 @@ public class BazelProfile implements Datum {
     return bazelVersion;
   }
 
+  /**
+   * The symbol table the names and categories of the events of this profile are kept in. It is
+   * released together with the profile.
+   *
+   * @return the symbol table of the profile
+   */
+  public SymbolTable getSymbolTable() {
+    return symbols;
+  }
+
+  /**
+   * Returns whether the profile includes events that Bazel merged, because they were too short to
+   * be recorded individually. The threads record this for every complete event when parsing the
+   * profile, so this does not depend on the {@link ProfileProjection} and does not read any events.
+   *
+   * @return whether the profile includes merged events
+   */
+  public boolean hasMergedEvents() {
+    return threads.values().stream().anyMatch(ProfileThread::hasMergedEvents);
+  }
+
   public Stream<ProfileThread> getThreads() {
     return threads.values().stream();
   }
 
   public Optional<ProfileThread> getCriticalPath() {
-    return threads.values().stream().filter(BazelProfile::isCriticalPathThread).findAny();
+    return Optional.ofNullable(criticalPath);
   }
 
   public ProfileThread getMainThread() {
-    return threads.values().stream().filter(BazelProfile::isMainThread).findAny().get();
+    return mainThread;
   }
 
   public Optional<ProfileThread> getGarbageCollectorThread() {
-    return threads.values().stream().filter(BazelProfile::isGarbageCollectorThread).findAny();
+    return Optional.ofNullable(garbageCollectorThread);
+  }
+
+  /**
+   * The threads of the skyframe evaluators, by the index included in their names. Usually there is
+   * a single thread per index.
+   *
+   * @return the skyframe evaluator threads by their index
+   */
+  public ImmutableListMultimap<Integer, ProfileThread> getSkyframeEvaluators() {
+    return skyframeEvaluators;
+  }
+
+  /**
+   * The complete events of all threads with the passed-in category, sorted by their start.
+   *
+   * <p>On first use, the events of all threads are indexed by their category in a single pass.
+   * Afterwards, retrieving the events of a category does not depend on the number of events of
+   * other categories.
+   *
+   * @param category the category of the events to return
+   * @return the events of the category, which is empty if there are none
+   */
+  public ImmutableList<CompleteEvent> getCompleteEvents(String category) {
+    return completeEventIndex.get().getCompleteEvents(Preconditions.checkNotNull(category));
+  }
+
+  /**
+   * An index of the complete events of all threads with the passed-in category, for looking up
+   * the events that overlap, contain or are contained in a time interval. See {@link
+   * #getCompleteEvents(String)}.
+   *
+   * @param category the category of the events to index
+   * @return the index of the events of the category
+   */
+  public CompleteEventIntervalIndex getCompleteEventIntervals(String category) {
+    return completeEventIndex.get().getCompleteEventIntervals(Preconditions.checkNotNull(category));
+  }
+
+  /**
+   * The complete events of all threads with the passed-in category by their name, e.g. to look up
+   * the events of an action. The events of each name are sorted by their start. Events without a
+   * name are not included.
+   *
+   * @param category the category of the events to return
+   * @return the events of the category by their name
+   */
+  public ImmutableListMultimap<String, CompleteEvent> getCompleteEventsByName(String category) {
+    return completeEventIndex.get().getCompleteEventsByName(Preconditions.checkNotNull(category));
+  }
+
+  /**
+   * Whether any thread has a complete event with the passed-in category.
+   *
+   * @param category the category to look for
+   * @return whether there is at least one event of the category
+   */
+  public boolean hasCompleteEvents(String category) {
+    return completeEventIndex.get().getCategories().contains(category);
   }
 
   public Optional<ImmutableList<CounterEvent>> getActionCounts() {
@@ -264,7 +566,7 @@ public class BazelProfile implements Datum {
           @Override
           public List<DatumSupplierSpecification<?>> getSuppliers() {
             return ImmutableList.of(
-                DatumSupplierSpecification.of(BazelProfile.class, () -> profile));
+                DatumSupplierSpecification.of(BazelProfile.class, () -> profile, Set.of()));
           }
         };
 
@@ -345,9 +647,7 @@ public class BazelProfile implements Datum {
     getThreads()
         .filter(
             thread ->
-                !isGarbageCollectorThread(thread)
-                    && !isMainThread(thread)
-                    && !isCriticalPathThread(thread))
+                thread != garbageCollectorThread && thread != mainThread && thread != criticalPath)
         .forEach(
             (thread) -> {
               if (!thread.getCompleteEvents().isEmpty()) {
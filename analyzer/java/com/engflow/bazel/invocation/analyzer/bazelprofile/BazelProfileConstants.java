@@ -15,6 +15,7 @@
 package com.engflow.bazel.invocation.analyzer.bazelprofile;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
 
 /** Constants that are specific to Bazel profiles. */
 public class BazelProfileConstants {
@@ -178,4 +179,19 @@ public class BazelProfileConstants {
   // https://github.com/bazelbuild/bazel/blob/c3ed4b5ab526405df336af94cf91145b682d1d04/src/main/java/com/google/devtools/build/lib/analysis/actions/TemplateExpansionAction.java#L200
   /** For an action that expands a template and writes the expanded content to a file. */
   public static final String MNEMONIC_TEMPLATE_EXPAND = "TemplateExpand";
+
+  // The symbols every symbol table of a Bazel profile starts with, so that events can be matched
+  // by comparing ids. See BazelEventsUtil.
+  static final ImmutableList<String> PREDEFINED_SYMBOLS =
+      ImmutableList.of(
+          CAT_GENERAL_INFORMATION,
+          CAT_LOCAL_ACTION_EXECUTION,
+          CAT_REMOTE_ACTION_CACHE_CHECK,
+          CAT_REMOTE_ACTION_EXECUTION,
+          CAT_REMOTE_EXECUTION_UPLOAD_TIME,
+          CAT_REMOTE_OUTPUT_DOWNLOAD,
+          COMPLETE_REMOTE_DOWNLOAD,
+          COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD,
+          COMPLETE_REMOTE_EXECUTION_UPLOAD_TIME_UPLOAD_OUTPUTS,
+          COMPLETE_SUBPROCESS_RUN);
 }
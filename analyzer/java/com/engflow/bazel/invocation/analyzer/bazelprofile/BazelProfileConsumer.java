@@ -0,0 +1,28 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+/**
+ * Implemented by {@link com.engflow.bazel.invocation.analyzer.core.DataProvider}s that read the
+ * {@link BazelProfile}, to declare which of its events they use. Only the events used by the
+ * providers that are registered need to be kept when parsing a profile.
+ */
+public interface BazelProfileConsumer {
+  /**
+   * Returns the events of the {@link BazelProfile} that this provider reads. Events read through
+   * other data, such as {@link BazelProfile#getActionCounts()}, need not be included.
+   */
+  ProfileProjection getProfileProjection();
+}
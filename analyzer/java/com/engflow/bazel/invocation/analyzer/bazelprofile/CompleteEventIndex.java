@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEventIntervalIndex;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Indexes the complete events of the threads of a profile by their category, so that the events of
+ * a category can be retrieved without scanning the events of all threads.
+ *
+ * <p>The index is built in a single pass over the categories of the events, without creating the
+ * events themselves. The events of a category are only created, sorted and cached when they are
+ * first requested. The index may be read concurrently.
+ */
+final class CompleteEventIndex {
+  private final ImmutableList<ProfileThread> threads;
+  private final ImmutableMap<String, Positions> positionsByCategory;
+  private final Map<String, ImmutableList<CompleteEvent>> eventsByCategory =
+      new ConcurrentHashMap<>();
+  private final Map<String, CompleteEventIntervalIndex> intervalsByCategory =
+      new ConcurrentHashMap<>();
+  private final Map<String, ImmutableListMultimap<String, CompleteEvent>> namesByCategory =
+      new ConcurrentHashMap<>();
+
+  /** Indexes the complete events of the passed-in threads, which have to be frozen. */
+  CompleteEventIndex(Collection<ProfileThread> threads) {
+    this.threads = ImmutableList.copyOf(threads);
+    Map<String, Positions> positionsByCategory = new HashMap<>();
+    for (int thread = 0; thread < this.threads.size(); thread++) {
+      ProfileThread profileThread = this.threads.get(thread);
+      int size = profileThread.getCompleteEvents().size();
+      // Events of the same category are usually clustered, so avoid most of the map lookups.
+      String previousCategory = null;
+      Positions positions = null;
+      for (int event = 0; event < size; event++) {
+        String category = profileThread.getCompleteEventCategory(event);
+        if (category == null) {
+          continue;
+        }
+        if (!category.equals(previousCategory)) {
+          positions = positionsByCategory.computeIfAbsent(category, key -> new Positions());
+          previousCategory = category;
+        }
+        positions.add(thread, event);
+      }
+    }
+    this.positionsByCategory = ImmutableMap.copyOf(positionsByCategory);
+  }
+
+  /** Returns the categories of all indexed events. */
+  ImmutableSet<String> getCategories() {
+    return positionsByCategory.keySet();
+  }
+
+  /**
+   * Returns the complete events of the passed-in category across all threads, sorted by their
+   * start. Events with the same start are kept in the order of their threads.
+   */
+  ImmutableList<CompleteEvent> getCompleteEvents(String category) {
+    Positions positions = positionsByCategory.get(category);
+    if (positions == null) {
+      return ImmutableList.of();
+    }
+    return eventsByCategory.computeIfAbsent(category, key -> positions.getEvents(threads));
+  }
+
+  /**
+   * Returns an index of the complete events of the passed-in category across all threads, for
+   * looking up the events in a time interval. It is built when first requested.
+   */
+  CompleteEventIntervalIndex getCompleteEventIntervals(String category) {
+    return intervalsByCategory.computeIfAbsent(
+        category, key -> CompleteEventIntervalIndex.of(getCompleteEvents(key)));
+  }
+
+  /**
+   * Returns the complete events of the passed-in category across all threads by their name. The
+   * events of each name are sorted by their start, events without a name are left out. The result
+   * is built when first requested.
+   */
+  ImmutableListMultimap<String, CompleteEvent> getCompleteEventsByName(String category) {
+    return namesByCategory.computeIfAbsent(
+        category,
+        key -> {
+          ImmutableListMultimap.Builder<String, CompleteEvent> eventsByName =
+              ImmutableListMultimap.builder();
+          for (CompleteEvent event : getCompleteEvents(key)) {
+            if (event.name != null) {
+              eventsByName.put(event.name, event);
+            }
+          }
+          return eventsByName.build();
+        });
+  }
+
+  /** The positions of the events of a category, as pairs of thread and event indices. */
+  private static final class Positions {
+    private int[] threadIndices = new int[16];
+    private int[] eventIndices = new int[16];
+    private int size;
+
+    void add(int thread, int event) {
+      if (size == threadIndices.length) {
+        threadIndices = Arrays.copyOf(threadIndices, size * 2);
+        eventIndices = Arrays.copyOf(eventIndices, size * 2);
+      }
+      threadIndices[size] = thread;
+      eventIndices[size++] = event;
+    }
+
+    ImmutableList<CompleteEvent> getEvents(List<ProfileThread> threads) {
+      List<CompleteEvent> events = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        events.add(threads.get(threadIndices[i]).getCompleteEvents().get(eventIndices[i]));
+      }
+      // The events of each thread are already sorted, so this mostly merges sorted runs.
+      events.sort(Comparator.comparing((e) -> e.start));
+      return ImmutableList.copyOf(events);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import com.google.common.base.Preconditions;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Summarizes the complete events of a thread that were dropped while parsing a profile, because
+ * the {@link ProfileProjection} did not select them, so that it can still be answered whether the
+ * thread has an event contained in a time interval.
+ *
+ * <p>Only the intervals that do not contain another interval are needed for that, which for the
+ * nested events of a thread are mostly those of the innermost events. All others are discarded
+ * whenever the buffer is full and when the thread is frozen. Afterwards, the remaining intervals
+ * are sorted by both their start and their end. All bounds are inclusive, like those of {@link
+ * com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEventIntervalIndex}.
+ *
+ * <p>Intervals may only be added by a single thread, and only read after {@link #compact()}.
+ */
+final class DroppedEventIntervals {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] starts = new long[0];
+  private long[] ends = new long[0];
+  private int size;
+  // Whether the intervals are sorted and none of them contains another one.
+  private boolean compacted = true;
+
+  /** Adds the interval of a dropped event, in microseconds. */
+  void add(long startMicros, long endMicros) {
+    if (size == starts.length) {
+      compact();
+      // Grow unless compacting freed most of the buffer.
+      if (size >= starts.length / 2) {
+        int capacity = Math.max(INITIAL_CAPACITY, 2 * starts.length);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+      }
+    }
+    starts[size] = startMicros;
+    ends[size] = endMicros;
+    size++;
+    compacted = false;
+  }
+
+  /** Adds all intervals of the passed-in summary. */
+  void addAll(DroppedEventIntervals other) {
+    for (int i = 0; i < other.size; i++) {
+      add(other.starts[i], other.ends[i]);
+    }
+  }
+
+  /** Discards all intervals that contain another interval and sorts the remaining ones. */
+  void compact() {
+    if (compacted) {
+      return;
+    }
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    // Of the intervals with the same start, the shortest is sorted last.
+    Arrays.sort(
+        order,
+        Comparator.comparingLong((Integer i) -> starts[i])
+            .thenComparing((Integer i) -> ends[i], Comparator.reverseOrder()));
+    long[] keptStarts = new long[starts.length];
+    long[] keptEnds = new long[ends.length];
+    int first = size;
+    long minEnd = Long.MAX_VALUE;
+    for (int k = size - 1; k >= 0; k--) {
+      int i = order[k];
+      // An interval that ends at or after an interval starting at or after it contains the latter.
+      if (ends[i] < minEnd) {
+        first--;
+        keptStarts[first] = starts[i];
+        keptEnds[first] = ends[i];
+        minEnd = ends[i];
+      }
+    }
+    size -= first;
+    System.arraycopy(keptStarts, first, keptStarts, 0, size);
+    System.arraycopy(keptEnds, first, keptEnds, 0, size);
+    starts = keptStarts;
+    ends = keptEnds;
+    compacted = true;
+  }
+
+  /** Releases the unused capacity of the buffer. */
+  void trimToSize() {
+    starts = Arrays.copyOf(starts, size);
+    ends = Arrays.copyOf(ends, size);
+  }
+
+  /** Returns the number of intervals kept. */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns whether any dropped event is contained in the passed-in interval, i.e. starts at or
+   * after its start and ends at or before its end.
+   */
+  boolean hasContainedIn(long fromMicros, long toMicros) {
+    Preconditions.checkState(compacted, "The intervals have to be compacted before reading them.");
+    // The intervals are sorted by their end as well, so the first one starting at or after the
+    // passed-in start ends earliest.
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (starts[middle] < fromMicros) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low < size && starts[low] <= toMicros && ends[low] <= toMicros;
+  }
+}
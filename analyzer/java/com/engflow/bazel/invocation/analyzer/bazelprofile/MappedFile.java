@@ -0,0 +1,233 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import com.engflow.bazel.invocation.analyzer.traceeventformat.RawArgumentsSource;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file mapped into memory, so that it can be read without copying its contents into the heap.
+ *
+ * <p>Files larger than what a single {@link ByteBuffer} can address are mapped as multiple
+ * segments. Segments never split a UTF-8 encoded character, so that each can be decoded on its own.
+ */
+class MappedFile implements RawArgumentsSource {
+  private static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+  // The longest UTF-8 encoded character has four bytes.
+  private static final int MAX_CHARACTER_BYTES = 4;
+  // Decode non-ASCII runs in bounded pieces, so that the pending characters stay small.
+  private static final int MAX_DECODE_BYTES = 8 * 1024;
+
+  private final long size;
+  private final List<ByteBuffer> segments;
+  private final long[] segmentStarts;
+
+  private MappedFile(long size, List<ByteBuffer> segments, long[] segmentStarts) {
+    this.size = size;
+    this.segments = segments;
+    this.segmentStarts = segmentStarts;
+  }
+
+  /** Maps the whole file at the passed-in path into memory. */
+  static MappedFile map(Path path) throws IOException {
+    return map(path, DEFAULT_SEGMENT_SIZE);
+  }
+
+  @VisibleForTesting
+  static MappedFile map(Path path, long segmentSize) throws IOException {
+    Preconditions.checkArgument(
+        MAX_CHARACTER_BYTES <= segmentSize
+            && segmentSize <= Integer.MAX_VALUE - MAX_CHARACTER_BYTES);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      List<ByteBuffer> segments = new ArrayList<>();
+      List<Long> segmentStarts = new ArrayList<>();
+      long start = 0;
+      do {
+        long mappedEnd = Math.min(size, start + segmentSize + MAX_CHARACTER_BYTES);
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, mappedEnd - start);
+        long end = Math.min(size, start + segmentSize);
+        if (end < size) {
+          // Move the end back to the start of a character, unless there is none to be found.
+          long characterStart = end;
+          while (characterStart > start
+              && end - characterStart < MAX_CHARACTER_BYTES
+              && isContinuationByte(mapped.get((int) (characterStart - start)))) {
+            characterStart--;
+          }
+          if (!isContinuationByte(mapped.get((int) (characterStart - start)))) {
+            end = characterStart;
+          }
+        }
+        segments.add(mapped.slice(0, (int) (end - start)));
+        segmentStarts.add(start);
+        start = end;
+      } while (start < size);
+      return new MappedFile(
+          size, segments, segmentStarts.stream().mapToLong(Long::longValue).toArray());
+    }
+  }
+
+  private static boolean isContinuationByte(byte b) {
+    return (b & 0xC0) == 0x80;
+  }
+
+  long size() {
+    return size;
+  }
+
+  int getSegmentCount() {
+    return segments.size();
+  }
+
+  /** Returns the segment with the specified index. Do not modify its position or limit. */
+  ByteBuffer getSegment(int index) {
+    return segments.get(index);
+  }
+
+  long getSegmentStart(int index) {
+    return segmentStarts[index];
+  }
+
+  /**
+   * Returns a reader that decodes the specified range of the file as UTF-8. Malformed input is
+   * replaced, like {@link java.io.InputStreamReader} does.
+   */
+  @Override
+  public Reader newReader(long start, long end) {
+    Preconditions.checkArgument(0 <= start && start <= end && end <= size);
+    return new RangeReader(start, end);
+  }
+
+  private class RangeReader extends Reader {
+    private final CharsetDecoder decoder =
+        StandardCharsets.UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer pending = CharBuffer.allocate(MAX_DECODE_BYTES + MAX_CHARACTER_BYTES);
+    private final long end;
+    private int segmentIndex;
+    private ByteBuffer segment;
+    private int position;
+    private int limit;
+
+    RangeReader(long start, long end) {
+      this.end = end;
+      int index = 0;
+      while (index + 1 < segmentStarts.length && segmentStarts[index + 1] <= start) {
+        index++;
+      }
+      selectSegment(index, start);
+      pending.flip();
+    }
+
+    private void selectSegment(int index, long start) {
+      segmentIndex = index;
+      segment = segments.get(index);
+      position = (int) (start - segmentStarts[index]);
+      limit = (int) Math.min(segment.limit(), end - segmentStarts[index]);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) {
+      Preconditions.checkPositionIndexes(off, off + len, cbuf.length);
+      if (len == 0) {
+        return 0;
+      }
+      int count = 0;
+      while (count < len) {
+        if (pending.hasRemaining()) {
+          int n = Math.min(len - count, pending.remaining());
+          pending.get(cbuf, off + count, n);
+          count += n;
+          continue;
+        }
+        if (position == limit) {
+          if (segmentIndex + 1 == segments.size()
+              || segmentStarts[segmentIndex] + limit >= end) {
+            break;
+          }
+          selectSegment(segmentIndex + 1, segmentStarts[segmentIndex + 1]);
+          continue;
+        }
+        // Profiles are almost entirely ASCII, which maps directly to chars.
+        byte b = segment.get(position);
+        if (b >= 0) {
+          int n = Math.min(len - count, limit - position);
+          int i = 0;
+          while (i < n && (b = segment.get(position + i)) >= 0) {
+            cbuf[off + count + i] = (char) b;
+            i++;
+          }
+          position += i;
+          count += i;
+        } else {
+          decodeNonAscii();
+        }
+      }
+      return count == 0 ? -1 : count;
+    }
+
+    /**
+     * Decodes the run of non-ASCII bytes at the current position into {@link #pending}. Long runs
+     * are decoded in pieces, over multiple passes.
+     */
+    private void decodeNonAscii() {
+      // Decoding UTF-8 never yields more chars than bytes, so a run that fits into the pending
+      // buffer cannot overflow it, even if it is malformed and every byte is replaced.
+      int maxRunEnd = position + Math.min(limit - position, pending.capacity());
+      int runEnd = position;
+      while (runEnd < maxRunEnd && segment.get(runEnd) < 0) {
+        runEnd++;
+        if (runEnd - position >= MAX_DECODE_BYTES
+            && runEnd < limit
+            && !isContinuationByte(segment.get(runEnd))) {
+          break;
+        }
+      }
+      // The run may end within a character if it was cut off at the size of the pending buffer.
+      boolean endOfRun = runEnd == limit || !isContinuationByte(segment.get(runEnd));
+      pending.clear();
+      decoder.reset();
+      ByteBuffer run = segment.slice(position, runEnd - position);
+      CoderResult result = decoder.decode(run, pending, endOfRun);
+      if (endOfRun && result.isUnderflow()) {
+        decoder.flush(pending);
+      }
+      pending.flip();
+      // Bytes that were not decoded, i.e. an incomplete character or the rest of the run if the
+      // pending buffer overflowed, are decoded on the next pass.
+      position += run.position();
+    }
+
+    @Override
+    public void close() {}
+  }
+}
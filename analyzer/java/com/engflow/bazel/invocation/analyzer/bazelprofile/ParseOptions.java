@@ -0,0 +1,179 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import com.engflow.bazel.invocation.analyzer.core.Tracer;
+import com.google.common.base.Preconditions;
+
+/** Options that control how a {@link BazelProfile} is read. */
+public class ParseOptions {
+  /** Uncompressed profiles smaller than twice this size are always parsed on a single thread. */
+  static final long DEFAULT_MIN_CHUNK_SIZE = 16 * 1024 * 1024;
+
+  private final boolean memoryMapping;
+  private final boolean readAhead;
+  private final int parallelism;
+  private final long minChunkSize;
+  private final boolean lazyArguments;
+  private final ProfileProjection projection;
+  private final Tracer tracer;
+
+  private ParseOptions(
+      boolean memoryMapping,
+      boolean readAhead,
+      int parallelism,
+      long minChunkSize,
+      boolean lazyArguments,
+      ProfileProjection projection,
+      Tracer tracer) {
+    this.memoryMapping = memoryMapping;
+    this.readAhead = readAhead;
+    this.parallelism = parallelism;
+    this.minChunkSize = minChunkSize;
+    this.lazyArguments = lazyArguments;
+    this.projection = projection;
+    this.tracer = tracer;
+  }
+
+  /**
+   * Returns the default options, which memory-map uncompressed profiles and parse large ones on all
+   * cores, and inflate gzipped profiles while parsing them. All events are kept and their arguments
+   * are decoded while parsing.
+   */
+  public static ParseOptions defaults() {
+    return newBuilder().build();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns whether uncompressed profiles are read from memory-mapped files instead of streams.
+   * Parsing on multiple threads requires memory mapping.
+   */
+  public boolean getMemoryMapping() {
+    return memoryMapping;
+  }
+
+  /**
+   * Returns whether gzipped profiles are inflated on a separate thread, ahead of parsing the
+   * inflated data.
+   */
+  public boolean getReadAhead() {
+    return readAhead;
+  }
+
+  /**
+   * Returns the maximum number of threads used to parse the "traceEvents" of an uncompressed
+   * profile. A value of 1 parses the profile sequentially.
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /** Returns the minimum number of bytes of a profile that are parsed by a single task. */
+  public long getMinChunkSize() {
+    return minChunkSize;
+  }
+
+  /**
+   * Returns whether the arguments of complete events of uncompressed profiles are only decoded when
+   * they are first accessed. Until then, only their location in the memory-mapped file is kept.
+   * This requires memory mapping; the arguments of other profiles are decoded while parsing.
+   *
+   * <p>The file stays mapped for as long as events with arguments that were not decoded yet are
+   * kept. Only the structure of the arguments is checked while parsing, so arguments that are
+   * malformed otherwise, e.g. because of an invalid escape sequence, throw an {@link
+   * IllegalStateException} when they are first accessed instead of failing the parse.
+   */
+  public boolean getLazyArguments() {
+    return lazyArguments;
+  }
+
+  /**
+   * Returns the events that are kept, together with those read by {@link BazelProfile} itself.
+   * Other events, and the arguments of complete events that are not selected, are dropped while
+   * parsing, as if the profile did not include them.
+   */
+  public ProfileProjection getProjection() {
+    return projection;
+  }
+
+  /** Returns the tracer that records the stages of parsing. */
+  public Tracer getTracer() {
+    return tracer;
+  }
+
+  public static class Builder {
+    private boolean memoryMapping = true;
+    private boolean readAhead = true;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+    private boolean lazyArguments = false;
+    private ProfileProjection projection = ProfileProjection.all();
+    private Tracer tracer = Tracer.NOOP;
+
+    private Builder() {}
+
+    public Builder setMemoryMapping(boolean memoryMapping) {
+      this.memoryMapping = memoryMapping;
+      return this;
+    }
+
+    public Builder setReadAhead(boolean readAhead) {
+      this.readAhead = readAhead;
+      return this;
+    }
+
+    public Builder setParallelism(int parallelism) {
+      Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    public Builder setMinChunkSize(long minChunkSize) {
+      Preconditions.checkArgument(minChunkSize > 0, "minChunkSize must be positive");
+      this.minChunkSize = minChunkSize;
+      return this;
+    }
+
+    public Builder setLazyArguments(boolean lazyArguments) {
+      this.lazyArguments = lazyArguments;
+      return this;
+    }
+
+    public Builder setProjection(ProfileProjection projection) {
+      this.projection = projection.union(ProfileProjection.REQUIRED);
+      return this;
+    }
+
+    public Builder setTracer(Tracer tracer) {
+      this.tracer = Preconditions.checkNotNull(tracer);
+      return this;
+    }
+
+    public ParseOptions build() {
+      return new ParseOptions(
+          memoryMapping,
+          readAhead,
+          parallelism,
+          minChunkSize,
+          lazyArguments,
+          projection,
+          tracer);
+    }
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import com.engflow.bazel.invocation.analyzer.traceeventformat.DecodedTraceEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.TraceEventFormatConstants;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Describes which events of a {@link BazelProfile} are used, so that all other events can be
+ * dropped while parsing it.
+ *
+ * <p>Complete events are selected by their category, counter events by their name and instant
+ * events by their category. For each of them, either all events or only the selected ones are kept.
+ * Metadata events, such as those naming threads, and events of other phases are always kept. The
+ * arguments of complete events are only kept for the selected categories.
+ */
+public final class ProfileProjection {
+  private static final ProfileProjection ALL = new ProfileProjection(null, null, null, null);
+
+  /**
+   * The events read by {@link BazelProfile} itself, for example to find the garbage collector
+   * thread or the action counts. These are kept no matter which events are selected.
+   */
+  static final ProfileProjection REQUIRED =
+      newBuilder()
+          .addCompleteEventCategories(
+              BazelProfileConstants.CAT_CRITICAL_PATH_COMPONENT,
+              BazelProfileConstants.CAT_GARBAGE_COLLECTION)
+          .addCounterNames(
+              BazelProfileConstants.COUNTER_ACTION_COUNT,
+              BazelProfileConstants.COUNTER_ACTION_COUNT_OLD)
+          .build();
+
+  // A null set selects all events of the respective kind.
+  @Nullable private final ImmutableSet<String> completeEventCategories;
+  @Nullable private final ImmutableSet<String> counterNames;
+  @Nullable private final ImmutableSet<String> instantCategories;
+  @Nullable private final ImmutableSet<String> argumentsCategories;
+
+  private ProfileProjection(
+      @Nullable ImmutableSet<String> completeEventCategories,
+      @Nullable ImmutableSet<String> counterNames,
+      @Nullable ImmutableSet<String> instantCategories,
+      @Nullable ImmutableSet<String> argumentsCategories) {
+    this.completeEventCategories = completeEventCategories;
+    this.counterNames = counterNames;
+    this.instantCategories = instantCategories;
+    this.argumentsCategories = argumentsCategories;
+  }
+
+  /** Returns a projection that keeps all events and all of their arguments. */
+  public static ProfileProjection all() {
+    return ALL;
+  }
+
+  /** Returns a projection that only keeps the events that are always kept. */
+  public static ProfileProjection none() {
+    return newBuilder().build();
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns a projection that keeps all events kept by any of the passed-in projections.
+   *
+   * @param projections the projections to combine
+   * @return the union of the projections, which keeps no events if none are passed in
+   */
+  public static ProfileProjection union(Collection<ProfileProjection> projections) {
+    ProfileProjection result = none();
+    for (ProfileProjection projection : projections) {
+      result = result.union(projection);
+    }
+    return result;
+  }
+
+  /** Returns a projection that keeps all events kept by this or the passed-in projection. */
+  public ProfileProjection union(ProfileProjection other) {
+    return new ProfileProjection(
+        union(completeEventCategories, other.completeEventCategories),
+        union(counterNames, other.counterNames),
+        union(instantCategories, other.instantCategories),
+        union(argumentsCategories, other.argumentsCategories));
+  }
+
+  @Nullable
+  private static ImmutableSet<String> union(
+      @Nullable ImmutableSet<String> a, @Nullable ImmutableSet<String> b) {
+    return a == null || b == null ? null : Sets.union(a, b).immutableCopy();
+  }
+
+  /**
+   * Returns the categories of the complete events that are kept, or {@code null} if all complete
+   * events are kept.
+   */
+  @Nullable
+  public ImmutableSet<String> getCompleteEventCategories() {
+    return completeEventCategories;
+  }
+
+  /**
+   * Returns the names of the counter events that are kept, or {@code null} if all counter events
+   * are kept.
+   */
+  @Nullable
+  public ImmutableSet<String> getCounterNames() {
+    return counterNames;
+  }
+
+  /**
+   * Returns the categories of the instant events that are kept, or {@code null} if all instant
+   * events are kept.
+   */
+  @Nullable
+  public ImmutableSet<String> getInstantCategories() {
+    return instantCategories;
+  }
+
+  /**
+   * Returns the categories of the complete events whose arguments are kept, or {@code null} if the
+   * arguments of all complete events are kept.
+   */
+  @Nullable
+  public ImmutableSet<String> getArgumentsCategories() {
+    return argumentsCategories;
+  }
+
+  public boolean keepsCompleteEvent(@Nullable String category) {
+    return contains(completeEventCategories, category);
+  }
+
+  public boolean keepsCounterEvent(@Nullable String name) {
+    return contains(counterNames, name);
+  }
+
+  public boolean keepsInstantEvent(@Nullable String category) {
+    return contains(instantCategories, category);
+  }
+
+  private static boolean contains(@Nullable ImmutableSet<String> set, @Nullable String value) {
+    return set == null || (value != null && set.contains(value));
+  }
+
+  /** Returns whether the passed-in trace event is kept when parsing a profile. */
+  boolean keepsEvent(DecodedTraceEvent event) {
+    try {
+      switch (event.getPhase()) {
+        case TraceEventFormatConstants.PHASE_COMPLETE:
+          return keepsCompleteEvent(getCategory(event));
+        case TraceEventFormatConstants.PHASE_COUNTER:
+          return keepsCounterEvent(
+              event.has(TraceEventFormatConstants.EVENT_NAME) ? event.getName() : null);
+        case "I": // Deprecated, fall-through
+        case TraceEventFormatConstants.PHASE_INSTANT:
+          return keepsInstantEvent(getCategory(event));
+        default:
+          return true;
+      }
+    } catch (RuntimeException e) {
+      // Keep malformed events, so that they are handled like all others when added to a thread.
+      return true;
+    }
+  }
+
+  @Nullable
+  private static String getCategory(DecodedTraceEvent event) {
+    return event.has(TraceEventFormatConstants.EVENT_CATEGORY) ? event.getCategory() : null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ProfileProjection that = (ProfileProjection) o;
+    return Objects.equal(completeEventCategories, that.completeEventCategories)
+        && Objects.equal(counterNames, that.counterNames)
+        && Objects.equal(instantCategories, that.instantCategories)
+        && Objects.equal(argumentsCategories, that.argumentsCategories);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(
+        completeEventCategories, counterNames, instantCategories, argumentsCategories);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "ProfileProjection{"
+            + "completeEventCategories=%s, "
+            + "counterNames=%s, "
+            + "instantCategories=%s, "
+            + "argumentsCategories=%s"
+            + "}",
+        completeEventCategories, counterNames, instantCategories, argumentsCategories);
+  }
+
+  public static class Builder {
+    @Nullable private Set<String> completeEventCategories = new HashSet<>();
+    @Nullable private Set<String> counterNames = new HashSet<>();
+    @Nullable private Set<String> instantCategories = new HashSet<>();
+    @Nullable private Set<String> argumentsCategories = new HashSet<>();
+
+    private Builder() {}
+
+    public Builder addCompleteEventCategories(String... categories) {
+      if (completeEventCategories != null) {
+        completeEventCategories.addAll(Arrays.asList(categories));
+      }
+      return this;
+    }
+
+    public Builder keepAllCompleteEvents() {
+      completeEventCategories = null;
+      return this;
+    }
+
+    public Builder addCounterNames(String... names) {
+      if (counterNames != null) {
+        counterNames.addAll(Arrays.asList(names));
+      }
+      return this;
+    }
+
+    public Builder keepAllCounterEvents() {
+      counterNames = null;
+      return this;
+    }
+
+    public Builder addInstantCategories(String... categories) {
+      if (instantCategories != null) {
+        instantCategories.addAll(Arrays.asList(categories));
+      }
+      return this;
+    }
+
+    public Builder keepAllInstantEvents() {
+      instantCategories = null;
+      return this;
+    }
+
+    /**
+     * Keeps the arguments of the complete events of the passed-in categories. The events themselves
+     * also have to be kept.
+     */
+    public Builder addArgumentsCategories(String... categories) {
+      if (argumentsCategories != null) {
+        argumentsCategories.addAll(Arrays.asList(categories));
+      }
+      return this;
+    }
+
+    public Builder keepAllArguments() {
+      argumentsCategories = null;
+      return this;
+    }
+
+    public ProfileProjection build() {
+      return new ProfileProjection(
+          copyOf(completeEventCategories),
+          copyOf(counterNames),
+          copyOf(instantCategories),
+          copyOf(argumentsCategories));
+    }
+
+    @Nullable
+    private static ImmutableSet<String> copyOf(@Nullable Set<String> set) {
+      return set == null ? null : ImmutableSet.copyOf(set);
+    }
+  }
+}
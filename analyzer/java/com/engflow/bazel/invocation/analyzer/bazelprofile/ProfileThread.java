@@ -14,17 +14,24 @@
 
 package com.engflow.bazel.invocation.analyzer.bazelprofile;
 
+import com.engflow.bazel.invocation.analyzer.time.Timestamp;
 import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEventIntervalIndex;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEventStore;
 import com.engflow.bazel.invocation.analyzer.traceeventformat.CounterEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.DecodedTraceEvent;
 import com.engflow.bazel.invocation.analyzer.traceeventformat.InstantEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.SymbolTable;
 import com.engflow.bazel.invocation.analyzer.traceeventformat.TraceEventFormatConstants;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -32,10 +39,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 public class ProfileThread {
+  private static final String MERGED_EVENTS_PREFIX = "merged";
+  private static final Pattern MERGED_EVENTS_REGEX = Pattern.compile("^merged\\s\\d+\\sevents$");
+
   private final ThreadId threadId;
 
   @Nullable private String name;
@@ -46,17 +56,40 @@ public class ProfileThread {
   private final List<CompleteEvent> completeEvents;
   private final Map<String, List<CounterEvent>> counts;
   private final Map<String, List<InstantEvent>> instants;
+  private final SymbolTable symbols;
+  // The complete events that were not kept when parsing the profile.
+  private final DroppedEventIntervals droppedCompleteEvents = new DroppedEventIntervals();
+  // Whether any complete event, whether kept or not, is one that Bazel merged.
+  private boolean hasMergedEvents;
+
+  // Set by #freeze, after which the events are only read through these views.
+  private volatile boolean frozen;
+  private List<CompleteEvent> frozenCompleteEvents;
+  private ImmutableMap<String, ImmutableList<CounterEvent>> frozenCounts;
+  private ImmutableMap<String, ImmutableList<InstantEvent>> frozenInstants;
+  private ImmutableList<JsonObject> frozenExtraEvents;
+  // Built when first requested.
+  private volatile CompleteEventIntervalIndex completeEventIntervals;
 
   public ProfileThread(ThreadId threadId) {
+    this(threadId, newSymbolTable());
+  }
+
+  /**
+   * Creates a thread whose events take their strings from the passed-in symbol table, which is
+   * usually shared by all threads of a profile.
+   */
+  ProfileThread(ThreadId threadId, SymbolTable symbols) {
     this(
         threadId,
         null,
         null,
         new ArrayList<>(),
         new ArrayList<>(),
-        new ArrayList<>(),
+        new CompleteEventStore(symbols),
+        new HashMap<>(),
         new HashMap<>(),
-        new HashMap<>());
+        symbols);
   }
 
   @Override
@@ -84,14 +117,47 @@ public class ProfileThread {
       @Nullable List<CompleteEvent> completeEvents,
       @Nullable Map<String, List<CounterEvent>> counts,
       @Nullable Map<String, List<InstantEvent>> instants) {
+    this(
+        threadId,
+        name,
+        sortIndex,
+        extraMetadata,
+        extraEvents,
+        completeEvents,
+        counts,
+        instants,
+        completeEvents instanceof CompleteEventStore
+            ? ((CompleteEventStore) completeEvents).getSymbolTable()
+            : newSymbolTable());
+  }
+
+  private ProfileThread(
+      ThreadId threadId,
+      @Nullable String name,
+      @Nullable Integer sortIndex,
+      @Nullable List<JsonObject> extraMetadata,
+      @Nullable List<JsonObject> extraEvents,
+      @Nullable List<CompleteEvent> completeEvents,
+      @Nullable Map<String, List<CounterEvent>> counts,
+      @Nullable Map<String, List<InstantEvent>> instants,
+      SymbolTable symbols) {
     this.threadId = Preconditions.checkNotNull(threadId);
     this.name = name;
     this.sortIndex = sortIndex;
     this.extraMetadata = extraMetadata == null ? new ArrayList<>() : extraMetadata;
     this.extraEvents = extraEvents == null ? new ArrayList<>() : extraEvents;
-    this.completeEvents = completeEvents == null ? new ArrayList<>() : completeEvents;
+    this.completeEvents =
+        completeEvents == null ? new CompleteEventStore(symbols) : completeEvents;
     this.counts = counts == null ? new HashMap<>() : counts;
     this.instants = instants == null ? new HashMap<>() : instants;
+    this.symbols = symbols;
+    this.hasMergedEvents =
+        this.completeEvents.stream().anyMatch(event -> isMergedEventsName(event.name));
+  }
+
+  /** Creates a symbol table that starts with the symbols that Bazel profiles are matched by. */
+  static SymbolTable newSymbolTable() {
+    return new SymbolTable(BazelProfileConstants.PREDEFINED_SYMBOLS);
   }
 
   public ThreadId getThreadId() {
@@ -113,48 +179,27 @@ public class ProfileThread {
    * if parsing and adding the event was successful and {@code false} otherwise.
    */
   public boolean addEvent(JsonObject event) {
+    checkNotFrozen();
     try {
       switch (event.get(TraceEventFormatConstants.EVENT_PHASE).getAsString()) {
         case TraceEventFormatConstants.PHASE_COMPLETE: // Complete events
           {
-            completeEvents.add(CompleteEvent.fromJson(event));
+            CompleteEvent completeEvent = CompleteEvent.fromJson(event);
+            completeEvents.add(completeEvent);
+            hasMergedEvents |= isMergedEventsName(completeEvent.name);
             break;
           }
 
         case "I": // Deprecated, fall-through
         case TraceEventFormatConstants.PHASE_INSTANT: // Instant events
           {
-            InstantEvent instantEvent = InstantEvent.fromJson(event);
-
-            List<InstantEvent> instantList =
-                instants.compute(
-                    instantEvent.getCategory(),
-                    (key, c) -> {
-                      if (c == null) {
-                        c = new ArrayList<>();
-                      }
-                      return c;
-                    });
-
-            instantList.add(instantEvent);
+            addInstantEvent(InstantEvent.fromJson(event));
             break;
           }
 
         case TraceEventFormatConstants.PHASE_COUNTER: // Counter events
           {
-            CounterEvent counterEvent = CounterEvent.fromJson(event);
-
-            List<CounterEvent> countList =
-                counts.compute(
-                    counterEvent.getName(),
-                    (key, c) -> {
-                      if (c == null) {
-                        c = new ArrayList<>();
-                      }
-                      return c;
-                    });
-
-            countList.add(counterEvent);
+            addCounterEvent(CounterEvent.fromJson(event));
             break;
           }
 
@@ -192,40 +237,296 @@ public class ProfileThread {
     }
   }
 
+  /**
+   * Adds a tracing event decoded from the JSON stream to this thread. Returns {@code true} if
+   * converting and adding the event was successful and {@code false} otherwise.
+   *
+   * <p>The result is the same as calling {@link #addEvent(JsonObject)} with the equivalent {@link
+   * JsonObject}, but avoids creating it for the common event types.
+   */
+  public boolean addEvent(DecodedTraceEvent event) {
+    checkNotFrozen();
+    try {
+      switch (event.getPhase()) {
+        case TraceEventFormatConstants.PHASE_COMPLETE: // Complete events
+          {
+            CompleteEvent completeEvent = CompleteEvent.fromTraceEvent(event, symbols);
+            completeEvents.add(completeEvent);
+            hasMergedEvents |= isMergedEventsName(completeEvent.name);
+            break;
+          }
+
+        case "I": // Deprecated, fall-through
+        case TraceEventFormatConstants.PHASE_INSTANT: // Instant events
+          {
+            addInstantEvent(InstantEvent.fromTraceEvent(event, symbols));
+            break;
+          }
+
+        case TraceEventFormatConstants.PHASE_COUNTER: // Counter events
+          {
+            addCounterEvent(CounterEvent.fromTraceEvent(event, symbols));
+            break;
+          }
+
+        case TraceEventFormatConstants.PHASE_METADATA: // Metadata events
+          {
+            String eventName = event.getName();
+            if (TraceEventFormatConstants.METADATA_THREAD_NAME.equals(eventName)) {
+              this.name = event.getArgumentsAsJsonObject().get("name").getAsString();
+            } else if (TraceEventFormatConstants.METADATA_THREAD_SORT_INDEX.equals(eventName)) {
+              this.sortIndex =
+                  Integer.parseInt(
+                      event.getArgumentsAsJsonObject().get("sort_index").getAsString());
+            } else {
+              extraMetadata.add(event.toJsonObject());
+            }
+            break;
+          }
+
+        default:
+          extraEvents.add(event.toJsonObject());
+      }
+
+      return true;
+    } catch (Exception ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Records a complete event of this thread that is not kept, because the {@link
+   * ProfileProjection} the profile is parsed with does not select it. Only its interval is kept, as
+   * read by {@link #hasCompleteEventContainedIn(Timestamp, Timestamp)}, and whether it was merged,
+   * as read by {@link #hasMergedEvents()}.
+   */
+  void addDroppedCompleteEvent(long startMicros, long endMicros, @Nullable String name) {
+    checkNotFrozen();
+    droppedCompleteEvents.add(startMicros, endMicros);
+    hasMergedEvents |= isMergedEventsName(name);
+  }
+
+  /**
+   * Returns whether the passed-in name is that of an event Bazel recorded in place of several
+   * events that were too short to be recorded individually.
+   */
+  private static boolean isMergedEventsName(@Nullable String name) {
+    // Check the prefix first, as this is called for every complete event.
+    return name != null
+        && name.startsWith(MERGED_EVENTS_PREFIX)
+        && MERGED_EVENTS_REGEX.matcher(name).matches();
+  }
+
+  /**
+   * Adds all data of a thread with the same id that was parsed from events following those of this
+   * thread, as if the events had been added to this thread instead.
+   */
+  void addAll(ProfileThread later) {
+    Preconditions.checkArgument(threadId.equals(later.threadId));
+    checkNotFrozen();
+    if (later.name != null) {
+      this.name = later.name;
+    }
+    if (later.sortIndex != null) {
+      this.sortIndex = later.sortIndex;
+    }
+    extraMetadata.addAll(later.extraMetadata);
+    extraEvents.addAll(later.extraEvents);
+    completeEvents.addAll(later.completeEvents);
+    droppedCompleteEvents.addAll(later.droppedCompleteEvents);
+    hasMergedEvents |= later.hasMergedEvents;
+    later.counts.forEach(
+        (counterName, events) ->
+            counts.computeIfAbsent(counterName, key -> new ArrayList<>()).addAll(events));
+    later.instants.forEach(
+        (category, events) ->
+            instants.computeIfAbsent(category, key -> new ArrayList<>()).addAll(events));
+  }
+
+  private void addInstantEvent(InstantEvent instantEvent) {
+    instants
+        .computeIfAbsent(instantEvent.getCategory(), key -> new ArrayList<>())
+        .add(instantEvent);
+  }
+
+  private void addCounterEvent(CounterEvent counterEvent) {
+    counts.computeIfAbsent(counterEvent.getName(), key -> new ArrayList<>()).add(counterEvent);
+  }
+
+  private void checkNotFrozen() {
+    Preconditions.checkState(
+        !frozen, "Events cannot be added to thread %s after they were read.", threadId);
+  }
+
+  /**
+   * Sorts the events of this thread by their timestamps once and keeps immutable views of them, so
+   * that they can be read concurrently and without copying them. Afterwards, no more events can be
+   * added.
+   *
+   * <p>The threads of a {@link BazelProfile} are frozen once it was parsed, all other threads when
+   * their events are first read.
+   */
+  void freeze() {
+    if (frozen) {
+      return;
+    }
+    synchronized (this) {
+      if (frozen) {
+        return;
+      }
+      if (completeEvents instanceof CompleteEventStore) {
+        // Sort the store in place, the returned view creates each event when it is accessed.
+        CompleteEventStore store = (CompleteEventStore) completeEvents;
+        store.sortByStart();
+        store.trimToSize();
+        frozenCompleteEvents = Collections.unmodifiableList(store);
+      } else {
+        frozenCompleteEvents =
+            ImmutableList.sortedCopyOf(Comparator.comparing((e) -> e.start), completeEvents);
+      }
+      frozenCounts = sortedCopyOf(counts, Comparator.comparing(CounterEvent::getTimestamp));
+      frozenInstants = sortedCopyOf(instants, Comparator.comparing(InstantEvent::getTimestamp));
+      frozenExtraEvents =
+          ImmutableList.sortedCopyOf(
+              Comparator.comparingLong(ProfileThread::getTimestamp), extraEvents);
+      droppedCompleteEvents.compact();
+      droppedCompleteEvents.trimToSize();
+      frozen = true;
+    }
+  }
+
+  /** Returns the timestamp of an extra event, sorting events without one first. */
+  private static long getTimestamp(JsonObject event) {
+    JsonElement timestamp = event.get(TraceEventFormatConstants.EVENT_TIMESTAMP);
+    try {
+      return timestamp == null ? Long.MIN_VALUE : timestamp.getAsLong();
+    } catch (RuntimeException e) {
+      return Long.MIN_VALUE;
+    }
+  }
+
+  private static <T> ImmutableMap<String, ImmutableList<T>> sortedCopyOf(
+      Map<String, List<T>> events, Comparator<? super T> comparator) {
+    return events.entrySet().stream()
+        .collect(
+            ImmutableMap.toImmutableMap(
+                Map.Entry::getKey, e -> ImmutableList.sortedCopyOf(comparator, e.getValue())));
+  }
+
+  /** Returns the complete events of this thread, sorted by their start. */
   public List<CompleteEvent> getCompleteEvents() {
-    completeEvents.sort(Comparator.comparing((e) -> e.start));
-    return ImmutableList.copyOf(completeEvents);
+    freeze();
+    return frozenCompleteEvents;
+  }
+
+  /**
+   * Returns the store the complete events of this thread are kept in, sorted by their start, or
+   * {@code null} if they are kept in another list. Unlike {@link #getCompleteEvents()}, the store
+   * is not read-only, so it must not be handed out.
+   */
+  @Nullable
+  CompleteEventStore getCompleteEventStore() {
+    freeze();
+    return completeEvents instanceof CompleteEventStore
+        ? (CompleteEventStore) completeEvents
+        : null;
+  }
+
+  /**
+   * Returns an index of the complete events of this thread for looking up the events in a time
+   * interval. It is built when first requested.
+   */
+  public CompleteEventIntervalIndex getCompleteEventIntervals() {
+    CompleteEventIntervalIndex intervals = completeEventIntervals;
+    if (intervals == null) {
+      synchronized (this) {
+        intervals = completeEventIntervals;
+        if (intervals == null) {
+          // Index the store itself rather than its read-only view, so that events are not
+          // created to read their starts and ends.
+          CompleteEventStore store = getCompleteEventStore();
+          intervals = CompleteEventIntervalIndex.of(store == null ? getCompleteEvents() : store);
+          completeEventIntervals = intervals;
+        }
+      }
+    }
+    return intervals;
+  }
+
+  /**
+   * Returns whether this thread has a complete event that is contained in the passed-in interval,
+   * like {@link CompleteEventIntervalIndex#hasContainedIn(Timestamp, Timestamp)}. Unlike the index
+   * returned by {@link #getCompleteEventIntervals()}, this also considers the complete events that
+   * were dropped when parsing the profile.
+   */
+  public boolean hasCompleteEventContainedIn(Timestamp from, Timestamp to) {
+    return getCompleteEventIntervals().hasContainedIn(from, to)
+        || droppedCompleteEvents.hasContainedIn(from.getMicros(), to.getMicros());
+  }
+
+  /**
+   * Returns whether this thread has a complete event that Bazel merged, because the events it
+   * replaces were too short to be recorded individually. This also considers the complete events
+   * that were dropped when parsing the profile.
+   */
+  public boolean hasMergedEvents() {
+    return hasMergedEvents;
+  }
+
+  /**
+   * Returns whether this thread has a complete event of the passed-in category. Unlike searching
+   * {@link #getCompleteEvents()}, this does not create the events if they are kept in a {@link
+   * CompleteEventStore}.
+   */
+  boolean hasCompleteEventOfCategory(String category) {
+    freeze();
+    if (completeEvents instanceof CompleteEventStore) {
+      CompleteEventStore store = (CompleteEventStore) completeEvents;
+      int categoryId = store.getSymbolTable().getId(category);
+      if (categoryId == SymbolTable.NO_SYMBOL) {
+        return false;
+      }
+      for (int i = 0; i < store.size(); i++) {
+        if (store.getCategoryId(i) == categoryId) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return frozenCompleteEvents.stream().anyMatch(event -> category.equals(event.category));
+  }
+
+  /**
+   * Returns the category of the complete event at the passed-in index of {@link
+   * #getCompleteEvents()}, if any. Unlike reading it from the event, this does not create the event
+   * if it is kept in a {@link CompleteEventStore}.
+   */
+  @Nullable
+  String getCompleteEventCategory(int index) {
+    freeze();
+    if (completeEvents instanceof CompleteEventStore) {
+      CompleteEventStore store = (CompleteEventStore) completeEvents;
+      int categoryId = store.getCategoryId(index);
+      return categoryId == SymbolTable.NO_SYMBOL ? null : store.getSymbolTable().get(categoryId);
+    }
+    return frozenCompleteEvents.get(index).category;
   }
 
+  /** Returns the counter events of this thread by their name, each sorted by timestamp. */
   public ImmutableMap<String, ImmutableList<CounterEvent>> getCounts() {
-    return ImmutableMap.copyOf(
-        counts.entrySet().stream()
-            .collect(
-                Collectors.toMap(
-                    Map.Entry::getKey,
-                    e -> {
-                      List<CounterEvent> entries = e.getValue();
-                      entries.sort(Comparator.comparing(CounterEvent::getTimestamp));
-                      return ImmutableList.copyOf(entries);
-                    })));
+    freeze();
+    return frozenCounts;
   }
 
+  /** Returns the instant events of this thread by their category, each sorted by timestamp. */
   public ImmutableMap<String, ImmutableList<InstantEvent>> getInstants() {
-    return ImmutableMap.copyOf(
-        instants.entrySet().stream()
-            .collect(
-                Collectors.toMap(
-                    Map.Entry::getKey,
-                    e -> {
-                      List<InstantEvent> entries = e.getValue();
-                      entries.sort(Comparator.comparing(InstantEvent::getTimestamp));
-                      return ImmutableList.copyOf(entries);
-                    })));
+    freeze();
+    return frozenInstants;
   }
 
   public ImmutableList<JsonObject> getExtraEvents() {
-    extraEvents.sort(Comparator.comparingLong(e -> e.get("ts").getAsLong()));
-    return ImmutableList.copyOf(extraEvents);
+    freeze();
+    return frozenExtraEvents;
   }
 
   @Override
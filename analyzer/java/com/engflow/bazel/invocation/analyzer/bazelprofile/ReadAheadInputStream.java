@@ -0,0 +1,180 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link InputStream} that reads its source on a separate thread, so that producing the data,
+ * e.g. inflating a gzipped file, and consuming it, e.g. parsing JSON, happen at the same time.
+ *
+ * <p>The source is read into a fixed ring of buffers. When all buffers are filled, reading the
+ * source blocks until the consumer has drained one of them. Failures from reading the source are
+ * rethrown to the consumer, wrapped in an {@link IOException} unless they are {@link Error}s.
+ * Closing this stream stops reading the source and closes it.
+ */
+class ReadAheadInputStream extends InputStream {
+  static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+  static final int DEFAULT_BUFFER_COUNT = 4;
+
+  private static class Chunk {
+    @Nullable final byte[] data;
+    int length;
+    @Nullable final Throwable failure;
+
+    Chunk(@Nullable byte[] data, @Nullable Throwable failure) {
+      this.data = data;
+      this.failure = failure;
+    }
+
+    boolean isEnd() {
+      return data == null;
+    }
+  }
+
+  private final InputStream source;
+  private final BlockingQueue<Chunk> emptyChunks;
+  // Data chunks are limited by the empty chunks, so this only needs extra room for the last chunk.
+  private final BlockingQueue<Chunk> filledChunks = new LinkedBlockingQueue<>();
+  private final Thread readerThread;
+  private volatile boolean closed;
+
+  @Nullable private Chunk current;
+  private int position;
+
+  ReadAheadInputStream(InputStream source) {
+    this(source, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_COUNT);
+  }
+
+  ReadAheadInputStream(InputStream source, int bufferSize, int bufferCount) {
+    Preconditions.checkArgument(bufferSize > 0);
+    Preconditions.checkArgument(bufferCount > 0);
+    this.source = Preconditions.checkNotNull(source);
+    this.emptyChunks = new ArrayBlockingQueue<>(bufferCount);
+    for (int i = 0; i < bufferCount; i++) {
+      emptyChunks.add(new Chunk(new byte[bufferSize], null));
+    }
+    this.readerThread = new Thread(this::readSource, "bazel-profile-read-ahead");
+    readerThread.setDaemon(true);
+    readerThread.start();
+  }
+
+  private void readSource() {
+    try (source) {
+      while (!closed) {
+        Chunk chunk = emptyChunks.take();
+        chunk.length = 0;
+        int read = 0;
+        while (chunk.length < chunk.data.length
+            && (read = source.read(chunk.data, chunk.length, chunk.data.length - chunk.length))
+                != -1) {
+          chunk.length += read;
+        }
+        if (chunk.length > 0) {
+          filledChunks.put(chunk);
+        }
+        if (read == -1) {
+          filledChunks.put(new Chunk(null, null));
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      // Only happens when the stream was closed, so nobody is waiting for more data.
+    } catch (Throwable t) {
+      // Any failure has to reach the consumer, which would otherwise wait for more data forever.
+      filledChunks.add(new Chunk(null, t));
+    }
+  }
+
+  /**
+   * Returns the chunk to read from, or {@code null} if the end of the source was reached.
+   *
+   * @throws IOException if reading the source failed
+   */
+  @Nullable
+  private Chunk currentChunk() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (current == null || (!current.isEnd() && position == current.length)) {
+      if (current != null) {
+        emptyChunks.add(current);
+      }
+      try {
+        current = filledChunks.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for data to read.");
+      }
+      position = 0;
+    }
+    if (current.failure != null) {
+      Throwables.throwIfInstanceOf(current.failure, Error.class);
+      throw new IOException("Reading ahead failed.", current.failure);
+    }
+    return current.isEnd() ? null : current;
+  }
+
+  @Override
+  public int read() throws IOException {
+    Chunk chunk = currentChunk();
+    if (chunk == null) {
+      return -1;
+    }
+    return chunk.data[position++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    Preconditions.checkPositionIndexes(off, off + len, b.length);
+    if (len == 0) {
+      return 0;
+    }
+    Chunk chunk = currentChunk();
+    if (chunk == null) {
+      return -1;
+    }
+    int n = Math.min(len, chunk.length - position);
+    System.arraycopy(chunk.data, position, b, off, n);
+    position += n;
+    return n;
+  }
+
+  @Override
+  public int available() throws IOException {
+    if (closed || current == null || current.isEnd()) {
+      return 0;
+    }
+    return current.length - position;
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      // Unblocks the reader thread if it is waiting for an empty chunk, after which it closes the
+      // source.
+      readerThread.interrupt();
+    }
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import com.engflow.bazel.invocation.analyzer.core.Tracer;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.SymbolTable;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.TraceEventFormatConstants;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The "traceEvents" array of an uncompressed, memory-mapped profile, split into byte ranges at
+ * event boundaries so that the ranges can be parsed concurrently.
+ *
+ * <p>Finding the boundaries only requires a single pass over the bytes that tracks strings and
+ * nesting, which is much cheaper than parsing the events. The threads parsed from the ranges are
+ * merged in order, so that the result is the same as when parsing the array sequentially.
+ */
+class TraceEventsChunks {
+  private static final byte[] TRACE_EVENTS_KEY =
+      TraceEventFormatConstants.SECTION_TRACE_EVENTS.getBytes(StandardCharsets.UTF_8);
+  // Use more chunks than threads, so that threads that finish early can pick up more work.
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final MappedFile file;
+  /** The position of the opening bracket of the "traceEvents" array. */
+  private final long arrayStart;
+  /** The position of the closing bracket of the "traceEvents" array. */
+  private final long arrayEnd;
+  /** The positions of the commas that separate the chunks. */
+  private final List<Long> separators;
+
+  private TraceEventsChunks(
+      MappedFile file, long arrayStart, long arrayEnd, List<Long> separators) {
+    this.file = file;
+    this.arrayStart = arrayStart;
+    this.arrayEnd = arrayEnd;
+    this.separators = separators;
+  }
+
+  /**
+   * Scans the mapped file for the "traceEvents" array and splits it into chunks of at least the
+   * specified size.
+   *
+   * @return the chunks, or empty if the file does not have the expected structure, in which case
+   *     it should be parsed sequentially
+   */
+  static Optional<TraceEventsChunks> split(MappedFile file, long chunkSize) {
+    int depth = 0;
+    boolean seenRoot = false;
+    boolean inString = false;
+    boolean escaped = false;
+    // Whether the current or last string of the root object matches the "traceEvents" key.
+    boolean keyMatches = false;
+    int keyIndex = 0;
+    boolean inTraceEvents = false;
+    long arrayStart = -1;
+    long arrayEnd = -1;
+    long nextSeparator = -1;
+    List<Long> separators = new ArrayList<>();
+
+    for (int segmentIndex = 0; segmentIndex < file.getSegmentCount(); segmentIndex++) {
+      ByteBuffer segment = file.getSegment(segmentIndex);
+      long offset = file.getSegmentStart(segmentIndex);
+      int limit = segment.limit();
+      for (int i = 0; i < limit; i++) {
+        byte b = segment.get(i);
+        if (inString) {
+          if (escaped) {
+            escaped = false;
+          } else if (b == '\\') {
+            // Keys with escape sequences are not matched; parse those profiles sequentially.
+            escaped = true;
+            keyMatches = false;
+          } else if (b == '"') {
+            inString = false;
+            keyMatches &= keyIndex == TRACE_EVENTS_KEY.length;
+          } else if (keyMatches) {
+            keyMatches = keyIndex < TRACE_EVENTS_KEY.length && TRACE_EVENTS_KEY[keyIndex] == b;
+            keyIndex++;
+          }
+          continue;
+        }
+        switch (b) {
+          case '"':
+            inString = true;
+            keyMatches = depth == 1;
+            keyIndex = 0;
+            break;
+          case '{':
+          case '[':
+            if (depth == 0) {
+              if (seenRoot || b != '{') {
+                return Optional.empty();
+              }
+              seenRoot = true;
+            } else if (depth == 1 && b == '[' && keyMatches) {
+              if (arrayStart != -1) {
+                // The section is present more than once.
+                return Optional.empty();
+              }
+              inTraceEvents = true;
+              arrayStart = offset + i;
+              nextSeparator = arrayStart + chunkSize;
+            }
+            depth++;
+            break;
+          case '}':
+          case ']':
+            depth--;
+            if (depth < 0) {
+              return Optional.empty();
+            }
+            if (depth == 1 && inTraceEvents) {
+              inTraceEvents = false;
+              arrayEnd = offset + i;
+            }
+            break;
+          case ',':
+            if (inTraceEvents && depth == 2 && offset + i >= nextSeparator) {
+              separators.add(offset + i);
+              nextSeparator = offset + i + chunkSize;
+            }
+            break;
+          default:
+            break;
+        }
+        if (depth == 1 && b != '"' && b != ':' && !Character.isWhitespace(b)) {
+          // Only the string directly preceding the array is its key.
+          keyMatches &= b == '[';
+        }
+      }
+    }
+    if (inString || depth != 0 || arrayEnd == -1) {
+      return Optional.empty();
+    }
+    return Optional.of(new TraceEventsChunks(file, arrayStart, arrayEnd, separators));
+  }
+
+  /** Returns the chunk size to use for splitting a file of the specified size. */
+  static long getChunkSize(long fileSize, ParseOptions options) {
+    return Math.max(
+        options.getMinChunkSize(), fileSize / (options.getParallelism() * CHUNKS_PER_THREAD));
+  }
+
+  @VisibleForTesting
+  int getChunkCount() {
+    return separators.size() + 1;
+  }
+
+  /**
+   * Parses all chunks using up to the specified number of threads and merges the results. All
+   * chunks share the passed-in symbol table.
+   *
+   * @throws IOException if parsing an event fails
+   * @throws IllegalStateException if an event is not a JSON object
+   */
+  Map<ThreadId, ProfileThread> parse(int parallelism, SymbolTable symbols, ParseOptions options)
+      throws IOException {
+    List<Callable<Map<ThreadId, ProfileThread>>> tasks = new ArrayList<>();
+    for (int i = 0; i < getChunkCount(); i++) {
+      long start = i == 0 ? arrayStart + 1 : separators.get(i - 1) + 1;
+      long end = i == separators.size() ? arrayEnd : separators.get(i);
+      tasks.add(() -> parseChunk(start, end, symbols, options));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+    try {
+      Map<ThreadId, ProfileThread> threads = new HashMap<>();
+      for (Future<Map<ThreadId, ProfileThread>> future : executor.invokeAll(tasks)) {
+        future
+            .get()
+            .forEach(
+                (threadId, thread) ->
+                    threads.merge(
+                        threadId,
+                        thread,
+                        (earlier, later) -> {
+                          earlier.addAll(later);
+                          return earlier;
+                        }));
+      }
+      return threads;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while parsing the profile.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Map<ThreadId, ProfileThread> parseChunk(
+      long start, long end, SymbolTable symbols, ParseOptions options) throws IOException {
+    // Turn the events of the chunk into a JSON array of their own.
+    Reader chunk = concat(new StringReader("["), file.newReader(start, end), new StringReader("]"));
+    ArgumentsLocator argumentsLocator =
+        options.getLazyArguments() ? new ArgumentsLocator(file, start, end) : null;
+    Map<ThreadId, ProfileThread> threads = new LinkedHashMap<>();
+    try (Tracer.Span span = BazelProfile.startParseSpan(options, "Parse chunk");
+        JsonReader reader = new JsonReader(chunk)) {
+      BazelProfile.readTraceEvents(
+          reader, threads, symbols, options.getProjection(), argumentsLocator);
+    }
+    return threads;
+  }
+
+  /** Returns a reader for the profile with an empty "traceEvents" array. */
+  Reader newReaderWithoutTraceEvents() {
+    return concat(file.newReader(0, arrayStart + 1), file.newReader(arrayEnd, file.size()));
+  }
+
+  private static Reader concat(Reader... readers) {
+    return new Reader() {
+      private int index = 0;
+
+      @Override
+      public int read(char[] cbuf, int off, int len) throws IOException {
+        while (index < readers.length) {
+          int read = readers[index].read(cbuf, off, len);
+          if (read != -1) {
+            return read;
+          }
+          index++;
+        }
+        return -1;
+      }
+
+      @Override
+      public void close() throws IOException {
+        for (Reader reader : readers) {
+          reader.close();
+        }
+      }
+    };
+  }
+}
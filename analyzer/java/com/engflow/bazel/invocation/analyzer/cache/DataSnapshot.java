@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.cache;
+
+import com.engflow.bazel.invocation.analyzer.core.DataProvider;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link Datum} that only retains what is displayed about another datum, so that it can be
+ * cached without having to serialize the datum itself.
+ */
+public final class DataSnapshot implements Datum {
+  private static final String PROVIDER = "provider";
+  private static final String DATUM = "datum";
+  private static final String EMPTY = "empty";
+  private static final String EMPTY_REASON = "emptyReason";
+  private static final String DESCRIPTION = "description";
+  private static final String SUMMARY = "summary";
+
+  private final boolean empty;
+  @Nullable private final String emptyReason;
+  private final String description;
+  @Nullable private final String summary;
+
+  private DataSnapshot(
+      boolean empty, @Nullable String emptyReason, String description, @Nullable String summary) {
+    this.empty = empty;
+    this.emptyReason = emptyReason;
+    this.description = description;
+    this.summary = summary;
+  }
+
+  /**
+   * Creates a snapshot of the passed-in datum.
+   *
+   * @param datum The datum to take a snapshot of.
+   * @return A datum with the same emptiness, empty reason, description and summary.
+   */
+  public static DataSnapshot of(Datum datum) {
+    return new DataSnapshot(
+        datum.isEmpty(), datum.getEmptyReason(), datum.getDescription(), datum.getSummary());
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return empty;
+  }
+
+  @Override
+  public String getEmptyReason() {
+    return emptyReason;
+  }
+
+  @Override
+  public String getDescription() {
+    return description;
+  }
+
+  @Override
+  public String getSummary() {
+    return summary;
+  }
+
+  /** Serializes snapshots of the passed-in data as JSON. */
+  static byte[] serialize(
+      Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> dataByProvider) {
+    StringWriter out = new StringWriter();
+    try (JsonWriter writer = new JsonWriter(out)) {
+      writer.beginArray();
+      for (var providerEntry : dataByProvider.entrySet()) {
+        for (var datumEntry : providerEntry.getValue().entrySet()) {
+          Datum datum = datumEntry.getValue();
+          writer.beginObject();
+          writer.name(PROVIDER).value(providerEntry.getKey().getName());
+          writer.name(DATUM).value(datumEntry.getKey().getName());
+          writer.name(EMPTY).value(datum.isEmpty());
+          writer.name(EMPTY_REASON).value(datum.getEmptyReason());
+          writer.name(DESCRIPTION).value(datum.getDescription());
+          writer.name(SUMMARY).value(datum.getSummary());
+          writer.endObject();
+        }
+      }
+      writer.endArray();
+    } catch (IOException e) {
+      // Writing to a StringWriter does not fail.
+      throw new UncheckedIOException(e);
+    }
+    return out.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Deserializes data serialized by {@link #serialize(Map)}.
+   *
+   * @return The snapshots organized by provider, or null if the content is invalid or refers to
+   *     classes that no longer exist.
+   */
+  @Nullable
+  static Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> deserialize(
+      byte[] content) {
+    Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> dataByProvider =
+        new HashMap<>();
+    try {
+      for (JsonElement element :
+          JsonParser.parseString(new String(content, StandardCharsets.UTF_8)).getAsJsonArray()) {
+        JsonObject object = element.getAsJsonObject();
+        Class<? extends DataProvider> provider =
+            Class.forName(getString(object, PROVIDER)).asSubclass(DataProvider.class);
+        Class<? extends Datum> datum =
+            Class.forName(getString(object, DATUM)).asSubclass(Datum.class);
+        dataByProvider
+            .computeIfAbsent(provider, key -> new HashMap<>())
+            .put(
+                datum,
+                new DataSnapshot(
+                    getMember(object, EMPTY).getAsBoolean(),
+                    getNullableString(object, EMPTY_REASON),
+                    getString(object, DESCRIPTION),
+                    getNullableString(object, SUMMARY)));
+      }
+    } catch (JsonParseException
+        | IllegalStateException
+        | ClassNotFoundException
+        | ClassCastException e) {
+      return null;
+    }
+    return dataByProvider;
+  }
+
+  private static JsonElement getMember(JsonObject object, String name) {
+    JsonElement element = object.get(name);
+    if (element == null || element.isJsonNull()) {
+      throw new JsonParseException("Missing member " + name);
+    }
+    return element;
+  }
+
+  private static String getString(JsonObject object, String name) {
+    return getMember(object, name).getAsString();
+  }
+
+  @Nullable
+  private static String getNullableString(JsonObject object, String name) {
+    JsonElement element = object.get(name);
+    return element == null || element.isJsonNull() ? null : element.getAsString();
+  }
+}
@@ -0,0 +1,428 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.cache;
+
+import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
+import com.engflow.bazel.invocation.analyzer.core.DataProvider;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
+import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
+import com.google.common.base.Preconditions;
+import com.google.common.io.BaseEncoding;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * A directory that stores the results of analyzing profiles, so that analyzing the same profile
+ * again does not require parsing it and calculating its data.
+ *
+ * <p>Results are stored as items of an entry. The key of the entry is a hash of the content of the
+ * profile and the version of the analyzer, so that results are neither shared between different
+ * profiles nor between different versions of the analyzer.
+ *
+ * <p>The total size of the entries is bounded. When it is exceeded, the least recently used entries
+ * are deleted. To avoid scanning the directory on every write, each instance keeps a running total
+ * of the size it last scanned plus what it has written since, and only scans again once that
+ * exceeds the bound. Entries written by other processes in the meantime may therefore exceed the
+ * bound until the next scan. Multiple processes may use the same directory concurrently: items are
+ * written to a temporary file and then atomically moved into place, and deleting entries is guarded
+ * by a file lock. A read that races with deleting its entry is treated as a miss.
+ */
+public final class ProfileCache {
+  private static final String LOCK_FILE = "lock";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+  private static final String DATA_ITEM_PREFIX = "data-";
+  private static final String SUGGESTIONS_ITEM_PREFIX = "suggestions-";
+  private static final String VERBOSE_ITEM_SUFFIX = "-verbose";
+  private static final Pattern VALID_NAME = Pattern.compile("[A-Za-z0-9._$-]+");
+
+  /** File locks are held by the JVM, so threads of the same process also have to be serialized. */
+  private static final Object EVICTION_LOCK = new Object();
+
+  private static final long UNKNOWN_SIZE = -1;
+
+  private final Path directory;
+  private final long maxSizeBytes;
+  // The size of the entries when last scanned plus the size written since, or UNKNOWN_SIZE before
+  // the first scan. Guarded by this.
+  private long sizeBytes = UNKNOWN_SIZE;
+
+  /**
+   * Creates a cache that stores entries in the passed-in directory.
+   *
+   * @param directory The directory to store entries in. It is created if it does not exist.
+   * @param maxSizeBytes The total size the entries may take up.
+   */
+  public ProfileCache(Path directory, long maxSizeBytes) {
+    Preconditions.checkArgument(maxSizeBytes > 0, "maxSizeBytes must be positive");
+    this.directory = directory;
+    this.maxSizeBytes = maxSizeBytes;
+  }
+
+  /**
+   * Computes the key of the entry for the passed-in profile, by hashing its content while streaming
+   * it from disk.
+   *
+   * @param profile The path of the profile.
+   * @param analyzerVersion The version of the analyzer, see {@link #getAnalyzerVersion(String)}.
+   * @return The key of the entry for the profile.
+   * @throws IOException If the profile cannot be read.
+   */
+  public static String computeKey(Path profile, String analyzerVersion) throws IOException {
+    MessageDigest digest = newDigest();
+    digest.update(analyzerVersion.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    byte[] buffer = new byte[64 * 1024];
+    try (InputStream in = Files.newInputStream(profile)) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    }
+    return BaseEncoding.base16().lowerCase().encode(digest.digest());
+  }
+
+  /**
+   * Returns a version of the analyzer that changes whenever any of the code it runs is rebuilt. It
+   * is a hash of the name, size and modification time of each entry of the passed-in class path,
+   * and of each file within entries that are directories.
+   *
+   * @param classPath The class path the analyzer runs with, e.g. the {@code java.class.path}
+   *     system property.
+   * @return The version of the analyzer.
+   * @throws IOException If an entry of the class path cannot be read.
+   */
+  public static String getAnalyzerVersion(String classPath) throws IOException {
+    MessageDigest digest = newDigest();
+    for (String element : classPath.split(File.pathSeparator)) {
+      if (element.isEmpty()) {
+        continue;
+      }
+      Path location = Path.of(element);
+      if (!Files.exists(location)) {
+        // The JVM ignores missing entries, so they do not affect the code run either.
+        continue;
+      }
+      List<Path> files;
+      try (Stream<Path> walk = Files.walk(location)) {
+        files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+      }
+      for (Path file : files) {
+        String fileVersion =
+            String.format(
+                "%s:%d:%d;",
+                file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        digest.update(fileVersion.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return BaseEncoding.base16().lowerCase().encode(digest.digest());
+  }
+
+  /**
+   * Returns the content of an item, and marks its entry as recently used.
+   *
+   * @param key The key of the entry, see {@link #computeKey(Path, String)}.
+   * @param item The name of the item.
+   * @return The content of the item, or null if it is not cached.
+   * @throws IOException If the item exists but cannot be read.
+   */
+  @Nullable
+  public byte[] get(String key, String item) throws IOException {
+    checkName(key);
+    checkName(item);
+    Path entry = directory.resolve(key);
+    try {
+      byte[] content = Files.readAllBytes(entry.resolve(item));
+      Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+      return content;
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Stores the content of an item, replacing any previous content. Afterwards, the least recently
+   * used entries other than the one written to are deleted until the cache fits its size bound.
+   *
+   * @param key The key of the entry, see {@link #computeKey(Path, String)}.
+   * @param item The name of the item.
+   * @param content The content of the item.
+   * @throws IOException If the item cannot be written.
+   */
+  public void put(String key, String item, byte[] content) throws IOException {
+    evict(key, write(key, item, content));
+  }
+
+  /** Writes an item and returns the number of bytes written, which is 0 if it was skipped. */
+  private long write(String key, String item, byte[] content) throws IOException {
+    checkName(key);
+    checkName(item);
+    Path entry = directory.resolve(key);
+    Path temp = null;
+    try {
+      Files.createDirectories(entry);
+      temp = Files.createTempFile(entry, item, TEMP_FILE_SUFFIX);
+      Files.write(temp, content);
+      Files.move(
+          temp,
+          entry.resolve(item),
+          StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+      Files.setLastModifiedTime(entry, FileTime.from(Instant.now()));
+      return content.length;
+    } catch (NoSuchFileException | FileAlreadyExistsException e) {
+      // Another process evicted the entry while it was created or written to, so skip caching the
+      // item.
+      return 0;
+    } finally {
+      if (temp != null) {
+        Files.deleteIfExists(temp);
+      }
+    }
+  }
+
+  /**
+   * Returns the cached outputs of the passed-in suggestion providers.
+   *
+   * @param key The key of the entry, see {@link #computeKey(Path, String)}.
+   * @param suggestionProviders The providers whose outputs to return.
+   * @param verbose Whether the providers were created in verbose mode.
+   * @return The outputs in the order of the providers, or null if any of them is not cached.
+   * @throws IOException If an output cannot be read.
+   */
+  @Nullable
+  public List<SuggestionOutput> getSuggestionOutputs(
+      String key, List<SuggestionProvider> suggestionProviders, boolean verbose)
+      throws IOException {
+    List<SuggestionOutput> outputs = new ArrayList<>();
+    for (SuggestionProvider suggestionProvider : suggestionProviders) {
+      byte[] content = get(key, getSuggestionsItem(suggestionProvider, verbose));
+      if (content == null) {
+        return null;
+      }
+      try {
+        outputs.add(SuggestionOutput.parseFrom(content));
+      } catch (IOException e) {
+        // The content is invalid, e.g. because writing it was interrupted.
+        return null;
+      }
+    }
+    return outputs;
+  }
+
+  /**
+   * Stores the outputs of the passed-in suggestion providers. Outputs that report a failure are not
+   * stored, as the failure may not recur, e.g. if the provider ran out of time.
+   *
+   * @param key The key of the entry, see {@link #computeKey(Path, String)}.
+   * @param suggestionProviders The providers that produced the outputs.
+   * @param verbose Whether the providers were created in verbose mode.
+   * @param outputs The outputs in the order of the providers.
+   * @throws IOException If an output cannot be written.
+   */
+  public void putSuggestionOutputs(
+      String key,
+      List<SuggestionProvider> suggestionProviders,
+      boolean verbose,
+      List<SuggestionOutput> outputs)
+      throws IOException {
+    Preconditions.checkArgument(
+        suggestionProviders.size() == outputs.size(), "Expected one output per provider.");
+    long writtenBytes = 0;
+    for (int i = 0; i < outputs.size(); i++) {
+      if (outputs.get(i).hasFailure()) {
+        continue;
+      }
+      String item = getSuggestionsItem(suggestionProviders.get(i), verbose);
+      writtenBytes += write(key, item, outputs.get(i).toByteArray());
+    }
+    evict(key, writtenBytes);
+  }
+
+  /**
+   * Returns snapshots of cached data, see {@link DataSnapshot}.
+   *
+   * @param key The key of the entry, see {@link #computeKey(Path, String)}.
+   * @param name The name the data was stored under.
+   * @return The data organized by provider, or null if it is not cached.
+   * @throws IOException If the data cannot be read.
+   */
+  @Nullable
+  public Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> getData(
+      String key, String name) throws IOException {
+    byte[] content = get(key, DATA_ITEM_PREFIX + name);
+    return content == null ? null : DataSnapshot.deserialize(content);
+  }
+
+  /**
+   * Stores snapshots of data, see {@link DataSnapshot}.
+   *
+   * @param key The key of the entry, see {@link #computeKey(Path, String)}.
+   * @param name The name to store the data under.
+   * @param dataByProvider The data organized by provider.
+   * @throws IOException If the data cannot be written.
+   */
+  public void putData(
+      String key,
+      String name,
+      Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> dataByProvider)
+      throws IOException {
+    put(key, DATA_ITEM_PREFIX + name, DataSnapshot.serialize(dataByProvider));
+  }
+
+  private static String getSuggestionsItem(SuggestionProvider suggestionProvider, boolean verbose) {
+    return SUGGESTIONS_ITEM_PREFIX
+        + suggestionProvider.getClass().getName()
+        + (verbose ? VERBOSE_ITEM_SUFFIX : "");
+  }
+
+  /**
+   * Deletes the least recently used entries other than the passed-in one, if the cache is full.
+   * The directory is only scanned if the running total of its size exceeds the bound.
+   */
+  private void evict(String keptKey, long writtenBytes) throws IOException {
+    synchronized (this) {
+      if (sizeBytes != UNKNOWN_SIZE) {
+        sizeBytes += writtenBytes;
+        if (sizeBytes <= maxSizeBytes) {
+          return;
+        }
+      }
+    }
+    synchronized (EVICTION_LOCK) {
+      // Nothing may have been written yet, e.g. if all outputs to store reported a failure.
+      Files.createDirectories(directory);
+      try (FileChannel channel =
+              FileChannel.open(
+                  directory.resolve(LOCK_FILE),
+                  StandardOpenOption.CREATE,
+                  StandardOpenOption.WRITE);
+          FileLock lock = channel.lock()) {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream =
+            Files.newDirectoryStream(directory, Files::isDirectory)) {
+          stream.forEach(entries::add);
+        }
+        long totalSize = 0;
+        List<EntryInfo> infos = new ArrayList<>();
+        for (Path entry : entries) {
+          try {
+            EntryInfo info =
+                new EntryInfo(entry, Files.getLastModifiedTime(entry).toMillis(), sizeOf(entry));
+            totalSize += info.size;
+            infos.add(info);
+          } catch (NoSuchFileException e) {
+            // The entry was deleted concurrently.
+          }
+        }
+        infos.sort(Comparator.comparingLong(info -> info.lastUsedMillis));
+        for (EntryInfo info : infos) {
+          if (totalSize <= maxSizeBytes) {
+            break;
+          }
+          if (info.path.getFileName().toString().equals(keptKey)) {
+            continue;
+          }
+          deleteEntry(info.path);
+          totalSize -= info.size;
+        }
+        synchronized (this) {
+          sizeBytes = totalSize;
+        }
+      }
+    }
+  }
+
+  private static long sizeOf(Path entry) throws IOException {
+    try (Stream<Path> files = Files.list(entry)) {
+      return files
+          .mapToLong(
+              file -> {
+                try {
+                  return Files.size(file);
+                } catch (NoSuchFileException e) {
+                  return 0;
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              })
+          .sum();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static void deleteEntry(Path entry) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(entry)) {
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+    } catch (NoSuchFileException e) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(entry);
+    } catch (IOException e) {
+      // Another process started writing to the entry, so keep it.
+    }
+  }
+
+  private static void checkName(String name) {
+    Preconditions.checkArgument(VALID_NAME.matcher(name).matches(), "Invalid name: %s", name);
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class EntryInfo {
+    private final Path path;
+    private final long lastUsedMillis;
+    private final long size;
+
+    private EntryInfo(Path path, long lastUsedMillis, long size) {
+      this.path = path;
+      this.lastUsedMillis = lastUsedMillis;
+      this.size = size;
+    }
+  }
+}
@@ -14,13 +14,90 @@
 
 package com.engflow.bazel.invocation.analyzer.core;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.annotation.Nullable;
 
-/** Tracks all registered {@link DataProvider}s and maps their output types to */
+/**
+ * Tracks all registered {@link DataProvider}s and maps their output types to the suppliers that
+ * calculate them.
+ *
+ * <p>Data is calculated lazily on the thread that requests it. While doing so, the DataManager
+ * records which data each supplier requests. {@link #prefetch(Collection)} uses the dependencies a
+ * {@link DatumSupplierSpecification} declares, or else those recorded so far, to calculate
+ * independent data concurrently. A supplier that declares its dependencies may not request any
+ * other data.
+ */
 public class DataManager {
   private final Map<Class<? extends Datum>, DatumSupplierEntry<?>> suppliers = new HashMap<>();
-  private final Map<Class<? extends Datum>, DatumSupplierEntry<?>> usedSuppliers = new HashMap<>();
+  private final Map<Class<? extends Datum>, DatumSupplierEntry<?>> usedSuppliers =
+      new ConcurrentHashMap<>();
+  private final Map<Class<? extends Datum>, Set<Class<? extends Datum>>> dependencies =
+      new ConcurrentHashMap<>();
+  /** The data currently being supplied on this thread, innermost last. */
+  private final ThreadLocal<Deque<Class<? extends Datum>>> suppliedData =
+      ThreadLocal.withInitial(ArrayDeque::new);
+  /** Whether this thread is prefetching data, which is not recorded as used. */
+  private final ThreadLocal<Boolean> prefetching = ThreadLocal.withInitial(() -> false);
+
+  private final int parallelism;
+  private final Tracer tracer;
+
+  /**
+   * Creates a DataManager that calculates all data on the threads that request it, which keeps the
+   * order of calculations deterministic.
+   */
+  public DataManager() {
+    this(1);
+  }
+
+  /**
+   * Creates a DataManager that prefetches data on up to the passed-in number of threads.
+   *
+   * @param parallelism The maximum number of threads used by {@link #prefetch(Collection)}. A value
+   *     of 1 prefetches all data sequentially on the calling thread.
+   */
+  public DataManager(int parallelism) {
+    this(parallelism, Tracer.NOOP);
+  }
+
+  /**
+   * Creates a DataManager that prefetches data on up to the passed-in number of threads and records
+   * each call of a {@link DatumSupplier} with the passed-in tracer.
+   *
+   * @param parallelism The maximum number of threads used by {@link #prefetch(Collection)}. A value
+   *     of 1 prefetches all data sequentially on the calling thread.
+   * @param tracer The tracer that records supplying data.
+   */
+  public DataManager(int parallelism, Tracer tracer) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    this.parallelism = parallelism;
+    this.tracer = Objects.requireNonNull(tracer);
+  }
+
+  /**
+   * Returns the tracer that records the steps of the analysis, which {@link SuggestionProvider}s
+   * are run with as well.
+   */
+  public Tracer getTracer() {
+    return tracer;
+  }
 
   /**
    * Tracks a {@link DataProvider} and all data associated with its {@link DatumSupplier}s.
@@ -45,15 +122,35 @@ public class DataManager {
    * @return The datum that was calculated or pre-cached.
    * @throws MissingInputException If no {@link DataProvider} has been registered that supplies such
    *     data.
+   * @throws IllegalStateException If requested by a supplier that has not declared the data as one
+   *     of its dependencies.
    */
   public <DatumType extends Datum> DatumType getDatum(Class<DatumType> clazz)
       throws InvalidProfileException, MissingInputException, NullDatumException {
+    Deque<Class<? extends Datum>> supplied = suppliedData.get();
+    Class<? extends Datum> dependent = supplied.peekLast();
+    if (dependent != null) {
+      var declared = getDeclaredDependencies(dependent);
+      if (declared != null && !declared.contains(clazz)) {
+        throw new IllegalStateException(
+            String.format(
+                "The supplier of \"%s\" requested \"%s\", which it has not declared as a"
+                    + " dependency.",
+                dependent.getName(), clazz.getName()));
+      }
+    }
     var entry = suppliers.get(clazz);
     if (entry == null) {
       throw new MissingInputException(clazz);
     }
 
-    Object datum = entry.supplier.supply();
+    supplied.addLast(clazz);
+    Object datum;
+    try (Tracer.Span span = startDatumSpan(clazz, entry)) {
+      datum = entry.supplier.supply();
+    } finally {
+      supplied.removeLast();
+    }
     if (datum == null) {
       throw new NullDatumException(entry.dataProviderClass, clazz);
     }
@@ -65,12 +162,108 @@ public class DataManager {
               entry.dataProviderClass.getName(), clazz.getName(), datum.getClass().getName()));
     }
 
-    usedSuppliers.put(clazz, entry);
+    if (dependent != null) {
+      dependencies.computeIfAbsent(dependent, key -> ConcurrentHashMap.newKeySet()).add(clazz);
+    }
+    if (!prefetching.get()) {
+      markUsed(clazz);
+    }
 
     // Note: This cast is safe due to the check above.
     return (DatumType) datum;
   }
 
+  /**
+   * Starts a span for supplying a datum. Data that a memoized supplier has already supplied is
+   * returned without calculating it again, so no span is recorded for it.
+   */
+  private Tracer.Span startDatumSpan(Class<? extends Datum> clazz, DatumSupplierEntry<?> entry) {
+    if (entry.supplier instanceof MemoizedDatumSupplier
+        && ((MemoizedDatumSupplier<?>) entry.supplier).isSupplied()) {
+      return () -> {};
+    }
+    return tracer.startSpan(
+        Tracer.CATEGORY_DATUM,
+        clazz.getSimpleName(),
+        Map.of("datum", clazz.getName(), "provider", entry.dataProviderClass.getName()));
+  }
+
+  /**
+   * Calculates the passed-in data ahead of them being requested, so that later calls to {@link
+   * #getDatum(Class)} return memoized results. Only the passed-in data and the data they depend on
+   * are calculated. Data whose dependencies have been declared, or else recorded by an earlier
+   * calculation, is only calculated after its dependencies, and independent data is calculated
+   * concurrently. Data with undeclared dependencies that have not been recorded yet may still
+   * calculate them inline, or wait for another thread that is calculating them.
+   *
+   * <p>Data that cannot be calculated is skipped. The exception is thrown again when the data is
+   * requested. Prefetched data is not considered as used until it is requested.
+   *
+   * @param classes The types of the data to calculate.
+   * @throws InterruptedException If interrupted while waiting for the data to be calculated.
+   */
+  public void prefetch(Collection<Class<? extends Datum>> classes) throws InterruptedException {
+    if (parallelism == 1) {
+      for (var clazz : classes) {
+        prefetchDatum(clazz);
+      }
+      return;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    try {
+      Map<Class<? extends Datum>, CompletableFuture<Void>> scheduled = new HashMap<>();
+      for (var clazz : classes) {
+        schedule(clazz, scheduled, new HashSet<>(), executor);
+      }
+      // A task only waits for data whose memoizing supplier is running on another thread, e.g. for
+      // an undeclared dependency. Such a task has already started, so the bounded executor cannot
+      // starve it.
+      CompletableFuture.allOf(scheduled.values().toArray(new CompletableFuture<?>[0])).get();
+    } catch (ExecutionException e) {
+      // Exceptions are ignored when prefetching, so only errors are left.
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Returns the data that the supplier of the passed-in type has been recorded to request, which is
+   * empty until the data has been calculated.
+   *
+   * @param clazz The type of the data whose dependencies to return.
+   * @return The types of the data requested when calculating the passed-in type.
+   */
+  public Set<Class<? extends Datum>> getDependencies(Class<? extends Datum> clazz) {
+    Set<Class<? extends Datum>> result = dependencies.get(clazz);
+    return result == null ? Collections.emptySet() : Collections.unmodifiableSet(result);
+  }
+
+  /**
+   * Returns the data that the supplier of the passed-in type has declared to request.
+   *
+   * @param clazz The type of the data whose declared dependencies to return.
+   * @return The types of the data the supplier may request, or null if the type is not registered
+   *     or its supplier has not declared its dependencies.
+   */
+  @Nullable
+  public Set<Class<? extends Datum>> getDeclaredDependencies(Class<? extends Datum> clazz) {
+    var entry = suppliers.get(clazz);
+    return entry == null ? null : entry.dependencies;
+  }
+
+  /**
+   * Returns the types of all data that the registered {@link DataProvider}s supply.
+   *
+   * @return The types of all data that can be requested from this DataManager.
+   */
+  public Set<Class<? extends Datum>> getRegisteredData() {
+    return Collections.unmodifiableSet(suppliers.keySet());
+  }
+
   /**
    * Returns all available data organized by provider name, then by class name.
    *
@@ -90,7 +283,57 @@ public class DataManager {
    */
   public Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>>
       getUsedDataByProvider() {
-    return organizeByProvider(usedSuppliers);
+    return organizeByProvider(new HashMap<>(usedSuppliers));
+  }
+
+  private CompletableFuture<Void> schedule(
+      Class<? extends Datum> clazz,
+      Map<Class<? extends Datum>, CompletableFuture<Void>> scheduled,
+      Set<Class<? extends Datum>> visiting,
+      ExecutorService executor) {
+    var existing = scheduled.get(clazz);
+    if (existing != null) {
+      return existing;
+    }
+    visiting.add(clazz);
+    List<CompletableFuture<Void>> dependencyFutures = new ArrayList<>();
+    var declared = getDeclaredDependencies(clazz);
+    for (var dependency : declared == null ? getDependencies(clazz) : declared) {
+      // Skip cyclic dependencies, which fail when calculated anyway.
+      if (!visiting.contains(dependency)) {
+        dependencyFutures.add(schedule(dependency, scheduled, visiting, executor));
+      }
+    }
+    visiting.remove(clazz);
+    var future =
+        CompletableFuture.allOf(dependencyFutures.toArray(new CompletableFuture<?>[0]))
+            .thenRunAsync(() -> prefetchDatum(clazz), executor);
+    scheduled.put(clazz, future);
+    return future;
+  }
+
+  private void prefetchDatum(Class<? extends Datum> clazz) {
+    boolean wasPrefetching = prefetching.get();
+    prefetching.set(true);
+    try {
+      getDatum(clazz);
+    } catch (Exception ex) {
+      // Ignore failures, they are reported when the data is requested.
+    } finally {
+      prefetching.set(wasPrefetching);
+    }
+  }
+
+  /**
+   * Records the passed-in data as used, together with the data it was recorded to depend on. The
+   * latter may not be requested again if the supplier memoizes its result.
+   */
+  private void markUsed(Class<? extends Datum> clazz) {
+    if (usedSuppliers.putIfAbsent(clazz, suppliers.get(clazz)) == null) {
+      for (var dependency : getDependencies(clazz)) {
+        markUsed(dependency);
+      }
+    }
   }
 
   private Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> organizeByProvider(
@@ -128,17 +371,23 @@ public class DataManager {
     }
 
     suppliers.put(
-        datumType, new DatumSupplierEntry<>(dataProviderClass, supplierSpec.getDatumSupplier()));
+        datumType,
+        new DatumSupplierEntry<>(
+            dataProviderClass, supplierSpec.getDatumSupplier(), supplierSpec.getDependencies()));
   }
 
   private static class DatumSupplierEntry<DatumType extends Datum> {
     public final Class<? extends DataProvider> dataProviderClass;
     public final DatumSupplier<DatumType> supplier;
+    @Nullable public final Set<Class<? extends Datum>> dependencies;
 
     public DatumSupplierEntry(
-        Class<? extends DataProvider> dataProviderClass, DatumSupplier<DatumType> supplier) {
+        Class<? extends DataProvider> dataProviderClass,
+        DatumSupplier<DatumType> supplier,
+        @Nullable Set<Class<? extends Datum>> dependencies) {
       this.dataProviderClass = dataProviderClass;
       this.supplier = supplier;
+      this.dependencies = dependencies;
     }
   }
 }
@@ -14,8 +14,6 @@
 
 package com.engflow.bazel.invocation.analyzer.core;
 
-import javax.annotation.Nullable;
-
 /**
  * A Function that produces a specific type of data.
  *
@@ -42,8 +40,8 @@ public interface DatumSupplier<DatumType extends Datum> {
   /**
    * Returns a memoized version of a {@link DatumSupplier}.
    *
-   * <p>The supplier will only ever be called once and a cached value will be returned for every
-   * call after the first.
+   * <p>The supplier will only ever be called once. Its result, or the exception it threw, is
+   * returned or thrown again for every call after the first.
    *
    * @param supplier The supplier that performs a calculation and returns the result.
    * @param <T> The return type of the supplier.
@@ -51,25 +49,6 @@ public interface DatumSupplier<DatumType extends Datum> {
    *     supplier.
    */
   static <T extends Datum> DatumSupplier<T> memoized(DatumSupplier<T> supplier) {
-    return new DatumSupplier<>() {
-      @Nullable private T cachedOutput;
-
-      @Override
-      public T supply() throws InvalidProfileException, MissingInputException, NullDatumException {
-        // If we already have the value return early.
-        if (cachedOutput != null) {
-          return cachedOutput;
-        } else {
-          synchronized (supplier) {
-            // Need to check again to make sure someone didn't set it while we were waiting on the
-            // `supplier` lock.
-            if (cachedOutput == null) {
-              cachedOutput = supplier.supply();
-            }
-            return cachedOutput;
-          }
-        }
-      }
-    };
+    return new MemoizedDatumSupplier<>(supplier);
   }
 }
@@ -14,6 +14,9 @@
 
 package com.engflow.bazel.invocation.analyzer.core;
 
+import java.util.Set;
+import javax.annotation.Nullable;
+
 /**
  * Describes a supplier of a single class of data.
  *
@@ -22,11 +25,16 @@ package com.engflow.bazel.invocation.analyzer.core;
  * off of their class types at runtime. Due to Java type erasure these types are not retained at
  * runtime so they must be explicitly set in the code.
  *
+ * <p>A specification may also declare the types of all data its supplier requests from the {@link
+ * DataManager}, which lets {@link DataManager#prefetch(java.util.Collection)} order calculations
+ * before any of them has run.
+ *
  * @param <DatumType> The type of datum supplied.
  */
 public class DatumSupplierSpecification<DatumType extends Datum> {
   private final Class<DatumType> clazz;
   private final DatumSupplier<DatumType> datumSupplier;
+  @Nullable private final Set<Class<? extends Datum>> dependencies;
 
   /**
    * Creates a new specification.
@@ -39,13 +47,32 @@ public class DatumSupplierSpecification<DatumType extends Datum> {
    */
   public static <T extends Datum> DatumSupplierSpecification<T> of(
       Class<T> clazz, DatumSupplier<T> datumSupplier) {
-    return new DatumSupplierSpecification<>(clazz, datumSupplier);
+    return new DatumSupplierSpecification<>(clazz, datumSupplier, null);
+  }
+
+  /**
+   * Creates a new specification whose supplier requests no data other than the passed-in
+   * dependencies from the {@link DataManager}.
+   *
+   * @param clazz The return class of the datumSupplier.
+   * @param datumSupplier A supplier that calculates and returns a piece of data.
+   * @param dependencies The types of all data the datumSupplier may request.
+   * @param <T> The type supplied by datumSupplier.
+   * @return A new {@link DatumSupplierSpecification} with a type-safe class object, supplier
+   *     function and declared dependencies.
+   */
+  public static <T extends Datum> DatumSupplierSpecification<T> of(
+      Class<T> clazz, DatumSupplier<T> datumSupplier, Set<Class<? extends Datum>> dependencies) {
+    return new DatumSupplierSpecification<>(clazz, datumSupplier, Set.copyOf(dependencies));
   }
 
   private DatumSupplierSpecification(
-      Class<DatumType> clazz, DatumSupplier<DatumType> datumSupplier) {
+      Class<DatumType> clazz,
+      DatumSupplier<DatumType> datumSupplier,
+      @Nullable Set<Class<? extends Datum>> dependencies) {
     this.clazz = clazz;
     this.datumSupplier = datumSupplier;
+    this.dependencies = dependencies;
   }
 
   public Class<DatumType> getSupplierOutputClass() {
@@ -55,4 +82,12 @@ public class DatumSupplierSpecification<DatumType extends Datum> {
   public DatumSupplier<DatumType> getDatumSupplier() {
     return datumSupplier;
   }
+
+  /**
+   * Returns the types of all data the supplier may request, or null if they have not been declared.
+   */
+  @Nullable
+  public Set<Class<? extends Datum>> getDependencies() {
+    return dependencies;
+  }
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.core;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link DatumSupplier} that calls another supplier at most once and returns its outcome on every
+ * call, whether the supplier returned a value or threw an exception.
+ *
+ * <p>Returning the outcome once it is known only requires reading a volatile field. Concurrent
+ * calls before that wait for the first call to finish. Failures of interrupted threads are not
+ * kept.
+ */
+final class MemoizedDatumSupplier<DatumType extends Datum> implements DatumSupplier<DatumType> {
+  private final DatumSupplier<DatumType> supplier;
+  // Only written while holding the lock on this supplier.
+  @Nullable private volatile Outcome<DatumType> outcome;
+
+  MemoizedDatumSupplier(DatumSupplier<DatumType> supplier) {
+    this.supplier = supplier;
+  }
+
+  @Override
+  public DatumType supply()
+      throws InvalidProfileException, MissingInputException, NullDatumException {
+    Outcome<DatumType> result = outcome;
+    if (result == null) {
+      synchronized (this) {
+        // Check again, another thread may have set it while we were waiting for the lock.
+        result = outcome;
+        if (result == null) {
+          result = Outcome.of(supplier);
+          // Do not keep failures caused by interrupting this thread, e.g. because a suggestion
+          // provider ran out of time, so that other threads can still get the datum.
+          if (result.exception == null || !Thread.currentThread().isInterrupted()) {
+            outcome = result;
+          }
+        }
+      }
+    }
+    return result.get();
+  }
+
+  /** Returns whether the outcome is known, so that {@link #supply()} returns without waiting. */
+  boolean isSupplied() {
+    return outcome != null;
+  }
+
+  /** The value returned or the exception thrown by a supplier. */
+  private static final class Outcome<T extends Datum> {
+    @Nullable private final T value;
+    @Nullable private final Exception exception;
+
+    private Outcome(@Nullable T value, @Nullable Exception exception) {
+      this.value = value;
+      this.exception = exception;
+    }
+
+    /**
+     * Calls the passed-in supplier and records its outcome. Errors are not recorded, but thrown to
+     * the caller.
+     */
+    static <T extends Datum> Outcome<T> of(DatumSupplier<T> supplier) {
+      try {
+        return new Outcome<>(supplier.supply(), null);
+      } catch (InvalidProfileException
+          | MissingInputException
+          | NullDatumException
+          | RuntimeException e) {
+        return new Outcome<>(null, e);
+      }
+    }
+
+    @Nullable
+    T get() throws InvalidProfileException, MissingInputException, NullDatumException {
+      if (exception == null) {
+        return value;
+      }
+      if (exception instanceof InvalidProfileException) {
+        throw (InvalidProfileException) exception;
+      }
+      if (exception instanceof MissingInputException) {
+        throw (MissingInputException) exception;
+      }
+      if (exception instanceof NullDatumException) {
+        throw (NullDatumException) exception;
+      }
+      throw (RuntimeException) exception;
+    }
+  }
+}
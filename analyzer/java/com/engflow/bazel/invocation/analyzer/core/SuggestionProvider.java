@@ -15,6 +15,8 @@
 package com.engflow.bazel.invocation.analyzer.core;
 
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
+import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * {@link SuggestionProvider}s use data from a {@link DataManager} and attempt to produce one or
@@ -33,4 +35,17 @@ public interface SuggestionProvider {
    *     occurred while trying to analyze the data to create suggestions.
    */
   SuggestionOutput getSuggestions(DataManager dataManager);
+
+  /**
+   * Returns the types of {@link Datum} that {@link #getSuggestions(DataManager)} may retrieve from
+   * the {@link DataManager}. Only these data and the data they depend on have to be calculated for
+   * this provider.
+   *
+   * @return The types of data this provider consumes, or null if they are unknown, in which case
+   *     all registered data may be consumed.
+   */
+  @Nullable
+  default Set<Class<? extends Datum>> getConsumedData() {
+    return null;
+  }
 }
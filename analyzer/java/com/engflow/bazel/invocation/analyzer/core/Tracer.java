@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.core;
+
+import java.util.Map;
+
+/**
+ * Records how long the steps of an analysis take, for example to profile the analyzer itself.
+ *
+ * <p>Implementations must be thread-safe, spans may be started on any thread.
+ */
+@FunctionalInterface
+public interface Tracer {
+  /** A tracer that does not record anything. */
+  Tracer NOOP = (category, name, args) -> () -> {};
+
+  /** The category of spans that parse the input of an analysis. */
+  String CATEGORY_PARSE = "parse";
+  /** The category of spans that supply a {@link Datum}. */
+  String CATEGORY_DATUM = "datum";
+  /** The category of spans that run a {@link SuggestionProvider}. */
+  String CATEGORY_SUGGESTION = "suggestion";
+  /** The category of spans that output the results of an analysis. */
+  String CATEGORY_OUTPUT = "output";
+
+  /**
+   * Starts a span on the current thread. The span ends when it is closed, which has to happen on
+   * the same thread.
+   *
+   * @param category The category of the span.
+   * @param name The name of the span.
+   * @param args Additional details about the span, if any.
+   * @return The span, which has to be closed when the step it records ends.
+   */
+  Span startSpan(String category, String name, Map<String, String> args);
+
+  /** A step of an analysis, which ends when it is closed. */
+  interface Span extends AutoCloseable {
+    @Override
+    void close();
+  }
+}
@@ -18,6 +18,8 @@ import static com.engflow.bazel.invocation.analyzer.core.DatumSupplier.memoized;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.ThreadId;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -25,15 +27,18 @@ import com.engflow.bazel.invocation.analyzer.core.InvalidProfileException;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import com.engflow.bazel.invocation.analyzer.time.TimeUtil;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEventIntervalIndex;
 import com.engflow.bazel.invocation.analyzer.traceeventformat.CounterEvent;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /** A {@link DataProvider} that supplies data on action counts, including bottleneck statistics. */
-public class ActionStatsDataProvider extends DataProvider {
+public class ActionStatsDataProvider extends DataProvider implements BazelProfileConsumer {
   public static final String EMPTY_REASON_ACTION_COUNT =
       "The Bazel profile does not include an action count, which is required for extracting"
           + " bottlenecks. Try analyzing a profile that processes actions, for example a build or"
@@ -46,7 +51,19 @@ public class ActionStatsDataProvider extends DataProvider {
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
-        DatumSupplierSpecification.of(ActionStats.class, memoized(this::getActionStats)));
+        DatumSupplierSpecification.of(
+            ActionStats.class,
+            memoized(this::getActionStats),
+            Set.of(BazelProfile.class, EstimatedCoresUsed.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(
+            BazelProfileConstants.CAT_ACTION_PROCESSING,
+            BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME)
+        .build();
   }
 
   public ActionStats getActionStats()
@@ -92,61 +109,31 @@ public class ActionStatsDataProvider extends DataProvider {
       bottlenecks.add(currentBottleneck);
     }
 
-    bazelProfile
-        .getThreads()
-        .flatMap(profileThread -> profileThread.getCompleteEvents().stream())
-        .filter(
-            event ->
-                BazelProfileConstants.CAT_ACTION_PROCESSING.equals(event.category)
-                    || BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME.equals(
-                        event.category))
-        .forEach(
-            event ->
-                bottlenecks.forEach(
-                    bottleneck -> {
-                      switch (event.category) {
-                        case BazelProfileConstants.CAT_ACTION_PROCESSING:
-                          // Add events to bottleneck, if at least partially contained.
-
-                          if (event.start.compareTo(bottleneck.getEnd()) > 0) {
-                            // Event started after bottleneck.
-                            return;
-                          }
-                          if (event.end.compareTo(bottleneck.getStart()) < 0) {
-                            // Event ended before bottleneck.
-                            return;
-                          }
-                          bottleneck.addEvent(event);
-                          break;
-                        case BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME:
-                          // Add queuing duration to bottleneck, if at least partially contained.
-                          // TODO: Consider storing the queuing per CAT_ACTION_PROCESSING event.
-
-                          if (event.start.compareTo(bottleneck.getEnd()) > 0) {
-                            // Queuing event started after bottleneck.
-                            return;
-                          }
-                          if (event.end.compareTo(bottleneck.getStart()) < 0) {
-                            // Queuing event ended before bottleneck.
-                            return;
-                          }
-                          // Only consider the queuing that is part of the bottleneck.
-                          Duration partialQueuingDuration =
-                              TimeUtil.getDurationBetween(
-                                  bottleneck.getStart().compareTo(event.start) > 0
-                                      ? bottleneck.getStart()
-                                      : event.start,
-                                  bottleneck.getEnd().compareTo(event.end) < 0
-                                      ? bottleneck.getEnd()
-                                      : event.end);
-                          bottleneck.addQueuingDuration(
-                              new ThreadId(event.processId, event.threadId),
-                              partialQueuingDuration);
-                          break;
-                        default:
-                          return;
-                      }
-                    }));
+    CompleteEventIntervalIndex actionProcessing =
+        bazelProfile.getCompleteEventIntervals(BazelProfileConstants.CAT_ACTION_PROCESSING);
+    CompleteEventIntervalIndex queuing =
+        bazelProfile.getCompleteEventIntervals(
+            BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME);
+    for (Bottleneck.Builder bottleneck : bottlenecks) {
+      // Add events to bottleneck, if at least partially contained.
+      actionProcessing
+          .getOverlapping(bottleneck.getStart(), bottleneck.getEnd())
+          .forEach(bottleneck::addEvent);
+      // Add queuing duration to bottleneck, if at least partially contained.
+      // TODO: Consider storing the queuing per CAT_ACTION_PROCESSING event.
+      for (CompleteEvent event :
+          queuing.getOverlapping(bottleneck.getStart(), bottleneck.getEnd())) {
+        // Only consider the queuing that is part of the bottleneck.
+        Duration partialQueuingDuration =
+            TimeUtil.getDurationBetween(
+                bottleneck.getStart().compareTo(event.start) > 0
+                    ? bottleneck.getStart()
+                    : event.start,
+                bottleneck.getEnd().compareTo(event.end) < 0 ? bottleneck.getEnd() : event.end);
+        bottleneck.addQueuingDuration(
+            new ThreadId(event.processId, event.threadId), partialQueuingDuration);
+      }
+    }
     return new ActionStats(bottlenecks.stream().map(b -> b.build()).collect(Collectors.toList()));
   }
 }
@@ -16,7 +16,9 @@ package com.engflow.bazel.invocation.analyzer.dataproviders;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfilePhase;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -30,6 +32,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.logging.Logger;
 
@@ -42,7 +45,7 @@ import java.util.logging.Logger;
  *   <li>total duration of the invocation
  * </ul>
  */
-public class BazelPhasesDataProvider extends DataProvider {
+public class BazelPhasesDataProvider extends DataProvider implements BazelProfileConsumer {
   private static final String TOTAL_DURATION_EMPTY_REASON_LAUNCH =
       "The Bazel profile does not include a launch marker, which is required for determining the"
           + " invocation's total duration. All Bazel profiles should include this data. Try"
@@ -60,9 +63,23 @@ public class BazelPhasesDataProvider extends DataProvider {
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            BazelPhaseDescriptions.class, DatumSupplier.memoized(this::getBazelPhaseDescriptions)),
+            BazelPhaseDescriptions.class,
+            DatumSupplier.memoized(this::getBazelPhaseDescriptions),
+            Set.of(BazelProfile.class)),
         DatumSupplierSpecification.of(
-            TotalDuration.class, DatumSupplier.memoized(this::getTotalDuration)));
+            TotalDuration.class,
+            DatumSupplier.memoized(this::getTotalDuration),
+            Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(BazelProfileConstants.CAT_BUILD_PHASE_MARKER)
+        .addInstantCategories(
+            BazelProfileConstants.CAT_BUILD_PHASE_MARKER,
+            BazelProfileConstants.CAT_GENERAL_INFORMATION)
+        .build();
   }
 
   private void determineStartAndEndTimestamps()
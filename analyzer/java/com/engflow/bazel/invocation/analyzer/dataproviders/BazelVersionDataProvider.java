@@ -17,22 +17,32 @@ package com.engflow.bazel.invocation.analyzer.dataproviders;
 import static com.engflow.bazel.invocation.analyzer.core.DatumSupplier.memoized;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
 import com.engflow.bazel.invocation.analyzer.core.InvalidProfileException;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@link DataProvider} that supplies data on the Bazel version used when the Bazel profile was
  * generated.
  */
-public class BazelVersionDataProvider extends DataProvider {
+public class BazelVersionDataProvider extends DataProvider implements BazelProfileConsumer {
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
-        DatumSupplierSpecification.of(BazelVersion.class, memoized(this::getBazelVersion)));
+        DatumSupplierSpecification.of(
+            BazelVersion.class, memoized(this::getBazelVersion), Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    // The Bazel version is read from data that is always kept.
+    return ProfileProjection.none();
   }
 
   public BazelVersion getBazelVersion()
@@ -22,6 +22,7 @@ import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -34,7 +35,9 @@ public class CachingAndExecutionMetricsDataProvider extends DataProvider {
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            CachingAndExecutionMetrics.class, DatumSupplier.memoized(this::getMetrics)));
+            CachingAndExecutionMetrics.class,
+            DatumSupplier.memoized(this::getMetrics),
+            Set.of(LocalActions.class)));
   }
 
   @VisibleForTesting
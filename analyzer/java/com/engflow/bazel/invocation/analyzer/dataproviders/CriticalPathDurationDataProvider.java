@@ -15,6 +15,9 @@
 package com.engflow.bazel.invocation.analyzer.dataproviders;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileThread;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
@@ -25,12 +28,13 @@ import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import com.google.common.annotations.VisibleForTesting;
 import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@link DataProvider} that supplies the total duration of the critical path. For this, the sum
  * of the durations of all actions that are part of the critical path is calculated.
  */
-public class CriticalPathDurationDataProvider extends DataProvider {
+public class CriticalPathDurationDataProvider extends DataProvider implements BazelProfileConsumer {
   public static final String EMPTY_REASON_CRITICAL_PATH_MISSING =
       "The Bazel profile does not include a critical path, which is required for determining its"
           + " duration. Try analyzing a profile that processes actions, for example a build or"
@@ -44,7 +48,16 @@ public class CriticalPathDurationDataProvider extends DataProvider {
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            CriticalPathDuration.class, DatumSupplier.memoized(this::getCriticalPathDuration)));
+            CriticalPathDuration.class,
+            DatumSupplier.memoized(this::getCriticalPathDuration),
+            Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(BazelProfileConstants.CAT_CRITICAL_PATH_COMPONENT)
+        .build();
   }
 
   @VisibleForTesting
@@ -14,13 +14,26 @@
 
 package com.engflow.bazel.invocation.analyzer.dataproviders;
 
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
+import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
 import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.CriticalPathQueuingDurationDataProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.QueuingObservedDataProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.RemoteCachingUsedDataProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.RemoteExecutionUsedDataProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.TotalQueuingDurationDataProvider;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 public class DataProviderUtil {
   /**
@@ -53,4 +66,72 @@ public class DataProviderUtil {
         // RemoteCache
         new RemoteCacheMetricsDataProvider());
   }
+
+  /**
+   * Returns the providers of the passed-in data, together with the providers of the data their
+   * suppliers depend on, as declared by their {@link DatumSupplierSpecification}s. Registering only
+   * these providers lets {@link #getProfileProjection(List)} drop the events that only other
+   * providers read.
+   *
+   * @param dataProviders the providers to choose from
+   * @param data the data that will be requested, or null if any data may be requested
+   * @return the providers needed for the data in their passed-in order, or all passed-in providers
+   *     if any data may be requested or a supplier needed does not declare its dependencies
+   */
+  public static List<DataProvider> getRequiredDataProviders(
+      List<DataProvider> dataProviders, @Nullable Collection<Class<? extends Datum>> data) {
+    if (data == null) {
+      return dataProviders;
+    }
+    Map<Class<? extends Datum>, DataProvider> providerByDatum = new HashMap<>();
+    Map<Class<? extends Datum>, Set<Class<? extends Datum>>> dependenciesByDatum = new HashMap<>();
+    for (DataProvider dataProvider : dataProviders) {
+      for (DatumSupplierSpecification<?> supplier : dataProvider.getSuppliers()) {
+        providerByDatum.put(supplier.getSupplierOutputClass(), dataProvider);
+        dependenciesByDatum.put(supplier.getSupplierOutputClass(), supplier.getDependencies());
+      }
+    }
+    Set<DataProvider> required = new HashSet<>();
+    Set<Class<? extends Datum>> visited = new HashSet<>(data);
+    Deque<Class<? extends Datum>> pending = new ArrayDeque<>(data);
+    while (!pending.isEmpty()) {
+      Class<? extends Datum> datum = pending.removeFirst();
+      DataProvider dataProvider = providerByDatum.get(datum);
+      if (dataProvider == null) {
+        // The data is supplied by another source, e.g. the Bazel profile itself.
+        continue;
+      }
+      required.add(dataProvider);
+      Set<Class<? extends Datum>> dependencies = dependenciesByDatum.get(datum);
+      if (dependencies == null) {
+        return dataProviders;
+      }
+      for (Class<? extends Datum> dependency : dependencies) {
+        if (visited.add(dependency)) {
+          pending.addLast(dependency);
+        }
+      }
+    }
+    return dataProviders.stream().filter(required::contains).collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the events of the Bazel profile that are used by the passed-in {@link DataProvider}s.
+   * Providers that read the profile declare which events they use by implementing {@link
+   * BazelProfileConsumer}, all others are assumed to read all of its events. The other events need
+   * not be kept when parsing a profile.
+   *
+   * @param dataProviders the providers that will be registered with the DataManager
+   * @return The union of the events used by the providers.
+   */
+  public static ProfileProjection getProfileProjection(List<DataProvider> dataProviders) {
+    return ProfileProjection.union(
+        dataProviders.stream()
+            .map(
+                dataProvider ->
+                    dataProvider instanceof BazelProfileConsumer
+                        ? ((BazelProfileConsumer) dataProvider).getProfileProjection()
+                        : ProfileProjection.all())
+            .collect(Collectors.toList()));
+  }
 }
@@ -15,8 +15,11 @@
 package com.engflow.bazel.invocation.analyzer.dataproviders;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfilePhase;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
 import com.engflow.bazel.invocation.analyzer.core.InvalidProfileException;
@@ -28,8 +31,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 /**
@@ -41,7 +42,7 @@ import javax.annotation.Nullable;
  *     jobs Bazel can run in the execution phase. <br>
  *     No differentiation is made between physical and virtual cores.
  */
-public class EstimatedCoresDataProvider extends DataProvider {
+public class EstimatedCoresDataProvider extends DataProvider implements BazelProfileConsumer {
   public static final String ESTIMATED_CORES_USED_EMPTY_REASON_EXEC_MISSING =
       "The Bazel profile does not include an execution phase, which is required for estimating the"
           + " number of cores used. Try analyzing a profile that processes actions, for example a"
@@ -72,9 +73,6 @@ public class EstimatedCoresDataProvider extends DataProvider {
           + " of the Bazel flag --jobs. Try analyzing a profile that processes actions, for example"
           + " a build or test.";
 
-  private static final Pattern SKYFRAME_EVALUATOR_REGEX =
-      Pattern.compile("skyframe-evaluator[^\\d]*(\\d*)");
-
   private Set<Integer> executionPhaseSkyframeEvaluators;
   @Nullable private Integer executionPhaseSkyframeEvaluatorsMaxValue;
   private Set<Integer> evaluateAndDependenciesPhaseSkyframeEvaluators;
@@ -82,14 +80,28 @@ public class EstimatedCoresDataProvider extends DataProvider {
 
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
+    Set<Class<? extends Datum>> dependencies =
+        Set.of(BazelProfile.class, BazelPhaseDescriptions.class, SkymeldUsed.class);
     return List.of(
         DatumSupplierSpecification.of(
-            EstimatedCoresUsed.class, DatumSupplier.memoized(this::getEstimatedCoresUsed)),
+            EstimatedCoresUsed.class,
+            DatumSupplier.memoized(this::getEstimatedCoresUsed),
+            dependencies),
         DatumSupplierSpecification.of(
             EstimatedCoresAvailable.class,
-            DatumSupplier.memoized(this::getEstimatedCoresAvailable)),
+            DatumSupplier.memoized(this::getEstimatedCoresAvailable),
+            dependencies),
         DatumSupplierSpecification.of(
-            EstimatedJobsFlagValue.class, DatumSupplier.memoized(this::getEstimatedFlagValueJobs)));
+            EstimatedJobsFlagValue.class,
+            DatumSupplier.memoized(this::getEstimatedFlagValueJobs),
+            dependencies));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    // Any complete event within a phase indicates that a skyframe evaluator was used. The threads
+    // keep the intervals of the events that are dropped for that, so none need to be kept.
+    return ProfileProjection.none();
   }
 
   @VisibleForTesting
@@ -215,26 +227,14 @@ public class EstimatedCoresDataProvider extends DataProvider {
       BazelProfile bazelProfile, Timestamp start, Timestamp end) {
     Set<Integer> result = new HashSet<>();
     bazelProfile
-        .getThreads()
-        // Consider only threads from the relevant time range.
-        .filter(
-            thread ->
-                thread.getCompleteEvents().stream()
-                    .anyMatch(
-                        completeEvent ->
-                            completeEvent.start.compareTo(start) >= 0
-                                && completeEvent.end.compareTo(end) <= 0))
-        // Each core should have at least one of "skyframe-evaluator [x]",
-        // "skyframe-evaluator-[x]", and "skyframe-evaluator-cpu-heavy-[x]".
-        .filter(thread -> SKYFRAME_EVALUATOR_REGEX.matcher(thread.getName()).matches())
-        .map(
-            thread -> {
-              Matcher matcher = SKYFRAME_EVALUATOR_REGEX.matcher(thread.getName());
-              matcher.find();
-              return matcher.group(1);
-            })
-        .mapToInt(x -> Integer.valueOf(x))
-        .forEach(x -> result.add(x));
+        .getSkyframeEvaluators()
+        .forEach(
+            (index, thread) -> {
+              // Consider only threads from the relevant time range.
+              if (thread.hasCompleteEventContainedIn(start, end)) {
+                result.add(index);
+              }
+            });
     return result;
   }
 
@@ -18,6 +18,8 @@ import static com.engflow.bazel.invocation.analyzer.core.DatumSupplier.memoized;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
 import com.engflow.bazel.invocation.analyzer.core.InvalidProfileException;
@@ -25,18 +27,28 @@ import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import com.google.common.collect.ImmutableList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@link DataProvider} that supplies data on whether specific Bazel flags were used when the
  * Bazel profile was generated.
  */
-public class FlagValueDataProvider extends DataProvider {
+public class FlagValueDataProvider extends DataProvider implements BazelProfileConsumer {
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return ImmutableList.of(
         DatumSupplierSpecification.of(
             FlagValueExperimentalProfileIncludeTargetLabel.class,
-            memoized(this::getExperimentalProfileIncludeTargetLabel)));
+            memoized(this::getExperimentalProfileIncludeTargetLabel),
+            Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(BazelProfileConstants.CAT_ACTION_PROCESSING)
+        .addArgumentsCategories(BazelProfileConstants.CAT_ACTION_PROCESSING)
+        .build();
   }
 
   public FlagValueExperimentalProfileIncludeTargetLabel getExperimentalProfileIncludeTargetLabel()
@@ -47,14 +59,11 @@ public class FlagValueDataProvider extends DataProvider {
     // https://github.com/bazelbuild/bazel/blob/7d10999fc0357596824f2b6022bbbd895f245a3c/src/main/java/com/google/devtools/build/lib/profiler/Profiler.java#L818
     // https://github.com/bazelbuild/bazel/blob/7d10999fc0357596824f2b6022bbbd895f245a3c/src/main/java/com/google/devtools/build/lib/profiler/Profiler.java#L206-L208
     var hasTarget =
-        bazelProfile
-            .getThreads()
-            .flatMap(profileThread -> profileThread.getCompleteEvents().stream())
+        bazelProfile.getCompleteEvents(BazelProfileConstants.CAT_ACTION_PROCESSING).stream()
             .anyMatch(
                 event ->
-                    BazelProfileConstants.CAT_ACTION_PROCESSING.equals(event.category)
-                        && event.args.containsKey(
-                            BazelProfileConstants.ARGS_CAT_ACTION_PROCESSING_TARGET));
+                    event.args.containsKey(
+                        BazelProfileConstants.ARGS_CAT_ACTION_PROCESSING_TARGET));
     return new FlagValueExperimentalProfileIncludeTargetLabel(hasTarget);
   }
 }
@@ -18,6 +18,8 @@ import static com.engflow.bazel.invocation.analyzer.core.DatumSupplier.memoized;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileThread;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -27,14 +29,25 @@ import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /** A {@link DataProvider} that supplies data on Bazel's garbage collection. */
-public class GarbageCollectionStatsDataProvider extends DataProvider {
+public class GarbageCollectionStatsDataProvider extends DataProvider
+    implements BazelProfileConsumer {
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            GarbageCollectionStats.class, memoized(this::getGarbageCollectionStats)));
+            GarbageCollectionStats.class,
+            memoized(this::getGarbageCollectionStats),
+            Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(BazelProfileConstants.CAT_GARBAGE_COLLECTION)
+        .build();
   }
 
   public GarbageCollectionStats getGarbageCollectionStats()
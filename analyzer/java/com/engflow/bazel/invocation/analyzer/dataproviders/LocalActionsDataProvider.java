@@ -19,6 +19,8 @@ import static com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileThread.o
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelEventsUtil;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileThread;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
@@ -34,14 +36,32 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterators;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-public class LocalActionsDataProvider extends DataProvider {
+public class LocalActionsDataProvider extends DataProvider implements BazelProfileConsumer {
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
-        DatumSupplierSpecification.of(LocalActions.class, DatumSupplier.memoized(this::derive)));
+        DatumSupplierSpecification.of(
+            LocalActions.class, DatumSupplier.memoized(this::derive), Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(
+            BazelProfileConstants.CAT_ACTION_PROCESSING,
+            // The categories of the related events, see #isRelatedEvent.
+            BazelProfileConstants.CAT_GENERAL_INFORMATION,
+            BazelProfileConstants.CAT_LOCAL_ACTION_EXECUTION,
+            BazelProfileConstants.CAT_REMOTE_ACTION_CACHE_CHECK,
+            BazelProfileConstants.CAT_REMOTE_ACTION_EXECUTION,
+            BazelProfileConstants.CAT_REMOTE_EXECUTION_UPLOAD_TIME,
+            BazelProfileConstants.CAT_REMOTE_OUTPUT_DOWNLOAD)
+        .addArgumentsCategories(BazelProfileConstants.CAT_ACTION_PROCESSING)
+        .build();
   }
 
   @VisibleForTesting
@@ -15,6 +15,8 @@
 package com.engflow.bazel.invocation.analyzer.dataproviders;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -23,27 +25,29 @@ import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Set;
 
 /** A {@link DataProvider} that supplies whether the Bazel profile includes merged events. */
-public class MergedEventsPresentDataProvider extends DataProvider {
-  private static final Pattern MERGED_EVENTS_PATTERN = Pattern.compile("^merged\\s\\d+\\sevents$");
-
+public class MergedEventsPresentDataProvider extends DataProvider implements BazelProfileConsumer {
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            MergedEventsPresent.class, DatumSupplier.memoized(this::getMergedEventsPresent)));
+            MergedEventsPresent.class,
+            DatumSupplier.memoized(this::getMergedEventsPresent),
+            Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    // Merged events may be of any category, but their names are kept even if they are dropped.
+    return ProfileProjection.none();
   }
 
   @VisibleForTesting
   MergedEventsPresent getMergedEventsPresent()
       throws InvalidProfileException, MissingInputException, NullDatumException {
     BazelProfile profile = getDataManager().getDatum(BazelProfile.class);
-    return new MergedEventsPresent(
-        profile
-            .getThreads()
-            .flatMap((thread) -> thread.getCompleteEvents().stream())
-            .anyMatch((event) -> MERGED_EVENTS_PATTERN.matcher(event.name).matches()));
+    return new MergedEventsPresent(profile.hasMergedEvents());
   }
 }
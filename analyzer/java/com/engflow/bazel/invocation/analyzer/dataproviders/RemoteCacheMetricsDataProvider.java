@@ -25,6 +25,7 @@ import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
 import com.google.common.annotations.VisibleForTesting;
 import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@link DataProvider} that supplies data on remote caching. Note that `disk_cache` is also a
@@ -36,7 +37,9 @@ public class RemoteCacheMetricsDataProvider extends DataProvider {
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            RemoteCacheMetrics.class, DatumSupplier.memoized(this::derive)));
+            RemoteCacheMetrics.class,
+            DatumSupplier.memoized(this::derive),
+            Set.of(LocalActions.class)));
   }
 
   @VisibleForTesting
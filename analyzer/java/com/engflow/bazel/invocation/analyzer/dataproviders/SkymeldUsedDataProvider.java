@@ -16,16 +16,18 @@ package com.engflow.bazel.invocation.analyzer.dataproviders;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfilePhase;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
 import com.engflow.bazel.invocation.analyzer.core.InvalidProfileException;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
-import com.engflow.bazel.invocation.analyzer.time.Timestamp;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@link DataProvider} that returns whether the profile looks like it was generated while using
@@ -33,12 +35,21 @@ import java.util.List;
  *
  * @see <a href="https://github.com/bazelbuild/bazel/issues/14057">Project Skymeld GitHub issue</a>
  */
-public class SkymeldUsedDataProvider extends DataProvider {
+public class SkymeldUsedDataProvider extends DataProvider implements BazelProfileConsumer {
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            SkymeldUsed.class, DatumSupplier.memoized(this::getSkymeldUsed)));
+            SkymeldUsed.class,
+            DatumSupplier.memoized(this::getSkymeldUsed),
+            Set.of(BazelProfile.class, BazelPhaseDescriptions.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(BazelProfileConstants.CAT_ACTION_PROCESSING)
+        .build();
   }
 
   @VisibleForTesting
@@ -52,14 +63,11 @@ public class SkymeldUsedDataProvider extends DataProvider {
       return new SkymeldUsed();
     }
     BazelProfile bazelProfile = getDataManager().getDatum(BazelProfile.class);
+    // Find the first action processing event, the events are sorted by their start.
     var firstActionProcessing =
-        bazelProfile
-            .getThreads()
-            // Find the first action processing event.
-            .flatMap(thread -> thread.getCompleteEvents().stream())
-            .filter(event -> BazelProfileConstants.CAT_ACTION_PROCESSING.equals(event.category))
+        bazelProfile.getCompleteEvents(BazelProfileConstants.CAT_ACTION_PROCESSING).stream()
             .map(event -> event.start)
-            .min(Timestamp::compareTo);
+            .findFirst();
     return new SkymeldUsed(interleavedAnalysisAndExecutionPhase.get(), firstActionProcessing);
   }
 }
@@ -16,6 +16,8 @@ package com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -25,9 +27,13 @@ import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import com.engflow.bazel.invocation.analyzer.time.TimeUtil;
 import com.engflow.bazel.invocation.analyzer.time.Timestamp;
 import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEventIntervalIndex;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableListMultimap;
 import java.time.Duration;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -37,7 +43,8 @@ import java.util.regex.Pattern;
  * A {@link DataProvider} that supplies the duration spent queuing for remote execution within the
  * critical path. For this, the sum over all queuing within critical path actions is computed.
  */
-public class CriticalPathQueuingDurationDataProvider extends DataProvider {
+public class CriticalPathQueuingDurationDataProvider extends DataProvider
+    implements BazelProfileConsumer {
   private static final Pattern CRITICAL_PATH_TO_EVENT_NAME = Pattern.compile("^action '(.*)'$");
   public static final String EMPTY_REASON =
       "The Bazel profile does not include a critical path, which is required for determining"
@@ -49,7 +56,19 @@ public class CriticalPathQueuingDurationDataProvider extends DataProvider {
     return List.of(
         DatumSupplierSpecification.of(
             CriticalPathQueuingDuration.class,
-            DatumSupplier.memoized(this::getCriticalPathQueuingDuration)));
+            DatumSupplier.memoized(this::getCriticalPathQueuingDuration),
+            Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(
+            BazelProfileConstants.CAT_ACTION_PROCESSING,
+            BazelProfileConstants.CAT_CRITICAL_PATH_COMPONENT,
+            BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME)
+        .addArgumentsCategories(BazelProfileConstants.CAT_ACTION_PROCESSING)
+        .build();
   }
 
   @VisibleForTesting
@@ -64,6 +83,9 @@ public class CriticalPathQueuingDurationDataProvider extends DataProvider {
     if (bazelProfile.getCriticalPath().isEmpty()) {
       return new CriticalPathQueuingDuration(EMPTY_REASON);
     }
+    // Look up the candidate events by name, instead of comparing the names of all events.
+    ImmutableListMultimap<String, CompleteEvent> actionProcessingByName =
+        bazelProfile.getCompleteEventsByName(BazelProfileConstants.CAT_ACTION_PROCESSING);
     bazelProfile
         .getCriticalPath()
         .get()
@@ -73,18 +95,14 @@ public class CriticalPathQueuingDurationDataProvider extends DataProvider {
               Matcher m = CRITICAL_PATH_TO_EVENT_NAME.matcher(criticalPathEvent.name);
               if (m.matches()) {
                 String eventNameToFind = m.group(1);
-                bazelProfile
-                    .getThreads()
-                    .flatMap((thread) -> thread.getCompleteEvents().stream())
-                    // Name should match, and event interval should be contained in
+                actionProcessingByName.get(eventNameToFind).stream()
+                    // Name matches, and event interval should be contained in
                     // criticalPathEvent interval.
                     .filter(
                         (event) ->
-                            BazelProfileConstants.CAT_ACTION_PROCESSING.equals(event.category)
-                                && eventNameToFind.equals(event.name)
-                                // If "action processing" is the first event, the timestamp
-                                // may be slightly out of sync with the critical path event.
-                                && (criticalPathEvent.start.almostEquals(event.start)
+                            // If "action processing" is the first event, the timestamp
+                            // may be slightly out of sync with the critical path event.
+                            (criticalPathEvent.start.almostEquals(event.start)
                                     ||
                                     // It may not be the first event, e.g.
                                     // "action dependency checking" may be reported before
@@ -143,27 +161,28 @@ public class CriticalPathQueuingDurationDataProvider extends DataProvider {
                         });
               }
             });
+    CompleteEventIntervalIndex queuing =
+        bazelProfile.getCompleteEventIntervals(
+            BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME);
+    // Restrict to queuing events that are contained in one of the critical path events. As an event
+    // may be contained in more than one of them, collect the matching events before summing up.
+    Set<CompleteEvent> queuingEvents = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (CompleteEvent cpEvent : criticalPathEventsInThreads) {
+      // The queuing event may end slightly after the critical path event.
+      queuing
+          .getOverlapping(cpEvent.start, cpEvent.end.plus(Timestamp.ACCEPTABLE_DIVERGENCE))
+          .stream()
+          .filter(
+              (event) ->
+                  cpEvent.threadId == event.threadId
+                      && cpEvent.processId == event.processId
+                      && (cpEvent.start.compareTo(event.start) <= 0)
+                      && (event.end.almostEquals(cpEvent.end)
+                          || (event.end.compareTo(cpEvent.end) <= 0)))
+          .forEach(queuingEvents::add);
+    }
     Duration duration =
-        bazelProfile
-            .getThreads()
-            .flatMap((thread) -> thread.getCompleteEvents().stream())
-            // Restrict to queuing events.
-            .filter(
-                (event) ->
-                    BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME.equals(event.category))
-            // Restrict to events that are contained in one of the critical path events.
-            .filter(
-                (event) ->
-                    criticalPathEventsInThreads.stream()
-                        .anyMatch(
-                            (cpEvent) ->
-                                cpEvent.threadId == event.threadId
-                                    && cpEvent.processId == event.processId
-                                    && (cpEvent.start.compareTo(event.start) <= 0)
-                                    && (event.end.almostEquals(cpEvent.end)
-                                        || (event.end.compareTo(cpEvent.end) <= 0))))
-            .map((event) -> event.duration)
-            .reduce(Duration.ZERO, Duration::plus);
+        queuingEvents.stream().map((event) -> event.duration).reduce(Duration.ZERO, Duration::plus);
     return new CriticalPathQueuingDuration(duration);
   }
 }
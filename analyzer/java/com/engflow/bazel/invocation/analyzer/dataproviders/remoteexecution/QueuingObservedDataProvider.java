@@ -16,6 +16,8 @@ package com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -24,15 +26,25 @@ import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.List;
+import java.util.Set;
 
 /** A {@link DataProvider} that supplies whether any remote execution queuing is included. */
-public class QueuingObservedDataProvider extends DataProvider {
+public class QueuingObservedDataProvider extends DataProvider implements BazelProfileConsumer {
 
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            QueuingObserved.class, DatumSupplier.memoized(this::getQueuingObserved)));
+            QueuingObserved.class,
+            DatumSupplier.memoized(this::getQueuingObserved),
+            Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME)
+        .build();
   }
 
   @VisibleForTesting
@@ -40,12 +52,6 @@ public class QueuingObservedDataProvider extends DataProvider {
       throws InvalidProfileException, MissingInputException, NullDatumException {
     BazelProfile profile = getDataManager().getDatum(BazelProfile.class);
     return new QueuingObserved(
-        profile
-            .getThreads()
-            .flatMap((thread) -> thread.getCompleteEvents().stream())
-            .anyMatch(
-                (event) ->
-                    BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME.equals(
-                        event.category)));
+        profile.hasCompleteEvents(BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME));
   }
 }
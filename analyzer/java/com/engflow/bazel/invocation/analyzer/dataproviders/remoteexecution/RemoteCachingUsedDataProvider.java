@@ -16,6 +16,8 @@ package com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -24,18 +26,28 @@ import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@link DataProvider} that extracts from the Bazel profile whether it is likely that remote
  * caching was enabled when running the invocation.
  */
-public class RemoteCachingUsedDataProvider extends DataProvider {
+public class RemoteCachingUsedDataProvider extends DataProvider implements BazelProfileConsumer {
 
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            RemoteCachingUsed.class, DatumSupplier.memoized(this::getRemoteCachingUsed)));
+            RemoteCachingUsed.class,
+            DatumSupplier.memoized(this::getRemoteCachingUsed),
+            Set.of(BazelProfile.class, RemoteExecutionUsed.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(BazelProfileConstants.CAT_REMOTE_ACTION_CACHE_CHECK)
+        .build();
   }
 
   @VisibleForTesting
@@ -51,11 +63,6 @@ public class RemoteCachingUsedDataProvider extends DataProvider {
     }
     BazelProfile profile = getDataManager().getDatum(BazelProfile.class);
     return new RemoteCachingUsed(
-        profile
-            .getThreads()
-            .flatMap((thread) -> thread.getCompleteEvents().stream())
-            .anyMatch(
-                (event) ->
-                    BazelProfileConstants.CAT_REMOTE_ACTION_CACHE_CHECK.equals(event.category)));
+        profile.hasCompleteEvents(BazelProfileConstants.CAT_REMOTE_ACTION_CACHE_CHECK));
   }
 }
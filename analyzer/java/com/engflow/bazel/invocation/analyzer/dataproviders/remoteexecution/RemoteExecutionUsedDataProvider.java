@@ -16,6 +16,8 @@ package com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -24,14 +26,27 @@ import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import com.google.common.annotations.VisibleForTesting;
 import java.util.List;
+import java.util.Set;
 
-public class RemoteExecutionUsedDataProvider extends DataProvider {
+public class RemoteExecutionUsedDataProvider extends DataProvider implements BazelProfileConsumer {
 
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            RemoteExecutionUsed.class, DatumSupplier.memoized(this::getRemoteExecutionUsed)));
+            RemoteExecutionUsed.class,
+            DatumSupplier.memoized(this::getRemoteExecutionUsed),
+            Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(
+            BazelProfileConstants.CAT_REMOTE_ACTION_EXECUTION,
+            BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME,
+            BazelProfileConstants.CAT_REMOTE_EXECUTION_SETUP)
+        .build();
   }
 
   /**
@@ -43,15 +58,11 @@ public class RemoteExecutionUsedDataProvider extends DataProvider {
       throws InvalidProfileException, MissingInputException, NullDatumException {
     BazelProfile profile = getDataManager().getDatum(BazelProfile.class);
     return new RemoteExecutionUsed(
-        profile
-            .getThreads()
-            .flatMap((thread) -> thread.getCompleteEvents().stream())
-            .anyMatch(
-                (event) ->
-                    BazelProfileConstants.CAT_REMOTE_EXECUTION_SETUP.equals(event.category)
-                        || BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME.equals(
-                            event.category)
-                        || BazelProfileConstants.CAT_REMOTE_ACTION_EXECUTION.equals(event.category)
-                            && BazelProfileConstants.COMPLETE_EXECUTE_REMOTELY.equals(event.name)));
+        profile.hasCompleteEvents(BazelProfileConstants.CAT_REMOTE_EXECUTION_SETUP)
+            || profile.hasCompleteEvents(BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME)
+            || profile.getCompleteEvents(BazelProfileConstants.CAT_REMOTE_ACTION_EXECUTION).stream()
+                .anyMatch(
+                    (event) ->
+                        BazelProfileConstants.COMPLETE_EXECUTE_REMOTELY.equals(event.name)));
   }
 }
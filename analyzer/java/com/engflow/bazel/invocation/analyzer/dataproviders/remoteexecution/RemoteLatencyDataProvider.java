@@ -16,6 +16,8 @@ package com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -26,6 +28,8 @@ import com.google.common.annotations.VisibleForTesting;
 import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * A {@link DataProvider} that supplies an upper bound for the latency between the Bazel client and
@@ -36,7 +40,7 @@ import java.util.Optional;
  * most likely have a significant amount of time in addition to latency. Checking remote action is a
  * fall-back in cases with no cache checks.
  */
-public class RemoteLatencyDataProvider extends DataProvider {
+public class RemoteLatencyDataProvider extends DataProvider implements BazelProfileConsumer {
 
   @VisibleForTesting
   public static final String EMPTY_REASON =
@@ -48,7 +52,18 @@ public class RemoteLatencyDataProvider extends DataProvider {
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            RemoteLatency.class, DatumSupplier.memoized(this::getRemoteLatency)));
+            RemoteLatency.class,
+            DatumSupplier.memoized(this::getRemoteLatency),
+            Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(
+            BazelProfileConstants.CAT_REMOTE_ACTION_CACHE_CHECK,
+            BazelProfileConstants.CAT_REMOTE_ACTION_EXECUTION)
+        .build();
   }
 
   @VisibleForTesting
@@ -56,14 +71,10 @@ public class RemoteLatencyDataProvider extends DataProvider {
       throws InvalidProfileException, MissingInputException, NullDatumException {
     BazelProfile bazelProfile = getDataManager().getDatum(BazelProfile.class);
     Optional<Duration> duration =
-        bazelProfile
-            .getThreads()
-            .flatMap((thread) -> thread.getCompleteEvents().stream())
-            .filter(
-                (event) ->
-                    BazelProfileConstants.CAT_REMOTE_ACTION_EXECUTION.equals(event.category)
-                        || BazelProfileConstants.CAT_REMOTE_ACTION_CACHE_CHECK.equals(
-                            event.category))
+        Stream.of(
+                BazelProfileConstants.CAT_REMOTE_ACTION_EXECUTION,
+                BazelProfileConstants.CAT_REMOTE_ACTION_CACHE_CHECK)
+            .flatMap((category) -> bazelProfile.getCompleteEvents(category).stream())
             .map((event) -> event.duration)
             .min(Duration::compareTo);
 
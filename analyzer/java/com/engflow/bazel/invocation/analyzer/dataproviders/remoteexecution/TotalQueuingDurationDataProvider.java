@@ -16,6 +16,8 @@ package com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution;
 
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConsumer;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -25,19 +27,29 @@ import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
 import com.google.common.annotations.VisibleForTesting;
 import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@link DataProvider} that supplies the duration spent queuing for remote execution. For this,
  * the sum over all queuing across all actions is computed. No distinction is made on whether the
  * queuing was happening in parallel.
  */
-public class TotalQueuingDurationDataProvider extends DataProvider {
+public class TotalQueuingDurationDataProvider extends DataProvider implements BazelProfileConsumer {
 
   @Override
   public List<DatumSupplierSpecification<?>> getSuppliers() {
     return List.of(
         DatumSupplierSpecification.of(
-            TotalQueuingDuration.class, DatumSupplier.memoized(this::getTotalQueuingDuration)));
+            TotalQueuingDuration.class,
+            DatumSupplier.memoized(this::getTotalQueuingDuration),
+            Set.of(BazelProfile.class)));
+  }
+
+  @Override
+  public ProfileProjection getProfileProjection() {
+    return ProfileProjection.newBuilder()
+        .addCompleteEventCategories(BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME)
+        .build();
   }
 
   @VisibleForTesting
@@ -46,11 +58,8 @@ public class TotalQueuingDurationDataProvider extends DataProvider {
     BazelProfile bazelProfile = getDataManager().getDatum(BazelProfile.class);
     Duration duration =
         bazelProfile
-            .getThreads()
-            .flatMap((thread) -> thread.getCompleteEvents().stream())
-            .filter(
-                (event) ->
-                    BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME.equals(event.category))
+            .getCompleteEvents(BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME)
+            .stream()
             .map((event) -> event.duration)
             .reduce(Duration.ZERO, Duration::plus);
     return new TotalQueuingDuration(duration);
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.diff;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.Nullable;
+
+/**
+ * The differences between two Bazel profiles of the same build, e.g. before and after a regression.
+ * Changes are ranked by how much they contribute to the difference in wall time, i.e. by the
+ * absolute value of their change in duration.
+ */
+public final class ProfileDiff {
+  /** Orders changes by decreasing contribution to the difference in wall time. */
+  static final Comparator<Change> BY_CONTRIBUTION =
+      Comparator.<Change, Duration>comparing(change -> change.getDelta().abs()).reversed();
+
+  @Nullable private final Duration totalDurationBefore;
+  @Nullable private final Duration totalDurationAfter;
+  private final ImmutableList<Change> phaseChanges;
+  private final ImmutableList<Change> criticalPathChanges;
+  private final ImmutableList<ActionChange> actionChanges;
+  private final ImmutableList<ActionChange> cacheHitChanges;
+  private final ImmutableMap<ActionChange.Kind, Integer> actionCounts;
+  private final ImmutableMap<ActionChange.Kind, Duration> actionDeltas;
+
+  ProfileDiff(
+      @Nullable Duration totalDurationBefore,
+      @Nullable Duration totalDurationAfter,
+      List<Change> phaseChanges,
+      List<Change> criticalPathChanges,
+      List<ActionChange> actionChanges,
+      List<ActionChange> cacheHitChanges,
+      Map<ActionChange.Kind, Integer> actionCounts,
+      Map<ActionChange.Kind, Duration> actionDeltas) {
+    this.totalDurationBefore = totalDurationBefore;
+    this.totalDurationAfter = totalDurationAfter;
+    this.phaseChanges = ImmutableList.copyOf(phaseChanges);
+    this.criticalPathChanges = ImmutableList.copyOf(criticalPathChanges);
+    this.actionChanges = ImmutableList.copyOf(actionChanges);
+    this.cacheHitChanges = ImmutableList.copyOf(cacheHitChanges);
+    this.actionCounts = ImmutableMap.copyOf(actionCounts);
+    this.actionDeltas = ImmutableMap.copyOf(actionDeltas);
+  }
+
+  /** Returns the change in the total duration, if both profiles include their total duration. */
+  public Optional<Change> getTotalDurationChange() {
+    if (totalDurationBefore == null || totalDurationAfter == null) {
+      return Optional.empty();
+    }
+    return Optional.of(new Change("Total duration", totalDurationBefore, totalDurationAfter));
+  }
+
+  /** Returns the changes of all phases included in either profile, ranked by contribution. */
+  public List<Change> getPhaseChanges() {
+    return phaseChanges;
+  }
+
+  /** Returns the largest changes of the critical path's components, ranked by contribution. */
+  public List<Change> getCriticalPathChanges() {
+    return criticalPathChanges;
+  }
+
+  /** Returns the largest changes of local actions, ranked by contribution. */
+  public List<ActionChange> getActionChanges() {
+    return actionChanges;
+  }
+
+  /**
+   * Returns the largest changes of local actions that were a remote cache hit in one profile but
+   * not in the other, ranked by contribution.
+   */
+  public List<ActionChange> getCacheHitChanges() {
+    return cacheHitChanges;
+  }
+
+  /** Returns the number of actions of the passed-in kind. */
+  public int getActionCount(ActionChange.Kind kind) {
+    return actionCounts.getOrDefault(kind, 0);
+  }
+
+  /** Returns the sum of the changes in duration of the actions of the passed-in kind. */
+  public Duration getActionDelta(ActionChange.Kind kind) {
+    return actionDeltas.getOrDefault(kind, Duration.ZERO);
+  }
+
+  /**
+   * A change in the duration of an item, e.g. a phase. An item only included in the second profile
+   * has no duration before, and an item only included in the first profile has no duration after.
+   */
+  public static class Change {
+    private final String description;
+    @Nullable private final Duration before;
+    @Nullable private final Duration after;
+
+    Change(String description, @Nullable Duration before, @Nullable Duration after) {
+      Preconditions.checkArgument(before != null || after != null);
+      this.description = description;
+      this.before = before;
+      this.after = after;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    public Optional<Duration> getBefore() {
+      return Optional.ofNullable(before);
+    }
+
+    public Optional<Duration> getAfter() {
+      return Optional.ofNullable(after);
+    }
+
+    /** Returns how much longer the item took in the second profile, negative if it got faster. */
+    public Duration getDelta() {
+      return (after == null ? Duration.ZERO : after).minus(before == null ? Duration.ZERO : before);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %s -> %s", description, before, after);
+    }
+  }
+
+  /** A change of a local action, identified by its name, mnemonic and target. */
+  public static final class ActionChange extends Change {
+    /** How an action changed between the two profiles. */
+    public enum Kind {
+      /** The action is only included in the second profile. */
+      ADDED,
+      /** The action is only included in the first profile. */
+      REMOVED,
+      /** The action was a remote cache hit in the first profile, but not in the second. */
+      CACHE_HIT_LOST,
+      /** The action was a remote cache hit in the second profile, but not in the first. */
+      CACHE_HIT_GAINED,
+      /** The action is included in both profiles, with the same remote cache outcome. */
+      MATCHED
+    }
+
+    private final Kind kind;
+    @Nullable private final String mnemonic;
+    @Nullable private final String target;
+
+    ActionChange(
+        Kind kind,
+        String name,
+        @Nullable String mnemonic,
+        @Nullable String target,
+        @Nullable Duration before,
+        @Nullable Duration after) {
+      super(name, before, after);
+      this.kind = kind;
+      this.mnemonic = mnemonic;
+      this.target = target;
+    }
+
+    public Kind getKind() {
+      return kind;
+    }
+
+    @Nullable
+    public String getMnemonic() {
+      return mnemonic;
+    }
+
+    @Nullable
+    public String getTarget() {
+      return target;
+    }
+  }
+}
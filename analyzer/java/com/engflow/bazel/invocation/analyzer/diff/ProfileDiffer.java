@@ -0,0 +1,326 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.diff;
+
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfilePhase;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileThread;
+import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
+import com.engflow.bazel.invocation.analyzer.core.InvalidProfileException;
+import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
+import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
+import com.engflow.bazel.invocation.analyzer.dataproviders.BazelPhaseDescription;
+import com.engflow.bazel.invocation.analyzer.dataproviders.BazelPhaseDescriptions;
+import com.engflow.bazel.invocation.analyzer.dataproviders.LocalActions;
+import com.engflow.bazel.invocation.analyzer.dataproviders.LocalActions.LocalAction;
+import com.engflow.bazel.invocation.analyzer.dataproviders.TotalDuration;
+import com.engflow.bazel.invocation.analyzer.diff.ProfileDiff.ActionChange;
+import com.engflow.bazel.invocation.analyzer.diff.ProfileDiff.Change;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * Computes the {@link ProfileDiff} of two Bazel profiles.
+ *
+ * <p>Local actions and critical path components are matched with hash joins, and only the largest
+ * changes are retained in bounded heaps, so that diffing takes time close to linear in the number
+ * of actions. Items that occur several times in a profile, e.g. actions with the same name,
+ * mnemonic and target, are matched in the order in which they started.
+ */
+public final class ProfileDiffer {
+  /** The default number of changes reported per category. */
+  public static final int DEFAULT_LIMIT = 20;
+
+  private static final Comparator<LocalAction> BY_ACTION_START =
+      Comparator.comparing(action -> action.getAction().start);
+  private static final Comparator<CompleteEvent> BY_EVENT_START =
+      Comparator.comparing(event -> event.start);
+
+  private final int limit;
+
+  /**
+   * Creates a differ.
+   *
+   * @param limit The maximum number of changes reported for critical path components, actions and
+   *     cache hit changes each.
+   */
+  public ProfileDiffer(int limit) {
+    Preconditions.checkArgument(limit > 0, "limit must be positive");
+    this.limit = limit;
+  }
+
+  /** Returns the classes of all data that {@link #diff(DataManager, DataManager)} consumes. */
+  public static Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(
+        BazelProfile.class, BazelPhaseDescriptions.class, LocalActions.class, TotalDuration.class);
+  }
+
+  /**
+   * Computes the differences between two profiles.
+   *
+   * @param before The data manager the first profile and all data providers are registered with.
+   * @param after The data manager the second profile and all data providers are registered with.
+   * @return The differences between the profiles.
+   */
+  public ProfileDiff diff(DataManager before, DataManager after)
+      throws InvalidProfileException, MissingInputException, NullDatumException {
+    return diff(Input.of(before), Input.of(after));
+  }
+
+  /**
+   * Computes the differences between two profiles.
+   *
+   * @param before The data of the first profile.
+   * @param after The data of the second profile.
+   * @return The differences between the profiles.
+   */
+  public ProfileDiff diff(Input before, Input after) {
+    List<Change> phaseChanges = new ArrayList<>();
+    for (BazelProfilePhase phase : BazelProfilePhase.values()) {
+      Duration phaseBefore =
+          before.phases.get(phase).map(BazelPhaseDescription::getDuration).orElse(null);
+      Duration phaseAfter =
+          after.phases.get(phase).map(BazelPhaseDescription::getDuration).orElse(null);
+      if (phaseBefore != null || phaseAfter != null) {
+        phaseChanges.add(new Change(phase.name, phaseBefore, phaseAfter));
+      }
+    }
+    phaseChanges.sort(ProfileDiff.BY_CONTRIBUTION);
+
+    PriorityQueue<Change> criticalPathChanges = newHeap();
+    join(
+        before.criticalPath,
+        after.criticalPath,
+        event -> event.name,
+        BY_EVENT_START,
+        (eventBefore, eventAfter) ->
+            offer(
+                criticalPathChanges,
+                new Change(
+                    eventBefore == null ? eventAfter.name : eventBefore.name,
+                    eventBefore == null ? null : eventBefore.duration,
+                    eventAfter == null ? null : eventAfter.duration)));
+
+    PriorityQueue<ActionChange> actionChanges = newHeap();
+    PriorityQueue<ActionChange> cacheHitChanges = newHeap();
+    Map<ActionChange.Kind, Integer> actionCounts = new EnumMap<>(ActionChange.Kind.class);
+    Map<ActionChange.Kind, Duration> actionDeltas = new EnumMap<>(ActionChange.Kind.class);
+    join(
+        before.localActions,
+        after.localActions,
+        ActionKey::of,
+        BY_ACTION_START,
+        (actionBefore, actionAfter) -> {
+          ActionChange change = toActionChange(actionBefore, actionAfter);
+          actionCounts.merge(change.getKind(), 1, Integer::sum);
+          actionDeltas.merge(change.getKind(), change.getDelta(), Duration::plus);
+          offer(actionChanges, change);
+          if (change.getKind() == ActionChange.Kind.CACHE_HIT_LOST
+              || change.getKind() == ActionChange.Kind.CACHE_HIT_GAINED) {
+            offer(cacheHitChanges, change);
+          }
+        });
+
+    return new ProfileDiff(
+        before.totalDuration.getTotalDuration().orElse(null),
+        after.totalDuration.getTotalDuration().orElse(null),
+        phaseChanges,
+        drain(criticalPathChanges),
+        drain(actionChanges),
+        drain(cacheHitChanges),
+        actionCounts,
+        actionDeltas);
+  }
+
+  private static ActionChange toActionChange(
+      @Nullable LocalAction before, @Nullable LocalAction after) {
+    ActionKey key = ActionKey.of(before == null ? after : before);
+    ActionChange.Kind kind;
+    if (before == null) {
+      kind = ActionChange.Kind.ADDED;
+    } else if (after == null) {
+      kind = ActionChange.Kind.REMOVED;
+    } else if (before.isRemoteCacheHit() && !after.isRemoteCacheHit()) {
+      kind = ActionChange.Kind.CACHE_HIT_LOST;
+    } else if (!before.isRemoteCacheHit() && after.isRemoteCacheHit()) {
+      kind = ActionChange.Kind.CACHE_HIT_GAINED;
+    } else {
+      kind = ActionChange.Kind.MATCHED;
+    }
+    return new ActionChange(
+        kind,
+        key.name,
+        key.mnemonic,
+        key.target,
+        before == null ? null : before.getAction().duration,
+        after == null ? null : after.getAction().duration);
+  }
+
+  /**
+   * Matches the items of two collections by key with a hash join, and passes each pair of matched
+   * items to the consumer. Items without a match are passed together with null. Items with the
+   * same key are matched in the passed-in order, e.g. the first to start with the first to start.
+   */
+  private static <T, K> void join(
+      Iterable<T> before,
+      Iterable<T> after,
+      Function<T, K> key,
+      Comparator<T> order,
+      BiConsumer<T, T> consumer) {
+    Map<K, List<T>> beforeByKey = groupByKey(before, key);
+    Map<K, List<T>> afterByKey = groupByKey(after, key);
+    for (Map.Entry<K, List<T>> entry : beforeByKey.entrySet()) {
+      List<T> itemsBefore = entry.getValue();
+      List<T> itemsAfter = afterByKey.remove(entry.getKey());
+      if (itemsAfter == null) {
+        itemsAfter = List.of();
+      }
+      if (itemsBefore.size() > 1) {
+        itemsBefore.sort(order);
+      }
+      if (itemsAfter.size() > 1) {
+        itemsAfter.sort(order);
+      }
+      for (int i = 0; i < Math.max(itemsBefore.size(), itemsAfter.size()); i++) {
+        consumer.accept(
+            i < itemsBefore.size() ? itemsBefore.get(i) : null,
+            i < itemsAfter.size() ? itemsAfter.get(i) : null);
+      }
+    }
+    // The remaining items are only included in the second collection.
+    for (List<T> itemsAfter : afterByKey.values()) {
+      for (T itemAfter : itemsAfter) {
+        consumer.accept(null, itemAfter);
+      }
+    }
+  }
+
+  private static <T, K> Map<K, List<T>> groupByKey(Iterable<T> items, Function<T, K> key) {
+    Map<K, List<T>> itemsByKey = new HashMap<>();
+    for (T item : items) {
+      itemsByKey.computeIfAbsent(key.apply(item), k -> new ArrayList<>(1)).add(item);
+    }
+    return itemsByKey;
+  }
+
+  /** Returns a heap whose head is the change that contributes least. */
+  private static <T extends Change> PriorityQueue<T> newHeap() {
+    return new PriorityQueue<>(ProfileDiff.BY_CONTRIBUTION.reversed());
+  }
+
+  /** Adds the change to the heap, dropping the smallest change if the heap exceeds the limit. */
+  private <T extends Change> void offer(PriorityQueue<T> heap, T change) {
+    heap.add(change);
+    if (heap.size() > limit) {
+      heap.poll();
+    }
+  }
+
+  /** Returns the changes of the heap, ranked by decreasing contribution. */
+  private static <T extends Change> List<T> drain(PriorityQueue<T> heap) {
+    List<T> changes = new ArrayList<>(heap);
+    changes.sort(ProfileDiff.BY_CONTRIBUTION);
+    return changes;
+  }
+
+  /** The data of a profile that is diffed. */
+  public static final class Input {
+    private final TotalDuration totalDuration;
+    private final BazelPhaseDescriptions phases;
+    private final LocalActions localActions;
+    private final ImmutableList<CompleteEvent> criticalPath;
+
+    public Input(
+        TotalDuration totalDuration,
+        BazelPhaseDescriptions phases,
+        LocalActions localActions,
+        List<CompleteEvent> criticalPath) {
+      this.totalDuration = Preconditions.checkNotNull(totalDuration);
+      this.phases = Preconditions.checkNotNull(phases);
+      this.localActions = Preconditions.checkNotNull(localActions);
+      this.criticalPath = ImmutableList.copyOf(criticalPath);
+    }
+
+    /** Retrieves the data of the profile registered with the passed-in data manager. */
+    public static Input of(DataManager dataManager)
+        throws InvalidProfileException, MissingInputException, NullDatumException {
+      return new Input(
+          dataManager.getDatum(TotalDuration.class),
+          dataManager.getDatum(BazelPhaseDescriptions.class),
+          dataManager.getDatum(LocalActions.class),
+          dataManager
+              .getDatum(BazelProfile.class)
+              .getCriticalPath()
+              .map(ProfileThread::getCompleteEvents)
+              .orElse(List.of()));
+    }
+  }
+
+  /** Identifies a local action across profiles. */
+  private static final class ActionKey {
+    @Nullable private final String name;
+    @Nullable private final String mnemonic;
+    @Nullable private final String target;
+
+    private ActionKey(@Nullable String name, @Nullable String mnemonic, @Nullable String target) {
+      this.name = name;
+      this.mnemonic = mnemonic;
+      this.target = target;
+    }
+
+    static ActionKey of(LocalAction action) {
+      CompleteEvent event = action.getAction();
+      return new ActionKey(
+          event.name,
+          event.args.get(BazelProfileConstants.ARGS_CAT_ACTION_PROCESSING_MNEMONIC),
+          event.args.get(BazelProfileConstants.ARGS_CAT_ACTION_PROCESSING_TARGET));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ActionKey that = (ActionKey) o;
+      return Objects.equal(name, that.name)
+          && Objects.equal(mnemonic, that.mnemonic)
+          && Objects.equal(target, that.target);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(name, mnemonic, target);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.fleet;
+
+import com.engflow.bazel.invocation.analyzer.core.Datum;
+import com.engflow.bazel.invocation.analyzer.dataproviders.CachingAndExecutionMetrics;
+import com.engflow.bazel.invocation.analyzer.dataproviders.CriticalPathDuration;
+import com.engflow.bazel.invocation.analyzer.dataproviders.EstimatedCoresUsed;
+import com.engflow.bazel.invocation.analyzer.dataproviders.GarbageCollectionStats;
+import com.engflow.bazel.invocation.analyzer.dataproviders.TotalDuration;
+import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.TotalQueuingDuration;
+import com.engflow.bazel.invocation.analyzer.time.DurationUtil;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/** A value of a {@link Datum} that is aggregated across the profiles of a fleet of invocations. */
+public enum FleetMetric {
+  TOTAL_DURATION("Total duration", TotalDuration.class, Unit.MILLISECONDS) {
+    @Override
+    Double getValue(Datum datum) {
+      return toMillis(((TotalDuration) datum).getTotalDuration());
+    }
+  },
+  CRITICAL_PATH_DURATION("Critical path duration", CriticalPathDuration.class, Unit.MILLISECONDS) {
+    @Override
+    Double getValue(Datum datum) {
+      return toMillis(((CriticalPathDuration) datum).getCriticalPathDuration());
+    }
+  },
+  ACTIONS("Actions", CachingAndExecutionMetrics.class, Unit.COUNT) {
+    @Override
+    Double getValue(Datum datum) {
+      return (double) ((CachingAndExecutionMetrics) datum).getActions();
+    }
+  },
+  REMOTE_CACHE_HIT_RATE(
+      "Remote cache hit rate", CachingAndExecutionMetrics.class, Unit.PERCENTAGE) {
+    @Override
+    Double getValue(Datum datum) {
+      CachingAndExecutionMetrics metrics = (CachingAndExecutionMetrics) datum;
+      long checks = metrics.getActionsWithRcHit() + metrics.getActionsWithRcMiss();
+      // Invocations that did not check the remote cache would skew the distribution.
+      return checks == 0 ? null : 100.0 * metrics.getActionsWithRcHit() / checks;
+    }
+  },
+  TOTAL_QUEUING_DURATION(
+      "Total queuing duration", TotalQueuingDuration.class, Unit.MILLISECONDS) {
+    @Override
+    Double getValue(Datum datum) {
+      return (double) ((TotalQueuingDuration) datum).getTotalQueuingDuration().toMillis();
+    }
+  },
+  MAJOR_GARBAGE_COLLECTION_DURATION(
+      "Major garbage collection duration", GarbageCollectionStats.class, Unit.MILLISECONDS) {
+    @Override
+    Double getValue(Datum datum) {
+      // Invocations without major garbage collection count as having spent no time on it.
+      return (double)
+          ((GarbageCollectionStats) datum)
+              .getMajorGarbageCollectionDuration()
+              .orElse(Duration.ZERO)
+              .toMillis();
+    }
+  },
+  ESTIMATED_CORES_USED("Estimated cores used", EstimatedCoresUsed.class, Unit.COUNT) {
+    @Override
+    Double getValue(Datum datum) {
+      return ((EstimatedCoresUsed) datum).getEstimatedCores().map(Double::valueOf).orElse(null);
+    }
+  };
+
+  /** How the values of a metric are displayed. */
+  private enum Unit {
+    COUNT,
+    MILLISECONDS,
+    PERCENTAGE
+  }
+
+  private final String displayName;
+  private final Class<? extends Datum> datumClass;
+  private final Unit unit;
+
+  FleetMetric(String displayName, Class<? extends Datum> datumClass, Unit unit) {
+    this.displayName = displayName;
+    this.datumClass = datumClass;
+    this.unit = unit;
+  }
+
+  public String getDisplayName() {
+    return displayName;
+  }
+
+  /** Returns the class of the datum the metric is extracted from. */
+  public Class<? extends Datum> getDatumClass() {
+    return datumClass;
+  }
+
+  /**
+   * Returns the value of the metric, given a non-empty datum of the class returned by {@link
+   * #getDatumClass()}, or null if the datum does not provide a meaningful value.
+   */
+  @Nullable
+  abstract Double getValue(Datum datum);
+
+  /** Formats a value of this metric for display. */
+  public String format(double value) {
+    switch (unit) {
+      case MILLISECONDS:
+        return DurationUtil.formatDuration(Duration.ofMillis(Math.round(value)));
+      case PERCENTAGE:
+        return String.format("%.1f%%", value);
+      default:
+        return String.format("%.1f", value);
+    }
+  }
+
+  /** Returns the classes of all data that metrics are extracted from. */
+  public static Set<Class<? extends Datum>> getConsumedData() {
+    return Arrays.stream(values()).map(FleetMetric::getDatumClass).collect(Collectors.toSet());
+  }
+
+  @Nullable
+  private static Double toMillis(Optional<Duration> duration) {
+    return duration.map(d -> (double) d.toMillis()).orElse(null);
+  }
+}
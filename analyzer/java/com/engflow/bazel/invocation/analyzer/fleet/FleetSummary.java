@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.fleet;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The distribution of the {@link FleetMetric}s across many profiles. A fleet summary takes up the
+ * same amount of memory regardless of how many profiles it summarizes, and several fleet summaries
+ * of disjoint sets of profiles can be merged, e.g. after building them on different threads.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class FleetSummary {
+  private final Map<FleetMetric, Histogram> histograms = new EnumMap<>(FleetMetric.class);
+  private long profiles;
+  private long failures;
+
+  /** Adds the summary of a successfully analyzed profile. */
+  public void add(ProfileSummary summary) {
+    profiles++;
+    for (Map.Entry<FleetMetric, Double> value : summary.getValues().entrySet()) {
+      histograms.computeIfAbsent(value.getKey(), key -> new Histogram()).add(value.getValue());
+    }
+  }
+
+  /** Records a profile that could not be analyzed. */
+  public void addFailure() {
+    profiles++;
+    failures++;
+  }
+
+  /**
+   * Adds all profiles of another fleet summary to this fleet summary.
+   *
+   * @param other The fleet summary to merge into this one; it is not modified.
+   */
+  public void merge(FleetSummary other) {
+    profiles += other.profiles;
+    failures += other.failures;
+    for (Map.Entry<FleetMetric, Histogram> histogram : other.histograms.entrySet()) {
+      histograms.computeIfAbsent(histogram.getKey(), key -> new Histogram())
+          .merge(histogram.getValue());
+    }
+  }
+
+  /** Returns the number of profiles summarized, including those that could not be analyzed. */
+  public long getProfiles() {
+    return profiles;
+  }
+
+  /** Returns the number of profiles that could not be analyzed. */
+  public long getFailures() {
+    return failures;
+  }
+
+  /**
+   * Returns the distribution of each metric, across the profiles for which the metric is available.
+   * Metrics that are not available for any profile are not included.
+   */
+  public Map<FleetMetric, Histogram> getHistograms() {
+    return Collections.unmodifiableMap(histograms);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.fleet;
+
+import com.google.common.base.Preconditions;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A histogram of non-negative values whose percentiles are accurate up to a relative error of
+ * {@link #RELATIVE_ACCURACY}. Values are counted in buckets whose bounds grow exponentially, so
+ * the memory a histogram takes up depends on the range of its values, but not on their number.
+ * Histograms can be merged, which allows building them in parallel.
+ *
+ * <p>This class is not thread-safe.
+ */
+public final class Histogram {
+  /** The maximum relative error of the percentiles returned by {@link #getPercentile(double)}. */
+  public static final double RELATIVE_ACCURACY = 0.01;
+
+  private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+
+  /** Values up to this value are counted as zero. */
+  private static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+  /** Maps the index i of the bucket (GAMMA^(i-1), GAMMA^i] to the number of values in it. */
+  private final TreeMap<Integer, Long> buckets = new TreeMap<>();
+
+  private long zeroCount;
+  private long count;
+  private double sum;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  /**
+   * Adds a value to the histogram.
+   *
+   * @param value The value, which has to be finite and non-negative.
+   */
+  public void add(double value) {
+    Preconditions.checkArgument(
+        Double.isFinite(value) && value >= 0, "value must be finite and non-negative: %s", value);
+    if (value <= MIN_INDEXABLE_VALUE) {
+      zeroCount++;
+    } else {
+      buckets.merge((int) Math.ceil(Math.log(value) / LOG_GAMMA), 1L, Long::sum);
+    }
+    count++;
+    sum += value;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * Adds all values of another histogram to this histogram.
+   *
+   * @param other The histogram to merge into this one; it is not modified.
+   */
+  public void merge(Histogram other) {
+    for (Map.Entry<Integer, Long> bucket : other.buckets.entrySet()) {
+      buckets.merge(bucket.getKey(), bucket.getValue(), Long::sum);
+    }
+    zeroCount += other.zeroCount;
+    count += other.count;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getSum() {
+    return sum;
+  }
+
+  public double getMin() {
+    Preconditions.checkState(count > 0, "The histogram is empty.");
+    return min;
+  }
+
+  public double getMax() {
+    Preconditions.checkState(count > 0, "The histogram is empty.");
+    return max;
+  }
+
+  public double getMean() {
+    Preconditions.checkState(count > 0, "The histogram is empty.");
+    return sum / count;
+  }
+
+  /**
+   * Returns an estimate of the passed-in percentile of the values added, e.g. the median for 50.
+   *
+   * @param percentile The percentile, between 0 and 100.
+   * @return The estimated value, which is off by at most {@link #RELATIVE_ACCURACY} relative to the
+   *     exact percentile.
+   */
+  public double getPercentile(double percentile) {
+    Preconditions.checkArgument(
+        percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+    Preconditions.checkState(count > 0, "The histogram is empty.");
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+    if (rank == count) {
+      return max;
+    }
+    long seen = zeroCount;
+    if (rank <= seen) {
+      return min;
+    }
+    for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+      seen += bucket.getValue();
+      if (rank <= seen) {
+        // The value with the lowest maximum relative error to all values of the bucket.
+        double estimate = 2 * Math.pow(GAMMA, bucket.getKey()) / (GAMMA + 1);
+        return Math.max(min, Math.min(max, estimate));
+      }
+    }
+    return max;
+  }
+}
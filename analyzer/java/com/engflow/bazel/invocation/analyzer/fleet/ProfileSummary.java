@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.fleet;
+
+import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
+import com.engflow.bazel.invocation.analyzer.core.InvalidProfileException;
+import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
+import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The values of the {@link FleetMetric}s of a single profile. A summary only takes up a few bytes,
+ * so that the profile and its data can be discarded once it has been created.
+ */
+public final class ProfileSummary {
+  private final Map<FleetMetric, Double> values;
+
+  private ProfileSummary(Map<FleetMetric, Double> values) {
+    this.values = Collections.unmodifiableMap(values);
+  }
+
+  /**
+   * Creates a summary from the data of a profile. Metrics whose datum is unavailable or empty for
+   * the profile are not included.
+   *
+   * @param dataManager The data manager the profile and its data providers are registered with.
+   * @return The summary of the profile.
+   */
+  public static ProfileSummary of(DataManager dataManager) {
+    Map<FleetMetric, Double> values = new EnumMap<>(FleetMetric.class);
+    for (FleetMetric metric : FleetMetric.values()) {
+      Datum datum;
+      try {
+        datum = dataManager.getDatum(metric.getDatumClass());
+      } catch (InvalidProfileException | MissingInputException | NullDatumException e) {
+        continue;
+      }
+      if (!datum.isEmpty()) {
+        Double value = metric.getValue(datum);
+        if (value != null) {
+          values.put(metric, value);
+        }
+      }
+    }
+    return new ProfileSummary(values);
+  }
+
+  /** Creates a summary with the passed-in values. */
+  public static ProfileSummary of(Map<FleetMetric, Double> values) {
+    return new ProfileSummary(
+        values.isEmpty() ? new EnumMap<>(FleetMetric.class) : new EnumMap<>(values));
+  }
+
+  /** Returns the values of the metrics that are available for the profile. */
+  public Map<FleetMetric, Double> getValues() {
+    return values;
+  }
+}
@@ -23,6 +23,7 @@ import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelEventsUtil;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.dataproviders.ActionStats;
 import com.engflow.bazel.invocation.analyzer.dataproviders.Bottleneck;
@@ -37,6 +38,7 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class BottleneckSuggestionProvider extends SuggestionProviderBase {
@@ -84,6 +86,15 @@ public class BottleneckSuggestionProvider extends SuggestionProviderBase {
     this.maxActionCountRatio = maxActionCountRatio;
   }
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(
+        ActionStats.class,
+        EstimatedCoresUsed.class,
+        TotalDuration.class,
+        FlagValueExperimentalProfileIncludeTargetLabel.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
@@ -19,11 +19,13 @@ import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.RemoteExecutionUsed;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@link SuggestionProvider} that suggests enabling "Build without the Bytes" where applicable.
@@ -33,6 +35,11 @@ public class BuildWithoutTheBytesSuggestionProvider extends SuggestionProviderBa
       BuildWithoutTheBytesSuggestionProvider.class.getName();
   private static final String SUGGESTION_ID_BUILD_WITHOUT_THE_BYTES = "BuildWithoutTheBytes";
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(RemoteExecutionUsed.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
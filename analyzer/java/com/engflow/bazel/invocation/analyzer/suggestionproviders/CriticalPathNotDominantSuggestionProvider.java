@@ -21,6 +21,7 @@ import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfilePhase;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.InvalidProfileException;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
@@ -40,6 +41,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * A {@link SuggestionProvider} that provides suggestions on how to speed up the invocation if the
@@ -59,6 +61,17 @@ public class CriticalPathNotDominantSuggestionProvider extends SuggestionProvide
   private static final double MAX_CRITICAL_PATH_PERCENTAGE = 75;
   private static final Duration MIN_DURATION_FOR_EVALUATION = Duration.ofSeconds(5);
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(
+        CriticalPathDuration.class,
+        TotalDuration.class,
+        EstimatedCoresUsed.class,
+        RemoteExecutionUsed.class,
+        EstimatedJobsFlagValue.class,
+        BazelPhaseDescriptions.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
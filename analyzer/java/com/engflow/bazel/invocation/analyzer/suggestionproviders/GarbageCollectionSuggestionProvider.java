@@ -19,6 +19,7 @@ import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.GarbageCollectionStats;
@@ -29,6 +30,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 /** A {@link SuggestionProvider} that provides suggestions regarding garbage collection. */
 public class GarbageCollectionSuggestionProvider extends SuggestionProviderBase {
@@ -45,6 +47,11 @@ public class GarbageCollectionSuggestionProvider extends SuggestionProviderBase
   // whole invocation.
   @VisibleForTesting static final double MAJOR_GC_MIN_PERCENTAGE = 5.0;
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(GarbageCollectionStats.class, TotalDuration.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
@@ -18,6 +18,7 @@ import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.CriticalPathDuration;
@@ -26,6 +27,7 @@ import com.engflow.bazel.invocation.analyzer.dataproviders.EstimatedCoresUsed;
 import com.engflow.bazel.invocation.analyzer.dataproviders.TotalDuration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * A {@link SuggestionProvider} that provides suggestions on how to reduce remote execution queuing.
@@ -36,6 +38,15 @@ public class IncompleteProfileSuggestionProvider extends SuggestionProviderBase
 
   private static final String SUGGESTION_ID_ANALYZE_DIFFERENT_PROFILE = "AnalyzeDifferentProfile";
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(
+        CriticalPathDuration.class,
+        TotalDuration.class,
+        EstimatedCoresAvailable.class,
+        EstimatedCoresUsed.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
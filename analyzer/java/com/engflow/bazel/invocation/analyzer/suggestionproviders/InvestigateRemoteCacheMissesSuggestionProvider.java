@@ -19,6 +19,7 @@ import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelEventsUtil;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.FlagValueExperimentalProfileIncludeTargetLabel;
@@ -27,6 +28,7 @@ import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.Remot
 import com.google.common.annotations.VisibleForTesting;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /** A {@link SuggestionProvider} that suggests investigating cache misses. */
@@ -53,6 +55,14 @@ public class InvestigateRemoteCacheMissesSuggestionProvider extends SuggestionPr
     this.maxActions = maxActions;
   }
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(
+        RemoteCachingUsed.class,
+        LocalActions.class,
+        FlagValueExperimentalProfileIncludeTargetLabel.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
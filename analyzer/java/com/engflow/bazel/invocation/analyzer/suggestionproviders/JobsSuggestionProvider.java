@@ -19,6 +19,7 @@ import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.EstimatedCoresAvailable;
@@ -29,6 +30,7 @@ import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.Remot
 import com.google.common.annotations.VisibleForTesting;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /** A {@link SuggestionProvider} that provides suggestions on setting the Bazel flag `--jobs`. */
 public class JobsSuggestionProvider extends SuggestionProviderBase {
@@ -50,6 +52,16 @@ public class JobsSuggestionProvider extends SuggestionProviderBase {
       "Limiting the number of allowed concurrent jobs hinders parallelization and can slow down"
           + " invocations.";
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(
+        EstimatedJobsFlagValue.class,
+        RemoteExecutionUsed.class,
+        RemoteCachingUsed.class,
+        EstimatedCoresAvailable.class,
+        EstimatedCoresUsed.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
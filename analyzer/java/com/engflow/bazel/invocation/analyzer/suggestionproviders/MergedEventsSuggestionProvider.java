@@ -19,17 +19,24 @@ import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.MergedEventsPresent;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /** A {@link SuggestionProvider} that suggest creating Bazel profiles without merged events. */
 public class MergedEventsSuggestionProvider extends SuggestionProviderBase {
   private static final String ANALYZER_CLASSNAME = MergedEventsSuggestionProvider.class.getName();
   private static final String SUGGESTION_ID_DISABLE_MERGED_EVENTS = "DisableMergedEvents";
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(MergedEventsPresent.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
@@ -20,6 +20,7 @@ import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfilePhase;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.BazelPhaseDescription;
@@ -31,6 +32,7 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * A {@link SuggestionProvider} that highlights Bazel phases if they take longer than expected
@@ -64,6 +66,11 @@ public class NegligiblePhaseSuggestionProvider extends SuggestionProviderBase {
   // Non-negligible phases should be less than this percentage of total duration (1.0 = 1%)
   private static final double PCT_THRESHOLD = 2.0;
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(TotalDuration.class, BazelPhaseDescriptions.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
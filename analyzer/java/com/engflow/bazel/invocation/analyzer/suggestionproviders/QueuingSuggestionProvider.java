@@ -19,6 +19,7 @@ import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.CriticalPathDuration;
@@ -33,6 +34,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * A {@link SuggestionProvider} that provides suggestions on how to reduce remote execution queuing.
@@ -47,6 +49,16 @@ public class QueuingSuggestionProvider extends SuggestionProviderBase {
   private static final String SUGGESTION_ID_INCREASE_RE_CLUSTER_SIZE =
       "IncreaseRemoteExecutionClusterSize";
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(
+        QueuingObserved.class,
+        TotalQueuingDuration.class,
+        CriticalPathQueuingDuration.class,
+        CriticalPathDuration.class,
+        TotalDuration.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
@@ -19,13 +19,31 @@ import com.engflow.bazel.invocation.analyzer.PotentialImprovement;
 import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
+import com.engflow.bazel.invocation.analyzer.core.DataManager;
 import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
+import com.engflow.bazel.invocation.analyzer.core.Tracer;
+import com.engflow.bazel.invocation.analyzer.time.DurationUtil;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -33,6 +51,7 @@ import javax.annotation.Nullable;
 
 public class SuggestionProviderUtil {
   private static final Logger logger = Logger.getLogger(SuggestionProviderUtil.class.getName());
+  private static final String SUGGESTION_PROVIDER_SUFFIX = "SuggestionProvider";
 
   /**
    * Convenience method for retrieving all available {@link SuggestionProvider}s. When adding a new
@@ -69,6 +88,200 @@ public class SuggestionProviderUtil {
         new MergedEventsSuggestionProvider());
   }
 
+  /**
+   * Returns the name by which a {@link SuggestionProvider} can be selected, i.e. its simple class
+   * name without the suffix "SuggestionProvider", e.g. "Jobs" for the {@link
+   * JobsSuggestionProvider}.
+   *
+   * @param suggestionProvider The provider to get the name of.
+   * @return The name of the provider.
+   */
+  public static String getSuggestionProviderName(SuggestionProvider suggestionProvider) {
+    String name = suggestionProvider.getClass().getSimpleName();
+    if (name.endsWith(SUGGESTION_PROVIDER_SUFFIX)
+        && name.length() > SUGGESTION_PROVIDER_SUFFIX.length()) {
+      return name.substring(0, name.length() - SUGGESTION_PROVIDER_SUFFIX.length());
+    }
+    return name;
+  }
+
+  /**
+   * Returns the {@link SuggestionProvider}s whose names are included in the passed-in names,
+   * retaining their order. Names are matched ignoring case.
+   *
+   * @param suggestionProviders The providers to select from.
+   * @param names The names of the providers to select, see {@link
+   *     #getSuggestionProviderName(SuggestionProvider)}.
+   * @return The selected providers.
+   * @throws IllegalArgumentException If a name does not match any of the providers.
+   */
+  public static List<SuggestionProvider> selectSuggestionProviders(
+      List<SuggestionProvider> suggestionProviders, Collection<String> names) {
+    Set<String> requestedNames = new HashSet<>();
+    for (String name : names) {
+      requestedNames.add(name.toLowerCase(Locale.US));
+    }
+    Set<String> matchedNames = new HashSet<>();
+    List<SuggestionProvider> selected = new ArrayList<>();
+    for (SuggestionProvider suggestionProvider : suggestionProviders) {
+      String name = getSuggestionProviderName(suggestionProvider).toLowerCase(Locale.US);
+      if (requestedNames.contains(name)) {
+        selected.add(suggestionProvider);
+        matchedNames.add(name);
+      }
+    }
+    List<String> unmatchedNames =
+        names.stream()
+            .filter(name -> !matchedNames.contains(name.toLowerCase(Locale.US)))
+            .collect(Collectors.toList());
+    if (!unmatchedNames.isEmpty()) {
+      throw new IllegalArgumentException(
+          String.format(
+              "Unknown suggestion providers: %s. Available are: %s.",
+              String.join(", ", unmatchedNames),
+              suggestionProviders.stream()
+                  .map(SuggestionProviderUtil::getSuggestionProviderName)
+                  .collect(Collectors.joining(", "))));
+    }
+    return selected;
+  }
+
+  /**
+   * Returns the types of {@link Datum} consumed by the passed-in {@link SuggestionProvider}s.
+   * Passing these to {@link DataManager#prefetch(Collection)} only calculates the data that the
+   * providers may use.
+   *
+   * @param suggestionProviders The providers whose consumed data to return.
+   * @return The union of the data consumed by the providers, or null if any of the providers does
+   *     not declare which data it consumes.
+   */
+  @Nullable
+  public static Set<Class<? extends Datum>> getConsumedData(
+      List<SuggestionProvider> suggestionProviders) {
+    Set<Class<? extends Datum>> consumedData = new HashSet<>();
+    for (SuggestionProvider suggestionProvider : suggestionProviders) {
+      Set<Class<? extends Datum>> providerData = suggestionProvider.getConsumedData();
+      if (providerData == null) {
+        return null;
+      }
+      consumedData.addAll(providerData);
+    }
+    return consumedData;
+  }
+
+  /**
+   * Runs the passed-in {@link SuggestionProvider}s on up to {@code parallelism} threads and returns
+   * their outputs in the order of the providers.
+   *
+   * <p>If a time budget is passed in, each provider has to finish within it, counted from when the
+   * provider starts running. Otherwise, its output is a {@link SuggestionOutput.Failure} with the
+   * stack trace of the provider when it ran out of time, and the provider is interrupted. Its
+   * thread no longer counts towards the parallelism, so that the remaining providers still run.
+   *
+   * @param suggestionProviders The providers to run.
+   * @param dataManager The DataManager that the providers retrieve their data from.
+   * @param parallelism The maximum number of providers that run concurrently. With a value of 1 and
+   *     no time budget, all providers are run sequentially on the calling thread.
+   * @param timeBudget The time each provider may run for, or null to let providers run until they
+   *     finish.
+   * @return The outputs of the providers, in the order of the providers.
+   */
+  public static List<SuggestionOutput> getSuggestions(
+      List<SuggestionProvider> suggestionProviders,
+      DataManager dataManager,
+      int parallelism,
+      @Nullable Duration timeBudget) {
+    Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+    Preconditions.checkArgument(
+        timeBudget == null || timeBudget.compareTo(Duration.ZERO) > 0,
+        "timeBudget must be positive");
+    if (parallelism == 1 && timeBudget == null) {
+      return suggestionProviders.stream()
+          .map(suggestionProvider -> traceSuggestions(suggestionProvider, dataManager))
+          .collect(Collectors.toList());
+    }
+    // Use daemon threads, so that providers that do not react to being interrupted cannot keep the
+    // JVM from exiting.
+    ThreadFactory threadFactory =
+        runnable -> {
+          Thread thread = new Thread(runnable, "suggestion-provider");
+          thread.setDaemon(true);
+          return thread;
+        };
+    ExecutorService executor = Executors.newCachedThreadPool(threadFactory);
+    ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    try {
+      Semaphore slots = new Semaphore(parallelism);
+      List<CompletableFuture<SuggestionOutput>> outputs = new ArrayList<>();
+      for (SuggestionProvider suggestionProvider : suggestionProviders) {
+        slots.acquireUninterruptibly();
+        CompletableFuture<SuggestionOutput> output = new CompletableFuture<>();
+        // Free the slot once the output is known, even if the provider is still running.
+        output.whenComplete((result, t) -> slots.release());
+        executor.execute(
+            () ->
+                runSuggestionProvider(
+                    suggestionProvider, dataManager, timeBudget, watchdog, output));
+        outputs.add(output);
+      }
+      return outputs.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    } finally {
+      watchdog.shutdownNow();
+      executor.shutdownNow();
+    }
+  }
+
+  private static void runSuggestionProvider(
+      SuggestionProvider suggestionProvider,
+      DataManager dataManager,
+      @Nullable Duration timeBudget,
+      ScheduledExecutorService watchdog,
+      CompletableFuture<SuggestionOutput> output) {
+    String analyzerClassname = suggestionProvider.getClass().getName();
+    ScheduledFuture<?> timeout = null;
+    if (timeBudget != null) {
+      Thread worker = Thread.currentThread();
+      timeout =
+          watchdog.schedule(
+              () -> {
+                TimeoutException exception =
+                    new TimeoutException(
+                        String.format(
+                            "The suggestion provider did not finish within its time budget of %s.",
+                            DurationUtil.formatDuration(timeBudget)));
+                exception.setStackTrace(worker.getStackTrace());
+                if (output.complete(
+                    createSuggestionOutputForFailure(analyzerClassname, exception))) {
+                  worker.interrupt();
+                }
+              },
+              timeBudget.toNanos(),
+              TimeUnit.NANOSECONDS);
+    }
+    try {
+      output.complete(traceSuggestions(suggestionProvider, dataManager));
+    } catch (Throwable t) {
+      output.complete(createSuggestionOutputForFailure(analyzerClassname, t));
+    } finally {
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+    }
+  }
+
+  private static SuggestionOutput traceSuggestions(
+      SuggestionProvider suggestionProvider, DataManager dataManager) {
+    try (Tracer.Span span =
+        dataManager
+            .getTracer()
+            .startSpan(
+                Tracer.CATEGORY_SUGGESTION,
+                suggestionProvider.getClass().getSimpleName(),
+                Map.of("provider", suggestionProvider.getClass().getName()))) {
+      return suggestionProvider.getSuggestions(dataManager);
+    }
+  }
+
   /**
    * Returns a string describing the potential invocation duration improvement, or null for values
    * outside the interval (0, 100].
@@ -18,11 +18,13 @@ import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.RemoteCachingUsed;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /** A {@link SuggestionProvider} that suggests using remote caching, if not already used. */
 public class UseRemoteCachingSuggestionProvider extends SuggestionProviderBase {
@@ -30,6 +32,11 @@ public class UseRemoteCachingSuggestionProvider extends SuggestionProviderBase {
       UseRemoteCachingSuggestionProvider.class.getName();
   private static final String SUGGESTION_ID_USE_REMOTE_CACHING = "UseRemoteCaching";
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(RemoteCachingUsed.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
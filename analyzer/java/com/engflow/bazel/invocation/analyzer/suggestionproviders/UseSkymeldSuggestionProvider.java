@@ -19,12 +19,14 @@ import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
 import com.engflow.bazel.invocation.analyzer.dataproviders.BazelVersion;
 import com.engflow.bazel.invocation.analyzer.dataproviders.SkymeldUsed;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /** A {@link SuggestionProvider} that suggests using Skymeld where applicable. */
 public class UseSkymeldSuggestionProvider extends SuggestionProviderBase {
@@ -33,6 +35,11 @@ public class UseSkymeldSuggestionProvider extends SuggestionProviderBase {
   private static final int BAZEL_MAJOR_VERSION_WITH_SKYMELD_SUPPORT = 6;
   private static final String SUGGESTION_ID_USE_SKYMELD = "UseSkymeld";
 
+  @Override
+  public Set<Class<? extends Datum>> getConsumedData() {
+    return Set.of(SkymeldUsed.class, BazelVersion.class);
+  }
+
   @Override
   public SuggestionOutput getSuggestions(DataManager dataManager) {
     try {
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import com.google.common.base.Preconditions;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * The immutable arguments of a trace event, stored as an array of keys and a flat array of values.
+ *
+ * <p>Events usually have the same few keys, so the array of keys is meant to be shared by all
+ * arguments with the same keys in the same order, see {@link CompleteEventStore}. Looking up a
+ * value does not allocate and is fastest when the key is the same instance as the one in the
+ * arguments.
+ */
+public final class CompactArgs extends AbstractMap<String, String> {
+  private static final String[] NO_STRINGS = new String[0];
+  private static final CompactArgs EMPTY = new CompactArgs(NO_STRINGS, NO_STRINGS);
+
+  private final String[] keys;
+  private final String[] values;
+  private int hashCode;
+
+  /** Returns empty arguments. */
+  public static CompactArgs of() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns arguments with the same entries as the passed-in map, in the same order.
+   *
+   * @throws NullPointerException if a key or value is {@code null}
+   */
+  public static CompactArgs copyOf(Map<String, String> args) {
+    if (args instanceof CompactArgs) {
+      return (CompactArgs) args;
+    }
+    if (args.isEmpty()) {
+      return EMPTY;
+    }
+    String[] keys = new String[args.size()];
+    String[] values = new String[args.size()];
+    int i = 0;
+    for (Map.Entry<String, String> entry : args.entrySet()) {
+      keys[i] = Preconditions.checkNotNull(entry.getKey());
+      values[i++] = Preconditions.checkNotNull(entry.getValue());
+    }
+    return new CompactArgs(keys, values);
+  }
+
+  /**
+   * Creates arguments from arrays that are not modified afterwards. The keys have to be distinct.
+   */
+  CompactArgs(String[] keys, String[] values) {
+    Preconditions.checkArgument(keys.length == values.length);
+    this.keys = keys;
+    this.values = values;
+  }
+
+  /** Returns the keys, which may be shared with other arguments. Do not modify the array. */
+  String[] getKeys() {
+    return keys;
+  }
+
+  /** Returns the values. Do not modify the array. */
+  String[] getValues() {
+    return values;
+  }
+
+  @Override
+  public int size() {
+    return keys.length;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return keys.length == 0;
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  @Nullable
+  public String get(@Nullable Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : values[index];
+  }
+
+  private int indexOf(@Nullable Object key) {
+    // Keys usually are constants or taken from a symbol table, so try matching the instance first.
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] == key) {
+        return i;
+      }
+    }
+    if (key != null) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i].equals(key)) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        return new Iterator<>() {
+          private int index = 0;
+
+          @Override
+          public boolean hasNext() {
+            return index < keys.length;
+          }
+
+          @Override
+          public Entry<String, String> next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            int current = index++;
+            return new SimpleImmutableEntry<>(keys[current], values[current]);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return keys.length;
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o instanceof CompactArgs) {
+      CompactArgs that = (CompactArgs) o;
+      if (keys == that.keys) {
+        return Arrays.equals(values, that.values);
+      }
+      if (hashCode() != that.hashCode()) {
+        return false;
+      }
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    int h = hashCode;
+    if (h == 0) {
+      // Same as AbstractMap#hashCode, without creating the entries.
+      for (int i = 0; i < keys.length; i++) {
+        h += keys[i].hashCode() ^ values[i].hashCode();
+      }
+      hashCode = h;
+    }
+    return h;
+  }
+}
@@ -55,6 +55,11 @@ public class CompleteEvent {
   public final int processId;
   public final Map<String, String> args;
 
+  // The symbol table the event was read with and the ids of its name and category in it, if any.
+  @Nullable private final SymbolTable symbols;
+  private final int nameId;
+  private final int categoryId;
+
   public static CompleteEvent fromJson(JsonObject object) {
     Preconditions.checkNotNull(object);
     List<String> missingMembers = Lists.newArrayList();
@@ -90,6 +95,79 @@ public class CompleteEvent {
             : ImmutableMap.of());
   }
 
+  /**
+   * Creates a {@link CompleteEvent} from a trace event decoded from the JSON stream. The result is
+   * the same as calling {@link #fromJson(JsonObject)} on the equivalent {@link JsonObject}.
+   */
+  public static CompleteEvent fromTraceEvent(DecodedTraceEvent event) {
+    checkRequiredMembers(event);
+    return new CompleteEvent(
+        event.has(TraceEventFormatConstants.EVENT_NAME) ? event.getName() : null,
+        event.has(TraceEventFormatConstants.EVENT_CATEGORY) ? event.getCategory() : null,
+        Timestamp.ofMicros(event.getTimestamp()),
+        TimeUtil.getDurationForMicros(event.getDuration()),
+        event.getThreadId(),
+        event.getProcessId(),
+        event.has(TraceEventFormatConstants.EVENT_ARGUMENTS)
+            ? event.getArgumentsAsStrings()
+            : ImmutableMap.of());
+  }
+
+  /**
+   * Creates a {@link CompleteEvent} from a trace event decoded from the JSON stream, like {@link
+   * #fromTraceEvent(DecodedTraceEvent)}. The strings of the event are taken from the passed-in
+   * symbol table, adding them as needed, and the event keeps their ids.
+   *
+   * <p>If the arguments of the trace event were skipped, they are decoded when first accessed.
+   */
+  public static CompleteEvent fromTraceEvent(DecodedTraceEvent event, SymbolTable symbols) {
+    checkRequiredMembers(event);
+    Preconditions.checkNotNull(symbols);
+    Map<String, String> args = CompactArgs.of();
+    if (event.getRawArguments() != null) {
+      args = new LazyArgs(event.getRawArguments(), symbols);
+    } else if (event.has(TraceEventFormatConstants.EVENT_ARGUMENTS)) {
+      Map<String, String> eventArgs = event.getArgumentsAsStrings();
+      if (!eventArgs.isEmpty()) {
+        String[] keys = new String[eventArgs.size()];
+        String[] values = new String[eventArgs.size()];
+        int i = 0;
+        for (Map.Entry<String, String> entry : eventArgs.entrySet()) {
+          keys[i] = symbols.canonicalize(entry.getKey());
+          values[i++] = symbols.canonicalize(entry.getValue());
+        }
+        args = new CompactArgs(keys, values);
+      }
+    }
+    return new CompleteEvent(
+        symbols,
+        event.has(TraceEventFormatConstants.EVENT_NAME)
+            ? symbols.intern(event.getName())
+            : SymbolTable.NO_SYMBOL,
+        event.has(TraceEventFormatConstants.EVENT_CATEGORY)
+            ? symbols.intern(event.getCategory())
+            : SymbolTable.NO_SYMBOL,
+        event.getTimestamp(),
+        TimeUtil.getDurationForMicros(event.getDuration()),
+        event.getThreadId(),
+        event.getProcessId(),
+        args);
+  }
+
+  private static void checkRequiredMembers(DecodedTraceEvent event) {
+    Preconditions.checkNotNull(event);
+    List<String> missingMembers = Lists.newArrayList();
+    for (String requiredMember : REQUIRED_JSON_MEMBERS) {
+      if (!event.has(requiredMember)) {
+        missingMembers.add(requiredMember);
+      }
+    }
+    if (!missingMembers.isEmpty()) {
+      throw new IllegalArgumentException(
+          "Missing members: " + Arrays.toString(missingMembers.toArray()));
+    }
+  }
+
   /**
    * Parses a {@link CompleteEvent} from a JsonObject.
    *
@@ -127,17 +205,70 @@ public class CompleteEvent {
       int threadId,
       int processId,
       Map<String, String> args) {
-    this.name = name == null ? null : name.intern();
-    this.category = category == null ? null : category.intern();
+    this.name = name;
+    this.category = category;
     this.start = start;
     this.duration = duration;
     this.end = start.plus(duration);
     this.threadId = threadId;
     this.processId = processId;
-    this.args =
-        args.entrySet().stream()
-            .collect(
-                Collectors.toUnmodifiableMap(e -> e.getKey().intern(), e -> e.getValue().intern()));
+    // Lazy arguments are immutable as well, so keep them without decoding them.
+    this.args = args instanceof LazyArgs ? args : CompactArgs.copyOf(args);
+    this.symbols = null;
+    this.nameId = SymbolTable.NO_SYMBOL;
+    this.categoryId = SymbolTable.NO_SYMBOL;
+  }
+
+  /**
+   * Creates an event whose name and category are taken from the passed-in symbol table, e.g. for
+   * those kept by {@link CompleteEventStore}. The arguments have to be {@link CompactArgs} or
+   * {@link LazyArgs}.
+   */
+  CompleteEvent(
+      SymbolTable symbols,
+      int nameId,
+      int categoryId,
+      long startMicros,
+      Duration duration,
+      int threadId,
+      int processId,
+      Map<String, String> args) {
+    this.name = nameId == SymbolTable.NO_SYMBOL ? null : symbols.get(nameId);
+    this.category = categoryId == SymbolTable.NO_SYMBOL ? null : symbols.get(categoryId);
+    this.start = Timestamp.ofMicros(startMicros);
+    this.duration = duration;
+    this.end = start.plus(duration);
+    this.threadId = threadId;
+    this.processId = processId;
+    this.args = args;
+    this.symbols = symbols;
+    this.nameId = nameId;
+    this.categoryId = categoryId;
+  }
+
+  /**
+   * Returns the symbol table the event was read with, if any. Then {@link #getNameId()} and {@link
+   * #getCategoryId()} return the ids of the name and category in it.
+   */
+  @Nullable
+  public SymbolTable getSymbolTable() {
+    return symbols;
+  }
+
+  /**
+   * Returns the id of the name in the symbol table of the event, or {@link SymbolTable#NO_SYMBOL}
+   * if the event has no name or no symbol table.
+   */
+  public int getNameId() {
+    return nameId;
+  }
+
+  /**
+   * Returns the id of the category in the symbol table of the event, or {@link
+   * SymbolTable#NO_SYMBOL} if the event has no category or no symbol table.
+   */
+  public int getCategoryId() {
+    return categoryId;
   }
 
   @Override
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import com.engflow.bazel.invocation.analyzer.time.Timestamp;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Answers which {@link CompleteEvent}s overlap, contain or are contained in a time interval in
+ * logarithmic time plus the time it takes to return the matching events.
+ *
+ * <p>The events are kept sorted by their start, together with a tree over fixed-size buckets of
+ * them that keeps the earliest and latest end of each subtree. Queries binary search the start and
+ * skip all subtrees whose ends cannot match. All bounds are inclusive.
+ *
+ * <p>If the events are passed in as a {@link CompleteEventStore} itself, rather than a view of one,
+ * only the matching events are created. The index is immutable and may be read concurrently.
+ */
+public final class CompleteEventIntervalIndex {
+  private static final int BUCKET_SIZE = 32;
+
+  private final List<CompleteEvent> events;
+  private final long[] starts;
+  private final long[] ends;
+  // The number of leaves of the tree, each of which covers a bucket of events.
+  private final int leaves;
+  // The earliest and latest end of the events of each tree node, the root has index 1.
+  private final long[] minEnds;
+  private final long[] maxEnds;
+
+  /**
+   * Creates an index of the passed-in events. If they are not sorted by their start, a sorted copy
+   * is indexed instead; the list must not be modified afterwards.
+   *
+   * @param events the events to index
+   * @return the index of the events
+   */
+  public static CompleteEventIntervalIndex of(List<CompleteEvent> events) {
+    Preconditions.checkNotNull(events);
+    if (events instanceof CompleteEventStore) {
+      CompleteEventStore store = (CompleteEventStore) events;
+      long[] starts = new long[store.size()];
+      long[] ends = new long[store.size()];
+      for (int i = 0; i < starts.length; i++) {
+        starts[i] = store.getStartMicros(i);
+        ends[i] = store.getEndMicros(i);
+      }
+      if (isSorted(starts)) {
+        return new CompleteEventIntervalIndex(Collections.unmodifiableList(store), starts, ends);
+      }
+    }
+    List<CompleteEvent> sortedEvents = events;
+    if (!isSorted(events)) {
+      sortedEvents = ImmutableList.sortedCopyOf(Comparator.comparing((e) -> e.start), events);
+    }
+    long[] starts = new long[sortedEvents.size()];
+    long[] ends = new long[sortedEvents.size()];
+    for (int i = 0; i < starts.length; i++) {
+      CompleteEvent event = sortedEvents.get(i);
+      starts[i] = event.start.getMicros();
+      ends[i] = event.end.getMicros();
+    }
+    return new CompleteEventIntervalIndex(sortedEvents, starts, ends);
+  }
+
+  private CompleteEventIntervalIndex(List<CompleteEvent> events, long[] starts, long[] ends) {
+    this.events = events;
+    this.starts = starts;
+    this.ends = ends;
+    int buckets = (starts.length + BUCKET_SIZE - 1) / BUCKET_SIZE;
+    int leaves = 1;
+    while (leaves < buckets) {
+      leaves *= 2;
+    }
+    this.leaves = leaves;
+    this.minEnds = new long[2 * leaves];
+    this.maxEnds = new long[2 * leaves];
+    // Empty leaves never match, as their earliest end is after their latest one.
+    Arrays.fill(minEnds, Long.MAX_VALUE);
+    Arrays.fill(maxEnds, Long.MIN_VALUE);
+    for (int i = 0; i < ends.length; i++) {
+      int leaf = leaves + i / BUCKET_SIZE;
+      minEnds[leaf] = Math.min(minEnds[leaf], ends[i]);
+      maxEnds[leaf] = Math.max(maxEnds[leaf], ends[i]);
+    }
+    for (int node = leaves - 1; node > 0; node--) {
+      minEnds[node] = Math.min(minEnds[2 * node], minEnds[2 * node + 1]);
+      maxEnds[node] = Math.max(maxEnds[2 * node], maxEnds[2 * node + 1]);
+    }
+  }
+
+  private static boolean isSorted(long[] values) {
+    for (int i = 1; i < values.length; i++) {
+      if (values[i - 1] > values[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSorted(List<CompleteEvent> events) {
+    for (int i = 1; i < events.size(); i++) {
+      if (events.get(i - 1).start.compareTo(events.get(i).start) > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns the number of indexed events. */
+  public int size() {
+    return starts.length;
+  }
+
+  /** Returns all indexed events, sorted by their start. */
+  public List<CompleteEvent> getEvents() {
+    return events;
+  }
+
+  /**
+   * Returns the events that overlap the passed-in interval, i.e. that start at or before its end
+   * and end at or after its start.
+   *
+   * @param from the start of the interval
+   * @param to the end of the interval
+   * @return the overlapping events, sorted by their start
+   */
+  public ImmutableList<CompleteEvent> getOverlapping(Timestamp from, Timestamp to) {
+    ImmutableList.Builder<CompleteEvent> result = ImmutableList.builder();
+    visit(
+        0,
+        upperBound(to.getMicros()),
+        from.getMicros(),
+        Long.MAX_VALUE,
+        (index) -> {
+          result.add(events.get(index));
+          return true;
+        });
+    return result.build();
+  }
+
+  /**
+   * Returns the events that contain the passed-in timestamp, i.e. that start at or before it and
+   * end at or after it.
+   *
+   * @param timestamp the timestamp to look up
+   * @return the containing events, sorted by their start
+   */
+  public ImmutableList<CompleteEvent> getContaining(Timestamp timestamp) {
+    return getOverlapping(timestamp, timestamp);
+  }
+
+  /**
+   * Returns the events that are contained in the passed-in interval, i.e. that start at or after
+   * its start and end at or before its end.
+   *
+   * @param from the start of the interval
+   * @param to the end of the interval
+   * @return the contained events, sorted by their start
+   */
+  public ImmutableList<CompleteEvent> getContainedIn(Timestamp from, Timestamp to) {
+    ImmutableList.Builder<CompleteEvent> result = ImmutableList.builder();
+    visit(
+        lowerBound(from.getMicros()),
+        upperBound(to.getMicros()),
+        Long.MIN_VALUE,
+        to.getMicros(),
+        (index) -> {
+          result.add(events.get(index));
+          return true;
+        });
+    return result.build();
+  }
+
+  /**
+   * Returns whether any event is contained in the passed-in interval, see {@link
+   * #getContainedIn(Timestamp, Timestamp)}. No events are created.
+   *
+   * @param from the start of the interval
+   * @param to the end of the interval
+   * @return whether there is at least one contained event
+   */
+  public boolean hasContainedIn(Timestamp from, Timestamp to) {
+    boolean[] found = new boolean[1];
+    visit(
+        lowerBound(from.getMicros()),
+        upperBound(to.getMicros()),
+        Long.MIN_VALUE,
+        to.getMicros(),
+        (index) -> {
+          found[0] = true;
+          return false;
+        });
+    return found[0];
+  }
+
+  /** Returns the index of the first event that starts at or after the passed-in time. */
+  private int lowerBound(long micros) {
+    int low = 0;
+    int high = starts.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (starts[middle] < micros) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /** Returns the index of the first event that starts after the passed-in time. */
+  private int upperBound(long micros) {
+    int low = 0;
+    int high = starts.length;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (starts[middle] <= micros) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Passes the indices of the events in [from, to) whose ends are in [minEnd, maxEnd] to the
+   * consumer, in ascending order, until it returns {@code false}.
+   */
+  private void visit(int from, int to, long minEnd, long maxEnd, IntPredicate consumer) {
+    if (from < to) {
+      visit(1, 0, leaves, from, to, minEnd, maxEnd, consumer);
+    }
+  }
+
+  private boolean visit(
+      int node,
+      int firstBucket,
+      int endBucket,
+      int from,
+      int to,
+      long minEnd,
+      long maxEnd,
+      IntPredicate consumer) {
+    int nodeFrom = firstBucket * BUCKET_SIZE;
+    int nodeTo = Math.min(endBucket * BUCKET_SIZE, starts.length);
+    if (nodeTo <= from || to <= nodeFrom || maxEnds[node] < minEnd || minEnds[node] > maxEnd) {
+      return true;
+    }
+    if (endBucket - firstBucket == 1) {
+      for (int i = Math.max(from, nodeFrom); i < Math.min(to, nodeTo); i++) {
+        if (ends[i] >= minEnd && ends[i] <= maxEnd && !consumer.test(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    int middleBucket = (firstBucket + endBucket) >>> 1;
+    return visit(2 * node, firstBucket, middleBucket, from, to, minEnd, maxEnd, consumer)
+        && visit(2 * node + 1, middleBucket, endBucket, from, to, minEnd, maxEnd, consumer);
+  }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import com.google.common.base.Preconditions;
+import java.time.Duration;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Stores {@link CompleteEvent}s in primitive columns instead of as objects, which takes a fraction
+ * of the memory. Equal arguments of events are only kept once, as {@link CompactArgs} that share
+ * their keys. Arguments that have not been decoded yet, see {@link RawArguments}, are kept as their
+ * location, which keeps their source alive, and are decoded when first accessed. The decoded
+ * arguments then take the place of the location, so that they are decoded only once per event.
+ *
+ * <p>The store is a {@link List} of {@link CompleteEvent}s. Each call to {@link #get(int)} creates
+ * a new, equal {@link CompleteEvent} from the columns, which is cheap and short-lived. Events can
+ * only be appended; use {@link #sortByStart()} to order them.
+ *
+ * <p>The store is not thread-safe. It may be read concurrently once it is no longer modified.
+ */
+public class CompleteEventStore extends AbstractList<CompleteEvent> implements RandomAccess {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private long[] startMicros = new long[INITIAL_CAPACITY];
+  // Nanoseconds instead of microseconds, so that durations with sub-microsecond precision are kept.
+  private long[] durationNanos = new long[INITIAL_CAPACITY];
+  private int[] nameIds = new int[INITIAL_CAPACITY];
+  private int[] categoryIds = new int[INITIAL_CAPACITY];
+  private CompactArgs[] args = new CompactArgs[INITIAL_CAPACITY];
+  // Events of a thread share the thread and process id, so only keep columns for them if they vary.
+  private int threadId;
+  private int processId;
+  @Nullable private int[] threadIds;
+  @Nullable private int[] processIds;
+  private int size;
+  private boolean sortedByStart = true;
+  // The location of arguments that have not been decoded yet, all of which have to share a source.
+  // Only kept once such arguments are added, then their entries in args are null.
+  @Nullable private RawArgumentsSource rawArgsSource;
+  @Nullable private long[] rawArgsStarts;
+  @Nullable private int[] rawArgsLengths;
+
+  private final SymbolTable symbols;
+  // The keys of arguments, shared by all arguments with the same keys in the same order.
+  private Map<List<String>, String[]> argsKeys = new HashMap<>();
+  private Map<CompactArgs, CompactArgs> distinctArgs = new HashMap<>();
+
+  /** Creates a store with a symbol table of its own. */
+  public CompleteEventStore() {
+    this(new SymbolTable());
+  }
+
+  /**
+   * Creates a store that keeps the names and categories of its events in the passed-in symbol
+   * table, which may be shared with other stores.
+   */
+  public CompleteEventStore(SymbolTable symbols) {
+    this.symbols = Preconditions.checkNotNull(symbols);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public CompleteEvent get(int index) {
+    Preconditions.checkElementIndex(index, size);
+    Map<String, String> eventArgs = args[index];
+    if (eventArgs == null) {
+      eventArgs = newLazyArgs(index);
+    }
+    return new CompleteEvent(
+        symbols,
+        nameIds[index],
+        categoryIds[index],
+        startMicros[index],
+        Duration.ofNanos(durationNanos[index]),
+        threadIds == null ? threadId : threadIds[index],
+        processIds == null ? processId : processIds[index],
+        eventArgs);
+  }
+
+  /**
+   * Returns arguments that decode the raw arguments of the event at the specified index, and then
+   * keep the decoded arguments in their place.
+   */
+  private LazyArgs newLazyArgs(int index) {
+    long start = rawArgsStarts[index];
+    CompactArgs[] columns = args;
+    int expectedModCount = modCount;
+    return new LazyArgs(
+        new RawArguments(rawArgsSource, start, start + rawArgsLengths[index]),
+        symbols,
+        decoded -> {
+          // Concurrent readers may each store the decoded arguments, which are equal. Events that
+          // were reordered or removed in the meantime are left alone.
+          if (modCount == expectedModCount) {
+            columns[index] = decoded;
+          }
+        });
+  }
+
+  /** Returns the start of the event at the specified index in microseconds, without creating it. */
+  public long getStartMicros(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return startMicros[index];
+  }
+
+  /**
+   * Returns the end of the event at the specified index in microseconds, without creating it. The
+   * result is the same as that of the {@link CompleteEvent#end} of the event.
+   */
+  public long getEndMicros(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return startMicros[index] + TimeUnit.NANOSECONDS.toMicros(durationNanos[index]);
+  }
+
+  /** Returns the id of the name of the event at the specified index, without creating it. */
+  public int getNameId(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return nameIds[index];
+  }
+
+  /** Returns the id of the category of the event at the specified index, without creating it. */
+  public int getCategoryId(int index) {
+    Preconditions.checkElementIndex(index, size);
+    return categoryIds[index];
+  }
+
+  /** Returns the symbol table the names and categories of the events are kept in. */
+  public SymbolTable getSymbolTable() {
+    return symbols;
+  }
+
+  @Override
+  public boolean add(CompleteEvent event) {
+    ensureCapacity(size + 1);
+    int index = size++;
+    long start = event.start.getMicros();
+    if (index > 0 && start < startMicros[index - 1]) {
+      sortedByStart = false;
+    }
+    startMicros[index] = start;
+    durationNanos[index] = event.duration.toNanos();
+    if (event.getSymbolTable() == symbols) {
+      nameIds[index] = event.getNameId();
+      categoryIds[index] = event.getCategoryId();
+    } else {
+      nameIds[index] = getSymbolId(event.name);
+      categoryIds[index] = getSymbolId(event.category);
+    }
+    if (!addRawArgs(index, event.args)) {
+      args[index] = getDistinctArgs(event.args);
+    }
+    if (index == 0) {
+      threadId = event.threadId;
+      processId = event.processId;
+    }
+    if (threadIds == null && event.threadId != threadId) {
+      threadIds = new int[startMicros.length];
+      Arrays.fill(threadIds, 0, index, threadId);
+    }
+    if (threadIds != null) {
+      threadIds[index] = event.threadId;
+    }
+    if (processIds == null && event.processId != processId) {
+      processIds = new int[startMicros.length];
+      Arrays.fill(processIds, 0, index, processId);
+    }
+    if (processIds != null) {
+      processIds[index] = event.processId;
+    }
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public void add(int index, CompleteEvent event) {
+    Preconditions.checkArgument(index == size, "Events can only be appended.");
+    add(event);
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    sortedByStart = true;
+    threadIds = null;
+    processIds = null;
+    rawArgsSource = null;
+    rawArgsStarts = null;
+    rawArgsLengths = null;
+    Arrays.fill(args, null);
+    argsKeys.clear();
+    distinctArgs.clear();
+    modCount++;
+  }
+
+  /**
+   * Sorts the events by their start. Events with the same start keep their order, like {@link
+   * List#sort(Comparator)} does.
+   */
+  public void sortByStart() {
+    if (sortedByStart) {
+      return;
+    }
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    mergeSortByStart(order, new int[size], 0, size);
+
+    startMicros = permute(startMicros, order);
+    durationNanos = permute(durationNanos, order);
+    nameIds = permute(nameIds, order);
+    categoryIds = permute(categoryIds, order);
+    CompactArgs[] sortedArgs = new CompactArgs[args.length];
+    for (int i = 0; i < size; i++) {
+      sortedArgs[i] = args[order[i]];
+    }
+    args = sortedArgs;
+    if (rawArgsSource != null) {
+      rawArgsStarts = permute(rawArgsStarts, order);
+      rawArgsLengths = permute(rawArgsLengths, order);
+    }
+    if (threadIds != null) {
+      threadIds = permute(threadIds, order);
+    }
+    if (processIds != null) {
+      processIds = permute(processIds, order);
+    }
+    sortedByStart = true;
+    modCount++;
+  }
+
+  /** Stable merge sort of the range [from, to) of indices by the start of their events. */
+  private void mergeSortByStart(int[] order, int[] buffer, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSortByStart(order, buffer, from, middle);
+    mergeSortByStart(order, buffer, middle, to);
+    if (startMicros[order[middle - 1]] <= startMicros[order[middle]]) {
+      return;
+    }
+    System.arraycopy(order, from, buffer, from, to - from);
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right >= to
+          || (left < middle && startMicros[buffer[left]] <= startMicros[buffer[right]])) {
+        order[i] = buffer[left++];
+      } else {
+        order[i] = buffer[right++];
+      }
+    }
+  }
+
+  @Override
+  public void sort(@Nullable Comparator<? super CompleteEvent> comparator) {
+    CompleteEvent[] events = toArray(new CompleteEvent[0]);
+    Arrays.sort(events, comparator);
+    clear();
+    Collections.addAll(this, events);
+  }
+
+  /**
+   * Shrinks the columns to the number of events and releases what is kept to share the arguments of
+   * events that are added, e.g. once all events were added. Events can still be added afterwards.
+   */
+  public void trimToSize() {
+    if (size < startMicros.length) {
+      startMicros = Arrays.copyOf(startMicros, size);
+      durationNanos = Arrays.copyOf(durationNanos, size);
+      nameIds = Arrays.copyOf(nameIds, size);
+      categoryIds = Arrays.copyOf(categoryIds, size);
+      args = Arrays.copyOf(args, size);
+      if (rawArgsSource != null) {
+        rawArgsStarts = Arrays.copyOf(rawArgsStarts, size);
+        rawArgsLengths = Arrays.copyOf(rawArgsLengths, size);
+      }
+      if (threadIds != null) {
+        threadIds = Arrays.copyOf(threadIds, size);
+      }
+      if (processIds != null) {
+        processIds = Arrays.copyOf(processIds, size);
+      }
+    }
+    argsKeys = new HashMap<>();
+    distinctArgs = new HashMap<>();
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= startMicros.length) {
+      return;
+    }
+    int newCapacity = Math.max(capacity, startMicros.length + (startMicros.length >> 1));
+    startMicros = Arrays.copyOf(startMicros, newCapacity);
+    durationNanos = Arrays.copyOf(durationNanos, newCapacity);
+    nameIds = Arrays.copyOf(nameIds, newCapacity);
+    categoryIds = Arrays.copyOf(categoryIds, newCapacity);
+    args = Arrays.copyOf(args, newCapacity);
+    if (rawArgsSource != null) {
+      rawArgsStarts = Arrays.copyOf(rawArgsStarts, newCapacity);
+      rawArgsLengths = Arrays.copyOf(rawArgsLengths, newCapacity);
+    }
+    if (threadIds != null) {
+      threadIds = Arrays.copyOf(threadIds, newCapacity);
+    }
+    if (processIds != null) {
+      processIds = Arrays.copyOf(processIds, newCapacity);
+    }
+  }
+
+  private int getSymbolId(@Nullable String string) {
+    return string == null ? SymbolTable.NO_SYMBOL : symbols.intern(string);
+  }
+
+  /**
+   * Keeps the location of the passed-in arguments if they have not been decoded yet.
+   *
+   * @return whether the location was kept, otherwise the arguments have to be stored
+   */
+  private boolean addRawArgs(int index, Map<String, String> eventArgs) {
+    if (!(eventArgs instanceof LazyArgs) || ((LazyArgs) eventArgs).isDecoded()) {
+      return false;
+    }
+    RawArguments rawArguments = ((LazyArgs) eventArgs).getRawArguments();
+    long length = rawArguments.getEnd() - rawArguments.getStart();
+    if (length > Integer.MAX_VALUE
+        || (rawArgsSource != null && rawArguments.getSource() != rawArgsSource)) {
+      return false;
+    }
+    if (rawArgsSource == null) {
+      rawArgsSource = rawArguments.getSource();
+      rawArgsStarts = new long[startMicros.length];
+      rawArgsLengths = new int[startMicros.length];
+    }
+    rawArgsStarts[index] = rawArguments.getStart();
+    rawArgsLengths[index] = (int) length;
+    args[index] = null;
+    return true;
+  }
+
+  /**
+   * Returns compact arguments equal to the passed-in ones, sharing their keys with other arguments
+   * that have the same keys, and the arguments themselves with other events that have equal ones.
+   */
+  private CompactArgs getDistinctArgs(Map<String, String> eventArgs) {
+    if (eventArgs.isEmpty()) {
+      return CompactArgs.of();
+    }
+    CompactArgs compactArgs = CompactArgs.copyOf(eventArgs);
+    String[] keys = argsKeys.get(Arrays.asList(compactArgs.getKeys()));
+    if (keys == null) {
+      keys = compactArgs.getKeys().clone();
+      for (int i = 0; i < keys.length; i++) {
+        keys[i] = symbols.canonicalize(keys[i]);
+      }
+      argsKeys.put(Arrays.asList(keys), keys);
+    }
+    if (keys != compactArgs.getKeys()) {
+      compactArgs = new CompactArgs(keys, compactArgs.getValues());
+    }
+    return distinctArgs.computeIfAbsent(compactArgs, a -> a);
+  }
+
+  private static long[] permute(long[] values, int[] order) {
+    long[] permuted = new long[values.length];
+    for (int i = 0; i < order.length; i++) {
+      permuted[i] = values[order[i]];
+    }
+    return permuted;
+  }
+
+  private static int[] permute(int[] values, int[] order) {
+    int[] permuted = new int[values.length];
+    for (int i = 0; i < order.length; i++) {
+      permuted[i] = values[order[i]];
+    }
+    return permuted;
+  }
+}
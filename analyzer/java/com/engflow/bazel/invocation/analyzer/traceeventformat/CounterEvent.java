@@ -66,6 +66,38 @@ public class CounterEvent {
         totalValue);
   }
 
+  /**
+   * Creates a {@link CounterEvent} from a trace event decoded from the JSON stream. The result is
+   * the same as calling {@link #fromJson(JsonObject)} on the equivalent {@link JsonObject}.
+   */
+  public static CounterEvent fromTraceEvent(DecodedTraceEvent event) {
+    List<String> missingMembers = Lists.newArrayList();
+    for (String requiredMember : REQUIRED_JSON_MEMBERS) {
+      if (!event.has(requiredMember)) {
+        missingMembers.add(requiredMember);
+      }
+    }
+    if (!missingMembers.isEmpty()) {
+      throw new IllegalArgumentException(
+          "Missing members: " + Arrays.toString(missingMembers.toArray()));
+    }
+
+    // See #fromJson for why the counts are summed up.
+    var totalValue = event.getArgumentsSum();
+
+    return new CounterEvent(event.getName(), Timestamp.ofMicros(event.getTimestamp()), totalValue);
+  }
+
+  /**
+   * Creates a {@link CounterEvent} from a trace event decoded from the JSON stream, like {@link
+   * #fromTraceEvent(DecodedTraceEvent)}, taking its name from the passed-in symbol table.
+   */
+  public static CounterEvent fromTraceEvent(DecodedTraceEvent event, SymbolTable symbols) {
+    CounterEvent counterEvent = fromTraceEvent(event);
+    return new CounterEvent(
+        symbols.canonicalize(counterEvent.name), counterEvent.timestamp, counterEvent.totalValue);
+  }
+
   /**
    * Parses a {@link CounterEvent} from a JsonObject.
    *
@@ -84,7 +116,7 @@ public class CounterEvent {
   }
 
   private CounterEvent(String name, Timestamp timestamp, double totalValue) {
-    this.name = Preconditions.checkNotNull(name).intern();
+    this.name = Preconditions.checkNotNull(name);
     this.timestamp = Preconditions.checkNotNull(timestamp);
     this.totalValue = totalValue;
   }
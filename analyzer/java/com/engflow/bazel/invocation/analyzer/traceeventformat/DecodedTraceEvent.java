@@ -0,0 +1,586 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * A single event of the "traceEvents" section, decoded straight from a {@link JsonReader} in one
+ * pass, without first building a {@link JsonObject} for it.
+ *
+ * <p>The members used to create {@link CompleteEvent}s, {@link InstantEvent}s and {@link
+ * CounterEvent}s are read into fields. Any other member, as well as any member whose value does not
+ * have the expected JSON type, is kept as a {@link JsonElement}. Accessing it follows the same
+ * conversion rules as accessing the member of a {@link JsonObject} parsed by {@link JsonParser}, so
+ * that the events created from a {@link DecodedTraceEvent} are identical to those created by {@code
+ * fromJson}.
+ */
+public class DecodedTraceEvent {
+  private static final int HAS_TIMESTAMP = 1;
+  private static final int HAS_DURATION = 1 << 1;
+  private static final int HAS_THREAD_ID = 1 << 2;
+  private static final int HAS_PROCESS_ID = 1 << 3;
+
+  @Nullable private String phase;
+  @Nullable private String name;
+  @Nullable private String category;
+  private long timestamp;
+  private long duration;
+  private int threadId;
+  private int processId;
+  private int presentNumbers;
+
+  // The "args" member is decoded depending on the phase that precedes it, see #readArguments.
+  @Nullable private Map<String, String> stringArgs;
+  @Nullable private Map<String, Double> counterValues;
+  @Nullable private String invalidArgsReason;
+  // Set instead of the decoded arguments if the "args" object of a complete event was skipped.
+  @Nullable private RawArguments rawArgs;
+
+  /** Members that are not decoded into fields, in the order they were read. */
+  private final Map<String, JsonElement> otherMembers = new LinkedHashMap<>();
+
+  private DecodedTraceEvent() {}
+
+  /**
+   * Reads the next value of the passed-in reader, which has to be a JSON object, as a trace event.
+   *
+   * <p>Like {@link JsonParser#parseReader(JsonReader)}, the event is read leniently.
+   *
+   * @param reader the reader positioned before a trace event
+   * @return the decoded trace event
+   * @throws IOException if reading fails or the JSON is malformed
+   * @throws IllegalStateException if the next value is not a JSON object
+   */
+  public static DecodedTraceEvent decode(JsonReader reader) throws IOException {
+    return decode(reader, null, null);
+  }
+
+  /**
+   * Reads the next value of the passed-in reader as a trace event, like {@link
+   * #decode(JsonReader)}, but may skip the "args" object of a complete event instead of decoding
+   * it.
+   *
+   * @param reader the reader positioned before a trace event
+   * @param rawArguments if not {@code null}, the location of the "args" object of the event, which
+   *     is then skipped and only decoded when the arguments are accessed
+   * @param argumentsCategories if not {@code null}, the categories of complete events whose
+   *     arguments are kept; the arguments of complete events of other categories are dropped, as if
+   *     the event did not have any
+   * @return the decoded trace event
+   * @throws IOException if reading fails or the JSON is malformed
+   * @throws IllegalStateException if the next value is not a JSON object
+   */
+  public static DecodedTraceEvent decode(
+      JsonReader reader,
+      @Nullable RawArguments rawArguments,
+      @Nullable Set<String> argumentsCategories)
+      throws IOException {
+    Strictness strictness = reader.getStrictness();
+    if (strictness == Strictness.LEGACY_STRICT) {
+      reader.setStrictness(Strictness.LENIENT);
+    }
+    try {
+      DecodedTraceEvent event = new DecodedTraceEvent();
+      reader.beginObject();
+      while (reader.hasNext()) {
+        event.readMember(reader.nextName(), reader, rawArguments, argumentsCategories);
+      }
+      reader.endObject();
+      if (argumentsCategories != null
+          && TraceEventFormatConstants.PHASE_COMPLETE.equals(event.phase)
+          && (event.category == null || !argumentsCategories.contains(event.category))) {
+        event.clearArguments();
+        event.otherMembers.remove(TraceEventFormatConstants.EVENT_ARGUMENTS);
+      }
+      return event;
+    } finally {
+      reader.setStrictness(strictness);
+    }
+  }
+
+  private void readMember(
+      String member,
+      JsonReader reader,
+      @Nullable RawArguments rawArguments,
+      @Nullable Set<String> argumentsCategories)
+      throws IOException {
+    JsonToken token = reader.peek();
+    switch (member) {
+      case TraceEventFormatConstants.EVENT_PHASE:
+        if (token == JsonToken.STRING) {
+          otherMembers.remove(member);
+          phase = reader.nextString();
+          return;
+        }
+        phase = null;
+        break;
+      case TraceEventFormatConstants.EVENT_NAME:
+        if (token == JsonToken.STRING) {
+          otherMembers.remove(member);
+          name = reader.nextString();
+          return;
+        }
+        name = null;
+        break;
+      case TraceEventFormatConstants.EVENT_CATEGORY:
+        if (token == JsonToken.STRING) {
+          otherMembers.remove(member);
+          category = reader.nextString();
+          return;
+        }
+        category = null;
+        break;
+      case TraceEventFormatConstants.EVENT_TIMESTAMP:
+        if (token == JsonToken.NUMBER) {
+          try {
+            timestamp = reader.nextLong();
+            setNumber(member, HAS_TIMESTAMP);
+            return;
+          } catch (NumberFormatException e) {
+            setOther(member, JsonParser.parseString(reader.nextString()), HAS_TIMESTAMP);
+            return;
+          }
+        }
+        presentNumbers &= ~HAS_TIMESTAMP;
+        break;
+      case TraceEventFormatConstants.EVENT_DURATION:
+        if (token == JsonToken.NUMBER) {
+          try {
+            duration = reader.nextLong();
+            setNumber(member, HAS_DURATION);
+            return;
+          } catch (NumberFormatException e) {
+            setOther(member, JsonParser.parseString(reader.nextString()), HAS_DURATION);
+            return;
+          }
+        }
+        presentNumbers &= ~HAS_DURATION;
+        break;
+      case TraceEventFormatConstants.EVENT_THREAD_ID:
+        if (token == JsonToken.NUMBER) {
+          try {
+            threadId = reader.nextInt();
+            setNumber(member, HAS_THREAD_ID);
+            return;
+          } catch (NumberFormatException e) {
+            setOther(member, JsonParser.parseString(reader.nextString()), HAS_THREAD_ID);
+            return;
+          }
+        }
+        presentNumbers &= ~HAS_THREAD_ID;
+        break;
+      case TraceEventFormatConstants.EVENT_PROCESS_ID:
+        if (token == JsonToken.NUMBER) {
+          try {
+            processId = reader.nextInt();
+            setNumber(member, HAS_PROCESS_ID);
+            return;
+          } catch (NumberFormatException e) {
+            setOther(member, JsonParser.parseString(reader.nextString()), HAS_PROCESS_ID);
+            return;
+          }
+        }
+        presentNumbers &= ~HAS_PROCESS_ID;
+        break;
+      case TraceEventFormatConstants.EVENT_ARGUMENTS:
+        clearArguments();
+        if (token == JsonToken.BEGIN_OBJECT
+            && TraceEventFormatConstants.PHASE_COMPLETE.equals(phase)
+            && (rawArguments != null
+                || (argumentsCategories != null
+                    && category != null
+                    && !argumentsCategories.contains(category)))) {
+          // Either decoded when accessed, or dropped once the whole event has been read.
+          otherMembers.remove(member);
+          reader.skipValue();
+          rawArgs = rawArguments;
+          return;
+        }
+        if (token == JsonToken.BEGIN_OBJECT
+            && (TraceEventFormatConstants.PHASE_COMPLETE.equals(phase)
+                || TraceEventFormatConstants.PHASE_COUNTER.equals(phase))) {
+          otherMembers.remove(member);
+          readArguments(reader);
+          return;
+        }
+        break;
+      default:
+        break;
+    }
+    otherMembers.put(member, JsonParser.parseReader(reader));
+  }
+
+  private void setNumber(String member, int flag) {
+    otherMembers.remove(member);
+    presentNumbers |= flag;
+  }
+
+  private void setOther(String member, JsonElement value, int flag) {
+    presentNumbers &= ~flag;
+    otherMembers.put(member, value);
+  }
+
+  private void clearArguments() {
+    stringArgs = null;
+    counterValues = null;
+    invalidArgsReason = null;
+    rawArgs = null;
+  }
+
+  /**
+   * Complete events keep their arguments as strings and counter events sum up their arguments as
+   * doubles. Decode the arguments accordingly, so that they need not be kept as a {@link
+   * JsonObject}. Values of unexpected types are converted the same way {@link JsonElement} would.
+   */
+  private void readArguments(JsonReader reader) throws IOException {
+    boolean isCounter = TraceEventFormatConstants.PHASE_COUNTER.equals(phase);
+    if (isCounter) {
+      counterValues = new LinkedHashMap<>(4);
+    } else {
+      stringArgs = new LinkedHashMap<>(4);
+    }
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String key = reader.nextName();
+      if (invalidArgsReason != null) {
+        reader.skipValue();
+        continue;
+      }
+      JsonToken token = reader.peek();
+      try {
+        if (isCounter) {
+          double value;
+          if (token == JsonToken.NUMBER) {
+            value = reader.nextDouble();
+          } else if (token == JsonToken.STRING) {
+            value = Double.parseDouble(reader.nextString());
+          } else {
+            value = JsonParser.parseReader(reader).getAsDouble();
+          }
+          counterValues.put(key, value);
+        } else {
+          stringArgs.put(key, readStringValue(reader, token));
+        }
+      } catch (RuntimeException e) {
+        invalidArgsReason = String.format("Invalid value for args member \"%s\"", key);
+      }
+    }
+    reader.endObject();
+  }
+
+  /**
+   * Reads an "args" object, converting all values to strings like the arguments of complete events.
+   *
+   * @throws IOException if reading fails or the JSON is malformed
+   * @throws RuntimeException if the next value is not an object or a value cannot be converted
+   */
+  static Map<String, String> readStringArguments(JsonReader reader) throws IOException {
+    Map<String, String> args = new LinkedHashMap<>(4);
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String key = reader.nextName();
+      args.put(key, readStringValue(reader, reader.peek()));
+    }
+    reader.endObject();
+    return args;
+  }
+
+  private static String readStringValue(JsonReader reader, JsonToken token) throws IOException {
+    if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+      return reader.nextString();
+    }
+    if (token == JsonToken.BOOLEAN) {
+      return Boolean.toString(reader.nextBoolean());
+    }
+    return JsonParser.parseReader(reader).getAsString();
+  }
+
+  /** Returns whether the event has the specified member. */
+  public boolean has(String member) {
+    switch (member) {
+      case TraceEventFormatConstants.EVENT_PHASE:
+        if (phase != null) {
+          return true;
+        }
+        break;
+      case TraceEventFormatConstants.EVENT_NAME:
+        if (name != null) {
+          return true;
+        }
+        break;
+      case TraceEventFormatConstants.EVENT_CATEGORY:
+        if (category != null) {
+          return true;
+        }
+        break;
+      case TraceEventFormatConstants.EVENT_TIMESTAMP:
+        if ((presentNumbers & HAS_TIMESTAMP) != 0) {
+          return true;
+        }
+        break;
+      case TraceEventFormatConstants.EVENT_DURATION:
+        if ((presentNumbers & HAS_DURATION) != 0) {
+          return true;
+        }
+        break;
+      case TraceEventFormatConstants.EVENT_THREAD_ID:
+        if ((presentNumbers & HAS_THREAD_ID) != 0) {
+          return true;
+        }
+        break;
+      case TraceEventFormatConstants.EVENT_PROCESS_ID:
+        if ((presentNumbers & HAS_PROCESS_ID) != 0) {
+          return true;
+        }
+        break;
+      case TraceEventFormatConstants.EVENT_ARGUMENTS:
+        if (hasDecodedArguments()) {
+          return true;
+        }
+        break;
+      default:
+        break;
+    }
+    return otherMembers.containsKey(member);
+  }
+
+  private boolean hasDecodedArguments() {
+    return stringArgs != null
+        || counterValues != null
+        || invalidArgsReason != null
+        || rawArgs != null;
+  }
+
+  /**
+   * Returns the phase of the event.
+   *
+   * @throws IllegalArgumentException if the event does not have a phase
+   * @throws RuntimeException if the phase cannot be converted to a string
+   */
+  public String getPhase() {
+    return phase != null ? phase : getMember(TraceEventFormatConstants.EVENT_PHASE).getAsString();
+  }
+
+  /**
+   * Returns the name of the event.
+   *
+   * @throws IllegalArgumentException if the event does not have a name
+   * @throws RuntimeException if the name cannot be converted to a string
+   */
+  public String getName() {
+    return name != null ? name : getMember(TraceEventFormatConstants.EVENT_NAME).getAsString();
+  }
+
+  /**
+   * Returns the category of the event.
+   *
+   * @throws IllegalArgumentException if the event does not have a category
+   * @throws RuntimeException if the category cannot be converted to a string
+   */
+  public String getCategory() {
+    return category != null
+        ? category
+        : getMember(TraceEventFormatConstants.EVENT_CATEGORY).getAsString();
+  }
+
+  /**
+   * Returns the timestamp of the event in microseconds.
+   *
+   * @throws IllegalArgumentException if the event does not have a timestamp
+   * @throws RuntimeException if the timestamp cannot be converted to a long
+   */
+  public long getTimestamp() {
+    return (presentNumbers & HAS_TIMESTAMP) != 0
+        ? timestamp
+        : getMember(TraceEventFormatConstants.EVENT_TIMESTAMP).getAsLong();
+  }
+
+  /**
+   * Returns the duration of the event in microseconds.
+   *
+   * @throws IllegalArgumentException if the event does not have a duration
+   * @throws RuntimeException if the duration cannot be converted to a long
+   */
+  public long getDuration() {
+    return (presentNumbers & HAS_DURATION) != 0
+        ? duration
+        : getMember(TraceEventFormatConstants.EVENT_DURATION).getAsLong();
+  }
+
+  /**
+   * Returns the id of the thread the event belongs to.
+   *
+   * @throws IllegalArgumentException if the event does not have a thread id
+   * @throws RuntimeException if the thread id cannot be converted to an int
+   */
+  public int getThreadId() {
+    return (presentNumbers & HAS_THREAD_ID) != 0
+        ? threadId
+        : getMember(TraceEventFormatConstants.EVENT_THREAD_ID).getAsInt();
+  }
+
+  /**
+   * Returns the id of the process the event belongs to.
+   *
+   * @throws IllegalArgumentException if the event does not have a process id
+   * @throws RuntimeException if the process id cannot be converted to an int
+   */
+  public int getProcessId() {
+    return (presentNumbers & HAS_PROCESS_ID) != 0
+        ? processId
+        : getMember(TraceEventFormatConstants.EVENT_PROCESS_ID).getAsInt();
+  }
+
+  /**
+   * Returns the arguments of the event with all values converted to strings, as used by {@link
+   * CompleteEvent}.
+   *
+   * @throws RuntimeException if the arguments are not an object or a value cannot be converted
+   */
+  Map<String, String> getArgumentsAsStrings() {
+    if (rawArgs != null) {
+      return rawArgs.decode();
+    }
+    if (stringArgs != null) {
+      if (invalidArgsReason != null) {
+        throw new IllegalArgumentException(invalidArgsReason);
+      }
+      return stringArgs;
+    }
+    Map<String, String> args = new LinkedHashMap<>();
+    for (var entry : getArgumentsAsJsonObject().entrySet()) {
+      args.put(entry.getKey(), entry.getValue().getAsString());
+    }
+    return args;
+  }
+
+  /**
+   * Returns the sum of the arguments of the event converted to doubles, as used by {@link
+   * CounterEvent}.
+   *
+   * @throws RuntimeException if the arguments are not an object or a value cannot be converted
+   */
+  double getArgumentsSum() {
+    if (counterValues != null) {
+      if (invalidArgsReason != null) {
+        throw new IllegalArgumentException(invalidArgsReason);
+      }
+      // Use the same compensated summation as summing up a DoubleStream of the JsonObject values.
+      return counterValues.values().stream().mapToDouble(Double::doubleValue).sum();
+    }
+    return getArgumentsAsJsonObject().entrySet().stream()
+        .mapToDouble(e -> e.getValue().getAsDouble())
+        .sum();
+  }
+
+  /**
+   * Returns the arguments of the event as a {@link JsonObject}.
+   *
+   * @throws IllegalArgumentException if the event does not have arguments
+   * @throws RuntimeException if the arguments are not an object
+   */
+  public JsonObject getArgumentsAsJsonObject() {
+    if (hasDecodedArguments()) {
+      return decodedArgumentsAsJsonObject();
+    }
+    return getMember(TraceEventFormatConstants.EVENT_ARGUMENTS).getAsJsonObject();
+  }
+
+  private JsonObject decodedArgumentsAsJsonObject() {
+    if (invalidArgsReason != null) {
+      throw new IllegalArgumentException(invalidArgsReason);
+    }
+    // Only reached if the phase changed after the arguments were decoded, which Bazel never does.
+    JsonObject args = new JsonObject();
+    if (rawArgs != null) {
+      rawArgs.decode().forEach(args::addProperty);
+    } else if (stringArgs != null) {
+      stringArgs.forEach(args::addProperty);
+    } else {
+      counterValues.forEach(args::addProperty);
+    }
+    return args;
+  }
+
+  /**
+   * Returns the location of the "args" object of the event if it was skipped instead of decoded,
+   * otherwise {@code null}.
+   */
+  @Nullable
+  RawArguments getRawArguments() {
+    return rawArgs;
+  }
+
+  private JsonElement getMember(String member) {
+    JsonElement element = otherMembers.get(member);
+    if (element == null) {
+      throw new IllegalArgumentException(String.format("Missing member \"%s\"", member));
+    }
+    return element;
+  }
+
+  /**
+   * Returns the event as a {@link JsonObject}, as if it had been parsed by {@link JsonParser}.
+   *
+   * <p>This is meant for the rare events that are not represented by a dedicated class, such as
+   * unknown metadata events.
+   */
+  public JsonObject toJsonObject() {
+    JsonObject object = new JsonObject();
+    if (phase != null) {
+      object.addProperty(TraceEventFormatConstants.EVENT_PHASE, phase);
+    }
+    if (name != null) {
+      object.addProperty(TraceEventFormatConstants.EVENT_NAME, name);
+    }
+    if (category != null) {
+      object.addProperty(TraceEventFormatConstants.EVENT_CATEGORY, category);
+    }
+    if ((presentNumbers & HAS_TIMESTAMP) != 0) {
+      object.add(TraceEventFormatConstants.EVENT_TIMESTAMP, toJsonNumber(timestamp));
+    }
+    if ((presentNumbers & HAS_DURATION) != 0) {
+      object.add(TraceEventFormatConstants.EVENT_DURATION, toJsonNumber(duration));
+    }
+    if ((presentNumbers & HAS_THREAD_ID) != 0) {
+      object.add(TraceEventFormatConstants.EVENT_THREAD_ID, toJsonNumber(threadId));
+    }
+    if ((presentNumbers & HAS_PROCESS_ID) != 0) {
+      object.add(TraceEventFormatConstants.EVENT_PROCESS_ID, toJsonNumber(processId));
+    }
+    if (hasDecodedArguments()) {
+      object.add(TraceEventFormatConstants.EVENT_ARGUMENTS, decodedArgumentsAsJsonObject());
+    }
+    otherMembers.forEach(object::add);
+    return object;
+  }
+
+  private static JsonPrimitive toJsonNumber(long value) {
+    // Parse the number, so that it is represented the same way as when parsing the whole event.
+    return JsonParser.parseString(Long.toString(value)).getAsJsonPrimitive();
+  }
+}
@@ -59,6 +59,38 @@ public class InstantEvent {
         Timestamp.ofMicros(event.get(TraceEventFormatConstants.EVENT_TIMESTAMP).getAsLong()));
   }
 
+  /**
+   * Creates an {@link InstantEvent} from a trace event decoded from the JSON stream. The result is
+   * the same as calling {@link #fromJson(JsonObject)} on the equivalent {@link JsonObject}.
+   */
+  public static InstantEvent fromTraceEvent(DecodedTraceEvent event) {
+    List<String> missingMembers = Lists.newArrayList();
+    for (String requiredMember : REQUIRED_JSON_MEMBERS) {
+      if (!event.has(requiredMember)) {
+        missingMembers.add(requiredMember);
+      }
+    }
+    if (!missingMembers.isEmpty()) {
+      throw new IllegalArgumentException(
+          "Missing members: " + Arrays.toString(missingMembers.toArray()));
+    }
+
+    return new InstantEvent(
+        event.getCategory(), event.getName(), Timestamp.ofMicros(event.getTimestamp()));
+  }
+
+  /**
+   * Creates an {@link InstantEvent} from a trace event decoded from the JSON stream, like {@link
+   * #fromTraceEvent(DecodedTraceEvent)}, taking its strings from the passed-in symbol table.
+   */
+  public static InstantEvent fromTraceEvent(DecodedTraceEvent event, SymbolTable symbols) {
+    InstantEvent instantEvent = fromTraceEvent(event);
+    return new InstantEvent(
+        symbols.canonicalize(instantEvent.category),
+        symbols.canonicalize(instantEvent.name),
+        instantEvent.timestamp);
+  }
+
   /**
    * Parses a {@link InstantEvent} from a JsonObject.
    *
@@ -73,8 +105,8 @@ public class InstantEvent {
   }
 
   private InstantEvent(String category, String name, Timestamp timestamp) {
-    this.category = Preconditions.checkNotNull(category).intern();
-    this.name = Preconditions.checkNotNull(name).intern();
+    this.category = Preconditions.checkNotNull(category);
+    this.name = Preconditions.checkNotNull(name);
     this.timestamp = Preconditions.checkNotNull(timestamp);
   }
 
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import com.google.common.base.Preconditions;
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+
+/**
+ * The arguments of a trace event that are decoded from {@link RawArguments} when they are first
+ * accessed. The decoded strings are taken from the passed-in symbol table.
+ *
+ * <p>The arguments may be accessed concurrently. Threads that first access them at the same time
+ * may each decode them, which yields equal results.
+ *
+ * <p>If the arguments turn out to be malformed, accessing them throws an {@link
+ * IllegalStateException} rather than parsing the profile failing.
+ */
+final class LazyArgs extends AbstractMap<String, String> {
+  private final RawArguments rawArguments;
+  private final SymbolTable symbols;
+  @Nullable private final Consumer<CompactArgs> onDecoded;
+  @Nullable private volatile CompactArgs decoded;
+
+  LazyArgs(RawArguments rawArguments, SymbolTable symbols) {
+    this(rawArguments, symbols, null);
+  }
+
+  /**
+   * @param onDecoded called with the decoded arguments once they are decoded, e.g. to keep them in
+   *     place of the raw arguments
+   */
+  LazyArgs(
+      RawArguments rawArguments, SymbolTable symbols, @Nullable Consumer<CompactArgs> onDecoded) {
+    this.rawArguments = Preconditions.checkNotNull(rawArguments);
+    this.symbols = Preconditions.checkNotNull(symbols);
+    this.onDecoded = onDecoded;
+  }
+
+  RawArguments getRawArguments() {
+    return rawArguments;
+  }
+
+  SymbolTable getSymbolTable() {
+    return symbols;
+  }
+
+  /** Returns whether the arguments have been decoded already. */
+  boolean isDecoded() {
+    return decoded != null;
+  }
+
+  /**
+   * Returns the decoded arguments.
+   *
+   * @throws IllegalStateException if the arguments cannot be decoded
+   */
+  CompactArgs getDecoded() {
+    CompactArgs args = decoded;
+    if (args == null) {
+      Map<String, String> decodedArgs = rawArguments.decode();
+      String[] keys = new String[decodedArgs.size()];
+      String[] values = new String[decodedArgs.size()];
+      int i = 0;
+      for (Map.Entry<String, String> entry : decodedArgs.entrySet()) {
+        keys[i] = symbols.canonicalize(entry.getKey());
+        values[i++] = symbols.canonicalize(entry.getValue());
+      }
+      args = keys.length == 0 ? CompactArgs.of() : new CompactArgs(keys, values);
+      decoded = args;
+      if (onDecoded != null) {
+        onDecoded.accept(args);
+      }
+    }
+    return args;
+  }
+
+  @Override
+  public int size() {
+    return getDecoded().size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return getDecoded().isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    return getDecoded().containsKey(key);
+  }
+
+  @Override
+  @Nullable
+  public String get(@Nullable Object key) {
+    return getDecoded().get(key);
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return getDecoded().entrySet();
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    return this == o || getDecoded().equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    return getDecoded().hashCode();
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The location of the "args" object of a trace event in the text it was parsed from. The object is
+ * only decoded when the arguments are first accessed, as most analyses never look at them.
+ *
+ * <p>Only use this for objects whose values are strings, numbers or booleans, which can always be
+ * converted the same way {@link DecodedTraceEvent} converts the arguments of complete events.
+ */
+public final class RawArguments {
+  private final RawArgumentsSource source;
+  private final long start;
+  private final long end;
+
+  /**
+   * @param source the text the trace event was parsed from
+   * @param start the position of the opening brace of the "args" object
+   * @param end the position after the closing brace of the "args" object
+   */
+  public RawArguments(RawArgumentsSource source, long start, long end) {
+    Preconditions.checkArgument(0 <= start && start < end);
+    this.source = Preconditions.checkNotNull(source);
+    this.start = start;
+    this.end = end;
+  }
+
+  public RawArgumentsSource getSource() {
+    return source;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public long getEnd() {
+    return end;
+  }
+
+  /**
+   * Decodes the arguments, converting all values to strings.
+   *
+   * @throws IllegalStateException if the source no longer contains a valid "args" object
+   */
+  Map<String, String> decode() {
+    try (JsonReader reader = new JsonReader(source.newReader(start, end))) {
+      reader.setStrictness(Strictness.LENIENT);
+      return DecodedTraceEvent.readStringArguments(reader);
+    } catch (IOException | RuntimeException e) {
+      throw new IllegalStateException(
+          String.format("Could not decode the arguments at [%d, %d).", start, end), e);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import java.io.Reader;
+
+/**
+ * The text trace events were parsed from, which is kept so that the arguments of the events can be
+ * decoded when they are first accessed instead of while parsing, see {@link RawArguments}.
+ */
+public interface RawArgumentsSource {
+  /**
+   * Returns a reader for the text between the passed-in positions.
+   *
+   * @param start the position of the first character to read
+   * @param end the position after the last character to read
+   * @return a reader for the text
+   */
+  Reader newReader(long start, long end);
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Maps the strings of a profile, such as event names, categories and argument keys, to dense ids,
+ * starting at 0.
+ *
+ * <p>Unlike {@link String#intern()}, the strings are only kept as long as the table is referenced,
+ * which usually is as long as the profile they were read from.
+ *
+ * <p>Strings may be added concurrently. An id may be passed to {@link #get(int)} on any thread that
+ * received it from this table, either directly or through data that was safely published.
+ */
+public final class SymbolTable {
+  /** The id used for strings that are not part of a table. */
+  public static final int NO_SYMBOL = -1;
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private final ImmutableList<String> predefinedSymbols;
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  // Only written while holding the lock on this table.
+  private volatile String[] symbols;
+  private int size;
+
+  /** Creates an empty table. */
+  public SymbolTable() {
+    this(ImmutableList.of());
+  }
+
+  /**
+   * Creates a table that starts with the passed-in symbols, so that the id of each of them is its
+   * index in the list, no matter which other strings are added to the table.
+   */
+  public SymbolTable(List<String> predefinedSymbols) {
+    this.predefinedSymbols = ImmutableList.copyOf(predefinedSymbols);
+    this.symbols = new String[Math.max(INITIAL_CAPACITY, this.predefinedSymbols.size())];
+    for (String symbol : this.predefinedSymbols) {
+      Preconditions.checkArgument(
+          ids.putIfAbsent(symbol, size) == null, "Duplicate symbol \"%s\".", symbol);
+      symbols[size++] = symbol;
+    }
+  }
+
+  /**
+   * Returns the id of the passed-in string, adding it to the table if it is not part of it yet.
+   *
+   * @param string the string to look up
+   * @return the id of the string
+   */
+  public int intern(String string) {
+    Integer id = ids.get(Preconditions.checkNotNull(string));
+    if (id != null) {
+      return id;
+    }
+    synchronized (this) {
+      id = ids.get(string);
+      if (id != null) {
+        return id;
+      }
+      String[] currentSymbols = symbols;
+      if (size == currentSymbols.length) {
+        currentSymbols = Arrays.copyOf(currentSymbols, size + (size >> 1));
+        symbols = currentSymbols;
+      }
+      currentSymbols[size] = string;
+      ids.put(string, size);
+      return size++;
+    }
+  }
+
+  /**
+   * Returns the instance of the passed-in string that is kept by this table, adding it if needed.
+   * Use this to share equal strings in place of {@link String#intern()}.
+   */
+  public String canonicalize(String string) {
+    return get(intern(string));
+  }
+
+  /**
+   * Returns the id of the passed-in string, or {@link #NO_SYMBOL} if it is {@code null} or not part
+   * of the table.
+   */
+  public int getId(@Nullable String string) {
+    if (string == null) {
+      return NO_SYMBOL;
+    }
+    Integer id = ids.get(string);
+    return id == null ? NO_SYMBOL : id;
+  }
+
+  /**
+   * Returns the string with the passed-in id.
+   *
+   * @throws IllegalArgumentException if no string with that id was added to this table
+   */
+  public String get(int id) {
+    String[] currentSymbols = symbols;
+    String symbol = id >= 0 && id < currentSymbols.length ? currentSymbols[id] : null;
+    Preconditions.checkArgument(symbol != null, "Unknown symbol id %s.", id);
+    return symbol;
+  }
+
+  /** Returns the symbols this table was created with. */
+  public ImmutableList<String> getPredefinedSymbols() {
+    return predefinedSymbols;
+  }
+
+  /** Returns the number of strings in the table. */
+  public int size() {
+    return ids.size();
+  }
+}
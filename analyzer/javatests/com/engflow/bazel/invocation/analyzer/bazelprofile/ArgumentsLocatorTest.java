@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.CharStreams;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArgumentsLocatorTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /** Locates the arguments of the passed-in number of events and returns their text. */
+  private List<String> locate(String events, int count, long segmentSize) throws Exception {
+    Path path = tempFolder.newFile().toPath();
+    Files.write(path, events.getBytes(StandardCharsets.UTF_8));
+    MappedFile file = MappedFile.map(path, segmentSize);
+    ArgumentsLocator locator = new ArgumentsLocator(file, 0, file.size());
+    List<String> located = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      var rawArguments = locator.next();
+      if (rawArguments == null) {
+        located.add(null);
+      } else {
+        try (var reader = file.newReader(rawArguments.getStart(), rawArguments.getEnd())) {
+          located.add(CharStreams.toString(reader));
+        }
+      }
+    }
+    return located;
+  }
+
+  private List<String> locate(String events, int count) throws Exception {
+    return locate(events, count, 1024);
+  }
+
+  @Test
+  public void shouldLocateArgumentsOfEachEvent() throws Exception {
+    String events =
+        " {\"ph\":\"X\",\"args\":{\"target\":\"//a:b\",\"n\":1}},\n"
+            + "{\"name\":\"{\\\"args\\\":{}\",\"x\":{\"args\":{\"a\":\"b\"}}},\n"
+            + "{\"args\" : { } , \"ph\":\"X\"},"
+            + "{\"args\":{\"é\":\"€ 𝄞\",\"t\":true}}";
+    assertThat(locate(events, 4))
+        .containsExactly(
+            "{\"target\":\"//a:b\",\"n\":1}", null, "{ }", "{\"é\":\"€ 𝄞\",\"t\":true}")
+        .inOrder();
+    for (long segmentSize = 4; segmentSize < 40; segmentSize++) {
+      assertThat(locate(events, 4, segmentSize))
+          .containsExactly(
+              "{\"target\":\"//a:b\",\"n\":1}", null, "{ }", "{\"é\":\"€ 𝄞\",\"t\":true}")
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void shouldLocateLastArguments() throws Exception {
+    assertThat(locate("{\"args\":{\"a\":\"1\"},\"args\":{\"b\":\"2\"}}", 1))
+        .containsExactly("{\"b\":\"2\"}");
+    assertThat(locate("{\"args\":{\"a\":\"1\"},\"args\":\"2\"}", 1)).containsExactly((String) null);
+  }
+
+  @Test
+  public void shouldLeaveUnsupportedValuesToParser() throws Exception {
+    assertThat(
+            locate(
+                "{\"args\":{\"a\":null}},{\"args\":{\"a\":[1]}},{\"args\":{\"a\":{}}},"
+                    + "{\"args\":{\"a\":\"b\"}}",
+                4))
+        .containsExactly(null, null, null, "{\"a\":\"b\"}")
+        .inOrder();
+  }
+
+  @Test
+  public void shouldStopAtLenientSyntax() throws Exception {
+    assertThat(locate("{'args':{}},{\"args\":{}}", 2)).containsExactly(null, null);
+    assertThat(locate("{\"args\":{a\"b\":1}},{\"args\":{}}", 2)).containsExactly(null, null);
+    assertThat(locate("{\"args\":{}} // comment\n,{\"args\":{}}", 2))
+        .containsExactly("{}", null)
+        .inOrder();
+    assertThat(locate("{\"args\":{}}", 2)).containsExactly("{}", null).inOrder();
+  }
+}
@@ -12,7 +12,12 @@ import static com.google.common.truth.Truth.assertThat;
 import com.engflow.bazel.invocation.analyzer.time.DurationUtil;
 import com.engflow.bazel.invocation.analyzer.time.Timestamp;
 import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.DecodedTraceEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.SymbolTable;
 import com.google.common.collect.ImmutableMap;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.StringReader;
 import java.time.Duration;
 import org.junit.Test;
 
@@ -125,6 +130,36 @@ public class BazelEventsUtilTest {
         .isFalse();
   }
 
+  @Test
+  public void shouldMatchEventsReadWithSymbolTableOfProfile() throws IOException {
+    var symbols = ProfileThread.newSymbolTable();
+    var cacheCheck = readCompleteEvent("random name", CAT_REMOTE_ACTION_CACHE_CHECK, symbols);
+    var upload = readCompleteEvent("upload", CAT_REMOTE_EXECUTION_UPLOAD_TIME, symbols);
+    var subprocess = readCompleteEvent("subprocess.run", CAT_GENERAL_INFORMATION, symbols);
+
+    assertThat(cacheCheck.getSymbolTable()).isSameInstanceAs(symbols);
+    assertThat(cacheCheck.getCategoryId()).isNotEqualTo(SymbolTable.NO_SYMBOL);
+    assertThat(BazelEventsUtil.indicatesRemoteCacheCheck(cacheCheck)).isTrue();
+    assertThat(BazelEventsUtil.indicatesRemoteUploadOutputs(cacheCheck)).isFalse();
+    assertThat(BazelEventsUtil.indicatesRemoteUploadOutputs(upload)).isTrue();
+    assertThat(BazelEventsUtil.indicatesRemoteCacheCheck(upload)).isFalse();
+    assertThat(BazelEventsUtil.indicatesLocalExecution(subprocess)).isTrue();
+    assertThat(BazelEventsUtil.indicatesRemoteDownloadOutputs(subprocess)).isFalse();
+  }
+
+  @Test
+  public void shouldMatchEventsReadWithOtherSymbolTable() throws IOException {
+    var symbols = new SymbolTable();
+    symbols.intern("some other string");
+    var cacheCheck = readCompleteEvent("random name", CAT_REMOTE_ACTION_CACHE_CHECK, symbols);
+    var upload = readCompleteEvent("upload", CAT_REMOTE_EXECUTION_UPLOAD_TIME, symbols);
+
+    assertThat(BazelEventsUtil.indicatesRemoteCacheCheck(cacheCheck)).isTrue();
+    assertThat(BazelEventsUtil.indicatesRemoteUploadOutputs(cacheCheck)).isFalse();
+    assertThat(BazelEventsUtil.indicatesRemoteUploadOutputs(upload)).isTrue();
+    assertThat(BazelEventsUtil.indicatesRemoteCacheCheck(upload)).isFalse();
+  }
+
   @Test
   public void summarizeCompleteActionWithoutArgs() {
     var eventName = "some random name";
@@ -177,4 +212,15 @@ public class BazelEventsUtilTest {
     return new CompleteEvent(
         name, category, Timestamp.ofSeconds(1), Duration.ofSeconds(1), 1, 1, ImmutableMap.of());
   }
+
+  private static CompleteEvent readCompleteEvent(String name, String category, SymbolTable symbols)
+      throws IOException {
+    String json =
+        String.format(
+            "{\"ph\":\"X\",\"name\":\"%s\",\"cat\":\"%s\","
+                + "\"ts\":1,\"dur\":1,\"pid\":1,\"tid\":1}",
+            name, category);
+    return CompleteEvent.fromTraceEvent(
+        DecodedTraceEvent.decode(new JsonReader(new StringReader(json))), symbols);
+  }
 }
@@ -32,6 +32,7 @@ import com.engflow.bazel.invocation.analyzer.core.DuplicateProviderException;
 import com.engflow.bazel.invocation.analyzer.core.InvalidProfileException;
 import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
 import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
+import com.engflow.bazel.invocation.analyzer.core.Tracer;
 import com.engflow.bazel.invocation.analyzer.dataproviders.BazelVersion;
 import com.engflow.bazel.invocation.analyzer.time.TimeUtil;
 import com.engflow.bazel.invocation.analyzer.time.Timestamp;
@@ -40,13 +41,31 @@ import com.engflow.bazel.invocation.analyzer.traceeventformat.TraceEventFormatCo
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.gson.JsonParser;
 import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class BazelProfileTest extends UnitTestBase {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
   @Test
   public void shouldRejectWhenInvalidJson() {
     assertThrows(
@@ -120,6 +139,32 @@ public class BazelProfileTest extends UnitTestBase {
     assertThat(bazelProfile.getThreads().count()).isGreaterThan(0);
   }
 
+  @Test
+  public void shouldParseGzippedJsonBazelProfileWithoutReadAhead() {
+    String profilePath = RUNFILES.rlocation(ROOT + "tiny.json.gz");
+    BazelProfile withReadAhead = BazelProfile.createFromPath(profilePath);
+    BazelProfile withoutReadAhead =
+        BazelProfile.createFromPath(
+            profilePath, ParseOptions.newBuilder().setReadAhead(false).build());
+    assertThat(withReadAhead.getThreads().collect(Collectors.toSet()))
+        .isEqualTo(withoutReadAhead.getThreads().collect(Collectors.toSet()));
+  }
+
+  @Test
+  public void shouldRejectTruncatedGzippedJsonBazelProfile() throws Exception {
+    byte[] compressed =
+        Files.readAllBytes(
+            WriteBazelProfile.toCompressed(
+                tempFolder.getRoot().toPath().resolve("profile.json.gz"),
+                metaData(),
+                trace(mainThread())));
+    Path truncated = tempFolder.getRoot().toPath().resolve("truncated.json.gz");
+    Files.write(truncated, Arrays.copyOf(compressed, compressed.length - 20));
+
+    assertThrows(
+        IllegalArgumentException.class, () -> BazelProfile.createFromPath(truncated.toString()));
+  }
+
   @Test
   public void shouldParseJsonBazelProfile() {
     String profilePath = RUNFILES.rlocation(ROOT + "bazel-profile-Long-Phase-Test.json");
@@ -127,6 +172,225 @@ public class BazelProfileTest extends UnitTestBase {
     assertThat(bazelProfile.getThreads().count()).isGreaterThan(0);
   }
 
+  @Test
+  public void shouldParseSameThreadsAsJsonObjects() throws Exception {
+    String profilePath = RUNFILES.rlocation(ROOT + "tiny.json.gz");
+    Map<ThreadId, ProfileThread> expectedThreads = new HashMap<>();
+    try (var reader =
+        new InputStreamReader(
+            new GZIPInputStream(new FileInputStream(profilePath)), StandardCharsets.UTF_8)) {
+      var traceEvents =
+          JsonParser.parseReader(reader)
+              .getAsJsonObject()
+              .getAsJsonArray(TraceEventFormatConstants.SECTION_TRACE_EVENTS);
+      for (var element : traceEvents) {
+        var event = element.getAsJsonObject();
+        var threadId =
+            new ThreadId(
+                event.get(TraceEventFormatConstants.EVENT_PROCESS_ID).getAsInt(),
+                event.get(TraceEventFormatConstants.EVENT_THREAD_ID).getAsInt());
+        expectedThreads.computeIfAbsent(threadId, ProfileThread::new).addEvent(event);
+      }
+    }
+
+    BazelProfile bazelProfile = BazelProfile.createFromPath(profilePath);
+    assertThat(
+            bazelProfile
+                .getThreads()
+                .collect(Collectors.toMap(ProfileThread::getThreadId, Function.identity())))
+        .containsExactlyEntriesIn(expectedThreads);
+  }
+
+  @Test
+  public void shouldParseJsonBazelProfileInParallel() {
+    String profilePath = RUNFILES.rlocation(ROOT + "bazel-profile-Long-Phase-Test.json");
+    assertParsesSameInParallel(profilePath);
+  }
+
+  @Test
+  public void shouldParseGeneratedBazelProfileInParallel() throws Exception {
+    assertParsesSameInParallel(writeProfileWithTargets().toString());
+  }
+
+  @Test
+  public void shouldParseSameWithLazyArguments() throws Exception {
+    for (String profilePath :
+        List.of(
+            writeProfileWithTargets().toString(),
+            RUNFILES.rlocation(ROOT + "bazel-profile-Long-Phase-Test.json"))) {
+      assertParsesSame(profilePath, ParseOptions.newBuilder().setLazyArguments(true).build());
+      assertParsesSame(
+          profilePath,
+          ParseOptions.newBuilder()
+              .setLazyArguments(true)
+              .setParallelism(4)
+              .setMinChunkSize(1)
+              .build());
+    }
+  }
+
+  @Test
+  public void shouldDropArgumentsOfOtherCategories() throws Exception {
+    Path profilePath = writeProfileWithTargets();
+    for (boolean lazyArguments : new boolean[] {false, true}) {
+      var profile =
+          BazelProfile.createFromPath(
+              profilePath.toString(),
+              ParseOptions.newBuilder()
+                  .setLazyArguments(lazyArguments)
+                  .setProjection(
+                      ProfileProjection.newBuilder()
+                          .keepAllCompleteEvents()
+                          .addArgumentsCategories(BazelProfileConstants.CAT_ACTION_PROCESSING)
+                          .build())
+                  .build());
+      var events =
+          profile
+              .getThreads()
+              .flatMap(thread -> thread.getCompleteEvents().stream())
+              .collect(Collectors.toList());
+      assertThat(events).hasSize(101);
+      for (CompleteEvent event : events) {
+        if (BazelProfileConstants.CAT_ACTION_PROCESSING.equals(event.category)) {
+          assertThat(event.args).containsExactly("target", "//foo:bar,[{");
+        } else {
+          assertThat(event.args).isEmpty();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldOnlyKeepProjectedEvents() throws Exception {
+    Path profilePath = writeProfileWithTargets();
+    for (boolean parallel : new boolean[] {false, true}) {
+      var profile =
+          BazelProfile.createFromPath(
+              profilePath.toString(),
+              ParseOptions.newBuilder()
+                  .setParallelism(parallel ? 4 : 1)
+                  .setMinChunkSize(1)
+                  .setProjection(
+                      ProfileProjection.newBuilder()
+                          .addCompleteEventCategories(
+                              BazelProfileConstants.CAT_GENERAL_INFORMATION)
+                          .build())
+                  .build());
+      var events =
+          profile
+              .getThreads()
+              .flatMap(thread -> thread.getCompleteEvents().stream())
+              .collect(Collectors.toList());
+      assertThat(events).hasSize(1);
+      assertThat(events.get(0).category).isEqualTo(BazelProfileConstants.CAT_GENERAL_INFORMATION);
+      // Events read by the profile itself are always kept, as are the names of all threads.
+      assertThat(profile.getActionCounts().get()).hasSize(100);
+      assertThat(profile.getThreads().map(ProfileThread::getName).collect(Collectors.toList()))
+          .containsExactly(
+              BazelProfileConstants.THREAD_MAIN, "skyframe-evaluator-1", "skyframe-evaluator-2");
+    }
+  }
+
+  @Test
+  public void shouldSummarizeDroppedEvents() throws Exception {
+    Path profilePath =
+        WriteBazelProfile.to(
+            tempFolder.getRoot().toPath().resolve("profile.json"),
+            metaData(),
+            trace(
+                mainThread(),
+                thread(
+                    1,
+                    1,
+                    "skyframe-evaluator-1",
+                    complete(
+                        "merged 3 events",
+                        BazelProfileConstants.CAT_ACTION_PROCESSING,
+                        Timestamp.ofMicros(10),
+                        TimeUtil.getDurationForMicros(5)))));
+    for (boolean parallel : new boolean[] {false, true}) {
+      var profile =
+          BazelProfile.createFromPath(
+              profilePath.toString(),
+              ParseOptions.newBuilder()
+                  .setParallelism(parallel ? 4 : 1)
+                  .setMinChunkSize(1)
+                  .setProjection(ProfileProjection.none())
+                  .build());
+      ProfileThread thread = profile.getSkyframeEvaluators().get(1).get(0);
+
+      assertThat(thread.getCompleteEvents()).isEmpty();
+      assertThat(thread.hasCompleteEventContainedIn(Timestamp.ofMicros(0), Timestamp.ofMicros(15)))
+          .isTrue();
+      assertThat(thread.hasCompleteEventContainedIn(Timestamp.ofMicros(0), Timestamp.ofMicros(14)))
+          .isFalse();
+      assertThat(profile.hasMergedEvents()).isTrue();
+    }
+  }
+
+  private Path writeProfileWithTargets() throws Exception {
+    return WriteBazelProfile.to(
+        tempFolder.getRoot().toPath().resolve("profile.json"),
+        metaData(),
+        trace(
+            mainThread(
+                sequence(
+                    IntStream.range(0, 100).boxed(),
+                    ts ->
+                        count(
+                            BazelProfileConstants.COUNTER_ACTION_COUNT,
+                            ts,
+                            "action",
+                            String.valueOf(ts)))),
+            thread(
+                1,
+                1,
+                "skyframe-evaluator-1",
+                sequence(
+                    IntStream.range(0, 100).boxed(),
+                    ts ->
+                        complete(
+                            "action " + ts,
+                            BazelProfileConstants.CAT_ACTION_PROCESSING,
+                            Timestamp.ofMicros(ts),
+                            TimeUtil.getDurationForMicros(1),
+                            WriteBazelProfile.Property.put("target", "//foo:bar,[{")))),
+            thread(
+                2,
+                2,
+                "skyframe-evaluator-2",
+                complete(
+                    "other",
+                    BazelProfileConstants.CAT_GENERAL_INFORMATION,
+                    Timestamp.ofMicros(0),
+                    TimeUtil.getDurationForMicros(1),
+                    WriteBazelProfile.Property.put("target", "//foo:baz")))));
+  }
+
+  private static void assertParsesSameInParallel(String profilePath) {
+    assertParsesSame(
+        profilePath, ParseOptions.newBuilder().setParallelism(4).setMinChunkSize(1).build());
+  }
+
+  /** Asserts that parsing with the passed-in options yields the same as parsing a stream. */
+  private static void assertParsesSame(String profilePath, ParseOptions options) {
+    var sequential =
+        BazelProfile.createFromPath(
+            profilePath,
+            ParseOptions.newBuilder().setMemoryMapping(false).setParallelism(1).build());
+    var parallel = BazelProfile.createFromPath(profilePath, options);
+
+    assertThat(parallel.getBazelVersion()).isEqualTo(sequential.getBazelVersion());
+    assertThat(
+            parallel
+                .getThreads()
+                .collect(Collectors.toMap(ProfileThread::getThreadId, Function.identity())))
+        .containsExactlyEntriesIn(
+            sequential
+                .getThreads()
+                .collect(Collectors.toMap(ProfileThread::getThreadId, Function.identity())));
+  }
+
   @Test
   public void shouldReturnDataProviderForBazelProfile() throws Exception {
     String profilePath = RUNFILES.rlocation(ROOT + "tiny.json.gz");
@@ -349,6 +613,165 @@ public class BazelProfileTest extends UnitTestBase {
     assertThat(profile.getActionCounts().get().size()).isEqualTo(201);
   }
 
+  @Test
+  public void getSkyframeEvaluatorIndexShouldParseThreadName() {
+    assertThat(BazelProfile.getSkyframeEvaluatorIndex(namedThread("skyframe-evaluator 3")))
+        .isEqualTo(3);
+    assertThat(BazelProfile.getSkyframeEvaluatorIndex(namedThread("skyframe-evaluator-4")))
+        .isEqualTo(4);
+    assertThat(
+            BazelProfile.getSkyframeEvaluatorIndex(namedThread("skyframe-evaluator-cpu-heavy-5")))
+        .isEqualTo(5);
+    assertThat(BazelProfile.getSkyframeEvaluatorIndex(namedThread("skyframe-evaluator"))).isNull();
+    assertThat(BazelProfile.getSkyframeEvaluatorIndex(namedThread("Main Thread"))).isNull();
+    assertThat(BazelProfile.getSkyframeEvaluatorIndex(new ProfileThread(new ThreadId(0, 0))))
+        .isNull();
+  }
+
+  @Test
+  public void shouldClassifyThreadsByRole() throws Exception {
+    var profile =
+        useProfile(
+            metaData(),
+            trace(
+                mainThread(),
+                thread(1, 1, BazelProfileConstants.THREAD_CRITICAL_PATH),
+                thread(
+                    2,
+                    2,
+                    BazelProfileConstants.THREAD_GARBAGE_COLLECTOR,
+                    complete(
+                        BazelProfileConstants.COMPLETE_MAJOR_GARBAGE_COLLECTION,
+                        BazelProfileConstants.CAT_GARBAGE_COLLECTION,
+                        Timestamp.ofMicros(1),
+                        TimeUtil.getDurationForMicros(1))),
+                thread(3, 3, "skyframe-evaluator-0"),
+                thread(4, 4, "skyframe-evaluator-cpu-heavy-0"),
+                thread(5, 5, "skyframe-evaluator-7")));
+
+    assertThat(profile.getMainThread().getName()).isEqualTo(BazelProfileConstants.THREAD_MAIN);
+    assertThat(profile.getCriticalPath().get().getName())
+        .isEqualTo(BazelProfileConstants.THREAD_CRITICAL_PATH);
+    assertThat(profile.getGarbageCollectorThread().get().getName())
+        .isEqualTo(BazelProfileConstants.THREAD_GARBAGE_COLLECTOR);
+    assertThat(profile.getSkyframeEvaluators().keySet()).containsExactly(0, 7);
+    assertThat(profile.getSkyframeEvaluators().get(0)).hasSize(2);
+    assertThat(profile.getSkyframeEvaluators().get(7).get(0).getName())
+        .isEqualTo("skyframe-evaluator-7");
+  }
+
+  @Test
+  public void shouldIndexCompleteEventsByCategory() throws Exception {
+    var profile =
+        useProfile(
+            metaData(),
+            trace(
+                mainThread(),
+                thread(
+                    1,
+                    1,
+                    "skyframe-evaluator-0",
+                    complete(
+                        "a",
+                        BazelProfileConstants.CAT_ACTION_PROCESSING,
+                        Timestamp.ofMicros(30),
+                        TimeUtil.getDurationForMicros(5)),
+                    complete(
+                        "b",
+                        BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME,
+                        Timestamp.ofMicros(10),
+                        TimeUtil.getDurationForMicros(5))),
+                thread(
+                    2,
+                    2,
+                    "skyframe-evaluator-1",
+                    complete(
+                        "c",
+                        BazelProfileConstants.CAT_ACTION_PROCESSING,
+                        Timestamp.ofMicros(20),
+                        TimeUtil.getDurationForMicros(5)),
+                    complete(
+                        "d",
+                        BazelProfileConstants.CAT_ACTION_PROCESSING,
+                        Timestamp.ofMicros(40),
+                        TimeUtil.getDurationForMicros(5)))));
+
+    assertThat(
+            profile.getCompleteEvents(BazelProfileConstants.CAT_ACTION_PROCESSING).stream()
+                .map(event -> event.name)
+                .collect(Collectors.toList()))
+        .containsExactly("c", "a", "d")
+        .inOrder();
+    assertThat(profile.getCompleteEvents(BazelProfileConstants.CAT_ACTION_PROCESSING))
+        .isSameInstanceAs(profile.getCompleteEvents(BazelProfileConstants.CAT_ACTION_PROCESSING));
+    assertThat(profile.hasCompleteEvents(BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME))
+        .isTrue();
+    assertThat(profile.hasCompleteEvents(BazelProfileConstants.CAT_GARBAGE_COLLECTION)).isFalse();
+    assertThat(profile.getCompleteEvents(BazelProfileConstants.CAT_GARBAGE_COLLECTION)).isEmpty();
+  }
+
+  @Test
+  public void shouldIndexCompleteEventsByName() throws Exception {
+    var profile =
+        useProfile(
+            metaData(),
+            trace(
+                mainThread(),
+                thread(
+                    1,
+                    1,
+                    "skyframe-evaluator-0",
+                    complete(
+                        "a",
+                        BazelProfileConstants.CAT_ACTION_PROCESSING,
+                        Timestamp.ofMicros(30),
+                        TimeUtil.getDurationForMicros(5)),
+                    complete(
+                        "b",
+                        BazelProfileConstants.CAT_ACTION_PROCESSING,
+                        Timestamp.ofMicros(10),
+                        TimeUtil.getDurationForMicros(5))),
+                thread(
+                    2,
+                    2,
+                    "skyframe-evaluator-1",
+                    complete(
+                        "a",
+                        BazelProfileConstants.CAT_ACTION_PROCESSING,
+                        Timestamp.ofMicros(20),
+                        TimeUtil.getDurationForMicros(5)),
+                    complete(
+                        "a",
+                        BazelProfileConstants.CAT_REMOTE_EXECUTION_QUEUING_TIME,
+                        Timestamp.ofMicros(40),
+                        TimeUtil.getDurationForMicros(5)))));
+
+    var eventsByName = profile.getCompleteEventsByName(BazelProfileConstants.CAT_ACTION_PROCESSING);
+    assertThat(eventsByName.keySet()).containsExactly("a", "b");
+    assertThat(
+            eventsByName.get("a").stream().map(event -> event.start).collect(Collectors.toList()))
+        .containsExactly(Timestamp.ofMicros(20), Timestamp.ofMicros(30))
+        .inOrder();
+    assertThat(eventsByName.get("c")).isEmpty();
+    assertThat(profile.getCompleteEventsByName(BazelProfileConstants.CAT_ACTION_PROCESSING))
+        .isSameInstanceAs(eventsByName);
+  }
+
+  @Test
+  public void shouldTraceParseStages() throws Exception {
+    List<String> spans = Collections.synchronizedList(new ArrayList<>());
+    Tracer tracer = (category, name, args) -> () -> spans.add(name);
+    BazelProfile.createFromInputStream(
+        WriteBazelProfile.toInputStream(metaData(), trace(mainThread())),
+        ParseOptions.newBuilder().setTracer(tracer).build());
+
+    assertThat(spans).containsAtLeast("Read profile", "Freeze threads", "Classify threads");
+  }
+
+  private static ProfileThread namedThread(String name) {
+    return new ProfileThread(new ThreadId(0, 0), name, null, null, null, null, null, null);
+  }
+
   @Test
   public void isMainThreadShouldReturnFalseOnUnnamedProfileThread() {
     ProfileThread thread = new ProfileThread(new ThreadId(0, 0));
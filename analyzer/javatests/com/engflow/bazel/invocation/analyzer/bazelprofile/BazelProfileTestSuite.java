@@ -19,7 +19,14 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+  ArgumentsLocatorTest.class,
   BazelProfileTest.class,
   BazelEventsUtilTest.class,
+  DroppedEventIntervalsTest.class,
+  MappedFileTest.class,
+  ProfileProjectionTest.class,
+  ProfileThreadTest.class,
+  ReadAheadInputStreamTest.class,
+  TraceEventsChunksTest.class,
 })
 public class BazelProfileTestSuite {}
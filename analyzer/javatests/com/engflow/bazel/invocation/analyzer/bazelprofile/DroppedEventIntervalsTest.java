@@ -0,0 +1,91 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class DroppedEventIntervalsTest {
+  @Test
+  public void shouldKeepOnlyIntervalsThatContainNoOther() {
+    var intervals = new DroppedEventIntervals();
+    intervals.add(0, 10);
+    intervals.add(5, 8);
+    intervals.add(2, 5);
+    intervals.add(2, 3);
+    intervals.add(5, 8);
+
+    intervals.compact();
+
+    assertThat(intervals.size()).isEqualTo(2);
+    assertThat(intervals.hasContainedIn(0, 10)).isTrue();
+    assertThat(intervals.hasContainedIn(2, 3)).isTrue();
+    assertThat(intervals.hasContainedIn(4, 8)).isTrue();
+    assertThat(intervals.hasContainedIn(3, 7)).isFalse();
+    assertThat(intervals.hasContainedIn(9, 20)).isFalse();
+  }
+
+  @Test
+  public void shouldCompactWhenBufferIsFull() {
+    var intervals = new DroppedEventIntervals();
+    for (int i = 0; i < 1000; i++) {
+      intervals.add(i, 2000 - i);
+    }
+
+    // Only the innermost interval is needed, so the buffer never had to grow beyond a few entries.
+    intervals.compact();
+    assertThat(intervals.size()).isEqualTo(1);
+    assertThat(intervals.hasContainedIn(999, 1001)).isTrue();
+    assertThat(intervals.hasContainedIn(1000, 2000)).isFalse();
+  }
+
+  @Test
+  public void shouldAnswerLikeSearchingAllIntervals() {
+    Random random = new Random(42);
+    long[] starts = new long[500];
+    long[] ends = new long[500];
+    var intervals = new DroppedEventIntervals();
+    var other = new DroppedEventIntervals();
+    for (int i = 0; i < starts.length; i++) {
+      starts[i] = random.nextInt(10_000);
+      ends[i] = starts[i] + random.nextInt(100);
+      (i % 2 == 0 ? intervals : other).add(starts[i], ends[i]);
+    }
+    intervals.addAll(other);
+    intervals.compact();
+    intervals.trimToSize();
+
+    for (int query = 0; query < 1000; query++) {
+      long from = random.nextInt(10_000);
+      long to = from + random.nextInt(200);
+      boolean expected = false;
+      for (int i = 0; i < starts.length; i++) {
+        expected |= starts[i] >= from && ends[i] <= to;
+      }
+      assertThat(intervals.hasContainedIn(from, to)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void shouldRejectReadingBeforeCompacting() {
+    var intervals = new DroppedEventIntervals();
+    intervals.add(0, 1);
+
+    assertThrows(IllegalStateException.class, () -> intervals.hasContainedIn(0, 1));
+  }
+}
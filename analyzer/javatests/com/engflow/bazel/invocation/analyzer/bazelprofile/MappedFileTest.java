@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.CharStreams;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedFileTest {
+  // Mixes ASCII with characters that are encoded as two, three and four bytes.
+  private static final String CONTENT = "{\"name\":\"café € 𝄞\"}".repeat(10);
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private MappedFile map(byte[] bytes, long segmentSize) throws Exception {
+    Path file = tempFolder.newFile().toPath();
+    Files.write(file, bytes);
+    return MappedFile.map(file, segmentSize);
+  }
+
+  private static String read(MappedFile file, long start, long end) throws Exception {
+    try (var reader = file.newReader(start, end)) {
+      return CharStreams.toString(reader);
+    }
+  }
+
+  @Test
+  public void shouldReadWholeFile() throws Exception {
+    var file = map(CONTENT.getBytes(StandardCharsets.UTF_8), 1024 * 1024);
+    assertThat(file.getSegmentCount()).isEqualTo(1);
+    assertThat(read(file, 0, file.size())).isEqualTo(CONTENT);
+  }
+
+  @Test
+  public void shouldReadAcrossSegments() throws Exception {
+    byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+    for (long segmentSize = 4; segmentSize < 40; segmentSize++) {
+      var file = map(bytes, segmentSize);
+      assertThat(file.getSegmentCount()).isGreaterThan(1);
+      assertThat(read(file, 0, file.size())).isEqualTo(CONTENT);
+    }
+  }
+
+  @Test
+  public void shouldReadRange() throws Exception {
+    String content = "[\"é\"],[\"a\"]";
+    var file = map(content.getBytes(StandardCharsets.UTF_8), 4);
+    assertThat(read(file, 0, 6)).isEqualTo("[\"é\"]");
+    assertThat(read(file, 7, file.size())).isEqualTo("[\"a\"]");
+    assertThat(read(file, 3, 3)).isEmpty();
+  }
+
+  @Test
+  public void shouldReplaceMalformedInput() throws Exception {
+    byte[] bytes = {'a', (byte) 0xC3, 'b', (byte) 0xE2, (byte) 0x82, (byte) 0xFF, 'c'};
+    var file = map(bytes, 1024);
+    assertThat(read(file, 0, file.size())).isEqualTo(new String(bytes, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void shouldReadLongNonAsciiRuns() throws Exception {
+    // Longer than a single decoding pass, with characters that straddle the passes.
+    String content = "a" + "é€𝄞".repeat(5_000) + "b";
+    var file = map(content.getBytes(StandardCharsets.UTF_8), 1024 * 1024);
+    assertThat(read(file, 0, file.size())).isEqualTo(content);
+  }
+
+  @Test
+  public void shouldReplaceLongMalformedRuns() throws Exception {
+    byte[] bytes = new byte[20_002];
+    Arrays.fill(bytes, (byte) 0x80);
+    bytes[0] = 'a';
+    bytes[bytes.length - 1] = 'b';
+    var file = map(bytes, 1024 * 1024);
+    assertThat(read(file, 0, file.size())).isEqualTo(new String(bytes, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void shouldReadEmptyFile() throws Exception {
+    var file = map(new byte[0], 1024);
+    assertThat(read(file, 0, 0)).isEmpty();
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.engflow.bazel.invocation.analyzer.traceeventformat.DecodedTraceEvent;
+import com.google.gson.stream.JsonReader;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.Test;
+
+public class ProfileProjectionTest {
+  @Test
+  public void allShouldKeepEverything() {
+    var projection = ProfileProjection.all();
+
+    assertThat(projection.keepsCompleteEvent("any")).isTrue();
+    assertThat(projection.keepsCompleteEvent(null)).isTrue();
+    assertThat(projection.keepsCounterEvent("any")).isTrue();
+    assertThat(projection.keepsInstantEvent("any")).isTrue();
+    assertThat(projection.getArgumentsCategories()).isNull();
+  }
+
+  @Test
+  public void shouldKeepOnlySelectedEvents() {
+    var projection =
+        ProfileProjection.newBuilder()
+            .addCompleteEventCategories("a", "b")
+            .addCounterNames("c")
+            .addInstantCategories("d")
+            .addArgumentsCategories("a")
+            .build();
+
+    assertThat(projection.keepsCompleteEvent("b")).isTrue();
+    assertThat(projection.keepsCompleteEvent("c")).isFalse();
+    assertThat(projection.keepsCompleteEvent(null)).isFalse();
+    assertThat(projection.keepsCounterEvent("c")).isTrue();
+    assertThat(projection.keepsCounterEvent("a")).isFalse();
+    assertThat(projection.keepsInstantEvent("d")).isTrue();
+    assertThat(projection.keepsInstantEvent("a")).isFalse();
+    assertThat(projection.getArgumentsCategories()).containsExactly("a");
+  }
+
+  @Test
+  public void unionShouldKeepEventsOfAll() {
+    var first =
+        ProfileProjection.newBuilder().addCompleteEventCategories("a").addCounterNames("c").build();
+    var second =
+        ProfileProjection.newBuilder()
+            .addCompleteEventCategories("b")
+            .keepAllInstantEvents()
+            .addArgumentsCategories("b")
+            .build();
+
+    var union = ProfileProjection.union(List.of(first, second));
+
+    assertThat(union.getCompleteEventCategories()).containsExactly("a", "b");
+    assertThat(union.getCounterNames()).containsExactly("c");
+    assertThat(union.getInstantCategories()).isNull();
+    assertThat(union.getArgumentsCategories()).containsExactly("b");
+    assertThat(ProfileProjection.union(List.of())).isEqualTo(ProfileProjection.none());
+    assertThat(first.union(ProfileProjection.all())).isEqualTo(ProfileProjection.all());
+  }
+
+  @Test
+  public void parseOptionsShouldKeepEventsReadByProfile() {
+    var options = ParseOptions.newBuilder().setProjection(ProfileProjection.none()).build();
+
+    assertThat(options.getProjection()).isEqualTo(ProfileProjection.REQUIRED);
+    assertThat(ParseOptions.defaults().getProjection()).isEqualTo(ProfileProjection.all());
+  }
+
+  @Test
+  public void shouldKeepEventsByPhase() throws Exception {
+    var projection =
+        ProfileProjection.newBuilder()
+            .addCompleteEventCategories("a")
+            .addCounterNames("c")
+            .addInstantCategories("d")
+            .build();
+
+    assertThat(projection.keepsEvent(decode("{\"ph\":\"X\",\"cat\":\"a\"}"))).isTrue();
+    assertThat(projection.keepsEvent(decode("{\"ph\":\"X\",\"cat\":\"b\"}"))).isFalse();
+    assertThat(projection.keepsEvent(decode("{\"ph\":\"X\"}"))).isFalse();
+    assertThat(projection.keepsEvent(decode("{\"ph\":\"C\",\"name\":\"c\"}"))).isTrue();
+    assertThat(projection.keepsEvent(decode("{\"ph\":\"C\",\"name\":\"d\"}"))).isFalse();
+    assertThat(projection.keepsEvent(decode("{\"ph\":\"i\",\"cat\":\"d\"}"))).isTrue();
+    assertThat(projection.keepsEvent(decode("{\"ph\":\"I\",\"cat\":\"a\"}"))).isFalse();
+    assertThat(projection.keepsEvent(decode("{\"ph\":\"M\",\"name\":\"thread_name\"}")))
+        .isTrue();
+    // Events that cannot be matched are kept.
+    assertThat(projection.keepsEvent(decode("{\"cat\":\"b\"}"))).isTrue();
+    assertThat(projection.keepsEvent(decode("{\"ph\":\"X\",\"cat\":{}}"))).isTrue();
+  }
+
+  private static DecodedTraceEvent decode(String json) throws Exception {
+    return DecodedTraceEvent.decode(new JsonReader(new StringReader(json)));
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.engflow.bazel.invocation.analyzer.time.Timestamp;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEventStore;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CounterEvent;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class ProfileThreadTest {
+  @Test
+  public void shouldSortEventsOnceAndReturnSameViews() {
+    var thread = new ProfileThread(new ThreadId(1, 1));
+    for (long ts : new long[] {30, 10, 20}) {
+      assertThat(thread.addEvent(complete(ts))).isTrue();
+      assertThat(thread.addEvent(counter(ts))).isTrue();
+    }
+
+    List<CompleteEvent> completeEvents = thread.getCompleteEvents();
+    assertThat(completeEvents.stream().map(e -> e.start).collect(Collectors.toList()))
+        .containsExactly(Timestamp.ofMicros(10), Timestamp.ofMicros(20), Timestamp.ofMicros(30))
+        .inOrder();
+    assertThat(
+            thread.getCounts().get("count").stream()
+                .map(CounterEvent::getTimestamp)
+                .collect(Collectors.toList()))
+        .containsExactly(Timestamp.ofMicros(10), Timestamp.ofMicros(20), Timestamp.ofMicros(30))
+        .inOrder();
+    assertThat(thread.getCompleteEvents()).isSameInstanceAs(completeEvents);
+    assertThat(thread.getCounts()).isSameInstanceAs(thread.getCounts());
+    assertThat(thread.getInstants()).isSameInstanceAs(thread.getInstants());
+    assertThat(thread.getExtraEvents()).isSameInstanceAs(thread.getExtraEvents());
+    assertThrows(UnsupportedOperationException.class, () -> completeEvents.remove(0));
+  }
+
+  @Test
+  public void shouldRejectEventsAfterFreezing() {
+    var thread = new ProfileThread(new ThreadId(1, 1));
+    thread.addEvent(complete(10));
+    thread.freeze();
+
+    assertThrows(IllegalStateException.class, () -> thread.addEvent(complete(20)));
+    assertThat(thread.getCompleteEvents()).hasSize(1);
+  }
+
+  @Test
+  public void shouldReadConcurrently() throws Exception {
+    var thread = new ProfileThread(new ThreadId(1, 1));
+    for (int i = 1000; i > 0; i--) {
+      thread.addEvent(complete(i));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<CompleteEvent>>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(() -> List.copyOf(thread.getCompleteEvents())));
+      }
+      List<CompleteEvent> expected = results.get(0).get();
+      for (Future<List<CompleteEvent>> result : results) {
+        assertThat(result.get()).isEqualTo(expected);
+      }
+      assertThat(expected.get(0).start).isEqualTo(Timestamp.ofMicros(1));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldConsiderDroppedCompleteEvents() {
+    var thread = new ProfileThread(new ThreadId(1, 1));
+    thread.addEvent(complete(10));
+    thread.addDroppedCompleteEvent(100, 110, "e100");
+    var later = new ProfileThread(new ThreadId(1, 1));
+    later.addDroppedCompleteEvent(200, 201, null);
+    thread.addAll(later);
+
+    assertThat(thread.getCompleteEvents()).hasSize(1);
+    assertThat(thread.hasCompleteEventContainedIn(Timestamp.ofMicros(0), Timestamp.ofMicros(20)))
+        .isTrue();
+    assertThat(thread.hasCompleteEventContainedIn(Timestamp.ofMicros(90), Timestamp.ofMicros(110)))
+        .isTrue();
+    assertThat(thread.hasCompleteEventContainedIn(Timestamp.ofMicros(150), Timestamp.ofMicros(250)))
+        .isTrue();
+    assertThat(thread.hasCompleteEventContainedIn(Timestamp.ofMicros(105), Timestamp.ofMicros(200)))
+        .isFalse();
+    assertThrows(IllegalStateException.class, () -> thread.addDroppedCompleteEvent(0, 1, null));
+  }
+
+  @Test
+  public void shouldOnlyConsiderNamesOfCompleteEventsAsMerged() {
+    var thread = new ProfileThread(new ThreadId(1, 1));
+    thread.addEvent(
+        event(
+            "{\"name\":\"merged 3 events\",\"cat\":\"c\",\"ph\":\"i\",\"ts\":1,"
+                + "\"pid\":1,\"tid\":1}"));
+    thread.addEvent(
+        event(
+            "{\"name\":\"e\",\"cat\":\"c\",\"ph\":\"X\",\"ts\":1,\"dur\":1,\"pid\":1,"
+                + "\"tid\":1,\"args\":{\"merged 3 events\":\"merged 3 events\"}}"));
+    thread.addDroppedCompleteEvent(2, 3, "other merged 3 events");
+    assertThat(thread.hasMergedEvents()).isFalse();
+
+    var dropped = new ProfileThread(new ThreadId(1, 1));
+    dropped.addDroppedCompleteEvent(2, 3, "merged 3 events");
+    var later = new ProfileThread(new ThreadId(1, 1));
+    later.addEvent(
+        event(
+            "{\"name\":\"merged 2 events\",\"cat\":\"c\",\"ph\":\"X\",\"ts\":1,"
+                + "\"dur\":1,\"pid\":1,\"tid\":1}"));
+    thread.addAll(later);
+
+    assertThat(dropped.hasMergedEvents()).isTrue();
+    assertThat(later.hasMergedEvents()).isTrue();
+    assertThat(thread.hasMergedEvents()).isTrue();
+  }
+
+  @Test
+  public void shouldIndexStoreWithoutCreatingEvents() {
+    var gets = new AtomicInteger();
+    var store =
+        new CompleteEventStore() {
+          @Override
+          public CompleteEvent get(int index) {
+            gets.incrementAndGet();
+            return super.get(index);
+          }
+        };
+    var thread = new ProfileThread(new ThreadId(1, 1), null, null, null, null, store, null, null);
+    for (long ts : new long[] {30, 10, 20}) {
+      thread.addEvent(complete(ts));
+    }
+
+    var intervals = thread.getCompleteEventIntervals();
+    assertThat(gets.get()).isEqualTo(0);
+    assertThat(intervals.getContaining(Timestamp.ofMicros(20))).hasSize(1);
+    assertThat(gets.get()).isEqualTo(1);
+  }
+
+  private static JsonObject event(String json) {
+    return JsonParser.parseString(json).getAsJsonObject();
+  }
+
+  private static JsonObject complete(long ts) {
+    return JsonParser.parseString(
+            String.format(
+                "{\"name\":\"e%d\",\"cat\":\"c\",\"ph\":\"X\",\"ts\":%d,\"dur\":1,\"pid\":1,"
+                    + "\"tid\":1}",
+                ts, ts))
+        .getAsJsonObject();
+  }
+
+  private static JsonObject counter(long ts) {
+    return JsonParser.parseString(
+            String.format(
+                "{\"name\":\"count\",\"ph\":\"C\",\"ts\":%d,\"pid\":1,\"tid\":1,"
+                    + "\"args\":{\"value\":%d}}",
+                ts, ts))
+        .getAsJsonObject();
+  }
+}
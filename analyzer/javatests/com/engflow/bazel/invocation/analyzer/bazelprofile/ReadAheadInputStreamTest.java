@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class ReadAheadInputStreamTest {
+  @Test
+  public void shouldReadAllData() throws Exception {
+    byte[] data = new byte[10_007];
+    new Random(0).nextBytes(data);
+    for (int bufferSize : new int[] {1, 13, 4096, 100_000}) {
+      try (var inputStream =
+          new ReadAheadInputStream(new ByteArrayInputStream(data), bufferSize, 2)) {
+        assertThat(ByteStreams.toByteArray(inputStream)).isEqualTo(data);
+        assertThat(inputStream.read()).isEqualTo(-1);
+      }
+    }
+  }
+
+  @Test
+  public void shouldRethrowSourceFailure() throws Exception {
+    var failure = new IOException("corrupt");
+    var source =
+        new InputStream() {
+          private int read = 0;
+
+          @Override
+          public int read() throws IOException {
+            if (read++ >= 100) {
+              throw failure;
+            }
+            return 'a';
+          }
+        };
+    try (var inputStream = new ReadAheadInputStream(source, 16, 2)) {
+      var e = assertThrows(IOException.class, () -> ByteStreams.toByteArray(inputStream));
+      assertThat(e).hasCauseThat().isSameInstanceAs(failure);
+      assertThrows(IOException.class, () -> inputStream.read());
+    }
+  }
+
+  @Test
+  public void shouldRethrowSourceError() throws Exception {
+    var error = new AssertionError("broken");
+    var source =
+        new InputStream() {
+          @Override
+          public int read() {
+            throw error;
+          }
+        };
+    try (var inputStream = new ReadAheadInputStream(source, 16, 2)) {
+      var e = assertThrows(AssertionError.class, () -> inputStream.read());
+      assertThat(e).isSameInstanceAs(error);
+    }
+  }
+
+  @Test
+  public void closeShouldStopReadingSource() throws Exception {
+    var sourceClosed = new CountDownLatch(1);
+    var endlessSource =
+        new InputStream() {
+          @Override
+          public int read() {
+            return 'a';
+          }
+
+          @Override
+          public void close() {
+            sourceClosed.countDown();
+          }
+        };
+    var inputStream = new ReadAheadInputStream(endlessSource, 16, 2);
+    assertThat(inputStream.read()).isEqualTo('a');
+    inputStream.close();
+
+    assertThat(sourceClosed.await(10, TimeUnit.SECONDS)).isTrue();
+    assertThrows(IOException.class, () -> inputStream.read());
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.bazelprofile;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TraceEventsChunksTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Optional<TraceEventsChunks> split(String json) throws Exception {
+    Path file = tempFolder.newFile().toPath();
+    Files.writeString(file, json);
+    return TraceEventsChunks.split(MappedFile.map(file), 1);
+  }
+
+  @Test
+  public void shouldSplitAtEventBoundaries() throws Exception {
+    var chunks =
+        split(
+            "{\"otherData\":{\"a\":\"traceEvents\"},\"traceEvents\":"
+                + "[{\"name\":\",\"},{\"name\":\"]},{\\\"\"},{\"args\":{\"a\":1,\"b\":[2,3]}}]}");
+    assertThat(chunks.isPresent()).isTrue();
+    assertThat(chunks.get().getChunkCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void shouldSplitEmptyTraceEvents() throws Exception {
+    var chunks = split("{\"traceEvents\":[],\"otherData\":{}}");
+    assertThat(chunks.isPresent()).isTrue();
+    assertThat(chunks.get().getChunkCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotSplitDuplicateTraceEvents() throws Exception {
+    assertThat(split("{\"traceEvents\":[{}],\"traceEvents\":[{}]}").isPresent()).isFalse();
+  }
+
+  @Test
+  public void shouldNotSplitEscapedKey() throws Exception {
+    assertThat(split("{\"trace\\u0045vents\":[{},{}]}").isPresent()).isFalse();
+  }
+
+  @Test
+  public void shouldNotSplitNestedTraceEvents() throws Exception {
+    assertThat(split("{\"otherData\":{\"traceEvents\":[{},{}]}}").isPresent()).isFalse();
+  }
+
+  @Test
+  public void shouldNotSplitMalformedJson() throws Exception {
+    assertThat(split("[{\"traceEvents\":[{},{}]}]").isPresent()).isFalse();
+    assertThat(split("{\"traceEvents\":[{},{}]").isPresent()).isFalse();
+    assertThat(split("{\"traceEvents\":[{},{\"name\":\"}]}").isPresent()).isFalse();
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.benchmarks;
+
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileThread;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ThreadId;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.TraceEventFormatConstants;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Measures how many trace events per second are parsed into {@link ProfileThread}s, comparing
+ * building a {@code JsonObject} per event with {@link BazelProfile}'s streaming decoder.
+ *
+ * <p>Run with {@code bazel run
+ * //analyzer/javatests/com/engflow/bazel/invocation/analyzer/benchmarks:trace_event_decoding --
+ * [events] [iterations]}.
+ */
+public class TraceEventDecodingBenchmark {
+  private static final int THREADS = 32;
+
+  public static void main(String[] args) throws IOException {
+    int events = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    byte[] profile = createProfile(events);
+
+    Map<ThreadId, ProfileThread> expected = parseAsJsonObjects(profile);
+    Map<ThreadId, ProfileThread> actual = parseStreaming(profile);
+    if (!expected.equals(actual)) {
+      throw new IllegalStateException("Streaming decoder produced different threads.");
+    }
+
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      parseAsJsonObjects(profile);
+      long jsonObjectNanos = System.nanoTime() - start;
+      start = System.nanoTime();
+      parseStreaming(profile);
+      long streamingNanos = System.nanoTime() - start;
+      System.out.printf(
+          "Iteration %d: JsonObject %,.0f events/s, streaming %,.0f events/s%n",
+          i + 1, eventsPerSecond(events, jsonObjectNanos), eventsPerSecond(events, streamingNanos));
+    }
+  }
+
+  private static double eventsPerSecond(int events, long nanos) {
+    return events / (nanos / 1e9);
+  }
+
+  private static Map<ThreadId, ProfileThread> parseStreaming(byte[] profile) {
+    return BazelProfile.createFromInputStream(new ByteArrayInputStream(profile))
+        .getThreads()
+        .collect(Collectors.toMap(ProfileThread::getThreadId, Function.identity()));
+  }
+
+  /** Parses the profile the way {@link BazelProfile} did before it decoded events directly. */
+  private static Map<ThreadId, ProfileThread> parseAsJsonObjects(byte[] profile)
+      throws IOException {
+    Map<ThreadId, ProfileThread> threads = new HashMap<>();
+    try (var reader =
+        new JsonReader(
+            new InputStreamReader(new ByteArrayInputStream(profile), StandardCharsets.UTF_8))) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if (!TraceEventFormatConstants.SECTION_TRACE_EVENTS.equals(reader.nextName())) {
+          reader.skipValue();
+          continue;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+          var event = JsonParser.parseReader(reader).getAsJsonObject();
+          var threadId =
+              new ThreadId(
+                  event.get(TraceEventFormatConstants.EVENT_PROCESS_ID).getAsInt(),
+                  event.get(TraceEventFormatConstants.EVENT_THREAD_ID).getAsInt());
+          threads.computeIfAbsent(threadId, ProfileThread::new).addEvent(event);
+        }
+        reader.endArray();
+      }
+      reader.endObject();
+    }
+    return threads;
+  }
+
+  /** Creates a profile with a mix of events similar to that of a Bazel build. */
+  private static byte[] createProfile(int events) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("{\"otherData\":{\"bazel_version\":\"release 7.0.0\"},\"traceEvents\":[");
+    sb.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,")
+        .append("\"args\":{\"name\":\"Main Thread\"}}");
+    for (int i = 0; i < events; i++) {
+      int tid = i % THREADS;
+      sb.append(',');
+      switch (i % 10) {
+        case 0:
+          sb.append("{\"name\":\"action count\",\"ph\":\"C\",\"ts\":")
+              .append(i)
+              .append(",\"pid\":1,\"tid\":0,\"args\":{\"action\":")
+              .append(i % 100)
+              .append("}}");
+          break;
+        case 1:
+          sb.append("{\"cat\":\"gc notification\",\"name\":\"minor GC\",\"ph\":\"i\",\"ts\":")
+              .append(i)
+              .append(",\"pid\":1,\"tid\":")
+              .append(tid)
+              .append('}');
+          break;
+        default:
+          sb.append("{\"cat\":\"action processing\",\"name\":\"Compiling src/file")
+              .append(i % 1000)
+              .append(".cc\",\"ph\":\"X\",\"ts\":")
+              .append(i)
+              .append(",\"dur\":")
+              .append(i % 500)
+              .append(",\"pid\":1,\"tid\":")
+              .append(tid)
+              .append(",\"args\":{\"mnemonic\":\"CppCompile\",\"target\":\"//src:lib")
+              .append(i % 50)
+              .append("\"}}");
+      }
+    }
+    sb.append("]}");
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.engflow.bazel.invocation.analyzer.core.DataProvider;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
+import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class DataSnapshotTest {
+  @Test
+  public void shouldRoundTripSnapshots() {
+    Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> data =
+        Map.of(
+            TestDataProvider.class,
+            Map.of(
+                TestDatum.class,
+                new TestDatum("summary"),
+                EmptyTestDatum.class,
+                new EmptyTestDatum()));
+
+    var deserialized = DataSnapshot.deserialize(DataSnapshot.serialize(data));
+
+    assertThat(deserialized.keySet()).containsExactly(TestDataProvider.class);
+    var snapshots = deserialized.get(TestDataProvider.class);
+    assertThat(snapshots.keySet()).containsExactly(TestDatum.class, EmptyTestDatum.class);
+    Datum datum = snapshots.get(TestDatum.class);
+    assertThat(datum.isEmpty()).isFalse();
+    assertThat(datum.getEmptyReason()).isNull();
+    assertThat(datum.getDescription()).isEqualTo("A test datum.");
+    assertThat(datum.getSummary()).isEqualTo("summary");
+    Datum empty = snapshots.get(EmptyTestDatum.class);
+    assertThat(empty.isEmpty()).isTrue();
+    assertThat(empty.getEmptyReason()).isEqualTo("No data.");
+    assertThat(empty.getSummary()).isNull();
+  }
+
+  @Test
+  public void shouldReturnNullForInvalidContent() {
+    assertThat(DataSnapshot.deserialize("[{\"provider\":".getBytes(StandardCharsets.UTF_8)))
+        .isNull();
+    assertThat(DataSnapshot.deserialize("[{}]".getBytes(StandardCharsets.UTF_8))).isNull();
+  }
+
+  @Test
+  public void shouldReturnNullForUnknownClasses() {
+    String content =
+        "[{\"provider\":\"com.example.UnknownProvider\",\"datum\":\""
+            + TestDatum.class.getName()
+            + "\",\"empty\":false,\"description\":\"d\"}]";
+
+    assertThat(DataSnapshot.deserialize(content.getBytes(StandardCharsets.UTF_8))).isNull();
+  }
+
+  static class TestDataProvider extends DataProvider {
+    @Override
+    public List<DatumSupplierSpecification<?>> getSuppliers() {
+      return List.of();
+    }
+  }
+
+  static class TestDatum implements Datum {
+    private final String summary;
+
+    TestDatum(String summary) {
+      this.summary = summary;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return false;
+    }
+
+    @Override
+    public String getEmptyReason() {
+      return null;
+    }
+
+    @Override
+    public String getDescription() {
+      return "A test datum.";
+    }
+
+    @Override
+    public String getSummary() {
+      return summary;
+    }
+  }
+
+  static class EmptyTestDatum implements Datum {
+    @Override
+    public boolean isEmpty() {
+      return true;
+    }
+
+    @Override
+    public String getEmptyReason() {
+      return "No data.";
+    }
+
+    @Override
+    public String getDescription() {
+      return "An empty test datum.";
+    }
+
+    @Override
+    public String getSummary() {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2024 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
+import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProfileCacheTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path directory;
+
+  @Before
+  public void setup() throws Exception {
+    directory = tempFolder.newFolder().toPath().resolve("cache");
+  }
+
+  @Test
+  public void computeKeyShouldDependOnContentAndVersion() throws Exception {
+    Path a = writeProfile("a");
+    Path alsoA = writeProfile("a");
+    Path b = writeProfile("b");
+
+    String key = ProfileCache.computeKey(a, "1");
+    assertThat(ProfileCache.computeKey(alsoA, "1")).isEqualTo(key);
+    assertThat(ProfileCache.computeKey(b, "1")).isNotEqualTo(key);
+    assertThat(ProfileCache.computeKey(a, "2")).isNotEqualTo(key);
+  }
+
+  @Test
+  public void getAnalyzerVersionShouldDependOnAllClassPathEntries() throws Exception {
+    Path jar = writeProfile("jar");
+    Path classes = tempFolder.newFolder().toPath();
+    Path classFile = classes.resolve("com").resolve("Example.class");
+    Files.createDirectories(classFile.getParent());
+    Files.write(classFile, bytes("class"));
+    String classPath = jar + File.pathSeparator + classes;
+
+    String version = ProfileCache.getAnalyzerVersion(classPath);
+    assertThat(ProfileCache.getAnalyzerVersion(classPath)).isEqualTo(version);
+    assertThat(ProfileCache.getAnalyzerVersion(jar.toString())).isNotEqualTo(version);
+    Files.write(classFile, bytes("changed class"));
+    assertThat(ProfileCache.getAnalyzerVersion(classPath)).isNotEqualTo(version);
+  }
+
+  @Test
+  public void getShouldReturnPutContent() throws Exception {
+    ProfileCache cache = new ProfileCache(directory, 1024);
+
+    assertThat(cache.get("key", "item")).isNull();
+    cache.put("key", "item", bytes("content"));
+    assertThat(cache.get("key", "item")).isEqualTo(bytes("content"));
+    assertThat(cache.get("key", "other")).isNull();
+    assertThat(cache.get("other", "item")).isNull();
+  }
+
+  @Test
+  public void putShouldEvictLeastRecentlyUsedEntries() throws Exception {
+    ProfileCache cache = new ProfileCache(directory, 10);
+    cache.put("a", "item", bytes("aaaa"));
+    cache.put("b", "item", bytes("bbbb"));
+    setLastUsed("a", 1_000);
+    setLastUsed("b", 2_000);
+    // Reading marks the entry as recently used.
+    assertThat(cache.get("a", "item")).isNotNull();
+
+    cache.put("c", "item", bytes("cccc"));
+
+    assertThat(cache.get("a", "item")).isNotNull();
+    assertThat(cache.get("b", "item")).isNull();
+    assertThat(cache.get("c", "item")).isNotNull();
+  }
+
+  @Test
+  public void putShouldOnlyScanOnceRunningSizeExceedsBound() throws Exception {
+    new ProfileCache(directory, 100).put("old", "item", bytes("oooooo"));
+    setLastUsed("old", 2_000);
+    ProfileCache cache = new ProfileCache(directory, 10);
+    cache.put("a", "item", bytes("aa"));
+    // Written by another process, which this instance does not know about until it scans again.
+    new ProfileCache(directory, 100).put("other", "item", bytes("0123456789"));
+    setLastUsed("other", 1_000);
+
+    cache.put("b", "item", bytes("b"));
+    assertThat(cache.get("other", "item")).isNotNull();
+    setLastUsed("other", 1_000);
+
+    cache.put("c", "item", bytes("cc"));
+    assertThat(cache.get("other", "item")).isNull();
+    assertThat(cache.get("old", "item")).isNull();
+    assertThat(cache.get("a", "item")).isNotNull();
+    assertThat(cache.get("b", "item")).isNotNull();
+    assertThat(cache.get("c", "item")).isNotNull();
+  }
+
+  @Test
+  public void putShouldKeepEntryWrittenTo() throws Exception {
+    ProfileCache cache = new ProfileCache(directory, 2);
+
+    cache.put("a", "item", bytes("too large"));
+
+    assertThat(cache.get("a", "item")).isEqualTo(bytes("too large"));
+  }
+
+  @Test
+  public void putShouldBeSafeForConcurrentWriters() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+        String key = "key" + (i % 16);
+        futures.add(
+            executor.submit(
+                () -> {
+                  // Each writer uses its own instance, like separate processes would.
+                  ProfileCache cache = new ProfileCache(directory, 100);
+                  cache.put(key, "item", bytes("0123456789"));
+                  byte[] content = cache.get(key, "item");
+                  assertThat(content == null || content.length == 10).isTrue();
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    long total = 0;
+    for (int i = 0; i < 16; i++) {
+      Path item = directory.resolve("key" + i).resolve("item");
+      if (Files.exists(item)) {
+        total += Files.size(item);
+      }
+    }
+    assertThat(total).isAtMost(110L);
+  }
+
+  @Test
+  public void shouldStoreSuggestionOutputsWithoutFailures() throws Exception {
+    ProfileCache cache = new ProfileCache(directory, 1024);
+    List<SuggestionProvider> providers =
+        List.of(new FirstSuggestionProvider(), new SecondSuggestionProvider());
+
+    assertThat(cache.getSuggestionOutputs("key", providers, false)).isNull();
+    cache.putSuggestionOutputs(
+        "key",
+        providers,
+        false,
+        List.of(
+            SuggestionOutput.newBuilder().setAnalyzerClassname("first").build(),
+            SuggestionOutput.newBuilder()
+                .setAnalyzerClassname("second")
+                .setFailure(SuggestionOutput.Failure.newBuilder().setMessage("timeout"))
+                .build()));
+
+    // The failure was not stored.
+    assertThat(cache.getSuggestionOutputs("key", providers, false)).isNull();
+    List<SuggestionOutput> outputs =
+        cache.getSuggestionOutputs("key", List.of(providers.get(0)), false);
+    assertThat(outputs).hasSize(1);
+    assertThat(outputs.get(0).getAnalyzerClassname()).isEqualTo("first");
+    // Verbose outputs are stored separately.
+    assertThat(cache.getSuggestionOutputs("key", List.of(providers.get(0)), true)).isNull();
+  }
+
+  private Path writeProfile(String content) throws Exception {
+    Path profile = tempFolder.newFile().toPath();
+    Files.write(profile, bytes(content));
+    return profile;
+  }
+
+  private void setLastUsed(String key, long millis) throws Exception {
+    Files.setLastModifiedTime(directory.resolve(key), FileTime.fromMillis(millis));
+  }
+
+  private static byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static class FirstSuggestionProvider implements SuggestionProvider {
+    @Override
+    public SuggestionOutput getSuggestions(DataManager dataManager) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class SecondSuggestionProvider implements SuggestionProvider {
+    @Override
+    public SuggestionOutput getSuggestions(DataManager dataManager) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -23,8 +23,13 @@ import com.engflow.bazel.invocation.analyzer.core.TestDatum.IntegerDatum;
 import com.engflow.bazel.invocation.analyzer.core.TestDatum.StringDatum;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import org.junit.Test;
 
@@ -186,6 +191,100 @@ public class DataManagerTest {
             ImmutableMap.of(CharDatum.class, charDataProvider.returnedChar));
   }
 
+  @Test
+  public void shouldRecordDependencies() throws Exception {
+    var dataManager = new DataManager();
+    new CharDataProvider('a').register(dataManager);
+    new StringDataProvider().register(dataManager);
+
+    assertThat(dataManager.getDependencies(StringDatum.class)).isEmpty();
+
+    dataManager.getDatum(StringDatum.class);
+
+    assertThat(dataManager.getDependencies(StringDatum.class)).containsExactly(CharDatum.class);
+    assertThat(dataManager.getDependencies(CharDatum.class)).isEmpty();
+  }
+
+  @Test
+  public void prefetchShouldSupplyDeclaredDependenciesFirst() throws Exception {
+    var dataManager = new DataManager(2);
+    var dataProvider = new DeclaredDependencyDataProvider(Set.of(CharDatum.class));
+    dataProvider.register(dataManager);
+
+    dataManager.prefetch(ImmutableList.of(StringDatum.class));
+
+    assertThat(dataManager.getDeclaredDependencies(StringDatum.class))
+        .containsExactly(CharDatum.class);
+    assertThat(dataProvider.supplied).containsExactly("CharDatum", "StringDatum").inOrder();
+  }
+
+  @Test
+  public void shouldRejectUndeclaredDependencies() throws Exception {
+    var dataManager = new DataManager();
+    new DeclaredDependencyDataProvider(Set.of()).register(dataManager);
+
+    assertThrows(IllegalStateException.class, () -> dataManager.getDatum(StringDatum.class));
+  }
+
+  @Test
+  public void prefetchShouldNotMarkDataAsUsed() throws Exception {
+    var dataManager = new DataManager(2);
+    var charDataProvider = new CharDataProvider('a');
+    charDataProvider.register(dataManager);
+    new StringDataProvider().register(dataManager);
+
+    dataManager.prefetch(dataManager.getRegisteredData());
+
+    assertThat(dataManager.getUsedDataByProvider()).isEmpty();
+
+    dataManager.getDatum(StringDatum.class);
+
+    assertThat(dataManager.getUsedDataByProvider()).containsKey(CharDataProvider.class);
+  }
+
+  @Test
+  public void prefetchShouldSupplyIndependentDataConcurrently() throws Exception {
+    var dataManager = new DataManager(2);
+    var dataProvider = new ConcurrentDataProvider();
+    dataProvider.register(dataManager);
+
+    dataManager.prefetch(ImmutableList.of(IntegerDatum.class, DoubleDatum.class));
+
+    // Each supplier only returns a value if the other one ran at the same time.
+    assertThat(dataManager.getDatum(IntegerDatum.class).getMyInt()).isEqualTo(1);
+    assertThat(dataManager.getDatum(DoubleDatum.class).getMyDouble()).isEqualTo(2.0);
+  }
+
+  @Test
+  public void prefetchShouldIgnoreFailures() throws Exception {
+    var dataManager = new DataManager(2);
+    new CharDataProvider(null).register(dataManager);
+
+    dataManager.prefetch(dataManager.getRegisteredData());
+
+    assertThrows(NullDatumException.class, () -> dataManager.getDatum(CharDatum.class));
+  }
+
+  @Test
+  public void shouldOnlyTraceCalculatedData() throws Exception {
+    List<String> spans = new ArrayList<>();
+    var dataManager = new DataManager(1, (category, name, args) -> () -> spans.add(name));
+    new MemoizedCharDataProvider().register(dataManager);
+    new StringDataProvider().register(dataManager);
+
+    dataManager.getDatum(StringDatum.class);
+    dataManager.getDatum(StringDatum.class);
+    dataManager.getDatum(CharDatum.class);
+
+    // The string is calculated each time, the memoized char only once.
+    assertThat(spans).containsExactly("CharDatum", "StringDatum", "StringDatum").inOrder();
+  }
+
+  @Test
+  public void shouldRejectNonPositiveParallelism() {
+    assertThrows(IllegalArgumentException.class, () -> new DataManager(0));
+  }
+
   private static class CharDataProvider extends DataProvider {
     @Nullable private final CharDatum returnedChar;
 
@@ -204,6 +303,15 @@ public class DataManagerTest {
     }
   }
 
+  private static class MemoizedCharDataProvider extends DataProvider {
+    @Override
+    public List<DatumSupplierSpecification<?>> getSuppliers() {
+      return ImmutableList.of(
+          DatumSupplierSpecification.of(
+              CharDatum.class, DatumSupplier.memoized(() -> new CharDatum('a'))));
+    }
+  }
+
   private static class StringDataProvider extends DataProvider {
     @Override
     public List<DatumSupplierSpecification<?>> getSuppliers() {
@@ -216,6 +324,37 @@ public class DataManagerTest {
     }
   }
 
+  private static class DeclaredDependencyDataProvider extends DataProvider {
+    private final Set<Class<? extends Datum>> declaredDependencies;
+    private final List<String> supplied = Collections.synchronizedList(new ArrayList<>());
+
+    public DeclaredDependencyDataProvider(Set<Class<? extends Datum>> declaredDependencies) {
+      this.declaredDependencies = declaredDependencies;
+    }
+
+    @Override
+    public List<DatumSupplierSpecification<?>> getSuppliers() {
+      return ImmutableList.of(
+          DatumSupplierSpecification.of(
+              CharDatum.class,
+              DatumSupplier.memoized(
+                  () -> {
+                    supplied.add("CharDatum");
+                    return new CharDatum('a');
+                  }),
+              Set.of()),
+          DatumSupplierSpecification.of(
+              StringDatum.class,
+              DatumSupplier.memoized(
+                  () -> {
+                    supplied.add("StringDatum");
+                    return new StringDatum(
+                        String.valueOf(getDataManager().getDatum(CharDatum.class).getMyChar()));
+                  }),
+              declaredDependencies));
+    }
+  }
+
   private static class DuplicateStringDataProvider extends DataProvider {
     @Override
     public List<DatumSupplierSpecification<?>> getSuppliers() {
@@ -249,4 +388,29 @@ public class DataManagerTest {
       return returnedDouble;
     }
   }
+
+  private static class ConcurrentDataProvider extends DataProvider {
+    private final CountDownLatch started = new CountDownLatch(2);
+
+    @Override
+    public List<DatumSupplierSpecification<?>> getSuppliers() {
+      return ImmutableList.of(
+          DatumSupplierSpecification.of(
+              IntegerDatum.class,
+              DatumSupplier.memoized(() -> awaitOther() ? new IntegerDatum(1) : null)),
+          DatumSupplierSpecification.of(
+              DoubleDatum.class,
+              DatumSupplier.memoized(() -> awaitOther() ? new DoubleDatum(2.0) : null)));
+    }
+
+    private boolean awaitOther() {
+      started.countDown();
+      try {
+        return started.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+  }
 }
@@ -15,6 +15,7 @@
 package com.engflow.bazel.invocation.analyzer.core;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
 
 import com.engflow.bazel.invocation.analyzer.core.TestDatum.IntegerDatum;
 import java.util.concurrent.CountDownLatch;
@@ -39,6 +40,75 @@ public class DatumSupplierTest {
     assertThat(callCount.get()).isEqualTo(1);
   }
 
+  @Test
+  public void shouldMemoizeNull() throws Exception {
+    AtomicInteger callCount = new AtomicInteger();
+
+    DatumSupplier<IntegerDatum> supplier =
+        DatumSupplier.memoized(
+            () -> {
+              callCount.incrementAndGet();
+              return null;
+            });
+
+    assertThat(supplier.supply()).isNull();
+    assertThat(supplier.supply()).isNull();
+    assertThat(callCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldMemoizeExceptions() throws Exception {
+    AtomicInteger callCount = new AtomicInteger();
+
+    DatumSupplier<IntegerDatum> supplier =
+        DatumSupplier.memoized(
+            () -> {
+              callCount.incrementAndGet();
+              throw new InvalidProfileException("invalid");
+            });
+
+    var first = assertThrows(InvalidProfileException.class, supplier::supply);
+    var second = assertThrows(InvalidProfileException.class, supplier::supply);
+    assertThat(second).isSameInstanceAs(first);
+    assertThat(callCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldMemoizeRuntimeExceptions() throws Exception {
+    AtomicInteger callCount = new AtomicInteger();
+
+    DatumSupplier<IntegerDatum> supplier =
+        DatumSupplier.memoized(
+            () -> {
+              callCount.incrementAndGet();
+              throw new IllegalStateException("broken");
+            });
+
+    assertThrows(IllegalStateException.class, supplier::supply);
+    assertThrows(IllegalStateException.class, supplier::supply);
+    assertThat(callCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotMemoizeExceptionsOfInterruptedThreads() throws Exception {
+    AtomicInteger callCount = new AtomicInteger();
+
+    DatumSupplier<IntegerDatum> supplier =
+        DatumSupplier.memoized(
+            () -> {
+              if (callCount.incrementAndGet() == 1) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted");
+              }
+              return new IntegerDatum(callCount.get());
+            });
+
+    assertThrows(IllegalStateException.class, supplier::supply);
+    assertThat(Thread.interrupted()).isTrue();
+    assertThat(supplier.supply().getMyInt()).isEqualTo(2);
+    assertThat(supplier.supply().getMyInt()).isEqualTo(2);
+  }
+
   @Test(timeout = 1_000)
   public void memoizationIsThreadSafe() throws Exception {
     AtomicInteger callCount = new AtomicInteger();
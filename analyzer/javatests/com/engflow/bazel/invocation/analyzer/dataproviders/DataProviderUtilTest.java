@@ -0,0 +1,99 @@
+/*
+ * Copyright 2023 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.dataproviders;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ProfileProjection;
+import com.engflow.bazel.invocation.analyzer.core.DataProvider;
+import com.engflow.bazel.invocation.analyzer.core.DatumSupplier;
+import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+
+public class DataProviderUtilTest {
+  @Test
+  public void getRequiredDataProvidersShouldOnlyReturnProvidersOfData() {
+    List<DataProvider> dataProviders = DataProviderUtil.getAllDataProviders();
+
+    assertThat(
+            DataProviderUtil.getRequiredDataProviders(
+                dataProviders, Set.of(MergedEventsPresent.class)))
+        .containsExactly(dataProviders.get(9));
+  }
+
+  @Test
+  public void getRequiredDataProvidersShouldFollowDependencies() {
+    List<DataProvider> dataProviders = DataProviderUtil.getAllDataProviders();
+
+    // ActionStats, BazelPhases, EstimatedCores and SkymeldUsed, in that order.
+    assertThat(
+            DataProviderUtil.getRequiredDataProviders(dataProviders, Set.of(ActionStats.class)))
+        .containsExactly(
+            dataProviders.get(0), dataProviders.get(1), dataProviders.get(5), dataProviders.get(10))
+        .inOrder();
+  }
+
+  @Test
+  public void getRequiredDataProvidersShouldReturnAllProvidersForUnknownData() {
+    List<DataProvider> dataProviders = DataProviderUtil.getAllDataProviders();
+
+    assertThat(DataProviderUtil.getRequiredDataProviders(dataProviders, null))
+        .isEqualTo(dataProviders);
+    assertThat(DataProviderUtil.getRequiredDataProviders(dataProviders, Set.of()))
+        .isEmpty();
+  }
+
+  @Test
+  public void getRequiredDataProvidersShouldReturnAllProvidersForUndeclaredDependencies() {
+    DataProvider undeclared =
+        new DataProvider() {
+          @Override
+          public List<DatumSupplierSpecification<?>> getSuppliers() {
+            return List.of(
+                DatumSupplierSpecification.of(
+                    MergedEventsPresent.class,
+                    DatumSupplier.memoized(() -> new MergedEventsPresent(false))));
+          }
+        };
+    List<DataProvider> dataProviders = List.of(new BazelVersionDataProvider(), undeclared);
+
+    assertThat(
+            DataProviderUtil.getRequiredDataProviders(
+                dataProviders, Set.of(MergedEventsPresent.class)))
+        .isEqualTo(dataProviders);
+  }
+
+  @Test
+  public void getProfileProjectionShouldKeepAllEventsForOtherProviders() {
+    DataProvider other =
+        new DataProvider() {
+          @Override
+          public List<DatumSupplierSpecification<?>> getSuppliers() {
+            return List.of();
+          }
+        };
+
+    assertThat(
+            DataProviderUtil.getProfileProjection(
+                List.of(new MergedEventsPresentDataProvider())))
+        .isEqualTo(ProfileProjection.none());
+    assertThat(
+            DataProviderUtil.getProfileProjection(
+                List.of(new MergedEventsPresentDataProvider(), other)))
+        .isEqualTo(ProfileProjection.all());
+  }
+}
@@ -27,6 +27,7 @@ import org.junit.runners.Suite;
   BazelProfilePhaseTest.class,
   CachingAndExecutionMetricsDataProviderTest.class,
   CriticalPathDurationDataProviderTest.class,
+  DataProviderUtilTest.class,
   EstimatedCoresDataProviderTest.class,
   FlagValueDataProviderTest.class,
   GarbageCollectionStatsDataProviderTest.class,
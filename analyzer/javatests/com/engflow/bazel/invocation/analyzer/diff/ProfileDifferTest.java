@@ -0,0 +1,231 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.diff;
+
+import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.CAT_CRITICAL_PATH_COMPONENT;
+import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.CAT_REMOTE_ACTION_CACHE_CHECK;
+import static com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants.CAT_REMOTE_OUTPUT_DOWNLOAD;
+import static com.google.common.truth.Truth.assertThat;
+
+import com.engflow.bazel.invocation.analyzer.EventThreadBuilder;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfilePhase;
+import com.engflow.bazel.invocation.analyzer.dataproviders.BazelPhaseDescription;
+import com.engflow.bazel.invocation.analyzer.dataproviders.BazelPhaseDescriptions;
+import com.engflow.bazel.invocation.analyzer.dataproviders.LocalActions;
+import com.engflow.bazel.invocation.analyzer.dataproviders.LocalActions.LocalAction;
+import com.engflow.bazel.invocation.analyzer.dataproviders.TotalDuration;
+import com.engflow.bazel.invocation.analyzer.diff.ProfileDiff.ActionChange;
+import com.engflow.bazel.invocation.analyzer.diff.ProfileDiff.Change;
+import com.engflow.bazel.invocation.analyzer.time.Timestamp;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.CompleteEvent;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class ProfileDifferTest {
+  private static final BazelPhaseDescriptions NO_PHASES =
+      BazelPhaseDescriptions.newBuilder().build();
+  private static final TotalDuration NO_TOTAL_DURATION = new TotalDuration("not needed");
+
+  @Test
+  public void shouldJoinActionsByNameMnemonicAndTarget() {
+    var one = new EventThreadBuilder(1, 1);
+    var before =
+        LocalActions.create(
+            List.of(
+                new LocalAction(
+                    one.actionProcessingAction("Compiling a", "//:a", "Compile", 0, 5),
+                    List.of(
+                        one.related(0, 1, CAT_REMOTE_ACTION_CACHE_CHECK),
+                        one.related(1, 1, CAT_REMOTE_OUTPUT_DOWNLOAD))),
+                new LocalAction(
+                    one.actionProcessingAction("Compiling b", "//:b", "Compile", 5, 3), List.of()),
+                new LocalAction(
+                    one.actionProcessingAction("Linking", "//:c", "Link", 8, 2), List.of())));
+    var two = new EventThreadBuilder(2, 2);
+    var after =
+        LocalActions.create(
+            List.of(
+                new LocalAction(
+                    two.actionProcessingAction("Compiling a", "//:a", "Compile", 0, 9),
+                    List.of(two.related(0, 1, CAT_REMOTE_ACTION_CACHE_CHECK))),
+                new LocalAction(
+                    two.actionProcessingAction("Compiling b", "//:b", "Compile", 9, 3), List.of()),
+                new LocalAction(
+                    two.actionProcessingAction("Linking", "//:d", "Link", 12, 6), List.of())));
+
+    ProfileDiff diff = new ProfileDiffer(10).diff(input(before), input(after));
+
+    assertThat(diff.getActionCount(ActionChange.Kind.MATCHED)).isEqualTo(1);
+    assertThat(diff.getActionCount(ActionChange.Kind.CACHE_HIT_LOST)).isEqualTo(1);
+    assertThat(diff.getActionCount(ActionChange.Kind.ADDED)).isEqualTo(1);
+    assertThat(diff.getActionCount(ActionChange.Kind.REMOVED)).isEqualTo(1);
+    assertThat(diff.getActionCount(ActionChange.Kind.CACHE_HIT_GAINED)).isEqualTo(0);
+    assertThat(diff.getActionDelta(ActionChange.Kind.CACHE_HIT_LOST))
+        .isEqualTo(Duration.ofSeconds(4));
+    assertThat(diff.getActionDelta(ActionChange.Kind.REMOVED)).isEqualTo(Duration.ofSeconds(-2));
+    assertThat(describe(diff.getActionChanges()))
+        .containsExactly(
+            "Linking //:d ADDED PT6S",
+            "Compiling a //:a CACHE_HIT_LOST PT4S",
+            "Linking //:c REMOVED PT-2S",
+            "Compiling b //:b MATCHED PT0S")
+        .inOrder();
+    assertThat(describe(diff.getCacheHitChanges()))
+        .containsExactly("Compiling a //:a CACHE_HIT_LOST PT4S");
+  }
+
+  @Test
+  public void shouldMatchDuplicateActionsByStart() {
+    var one = new EventThreadBuilder(1, 1);
+    var two = new EventThreadBuilder(2, 2);
+    var before =
+        LocalActions.create(
+            List.of(
+                new LocalAction(one.actionProcessingAction("Action", "Work", 0, 1), List.of()),
+                new LocalAction(two.actionProcessingAction("Action", "Work", 2, 5), List.of())));
+    var after =
+        LocalActions.create(
+            List.of(
+                new LocalAction(two.actionProcessingAction("Action", "Work", 0, 2), List.of()),
+                new LocalAction(one.actionProcessingAction("Action", "Work", 3, 5), List.of()),
+                new LocalAction(one.actionProcessingAction("Action", "Work", 9, 7), List.of())));
+
+    ProfileDiff diff = new ProfileDiffer(10).diff(input(before), input(after));
+
+    assertThat(describe(diff.getActionChanges()))
+        .containsExactly(
+            "Action null ADDED PT7S", "Action null MATCHED PT1S", "Action null MATCHED PT0S")
+        .inOrder();
+  }
+
+  @Test
+  public void shouldOnlyReportLargestChanges() {
+    var one = new EventThreadBuilder(1, 1);
+    var two = new EventThreadBuilder(2, 2);
+    var before =
+        LocalActions.create(
+            List.of(
+                new LocalAction(one.actionProcessingAction("a", "Work", 0, 1), List.of()),
+                new LocalAction(one.actionProcessingAction("b", "Work", 1, 1), List.of()),
+                new LocalAction(one.actionProcessingAction("c", "Work", 2, 1), List.of())));
+    var after =
+        LocalActions.create(
+            List.of(
+                new LocalAction(two.actionProcessingAction("a", "Work", 0, 2), List.of()),
+                new LocalAction(two.actionProcessingAction("b", "Work", 2, 4), List.of()),
+                new LocalAction(two.actionProcessingAction("c", "Work", 6, 3), List.of())));
+
+    ProfileDiff diff = new ProfileDiffer(2).diff(input(before), input(after));
+
+    assertThat(describe(diff.getActionChanges()))
+        .containsExactly("b null MATCHED PT3S", "c null MATCHED PT2S")
+        .inOrder();
+    assertThat(diff.getActionCount(ActionChange.Kind.MATCHED)).isEqualTo(3);
+    assertThat(diff.getActionDelta(ActionChange.Kind.MATCHED)).isEqualTo(Duration.ofSeconds(6));
+  }
+
+  @Test
+  public void shouldDiffPhasesCriticalPathAndTotalDuration() {
+    var before =
+        new ProfileDiffer.Input(
+            new TotalDuration(Duration.ofSeconds(10)),
+            BazelPhaseDescriptions.newBuilder()
+                .add(BazelProfilePhase.LAUNCH, phase(0, 1))
+                .add(BazelProfilePhase.ANALYZE, phase(1, 4))
+                .add(BazelProfilePhase.EXECUTE, phase(4, 10))
+                .build(),
+            LocalActions.create(List.of()),
+            List.of(
+                criticalPathComponent("action 'a'", 1),
+                criticalPathComponent("action 'b'", 2)));
+    var after =
+        new ProfileDiffer.Input(
+            new TotalDuration(Duration.ofSeconds(15)),
+            BazelPhaseDescriptions.newBuilder()
+                .add(BazelProfilePhase.LAUNCH, phase(0, 1))
+                .add(BazelProfilePhase.ANALYZE_AND_EXECUTE, phase(1, 15))
+                .build(),
+            LocalActions.create(List.of()),
+            List.of(
+                criticalPathComponent("action 'b'", 6),
+                criticalPathComponent("action 'c'", 3)));
+
+    ProfileDiff diff = new ProfileDiffer(10).diff(before, after);
+
+    assertThat(diff.getTotalDurationChange().get().getDelta()).isEqualTo(Duration.ofSeconds(5));
+    assertThat(
+            diff.getPhaseChanges().stream()
+                .collect(Collectors.toMap(Change::getDescription, Change::getDelta)))
+        .containsExactly(
+            BazelProfilePhase.LAUNCH.name, Duration.ZERO,
+            BazelProfilePhase.ANALYZE.name, Duration.ofSeconds(-3),
+            BazelProfilePhase.EXECUTE.name, Duration.ofSeconds(-6),
+            BazelProfilePhase.ANALYZE_AND_EXECUTE.name, Duration.ofSeconds(14));
+    assertThat(diff.getPhaseChanges().get(0).getDescription())
+        .isEqualTo(BazelProfilePhase.ANALYZE_AND_EXECUTE.name);
+    assertThat(
+            diff.getCriticalPathChanges().stream()
+                .map(change -> change.getDescription() + " " + change.getDelta())
+                .collect(Collectors.toList()))
+        .containsExactly("action 'b' PT4S", "action 'c' PT3S", "action 'a' PT-1S")
+        .inOrder();
+  }
+
+  @Test
+  public void shouldNotReportTotalDurationChangeIfMissing() {
+    ProfileDiff diff =
+        new ProfileDiffer(10)
+            .diff(input(LocalActions.create(List.of())), input(LocalActions.create(List.of())));
+
+    assertThat(diff.getTotalDurationChange().isPresent()).isFalse();
+    assertThat(diff.getPhaseChanges()).isEmpty();
+    assertThat(diff.getActionChanges()).isEmpty();
+  }
+
+  private static ProfileDiffer.Input input(LocalActions localActions) {
+    return new ProfileDiffer.Input(NO_TOTAL_DURATION, NO_PHASES, localActions, List.of());
+  }
+
+  private static BazelPhaseDescription phase(int start, int end) {
+    return new BazelPhaseDescription(Timestamp.ofSeconds(start), Timestamp.ofSeconds(end));
+  }
+
+  private static CompleteEvent criticalPathComponent(String name, int duration) {
+    return new CompleteEvent(
+        name,
+        CAT_CRITICAL_PATH_COMPONENT,
+        Timestamp.ofSeconds(0),
+        Duration.ofSeconds(duration),
+        1,
+        1,
+        Map.of());
+  }
+
+  private static List<String> describe(List<ActionChange> changes) {
+    return changes.stream()
+        .map(
+            change ->
+                String.join(
+                    " ",
+                    change.getDescription(),
+                    String.valueOf(change.getTarget()),
+                    change.getKind().name(),
+                    change.getDelta().toString()))
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.fleet;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.DataProvider;
+import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
+import com.engflow.bazel.invocation.analyzer.dataproviders.CachingAndExecutionMetrics;
+import com.engflow.bazel.invocation.analyzer.dataproviders.GarbageCollectionStats;
+import com.engflow.bazel.invocation.analyzer.dataproviders.TotalDuration;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class FleetSummaryTest {
+  @Test
+  public void profileSummaryShouldOnlyIncludeAvailableMetrics() throws Exception {
+    DataManager dataManager = new DataManager();
+    new DataProvider() {
+      @Override
+      public List<DatumSupplierSpecification<?>> getSuppliers() {
+        return List.of(
+            DatumSupplierSpecification.of(
+                TotalDuration.class, () -> new TotalDuration(Duration.ofSeconds(90))),
+            DatumSupplierSpecification.of(
+                CachingAndExecutionMetrics.class,
+                () -> new CachingAndExecutionMetrics(10, 3, 1, 0, 0, 6, 0, 0, 0)),
+            DatumSupplierSpecification.of(
+                GarbageCollectionStats.class, () -> new GarbageCollectionStats("no GC events")));
+      }
+    }.register(dataManager);
+
+    assertThat(ProfileSummary.of(dataManager).getValues())
+        .containsExactly(
+            FleetMetric.TOTAL_DURATION, 90_000.0,
+            FleetMetric.ACTIONS, 10.0,
+            FleetMetric.REMOTE_CACHE_HIT_RATE, 75.0);
+  }
+
+  @Test
+  public void shouldMergeFleetSummaries() {
+    FleetSummary first = new FleetSummary();
+    first.add(ProfileSummary.of(Map.of(FleetMetric.ACTIONS, 1.0)));
+    first.addFailure();
+    FleetSummary second = new FleetSummary();
+    second.add(
+        ProfileSummary.of(Map.of(FleetMetric.ACTIONS, 3.0, FleetMetric.TOTAL_DURATION, 5.0)));
+    second.add(ProfileSummary.of(Map.of()));
+
+    first.merge(second);
+
+    assertThat(first.getProfiles()).isEqualTo(4L);
+    assertThat(first.getFailures()).isEqualTo(1L);
+    assertThat(first.getHistograms().keySet())
+        .containsExactly(FleetMetric.TOTAL_DURATION, FleetMetric.ACTIONS);
+    Histogram actions = first.getHistograms().get(FleetMetric.ACTIONS);
+    assertThat(actions.getCount()).isEqualTo(2L);
+    assertThat(actions.getMean()).isEqualTo(2.0);
+    assertThat(first.getHistograms().get(FleetMetric.TOTAL_DURATION).getMax()).isEqualTo(5.0);
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.fleet;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+
+public class HistogramTest {
+  @Test
+  public void shouldEstimatePercentilesWithinRelativeAccuracy() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 10_000; i++) {
+      histogram.add(i);
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(10_000L);
+    assertThat(histogram.getMin()).isEqualTo(1.0);
+    assertThat(histogram.getMax()).isEqualTo(10_000.0);
+    assertThat(histogram.getMean()).isEqualTo(5_000.5);
+    assertThat(histogram.getPercentile(0)).isEqualTo(1.0);
+    assertThat(histogram.getPercentile(100)).isEqualTo(10_000.0);
+    for (int percentile : new int[] {1, 10, 50, 90, 99}) {
+      double exact = percentile * 100;
+      assertThat(Math.abs(histogram.getPercentile(percentile) - exact))
+          .isAtMost(exact * Histogram.RELATIVE_ACCURACY);
+    }
+  }
+
+  @Test
+  public void shouldCountZeros() {
+    Histogram histogram = new Histogram();
+    histogram.add(0);
+    histogram.add(0);
+    histogram.add(100);
+
+    assertThat(histogram.getPercentile(50)).isEqualTo(0.0);
+    assertThat(histogram.getPercentile(90)).isEqualTo(100.0);
+  }
+
+  @Test
+  public void mergeShouldMatchAddingAllValues() {
+    Histogram all = new Histogram();
+    Histogram even = new Histogram();
+    Histogram odd = new Histogram();
+    for (int i = 0; i < 1_000; i++) {
+      double value = i * 0.37;
+      all.add(value);
+      (i % 2 == 0 ? even : odd).add(value);
+    }
+    even.merge(odd);
+
+    assertThat(even.getCount()).isEqualTo(all.getCount());
+    assertThat(even.getMin()).isEqualTo(all.getMin());
+    assertThat(even.getMax()).isEqualTo(all.getMax());
+    for (int percentile = 0; percentile <= 100; percentile += 5) {
+      assertThat(even.getPercentile(percentile)).isEqualTo(all.getPercentile(percentile));
+    }
+  }
+
+  @Test
+  public void shouldRejectInvalidValues() {
+    Histogram histogram = new Histogram();
+
+    assertThrows(IllegalArgumentException.class, () -> histogram.add(-1));
+    assertThrows(IllegalArgumentException.class, () -> histogram.add(Double.NaN));
+    assertThrows(IllegalStateException.class, () -> histogram.getPercentile(50));
+  }
+}
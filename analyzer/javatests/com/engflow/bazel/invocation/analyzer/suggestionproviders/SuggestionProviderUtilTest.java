@@ -0,0 +1,205 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.suggestionproviders;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
+import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
+import com.engflow.bazel.invocation.analyzer.dataproviders.BazelVersion;
+import com.engflow.bazel.invocation.analyzer.dataproviders.SkymeldUsed;
+import com.engflow.bazel.invocation.analyzer.dataproviders.remoteexecution.RemoteCachingUsed;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class SuggestionProviderUtilTest {
+  private final DataManager dataManager = new DataManager();
+
+  @Test
+  public void getSuggestionsShouldKeepOrderOfProviders() {
+    // The first provider finishes last.
+    CountDownLatch othersFinished = new CountDownLatch(2);
+    List<SuggestionProvider> providers =
+        List.of(
+            dataManager -> {
+              await(othersFinished);
+              return output("a");
+            },
+            dataManager -> {
+              othersFinished.countDown();
+              return output("b");
+            },
+            dataManager -> {
+              othersFinished.countDown();
+              return output("c");
+            });
+
+    List<SuggestionOutput> outputs =
+        SuggestionProviderUtil.getSuggestions(providers, dataManager, 3, null);
+
+    assertThat(
+            outputs.stream()
+                .map(SuggestionOutput::getAnalyzerClassname)
+                .collect(Collectors.toList()))
+        .containsExactly("a", "b", "c")
+        .inOrder();
+  }
+
+  @Test
+  public void getSuggestionsShouldReportFailureWhenTimeBudgetIsExceeded() {
+    CountDownLatch never = new CountDownLatch(1);
+    List<SuggestionProvider> providers =
+        List.of(
+            dataManager -> {
+              await(never);
+              return output("a");
+            },
+            dataManager -> output("b"));
+
+    List<SuggestionOutput> outputs =
+        SuggestionProviderUtil.getSuggestions(providers, dataManager, 2, Duration.ofMillis(100));
+
+    assertThat(outputs.get(0).hasFailure()).isTrue();
+    assertThat(outputs.get(0).getFailure().getMessage()).contains("time budget");
+    assertThat(outputs.get(1).hasFailure()).isFalse();
+    assertThat(outputs.get(1).getAnalyzerClassname()).isEqualTo("b");
+  }
+
+  @Test
+  public void getSuggestionsShouldRunRemainingProvidersWhenProviderIgnoresInterrupts() {
+    AtomicBoolean release = new AtomicBoolean();
+    List<SuggestionProvider> providers =
+        List.of(
+            dataManager -> {
+              while (!release.get()) {
+                Thread.onSpinWait();
+              }
+              return output("a");
+            },
+            dataManager -> output("b"));
+
+    try {
+      List<SuggestionOutput> outputs =
+          SuggestionProviderUtil.getSuggestions(providers, dataManager, 1, Duration.ofMillis(100));
+
+      assertThat(outputs.get(0).hasFailure()).isTrue();
+      assertThat(outputs.get(1).getAnalyzerClassname()).isEqualTo("b");
+    } finally {
+      release.set(true);
+    }
+  }
+
+  @Test
+  public void getSuggestionsShouldReportFailureWhenProviderThrows() {
+    List<SuggestionProvider> providers =
+        List.of(
+            dataManager -> {
+              throw new IllegalStateException("broken");
+            });
+
+    List<SuggestionOutput> outputs =
+        SuggestionProviderUtil.getSuggestions(providers, dataManager, 2, null);
+
+    assertThat(outputs.get(0).hasFailure()).isTrue();
+    assertThat(outputs.get(0).getFailure().getMessage()).isEqualTo("broken");
+  }
+
+  @Test
+  public void getSuggestionsShouldRejectNonPositiveParallelism() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> SuggestionProviderUtil.getSuggestions(List.of(), dataManager, 0, null));
+  }
+
+  @Test
+  public void shouldNameProvidersWithoutSuffix() {
+    assertThat(SuggestionProviderUtil.getSuggestionProviderName(new JobsSuggestionProvider()))
+        .isEqualTo("Jobs");
+    assertThat(
+            SuggestionProviderUtil.getSuggestionProviderName(
+                BottleneckSuggestionProvider.createDefault()))
+        .isEqualTo("Bottleneck");
+  }
+
+  @Test
+  public void selectSuggestionProvidersShouldKeepOrderOfProviders() {
+    List<SuggestionProvider> selected =
+        SuggestionProviderUtil.selectSuggestionProviders(
+            SuggestionProviderUtil.getAllSuggestionProviders(false), List.of("jobs", "Bottleneck"));
+
+    assertThat(
+            selected.stream()
+                .map(SuggestionProviderUtil::getSuggestionProviderName)
+                .collect(Collectors.toList()))
+        .containsExactly("Bottleneck", "Jobs")
+        .inOrder();
+  }
+
+  @Test
+  public void selectSuggestionProvidersShouldRejectUnknownNames() {
+    IllegalArgumentException exception =
+        assertThrows(
+            IllegalArgumentException.class,
+            () ->
+                SuggestionProviderUtil.selectSuggestionProviders(
+                    SuggestionProviderUtil.getAllSuggestionProviders(false),
+                    List.of("Jobs", "Unknown")));
+
+    assertThat(exception).hasMessageThat().startsWith("Unknown suggestion providers: Unknown.");
+  }
+
+  @Test
+  public void allSuggestionProvidersShouldDeclareConsumedData() {
+    for (SuggestionProvider provider : SuggestionProviderUtil.getAllSuggestionProviders(true)) {
+      assertThat(provider.getConsumedData()).isNotEmpty();
+    }
+  }
+
+  @Test
+  public void getConsumedDataShouldReturnUnionOfProviders() {
+    assertThat(
+            SuggestionProviderUtil.getConsumedData(
+                List.of(
+                    new UseRemoteCachingSuggestionProvider(), new UseSkymeldSuggestionProvider())))
+        .containsExactly(RemoteCachingUsed.class, SkymeldUsed.class, BazelVersion.class);
+  }
+
+  @Test
+  public void getConsumedDataShouldReturnNullIfUnknown() {
+    assertThat(
+            SuggestionProviderUtil.getConsumedData(
+                List.of(new UseRemoteCachingSuggestionProvider(), dataManager -> output("a"))))
+        .isNull();
+  }
+
+  private static SuggestionOutput output(String analyzerClassname) {
+    return SuggestionProviderUtil.createSuggestionOutput(analyzerClassname, null, null);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
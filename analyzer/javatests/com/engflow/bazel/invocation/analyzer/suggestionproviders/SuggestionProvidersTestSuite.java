@@ -31,6 +31,7 @@ import org.junit.runners.Suite;
   NegligiblePhaseSuggestionProviderTest.class,
   NoCacheActionsSuggestionProviderTest.class,
   QueuingSuggestionProviderTest.class,
+  SuggestionProviderUtilTest.class,
   UseRemoteCachingSuggestionProviderTest.class,
   UseSkymeldSuggestionProviderTest.class,
 })
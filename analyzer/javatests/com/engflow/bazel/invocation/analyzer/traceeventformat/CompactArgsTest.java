@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class CompactArgsTest {
+  @Test
+  public void copyOfShouldKeepEntriesInOrder() {
+    Map<String, String> map = new LinkedHashMap<>();
+    map.put("target", "//foo");
+    map.put("mnemonic", "Javac");
+    var args = CompactArgs.copyOf(map);
+
+    assertThat(args).containsExactly("target", "//foo", "mnemonic", "Javac").inOrder();
+    assertThat(args.get(new String("mnemonic"))).isEqualTo("Javac");
+    assertThat(args.get("other")).isNull();
+    assertThat(args.containsKey("target")).isTrue();
+    assertThat(args.containsKey(null)).isFalse();
+    assertThat(CompactArgs.copyOf(args)).isSameInstanceAs(args);
+  }
+
+  @Test
+  public void shouldEqualOtherMaps() {
+    var args = new CompactArgs(new String[] {"a", "b"}, new String[] {"1", "2"});
+    var other = new HashMap<>(Map.of("b", "2", "a", "1"));
+
+    assertThat(args).isEqualTo(other);
+    assertThat(other).isEqualTo(args);
+    assertThat(args.hashCode()).isEqualTo(other.hashCode());
+    assertThat(args).isEqualTo(new CompactArgs(new String[] {"b", "a"}, new String[] {"2", "1"}));
+    assertThat(args)
+        .isNotEqualTo(new CompactArgs(new String[] {"a", "b"}, new String[] {"1", "3"}));
+    assertThat(CompactArgs.of()).isEqualTo(Collections.emptyMap());
+  }
+
+  @Test
+  public void shouldBeImmutable() {
+    var args = CompactArgs.copyOf(Map.of("a", "1"));
+
+    assertThrows(UnsupportedOperationException.class, () -> args.put("b", "2"));
+    assertThrows(UnsupportedOperationException.class, () -> args.entrySet().clear());
+  }
+
+  @Test
+  public void shouldRejectNull() {
+    Map<String, String> map = new HashMap<>();
+    map.put("a", null);
+
+    assertThrows(NullPointerException.class, () -> CompactArgs.copyOf(map));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.engflow.bazel.invocation.analyzer.time.TimeUtil;
+import com.engflow.bazel.invocation.analyzer.time.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class CompleteEventIntervalIndexTest {
+  private static CompleteEvent event(String name, long start, long duration) {
+    return new CompleteEvent(
+        name,
+        "category",
+        Timestamp.ofMicros(start),
+        TimeUtil.getDurationForMicros(duration),
+        1,
+        1,
+        Map.of());
+  }
+
+  private static List<String> names(List<CompleteEvent> events) {
+    return events.stream().map(event -> event.name).collect(Collectors.toList());
+  }
+
+  @Test
+  public void shouldFindOverlappingContainingAndContainedEvents() {
+    var index =
+        CompleteEventIntervalIndex.of(
+            List.of(event("c", 30, 10), event("a", 0, 100), event("b", 10, 5)));
+
+    assertThat(index.size()).isEqualTo(3);
+    assertThat(names(index.getEvents())).containsExactly("a", "b", "c").inOrder();
+    assertThat(names(index.getOverlapping(Timestamp.ofMicros(15), Timestamp.ofMicros(30))))
+        .containsExactly("a", "b", "c")
+        .inOrder();
+    assertThat(names(index.getOverlapping(Timestamp.ofMicros(41), Timestamp.ofMicros(200))))
+        .containsExactly("a");
+    assertThat(names(index.getContaining(Timestamp.ofMicros(12))))
+        .containsExactly("a", "b")
+        .inOrder();
+    assertThat(names(index.getContainedIn(Timestamp.ofMicros(10), Timestamp.ofMicros(40))))
+        .containsExactly("b", "c")
+        .inOrder();
+    assertThat(index.hasContainedIn(Timestamp.ofMicros(10), Timestamp.ofMicros(40))).isTrue();
+    assertThat(index.hasContainedIn(Timestamp.ofMicros(11), Timestamp.ofMicros(39))).isFalse();
+    assertThat(index.getOverlapping(Timestamp.ofMicros(101), Timestamp.ofMicros(200))).isEmpty();
+  }
+
+  @Test
+  public void shouldHandleNoEvents() {
+    var index = CompleteEventIntervalIndex.of(List.of());
+
+    assertThat(index.getContaining(Timestamp.ofMicros(0))).isEmpty();
+    assertThat(index.hasContainedIn(Timestamp.ofMicros(0), Timestamp.ofMicros(10))).isFalse();
+  }
+
+  @Test
+  public void shouldIndexEventsOfStore() {
+    var store = new CompleteEventStore();
+    store.add(event("a", 0, 10));
+    store.add(event("b", 5, 1));
+    var index = CompleteEventIntervalIndex.of(store);
+
+    assertThat(index.getEvents()).containsExactlyElementsIn(store).inOrder();
+    assertThrows(UnsupportedOperationException.class, () -> index.getEvents().remove(0));
+    assertThat(names(index.getContainedIn(Timestamp.ofMicros(5), Timestamp.ofMicros(6))))
+        .containsExactly("b");
+  }
+
+  @Test
+  public void shouldMatchLinearScan() {
+    var random = new Random(42);
+    List<CompleteEvent> events = new ArrayList<>();
+    for (int i = 0; i < 2_000; i++) {
+      // Mostly short events, with a few long ones that span many buckets.
+      long duration = random.nextInt(20) == 0 ? random.nextInt(5_000) : random.nextInt(50);
+      events.add(event(Integer.toString(i), random.nextInt(10_000), duration));
+    }
+    var index = CompleteEventIntervalIndex.of(events);
+
+    for (int i = 0; i < 200; i++) {
+      long from = random.nextInt(11_000);
+      long to = from + random.nextInt(500);
+      Timestamp start = Timestamp.ofMicros(from);
+      Timestamp end = Timestamp.ofMicros(to);
+      assertThat(index.getOverlapping(start, end))
+          .containsExactlyElementsIn(
+              index.getEvents().stream()
+                  .filter(e -> e.start.compareTo(end) <= 0 && e.end.compareTo(start) >= 0)
+                  .collect(Collectors.toList()))
+          .inOrder();
+      List<CompleteEvent> contained =
+          index.getEvents().stream()
+              .filter(e -> e.start.compareTo(start) >= 0 && e.end.compareTo(end) <= 0)
+              .collect(Collectors.toList());
+      assertThat(index.getContainedIn(start, end)).containsExactlyElementsIn(contained).inOrder();
+      assertThat(index.hasContainedIn(start, end)).isEqualTo(!contained.isEmpty());
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.engflow.bazel.invocation.analyzer.time.TimeUtil;
+import com.engflow.bazel.invocation.analyzer.time.Timestamp;
+import java.time.Duration;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class CompleteEventStoreTest {
+  private static CompleteEvent event(
+      String name, long start, int threadId, Map<String, String> args) {
+    return new CompleteEvent(
+        name,
+        "category",
+        Timestamp.ofMicros(start),
+        TimeUtil.getDurationForMicros(10),
+        threadId,
+        1,
+        args);
+  }
+
+  @Test
+  public void getShouldReturnEqualEvents() {
+    List<CompleteEvent> events =
+        List.of(
+            event("a", 5, 1, Map.of()),
+            event("b", 7, 1, Map.of("target", "//foo")),
+            new CompleteEvent(
+                null, null, Timestamp.ofMicros(9), Duration.ofNanos(1_500), 2, 3, Map.of()),
+            event("a", 1, 1, Map.of("target", "//foo")));
+    var store = new CompleteEventStore();
+    store.addAll(events);
+
+    assertThat(store).containsExactlyElementsIn(events).inOrder();
+    assertThat(store.getStartMicros(1)).isEqualTo(7);
+    assertThat(store.get(1).args).isSameInstanceAs(store.get(3).args);
+  }
+
+  @Test
+  public void shouldShareKeysOfArgs() {
+    var store = new CompleteEventStore();
+    store.add(event("a", 1, 1, Map.of("target", "//foo")));
+    store.add(event("b", 2, 1, Map.of("target", "//bar")));
+
+    var first = (CompactArgs) store.get(0).args;
+    var second = (CompactArgs) store.get(1).args;
+    assertThat(first).containsExactly("target", "//foo");
+    assertThat(second).containsExactly("target", "//bar");
+    assertThat(first.getKeys()).isSameInstanceAs(second.getKeys());
+  }
+
+  @Test
+  public void shouldKeepRawArgsUntilAccessed() {
+    String text = "{\"target\":\"//foo\"}{\"target\":\"//bar\"}";
+    AtomicInteger reads = new AtomicInteger();
+    RawArgumentsSource source =
+        (start, end) -> {
+          reads.incrementAndGet();
+          return new StringReader(text.substring((int) start, (int) end));
+        };
+    var store = new CompleteEventStore();
+    store.add(event("b", 2, 1, new LazyArgs(new RawArguments(source, 0, 18), new SymbolTable())));
+    store.add(event("a", 1, 1, new LazyArgs(new RawArguments(source, 18, 36), new SymbolTable())));
+    store.add(event("c", 3, 1, Map.of("target", "//baz")));
+    store.sortByStart();
+
+    assertThat(reads.get()).isEqualTo(0);
+    assertThat(store.get(0).args).containsExactly("target", "//bar");
+    assertThat(store.get(1).args).containsExactly("target", "//foo");
+    assertThat(store.get(2).args).containsExactly("target", "//baz");
+    assertThat(reads.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldKeepDecodedRawArgs() {
+    String text = "{\"target\":\"//foo\"}";
+    AtomicInteger reads = new AtomicInteger();
+    RawArgumentsSource source =
+        (start, end) -> {
+          reads.incrementAndGet();
+          return new StringReader(text.substring((int) start, (int) end));
+        };
+    var store = new CompleteEventStore();
+    store.add(event("a", 1, 1, new LazyArgs(new RawArguments(source, 0, 18), new SymbolTable())));
+
+    assertThat(store.get(0).args).containsExactly("target", "//foo");
+    assertThat(store.get(0).args).containsExactly("target", "//foo");
+    assertThat(store.get(0).args).isInstanceOf(CompactArgs.class);
+    assertThat(reads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void sortByStartShouldBeStable() {
+    List<CompleteEvent> events = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      events.add(event("event " + i, (i * 37) % 10, 1, Map.of()));
+    }
+    var store = new CompleteEventStore();
+    store.addAll(events);
+
+    store.sortByStart();
+    events.sort(Comparator.comparing(e -> e.start));
+    assertThat(store).containsExactlyElementsIn(events).inOrder();
+  }
+
+  @Test
+  public void sortShouldUseComparator() {
+    var store = new CompleteEventStore();
+    store.add(event("b", 1, 1, Map.of()));
+    store.add(event("a", 2, 1, Map.of()));
+
+    store.sort(Comparator.comparing(e -> e.name));
+    assertThat(store.get(0).name).isEqualTo("a");
+    assertThat(store.get(1).name).isEqualTo("b");
+  }
+
+  @Test
+  public void shouldOnlyAppend() {
+    var store = new CompleteEventStore();
+    store.add(event("a", 1, 1, Map.of()));
+    assertThrows(IllegalArgumentException.class, () -> store.add(0, event("b", 0, 1, Map.of())));
+    assertThrows(UnsupportedOperationException.class, () -> store.remove(0));
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class DecodedTraceEventTest {
+  private static DecodedTraceEvent decode(String json) throws IOException {
+    return DecodedTraceEvent.decode(new JsonReader(new StringReader(json)));
+  }
+
+  @Test
+  public void shouldDecodeCompleteEvent() throws Exception {
+    String json =
+        "{\"cat\":\"action processing\",\"name\":\"Compiling foo.cc\",\"ph\":\"X\",\"ts\":123,"
+            + "\"dur\":45,\"pid\":1,\"tid\":7,"
+            + "\"args\":{\"target\":\"//foo\",\"count\":3,\"cached\":true}}";
+    var event = decode(json);
+
+    assertThat(event.getPhase()).isEqualTo(TraceEventFormatConstants.PHASE_COMPLETE);
+    assertThat(event.getName()).isEqualTo("Compiling foo.cc");
+    assertThat(event.getCategory()).isEqualTo("action processing");
+    assertThat(event.getTimestamp()).isEqualTo(123);
+    assertThat(event.getDuration()).isEqualTo(45);
+    assertThat(event.getProcessId()).isEqualTo(1);
+    assertThat(event.getThreadId()).isEqualTo(7);
+    assertThat(CompleteEvent.fromTraceEvent(event))
+        .isEqualTo(CompleteEvent.fromJson(JsonParser.parseString(json).getAsJsonObject()));
+  }
+
+  @Test
+  public void decodeShouldSkipRawArguments() throws Exception {
+    String json =
+        "{\"cat\":\"action processing\",\"name\":\"Compiling foo.cc\",\"ph\":\"X\",\"ts\":123,"
+            + "\"dur\":45,\"pid\":1,\"tid\":7,"
+            + "\"args\":{\"target\":\"//foo\",\"count\":3,\"cached\":true}}";
+    AtomicInteger reads = new AtomicInteger();
+    RawArgumentsSource source =
+        (start, end) -> {
+          reads.incrementAndGet();
+          return new StringReader(json.substring((int) start, (int) end));
+        };
+    var rawArguments = new RawArguments(source, json.indexOf("{\"target"), json.length() - 1);
+    var event =
+        DecodedTraceEvent.decode(new JsonReader(new StringReader(json)), rawArguments, null);
+    var completeEvent = CompleteEvent.fromTraceEvent(event, new SymbolTable());
+
+    assertThat(event.getRawArguments()).isSameInstanceAs(rawArguments);
+    assertThat(reads.get()).isEqualTo(0);
+    assertThat(completeEvent)
+        .isEqualTo(CompleteEvent.fromJson(JsonParser.parseString(json).getAsJsonObject()));
+    assertThat(completeEvent.args.get("target")).isEqualTo("//foo");
+    assertThat(reads.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void decodeShouldDropArgumentsOfOtherCategories() throws Exception {
+    var categories = Set.of("action processing");
+    for (String json :
+        List.of(
+            "{\"cat\":\"other\",\"ph\":\"X\",\"args\":{\"target\":\"//foo\"}}",
+            "{\"ph\":\"X\",\"args\":{\"target\":\"//foo\"},\"cat\":\"other\"}",
+            "{\"args\":{\"target\":\"//foo\"},\"ph\":\"X\"}")) {
+      var event =
+          DecodedTraceEvent.decode(new JsonReader(new StringReader(json)), null, categories);
+      assertThat(event.has(TraceEventFormatConstants.EVENT_ARGUMENTS)).isFalse();
+    }
+    String json = "{\"cat\":\"action processing\",\"ph\":\"X\",\"args\":{\"target\":\"//foo\"}}";
+    var event = DecodedTraceEvent.decode(new JsonReader(new StringReader(json)), null, categories);
+    assertThat(event.getArgumentsAsStrings()).containsExactly("target", "//foo");
+  }
+
+  @Test
+  public void shouldDecodeCounterEvent() throws Exception {
+    String json =
+        "{\"name\":\"CPU usage\",\"ph\":\"C\",\"ts\":1000,\"pid\":1,\"tid\":0,"
+            + "\"args\":{\"foo\":1.23,\"bar\":\"3.45\"}}";
+    var event = decode(json);
+
+    assertThat(CounterEvent.fromTraceEvent(event))
+        .isEqualTo(CounterEvent.fromJson(JsonParser.parseString(json).getAsJsonObject()));
+  }
+
+  @Test
+  public void shouldDecodeInstantEvent() throws Exception {
+    String json = "{\"cat\":\"gc notification\",\"name\":\"gc\",\"ph\":\"i\",\"ts\":5,\"tid\":3}";
+    var event = decode(json);
+
+    assertThat(InstantEvent.fromTraceEvent(event))
+        .isEqualTo(InstantEvent.fromJson(JsonParser.parseString(json).getAsJsonObject()));
+  }
+
+  @Test
+  public void decodeShouldKeepUnknownMembers() throws Exception {
+    String json =
+        "{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":1,\"tid\":0,"
+            + "\"args\":{\"name\":\"bazel\"},\"id\":[1,2],\"ts\":2.5}";
+    var event = decode(json);
+
+    assertThat(event.has("id")).isTrue();
+    assertThat(event.has(TraceEventFormatConstants.EVENT_DURATION)).isFalse();
+    assertThat(event.getTimestamp()).isEqualTo(JsonParser.parseString("2.5").getAsLong());
+    assertThat(event.toJsonObject()).isEqualTo(JsonParser.parseString(json));
+  }
+
+  @Test
+  public void decodeShouldUseLastDuplicateMember() throws Exception {
+    var event = decode("{\"ph\":\"X\",\"name\":\"first\",\"name\":null}");
+
+    assertThat(event.has(TraceEventFormatConstants.EVENT_NAME)).isTrue();
+    assertThrows(UnsupportedOperationException.class, () -> event.getName());
+  }
+
+  @Test
+  public void fromTraceEventShouldThrowOnMissingMembers() throws Exception {
+    var event = decode("{\"ph\":\"X\"}");
+    var e = assertThrows(IllegalArgumentException.class, () -> CompleteEvent.fromTraceEvent(event));
+    for (var member : CompleteEvent.REQUIRED_JSON_MEMBERS) {
+      assertThat(e.getMessage()).contains(member);
+    }
+  }
+
+  @Test
+  public void fromTraceEventShouldThrowOnInvalidArgs() throws Exception {
+    var event = decode("{\"ph\":\"C\",\"name\":\"foo\",\"ts\":1,\"args\":{\"bar\":null}}");
+    assertThrows(RuntimeException.class, () -> CounterEvent.fromTraceEvent(event));
+  }
+
+  @Test
+  public void decodeShouldThrowOnNonObject() {
+    assertThrows(IllegalStateException.class, () -> decode("[]"));
+  }
+}
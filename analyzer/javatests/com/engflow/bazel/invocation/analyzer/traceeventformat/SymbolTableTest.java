@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer.traceeventformat;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class SymbolTableTest {
+  @Test
+  public void shouldAssignDenseIds() {
+    var symbols = new SymbolTable();
+
+    assertThat(symbols.intern("a")).isEqualTo(0);
+    assertThat(symbols.intern("b")).isEqualTo(1);
+    assertThat(symbols.intern(new String("a"))).isEqualTo(0);
+    assertThat(symbols.size()).isEqualTo(2);
+    assertThat(symbols.get(1)).isEqualTo("b");
+    assertThat(symbols.getId("b")).isEqualTo(1);
+    assertThat(symbols.getId("c")).isEqualTo(SymbolTable.NO_SYMBOL);
+    assertThat(symbols.getId(null)).isEqualTo(SymbolTable.NO_SYMBOL);
+    assertThrows(IllegalArgumentException.class, () -> symbols.get(2));
+  }
+
+  @Test
+  public void shouldStartWithPredefinedSymbols() {
+    var symbols = new SymbolTable(List.of("x", "y"));
+
+    assertThat(symbols.getId("y")).isEqualTo(1);
+    assertThat(symbols.intern("z")).isEqualTo(2);
+    assertThat(symbols.getPredefinedSymbols()).containsExactly("x", "y").inOrder();
+    assertThrows(IllegalArgumentException.class, () -> new SymbolTable(List.of("x", "x")));
+  }
+
+  @Test
+  public void canonicalizeShouldReturnSameInstance() {
+    var symbols = new SymbolTable();
+    String first = new String("name");
+
+    assertThat(symbols.canonicalize(first)).isSameInstanceAs(first);
+    assertThat(symbols.canonicalize(new String("name"))).isSameInstanceAs(first);
+  }
+
+  @Test
+  public void shouldInternConcurrently() throws Exception {
+    var symbols = new SymbolTable();
+    int strings = 10_000;
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<int[]>> results = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        results.add(
+            executor.submit(
+                () -> {
+                  int[] ids = new int[strings];
+                  for (int j = 0; j < strings; j++) {
+                    ids[j] = symbols.intern("symbol " + j);
+                  }
+                  return ids;
+                }));
+      }
+      int[] expected = results.get(0).get();
+      for (Future<int[]> result : results) {
+        assertThat(result.get()).isEqualTo(expected);
+      }
+      Set<Integer> ids = new HashSet<>();
+      for (int j = 0; j < strings; j++) {
+        assertThat(symbols.get(expected[j])).isEqualTo("symbol " + j);
+        ids.add(expected[j]);
+      }
+      assertThat(ids).hasSize(strings);
+      assertThat(symbols.size()).isEqualTo(strings);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
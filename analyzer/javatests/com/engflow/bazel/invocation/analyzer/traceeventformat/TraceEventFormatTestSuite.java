@@ -19,8 +19,13 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
+  CompactArgsTest.class,
+  CompleteEventIntervalIndexTest.class,
+  CompleteEventStoreTest.class,
   CompleteEventTest.class,
   CounterEventTest.class,
+  DecodedTraceEventTest.class,
   InstantEventTest.class,
+  SymbolTableTest.class,
 })
 public class TraceEventFormatTestSuite {}
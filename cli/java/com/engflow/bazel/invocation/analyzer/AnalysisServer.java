@@ -0,0 +1,282 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import com.engflow.bazel.invocation.analyzer.consoleoutput.ConsoleOutput;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Serves analyses of Bazel profiles over HTTP on the loopback interface, so that a single warm JVM
+ * can analyze the profiles of many builds.
+ *
+ * <p>{@code POST /analyze} analyzes either the profile uploaded as the request body, which may be
+ * gzip-compressed, or the profile at the absolute path passed as the {@code path} query parameter.
+ * The response holds the resulting {@link SuggestionOutput}s, either as a JSON array or, if the
+ * {@code format=proto} query parameter is passed or {@value #PROTOBUF_CONTENT_TYPE} is accepted,
+ * as a sequence of length-delimited binary protos. {@code GET /stats} returns request counts,
+ * throughput and latency percentiles as JSON.
+ *
+ * <p>Profiles are analyzed on a fixed number of threads, each with its own {@link
+ * com.engflow.bazel.invocation.analyzer.core.DataManager}. Requests that arrive while all threads
+ * are busy wait in a bounded queue; once the queue is full, requests are rejected with {@code 503
+ * Service Unavailable} and a {@code Retry-After} header, so that clients back off instead of the
+ * server running out of memory.
+ */
+public final class AnalysisServer {
+  @VisibleForTesting static final String ANALYZE_PATH = "/analyze";
+  @VisibleForTesting static final String STATS_PATH = "/stats";
+  @VisibleForTesting static final String PROTOBUF_CONTENT_TYPE = "application/x-protobuf";
+
+  private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+  private static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+  private static final String PATH_PARAMETER = "path";
+  private static final String FORMAT_PARAMETER = "format";
+  private static final String FORMAT_JSON = "json";
+  private static final String FORMAT_PROTO = "proto";
+  private static final String RETRY_AFTER_SECONDS = "1";
+
+  private final ProfileAnalyzer analyzer;
+  private final ConsoleOutput consoleOutput;
+  private final ThreadPoolExecutor executor;
+  private final HttpServer server;
+  private final ServerStats stats = new ServerStats();
+
+  /**
+   * Creates a server, which does not accept requests until it is started.
+   *
+   * @param analyzer The analyzer to analyze each profile with.
+   * @param port The port to listen on, or 0 to pick a free one.
+   * @param threads The maximum number of profiles that are analyzed concurrently.
+   * @param queueSize The maximum number of requests that wait for a thread to become available.
+   * @param consoleOutput The output for notes, e.g. about failing to use the cache.
+   * @throws IOException If the port cannot be bound.
+   */
+  public AnalysisServer(
+      ProfileAnalyzer analyzer, int port, int threads, int queueSize, ConsoleOutput consoleOutput)
+      throws IOException {
+    Preconditions.checkArgument(threads > 0, "threads must be positive");
+    Preconditions.checkArgument(queueSize > 0, "queueSize must be positive");
+    this.analyzer = analyzer;
+    this.consoleOutput = consoleOutput;
+    this.executor =
+        new ThreadPoolExecutor(
+            threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize));
+    this.server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    // The handlers only hand requests off to the executor, so they run on the server's own thread.
+    server.createContext(ANALYZE_PATH, this::handleAnalyze);
+    server.createContext(STATS_PATH, this::handleStats);
+  }
+
+  /** Starts accepting requests. */
+  public void start() {
+    server.start();
+  }
+
+  /** Stops accepting requests and abandons the requests that are still being analyzed. */
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  /** Returns the port the server listens on. */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  @VisibleForTesting
+  ServerStats getStats() {
+    return stats;
+  }
+
+  private void handleAnalyze(HttpExchange exchange) {
+    long startNanos = System.nanoTime();
+    stats.recordReceived();
+    if (!"POST".equals(exchange.getRequestMethod())) {
+      respondWithError(exchange, 405, "Use POST to analyze a profile.");
+      exchange.close();
+      stats.recordFinished(Duration.ofNanos(System.nanoTime() - startNanos), false);
+      return;
+    }
+    try {
+      executor.execute(() -> analyzeAndRespond(exchange, startNanos));
+    } catch (RejectedExecutionException e) {
+      stats.recordRejected();
+      exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+      respondWithError(exchange, 503, "Too many profiles are queued for analysis, retry later.");
+      exchange.close();
+    }
+  }
+
+  private void analyzeAndRespond(HttpExchange exchange, long startNanos) {
+    boolean success = false;
+    try {
+      Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+      boolean binary = isProtobufRequested(exchange, parameters);
+      String path = parameters.get(PATH_PARAMETER);
+      ProfileAnalyzer.Result result;
+      if (path != null) {
+        if (!Path.of(path).isAbsolute()) {
+          throw new IllegalArgumentException("The path of the profile must be absolute.");
+        }
+        result = analyzer.analyze(Path.of(path), consoleOutput);
+      } else {
+        result = analyzer.analyze(decompressIfNeeded(exchange.getRequestBody()));
+      }
+      List<SuggestionOutput> suggestionOutputs =
+          result.getSuggestionOutputs() == null ? List.of() : result.getSuggestionOutputs();
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      if (binary) {
+        for (SuggestionOutput suggestionOutput : suggestionOutputs) {
+          suggestionOutput.writeDelimitedTo(body);
+        }
+      } else {
+        try (JsonWriter writer =
+            new JsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8))) {
+          SuggestionOutputJson.write(suggestionOutputs, writer);
+        }
+      }
+      respond(
+          exchange, 200, binary ? PROTOBUF_CONTENT_TYPE : JSON_CONTENT_TYPE, body.toByteArray());
+      success = true;
+    } catch (IllegalArgumentException e) {
+      respondWithError(exchange, 400, e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      respondWithError(exchange, 503, "The server is shutting down.");
+    } catch (Throwable t) {
+      respondWithError(exchange, 500, t.toString());
+    } finally {
+      exchange.close();
+      stats.recordFinished(Duration.ofNanos(System.nanoTime() - startNanos), success);
+    }
+  }
+
+  private void handleStats(HttpExchange exchange) {
+    try {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        respondWithError(exchange, 405, "Use GET to retrieve the stats.");
+        return;
+      }
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      try (JsonWriter writer =
+          new JsonWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8))) {
+        stats.write(writer, executor.getActiveCount(), executor.getQueue().size());
+      }
+      respond(exchange, 200, JSON_CONTENT_TYPE, body.toByteArray());
+    } catch (IOException e) {
+      // The client has gone away.
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Returns whether the response should hold binary protos rather than JSON, based on the {@code
+   * format} query parameter or, if it is missing, the {@code Accept} header.
+   */
+  private static boolean isProtobufRequested(
+      HttpExchange exchange, Map<String, String> parameters) {
+    String format = parameters.get(FORMAT_PARAMETER);
+    if (format == null) {
+      String accept = exchange.getRequestHeaders().getFirst("Accept");
+      return accept != null && accept.contains(PROTOBUF_CONTENT_TYPE);
+    }
+    switch (format) {
+      case FORMAT_JSON:
+        return false;
+      case FORMAT_PROTO:
+        return true;
+      default:
+        throw new IllegalArgumentException(
+            String.format(
+                "Invalid format \"%s\" specified, use %s or %s.",
+                format, FORMAT_JSON, FORMAT_PROTO));
+    }
+  }
+
+  @VisibleForTesting
+  static Map<String, String> parseQuery(@Nullable String rawQuery) {
+    Map<String, String> parameters = new HashMap<>();
+    if (rawQuery == null) {
+      return parameters;
+    }
+    for (String parameter : rawQuery.split("&")) {
+      if (parameter.isEmpty()) {
+        continue;
+      }
+      int separator = parameter.indexOf('=');
+      String name = separator < 0 ? parameter : parameter.substring(0, separator);
+      String value = separator < 0 ? "" : parameter.substring(separator + 1);
+      parameters.put(
+          URLDecoder.decode(name, StandardCharsets.UTF_8),
+          URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return parameters;
+  }
+
+  /** Returns a stream of the uncompressed profile, which may have been uploaded compressed. */
+  @VisibleForTesting
+  static InputStream decompressIfNeeded(InputStream in) throws IOException {
+    BufferedInputStream buffered = new BufferedInputStream(in);
+    buffered.mark(2);
+    int magic = buffered.read() | (buffered.read() << 8);
+    buffered.reset();
+    return magic == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(buffered) : buffered;
+  }
+
+  private static void respond(HttpExchange exchange, int status, String contentType, byte[] body)
+      throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private static void respondWithError(HttpExchange exchange, int status, String message) {
+    try {
+      respond(
+          exchange, status, TEXT_CONTENT_TYPE, (message + "\n").getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      // The client has gone away, or the response has already been started.
+    }
+  }
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.time.Duration;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * A resident analyzer that runs invocations forwarded by clients over a Unix domain socket, so that
+ * they do not pay for starting a JVM and loading the analyzer's classes. Similar to Bazel's server,
+ * the output of an invocation is streamed back to its client as it is written, followed by its exit
+ * code.
+ *
+ * <p>The daemon only serves clients of the same version, as determined by {@link
+ * ProfileAnalyzer#getVersion()}. When a client of a different version connects, the client runs
+ * the invocation itself and the daemon shuts down, so that a daemon of the new version can take
+ * its place. The daemon also shuts down once it has been idle for the configured timeout. When a
+ * client disconnects before its invocation finishes, e.g. because it was interrupted, the
+ * invocation is cancelled by interrupting it.
+ *
+ * <p>The socket is placed in a directory that only its owner may access, and both the daemon and
+ * its clients refuse to use a directory that is owned by another user or accessible to others, so
+ * that other users can neither impersonate the daemon nor run invocations on its behalf.
+ */
+public final class AnalyzerDaemon {
+  /** Runs a single invocation of the analyzer, e.g. {@link Main#run}. */
+  @FunctionalInterface
+  public interface Command {
+    /**
+     * Runs an invocation.
+     *
+     * @param args The command-line arguments of the invocation.
+     * @param workingDirectory The directory the client was run in.
+     * @param buildWorkingDirectory The value of BUILD_WORKING_DIRECTORY of the client, if set.
+     * @param out The stream for the standard output of the invocation.
+     * @param err The stream for the standard error of the invocation.
+     * @return The exit code of the invocation.
+     */
+    int run(
+        String[] args,
+        Path workingDirectory,
+        @Nullable String buildWorkingDirectory,
+        PrintStream out,
+        PrintStream err)
+        throws Exception;
+  }
+
+  /** The daemon's default idle timeout, which matches that of the Bazel server. */
+  public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofHours(3);
+
+  // The kinds of frames the daemon sends to the client.
+  private static final byte FRAME_OUT = 1;
+  private static final byte FRAME_ERR = 2;
+  private static final byte FRAME_EXIT = 3;
+  private static final byte FRAME_VERSION_MISMATCH = 4;
+
+  private static final String SOCKET_DIRECTORY = "bazel-invocation-analyzer";
+  private static final String SOCKET_FILE = "daemon.sock";
+  private static final Set<PosixFilePermission> PRIVATE_PERMISSIONS =
+      PosixFilePermissions.fromString("rwx------");
+
+  private final Path socketPath;
+  private final String version;
+  private final Duration idleTimeout;
+  private final Command command;
+
+  private final Object lock = new Object();
+  private ServerSocketChannel server;
+  private boolean stopped;
+  private int activeInvocations;
+  private long lastActivityNanos;
+
+  /**
+   * Creates a daemon, which does not accept invocations until it is run.
+   *
+   * @param socketPath The path of the Unix domain socket to listen on.
+   * @param version The version of the analyzer, which clients have to match.
+   * @param idleTimeout The time after which the daemon shuts down if it has not run an invocation.
+   * @param command The command to run the invocations with.
+   */
+  public AnalyzerDaemon(Path socketPath, String version, Duration idleTimeout, Command command) {
+    Preconditions.checkArgument(!idleTimeout.isNegative(), "idleTimeout must not be negative");
+    this.socketPath = socketPath;
+    this.version = version;
+    this.idleTimeout = idleTimeout;
+    this.command = command;
+  }
+
+  /**
+   * Returns the path of the socket the daemon of the current user listens on by default. It is
+   * placed in the user's runtime directory if {@code XDG_RUNTIME_DIR} is set, and in the user's
+   * cache directory otherwise.
+   */
+  public static Path getDefaultSocketPath() {
+    String runtimeDirectory = System.getenv("XDG_RUNTIME_DIR");
+    Path parent =
+        runtimeDirectory == null || runtimeDirectory.isEmpty()
+            ? Path.of(System.getProperty("user.home"), ".cache")
+            : Path.of(runtimeDirectory);
+    return parent.resolve(SOCKET_DIRECTORY).resolve(SOCKET_FILE);
+  }
+
+  /**
+   * Checks that the passed-in directory, which contains the socket, is a directory that is owned by
+   * the current user and that no other user may access.
+   *
+   * @throws IOException If the directory does not exist or is not private to the current user.
+   */
+  private static void checkPrivateDirectory(Path directory) throws IOException {
+    if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+      throw new IOException(directory + " is not a directory");
+    }
+    UserPrincipal user =
+        directory
+            .getFileSystem()
+            .getUserPrincipalLookupService()
+            .lookupPrincipalByName(System.getProperty("user.name"));
+    if (!user.equals(Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS))) {
+      throw new IOException(directory + " is not owned by " + user.getName());
+    }
+    if (directory.getFileSystem().supportedFileAttributeViews().contains("posix")
+        && !PRIVATE_PERMISSIONS.containsAll(
+            Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS))) {
+      throw new IOException(directory + " is accessible to other users");
+    }
+  }
+
+  /**
+   * Listens for invocations until the daemon is stopped, either by {@link #stop()}, by being idle
+   * for longer than the idle timeout, or by a client of a different version connecting.
+   *
+   * @throws IOException If the socket cannot be bound, e.g. because another daemon is running or
+   *     because the directory of the socket is not private to the current user.
+   */
+  public void run() throws IOException {
+    Path socketDirectory = socketPath.toAbsolutePath().getParent();
+    if (socketDirectory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+      Files.createDirectories(
+          socketDirectory, PosixFilePermissions.asFileAttribute(PRIVATE_PERMISSIONS));
+    } else {
+      Files.createDirectories(socketDirectory);
+    }
+    checkPrivateDirectory(socketDirectory);
+    if (Files.exists(socketPath)) {
+      // Take over the socket only if the daemon that created it is no longer running.
+      if (isListening(socketPath)) {
+        throw new IOException("Another daemon is already listening on " + socketPath);
+      }
+      Files.deleteIfExists(socketPath);
+    }
+    synchronized (lock) {
+      if (stopped) {
+        return;
+      }
+      server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+      server.bind(UnixDomainSocketAddress.of(socketPath));
+      lastActivityNanos = System.nanoTime();
+    }
+    ScheduledExecutorService idleCheck = Executors.newSingleThreadScheduledExecutor();
+    long checkIntervalMillis = Math.max(1, idleTimeout.toMillis() / 4);
+    idleCheck.scheduleWithFixedDelay(
+        this::stopIfIdle, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    ExecutorService invocations = Executors.newCachedThreadPool();
+    try {
+      while (true) {
+        SocketChannel channel;
+        try {
+          channel = server.accept();
+        } catch (ClosedChannelException e) {
+          // The daemon was stopped.
+          break;
+        }
+        synchronized (lock) {
+          if (stopped) {
+            channel.close();
+            break;
+          }
+          activeInvocations++;
+        }
+        invocations.execute(() -> handle(channel));
+      }
+    } finally {
+      idleCheck.shutdownNow();
+      invocations.shutdown();
+      stop();
+    }
+  }
+
+  /** Stops accepting invocations. Invocations that are already running finish in the background. */
+  public void stop() {
+    synchronized (lock) {
+      stopped = true;
+      // Once closed, the socket may already have been taken over by another daemon.
+      if (server == null || !server.isOpen()) {
+        return;
+      }
+      try {
+        server.close();
+        Files.deleteIfExists(socketPath);
+      } catch (IOException e) {
+        // There is nothing left to clean up.
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static boolean isListening(Path socketPath) {
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socketPath));
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private void stopIfIdle() {
+    synchronized (lock) {
+      if (activeInvocations == 0
+          && System.nanoTime() - lastActivityNanos >= idleTimeout.toNanos()) {
+        stop();
+      }
+    }
+  }
+
+  private void handle(SocketChannel channel) {
+    try (channel) {
+      DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      DataOutputStream connection =
+          new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      if (!version.equals(readString(in))) {
+        connection.writeByte(FRAME_VERSION_MISMATCH);
+        connection.flush();
+        stop();
+        return;
+      }
+      Path workingDirectory = Path.of(readString(in));
+      String buildWorkingDirectory = readString(in);
+      String[] args = new String[in.readInt()];
+      for (int i = 0; i < args.length; i++) {
+        args[i] = readString(in);
+      }
+
+      PrintStream out =
+          new PrintStream(
+              new FrameOutputStream(connection, FRAME_OUT), true, StandardCharsets.UTF_8);
+      PrintStream err =
+          new PrintStream(
+              new FrameOutputStream(connection, FRAME_ERR), true, StandardCharsets.UTF_8);
+      Invocation invocation = new Invocation(Thread.currentThread());
+      Thread disconnectWatcher =
+          new Thread(() -> invocation.cancelOnDisconnect(channel), "daemon-disconnect-watcher");
+      disconnectWatcher.setDaemon(true);
+      disconnectWatcher.start();
+      int exitCode;
+      try {
+        exitCode =
+            command.run(
+                args,
+                workingDirectory,
+                buildWorkingDirectory.isEmpty() ? null : buildWorkingDirectory,
+                out,
+                err);
+      } catch (Throwable t) {
+        t.printStackTrace(err);
+        exitCode = 1;
+      } finally {
+        invocation.finish();
+      }
+      out.flush();
+      err.flush();
+      synchronized (connection) {
+        connection.writeByte(FRAME_EXIT);
+        connection.writeInt(exitCode);
+        connection.flush();
+      }
+    } catch (IOException e) {
+      // The client has gone away.
+    } finally {
+      synchronized (lock) {
+        activeInvocations--;
+        lastActivityNanos = System.nanoTime();
+      }
+    }
+  }
+
+  /**
+   * Forwards an invocation to the daemon listening on the passed-in socket, and streams its output
+   * to the passed-in streams.
+   *
+   * @param socketPath The path of the socket the daemon listens on.
+   * @param version The version of the client, which the daemon has to match.
+   * @param args The command-line arguments of the invocation.
+   * @param workingDirectory The directory the client was run in.
+   * @param buildWorkingDirectory The value of BUILD_WORKING_DIRECTORY of the client, if set.
+   * @param out The stream to write the standard output of the invocation to.
+   * @param err The stream to write the standard error of the invocation to.
+   * @return The exit code of the invocation, or empty if no daemon of the same version is running.
+   * @throws IOException If the connection to the daemon is lost during the invocation.
+   */
+  public static OptionalInt forward(
+      Path socketPath,
+      String version,
+      String[] args,
+      Path workingDirectory,
+      @Nullable String buildWorkingDirectory,
+      PrintStream out,
+      PrintStream err)
+      throws IOException {
+    if (!Files.exists(socketPath)) {
+      return OptionalInt.empty();
+    }
+    try {
+      checkPrivateDirectory(socketPath.toAbsolutePath().getParent());
+    } catch (IOException e) {
+      err.printf("Not forwarding the invocation to the daemon: %s%n", e.getMessage());
+      return OptionalInt.empty();
+    }
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      try {
+        channel.connect(UnixDomainSocketAddress.of(socketPath));
+      } catch (IOException e) {
+        // The daemon that created the socket is no longer running.
+        return OptionalInt.empty();
+      }
+      DataOutputStream request =
+          new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+      writeString(request, version);
+      writeString(request, workingDirectory.toString());
+      writeString(request, buildWorkingDirectory == null ? "" : buildWorkingDirectory);
+      request.writeInt(args.length);
+      for (String arg : args) {
+        writeString(request, arg);
+      }
+      request.flush();
+
+      DataInputStream in =
+          new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      boolean firstFrame = true;
+      while (true) {
+        byte frame;
+        try {
+          frame = in.readByte();
+        } catch (EOFException e) {
+          if (firstFrame) {
+            // The daemon shut down before it accepted the invocation.
+            return OptionalInt.empty();
+          }
+          throw e;
+        }
+        firstFrame = false;
+        switch (frame) {
+          case FRAME_OUT:
+          case FRAME_ERR:
+            byte[] content = new byte[in.readInt()];
+            in.readFully(content);
+            PrintStream stream = frame == FRAME_OUT ? out : err;
+            stream.write(content);
+            stream.flush();
+            break;
+          case FRAME_EXIT:
+            return OptionalInt.of(in.readInt());
+          case FRAME_VERSION_MISMATCH:
+            return OptionalInt.empty();
+          default:
+            throw new IOException("Received an invalid frame from the daemon: " + frame);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes a string as its length in bytes followed by its UTF-8 encoding. Unlike {@link
+   * DataOutputStream#writeUTF(String)}, this does not limit the length of the string.
+   */
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /** Reads a string written by {@link #writeString(DataOutputStream, String)}. */
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Received a string of invalid length: " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /** Interrupts an invocation if its client disconnects before the invocation finishes. */
+  private static final class Invocation {
+    private final Thread worker;
+    private boolean finished;
+
+    Invocation(Thread worker) {
+      this.worker = worker;
+    }
+
+    /**
+     * Waits until the client disconnects, or the connection is closed after the invocation
+     * finished. The client sends nothing after its request, so any read ends either way.
+     */
+    void cancelOnDisconnect(SocketChannel channel) {
+      try {
+        // Read from the channel directly, as its streams would block writing the output meanwhile.
+        channel.read(ByteBuffer.allocate(1));
+      } catch (IOException e) {
+        // The connection was closed.
+      }
+      synchronized (this) {
+        if (!finished) {
+          worker.interrupt();
+        }
+      }
+    }
+
+    /** Marks the invocation as finished, so that it is no longer interrupted. */
+    synchronized void finish() {
+      finished = true;
+      // Clear an interrupt that arrived after the invocation stopped checking for it.
+      Thread.interrupted();
+    }
+  }
+
+  /** Sends everything written to it to the client, as frames of the passed-in kind. */
+  private static final class FrameOutputStream extends OutputStream {
+    private final DataOutputStream connection;
+    private final byte frame;
+
+    FrameOutputStream(DataOutputStream connection, byte frame) {
+      this.connection = connection;
+      this.frame = frame;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return;
+      }
+      // The output and error streams of an invocation share the connection.
+      synchronized (connection) {
+        connection.writeByte(frame);
+        connection.writeInt(len);
+        connection.write(b, off, len);
+        connection.flush();
+      }
+    }
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import com.engflow.bazel.invocation.analyzer.consoleoutput.ConsoleOutput;
+import com.engflow.bazel.invocation.analyzer.fleet.FleetSummary;
+import com.engflow.bazel.invocation.analyzer.fleet.ProfileSummary;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+
+/**
+ * Analyzes many profiles in one JVM. Profiles are analyzed concurrently on a bounded number of
+ * threads, and the output of each profile is printed as a whole as soon as its analysis finishes.
+ *
+ * <p>To keep concurrently analyzed profiles from exhausting the heap, each profile has to acquire
+ * its estimated memory cost from a shared budget before it is analyzed. A profile whose cost
+ * exceeds the budget is analyzed once no other profile holds any of the budget.
+ */
+public final class BatchAnalysis {
+  /** The prefix of a batch specification that names a file listing one profile per line. */
+  private static final String LIST_FILE_PREFIX = "@";
+
+  private static final String COMMENT_PREFIX = "#";
+
+  /** The estimated heap usage per byte of an uncompressed profile, after it has been parsed. */
+  private static final long MEMORY_PER_PROFILE_BYTE = 4;
+
+  /** The estimated heap usage per byte of a gzip-compressed profile, after it has been parsed. */
+  private static final long MEMORY_PER_COMPRESSED_PROFILE_BYTE = 40;
+
+  private static final long BYTES_PER_MEMORY_PERMIT = 1024 * 1024;
+
+  private final ProfileAnalyzer analyzer;
+  private final int jobs;
+  private final Semaphore memoryBudget;
+  private final int memoryBudgetPermits;
+  private final boolean disableFormatting;
+  private final boolean verbose;
+  private final PrintStream out;
+
+  /**
+   * Creates a batch analysis.
+   *
+   * @param analyzer The analyzer to analyze each profile with.
+   * @param jobs The maximum number of profiles that are analyzed concurrently.
+   * @param memoryBudgetBytes The total estimated memory cost of the profiles analyzed concurrently.
+   * @param disableFormatting Whether to output unformatted text.
+   * @param verbose Whether to output verbose text.
+   * @param out The stream to print the output of each profile to.
+   */
+  public BatchAnalysis(
+      ProfileAnalyzer analyzer,
+      int jobs,
+      long memoryBudgetBytes,
+      boolean disableFormatting,
+      boolean verbose,
+      PrintStream out) {
+    Preconditions.checkArgument(jobs > 0, "jobs must be positive");
+    Preconditions.checkArgument(memoryBudgetBytes > 0, "memoryBudgetBytes must be positive");
+    this.analyzer = analyzer;
+    this.jobs = jobs;
+    this.memoryBudgetPermits = (int) Math.min(Integer.MAX_VALUE, toPermits(memoryBudgetBytes));
+    // Fairness keeps large profiles from starving while smaller ones keep being admitted.
+    this.memoryBudget = new Semaphore(memoryBudgetPermits, true);
+    this.disableFormatting = disableFormatting;
+    this.verbose = verbose;
+    this.out = out;
+  }
+
+  /**
+   * Returns the profiles that a batch specification refers to. The specification is either the
+   * path of a file that lists one profile per line, prefixed with {@code @}, or a glob pattern such
+   * as {@code /tmp/profiles/**.json.gz}. In list files, empty lines and lines starting with {@code
+   * #} are ignored, and relative paths are resolved against the directory of the list file.
+   *
+   * @param specification The batch specification.
+   * @param workingDirectory The directory relative paths of the specification are resolved
+   *     against.
+   * @return The paths of the profiles, sorted for glob patterns and in order for list files.
+   * @throws IOException If the list file or the directories of the glob pattern cannot be read.
+   */
+  public static List<Path> findProfiles(String specification, Path workingDirectory)
+      throws IOException {
+    if (specification.startsWith(LIST_FILE_PREFIX)) {
+      Path listFile = workingDirectory.resolve(specification.substring(LIST_FILE_PREFIX.length()));
+      Path listDirectory = listFile.toAbsolutePath().getParent();
+      return Files.readAllLines(listFile, StandardCharsets.UTF_8).stream()
+          .map(String::trim)
+          .filter(line -> !line.isEmpty() && !line.startsWith(COMMENT_PREFIX))
+          .map(listDirectory::resolve)
+          .collect(Collectors.toList());
+    }
+    Path glob = workingDirectory.resolve(specification).toAbsolutePath();
+    // Only walk the directories below the longest prefix without wildcards.
+    Path base = glob.getRoot();
+    for (Path part : glob) {
+      if (part.toString().matches(".*[*?\\[{].*")) {
+        break;
+      }
+      base = base.resolve(part);
+    }
+    if (base.equals(glob)) {
+      return Files.isRegularFile(glob) ? List.of(glob) : List.of();
+    }
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    try (Stream<Path> paths = Files.walk(base)) {
+      return paths
+          .filter(path -> Files.isRegularFile(path) && matcher.matches(path))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Returns the estimated amount of heap that analyzing the passed-in profile takes up, based on
+   * its size and whether it is compressed.
+   */
+  @VisibleForTesting
+  static long estimateMemoryCost(Path profile) throws IOException {
+    long size = Files.size(profile);
+    return profile.getFileName().toString().endsWith(".gz")
+        ? size * MEMORY_PER_COMPRESSED_PROFILE_BYTE
+        : size * MEMORY_PER_PROFILE_BYTE;
+  }
+
+  /**
+   * Analyzes the passed-in profiles and prints the output of each profile as soon as it is
+   * available. The analysis of a profile failing does not affect the other profiles.
+   *
+   * @param profiles The profiles to analyze.
+   * @return The number of profiles whose analysis failed.
+   * @throws InterruptedException If interrupted while waiting for the analyses to finish.
+   */
+  public int run(List<Path> profiles) throws InterruptedException {
+    AtomicInteger failures = new AtomicInteger();
+    execute(
+        profiles,
+        profile -> {
+          if (!analyzeAndPrint(profile)) {
+            failures.incrementAndGet();
+          }
+        });
+    return failures.get();
+  }
+
+  /**
+   * Reduces each of the passed-in profiles to a {@link ProfileSummary} and combines these into a
+   * single {@link FleetSummary}. Only the summaries are retained, so the memory this takes up does
+   * not grow with the number of profiles. Errors are printed for profiles whose analysis fails.
+   *
+   * @param profiles The profiles to aggregate.
+   * @return The summary of all profiles.
+   * @throws InterruptedException If interrupted while waiting for the analyses to finish.
+   */
+  public FleetSummary aggregate(List<Path> profiles) throws InterruptedException {
+    // Each thread adds its profiles to its own fleet summary, so that adding a profile does not
+    // contend on a lock. The partial summaries are merged once all profiles have been analyzed.
+    Queue<FleetSummary> partialSummaries = new ConcurrentLinkedQueue<>();
+    ThreadLocal<FleetSummary> partialSummary =
+        ThreadLocal.withInitial(
+            () -> {
+              FleetSummary summary = new FleetSummary();
+              partialSummaries.add(summary);
+              return summary;
+            });
+    execute(
+        profiles,
+        profile -> {
+          ProfileSummary summary = summarize(profile);
+          if (summary == null) {
+            partialSummary.get().addFailure();
+          } else {
+            partialSummary.get().add(summary);
+          }
+        });
+    FleetSummary fleetSummary = new FleetSummary();
+    partialSummaries.forEach(fleetSummary::merge);
+    return fleetSummary;
+  }
+
+  /** Runs the passed-in task for each profile on a pool of {@link #jobs} threads. */
+  private void execute(List<Path> profiles, Consumer<Path> task) throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(jobs);
+    try {
+      for (Path profile : profiles) {
+        executor.execute(() -> task.accept(profile));
+      }
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Analyzes a single profile and prints its output, returning whether the analysis succeeded. */
+  private boolean analyzeAndPrint(Path profile) {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    PrintStream stream = new PrintStream(buffer, false, StandardCharsets.UTF_8);
+    ConsoleOutput consoleOutput = new ConsoleOutput(disableFormatting, verbose, stream, stream);
+    boolean success = false;
+    try {
+      consoleOutput.outputAnalysisInput(profile.toString());
+      int permits = getPermits(profile);
+      memoryBudget.acquire(permits);
+      try {
+        analyzer.output(analyzer.analyze(profile, consoleOutput), consoleOutput);
+        success = true;
+      } finally {
+        memoryBudget.release(permits);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      consoleOutput.outputError(e);
+    } catch (Throwable t) {
+      consoleOutput.outputError(t);
+    }
+    print(buffer, stream);
+    return success;
+  }
+
+  /** Summarizes a single profile, returning null and printing an error if the analysis fails. */
+  @Nullable
+  private ProfileSummary summarize(Path profile) {
+    try {
+      int permits = getPermits(profile);
+      memoryBudget.acquire(permits);
+      try {
+        return analyzer.summarize(profile);
+      } finally {
+        memoryBudget.release(permits);
+      }
+    } catch (Throwable t) {
+      if (t instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      PrintStream stream = new PrintStream(buffer, false, StandardCharsets.UTF_8);
+      ConsoleOutput consoleOutput = new ConsoleOutput(disableFormatting, verbose, stream, stream);
+      consoleOutput.outputAnalysisInput(profile.toString());
+      consoleOutput.outputError(t);
+      print(buffer, stream);
+      return null;
+    }
+  }
+
+  /** Prints the output buffered for a profile as a whole. */
+  private void print(ByteArrayOutputStream buffer, PrintStream stream) {
+    stream.flush();
+    synchronized (out) {
+      out.print(buffer.toString(StandardCharsets.UTF_8));
+      out.flush();
+    }
+  }
+
+  @VisibleForTesting
+  int getPermits(Path profile) throws IOException {
+    return (int) Math.max(1, Math.min(memoryBudgetPermits, toPermits(estimateMemoryCost(profile))));
+  }
+
+  private static long toPermits(long bytes) {
+    return (bytes + BYTES_PER_MEMORY_PERMIT - 1) / BYTES_PER_MEMORY_PERMIT;
+  }
+}
@@ -14,40 +14,137 @@
 
 package com.engflow.bazel.invocation.analyzer;
 
-import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.cache.ProfileCache;
 import com.engflow.bazel.invocation.analyzer.consoleoutput.ConsoleOutput;
-import com.engflow.bazel.invocation.analyzer.core.DataManager;
-import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
-import com.engflow.bazel.invocation.analyzer.dataproviders.DataProviderUtil;
+import com.engflow.bazel.invocation.analyzer.core.Tracer;
+import com.engflow.bazel.invocation.analyzer.fleet.FleetSummary;
 import com.engflow.bazel.invocation.analyzer.options.IaOption;
 import com.engflow.bazel.invocation.analyzer.options.IaOptions;
 import com.engflow.bazel.invocation.analyzer.options.Mode;
 import com.engflow.bazel.invocation.analyzer.suggestionproviders.SuggestionProviderUtil;
+import com.engflow.bazel.invocation.analyzer.time.DurationUtil;
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.OptionalInt;
+import javax.annotation.Nullable;
+import org.apache.commons.cli.ParseException;
 
 public class Main {
   private static final String BUILD_WORKING_DIRECTORY = "BUILD_WORKING_DIRECTORY";
+  private static final long DEFAULT_CACHE_SIZE_MB = 256;
+  private static final int DEFAULT_SERVE_QUEUE = 16;
 
   public static void main(String[] args) throws Exception {
+    Path workingDirectory = Path.of("").toAbsolutePath();
+    String buildWorkingDirectory = System.getenv(BUILD_WORKING_DIRECTORY);
+    if (canForwardToDaemon(args)) {
+      OptionalInt exitCode =
+          AnalyzerDaemon.forward(
+              AnalyzerDaemon.getDefaultSocketPath(),
+              ProfileAnalyzer.getVersion(),
+              args,
+              workingDirectory,
+              buildWorkingDirectory,
+              System.out,
+              System.err);
+      if (exitCode.isPresent()) {
+        System.exit(exitCode.getAsInt());
+      }
+    }
+    int exitCode = run(args, workingDirectory, buildWorkingDirectory, System.out, System.err);
+    if (exitCode != 0) {
+      System.exit(exitCode);
+    }
+  }
+
+  /**
+   * Returns whether the invocation with the passed-in arguments may be run by a daemon, if one is
+   * running. Invocations that keep running to serve others are always run by the client itself.
+   */
+  private static boolean canForwardToDaemon(String[] args) {
+    try {
+      IaOptions options = new IaOptions(args);
+      return !options.hasOption(IaOption.DAEMON) && options.getOption(IaOption.SERVE) == null;
+    } catch (ParseException ex) {
+      // Let the client report the invalid arguments.
+      return false;
+    }
+  }
+
+  /**
+   * Runs a single invocation of the analyzer, either in the client or in a daemon it was forwarded
+   * to.
+   *
+   * @param args The command-line arguments.
+   * @param workingDirectory The directory relative paths are resolved against.
+   * @param buildWorkingDirectory The value of BUILD_WORKING_DIRECTORY, if set.
+   * @param out The stream for the standard output.
+   * @param err The stream for the standard error.
+   * @return The exit code.
+   */
+  static int run(
+      String[] args,
+      Path workingDirectory,
+      @Nullable String buildWorkingDirectory,
+      PrintStream out,
+      PrintStream err)
+      throws Exception {
     IaOptions options = new IaOptions(args);
 
     if (options.hasOption(IaOption.HELP)) {
-      options.printHelp();
-      System.exit(0);
+      options.printHelp(out);
+      return 0;
     }
 
-    if (options.getArguments().length != 1) {
-      System.err.println(
+    String batchSpecification = options.getOption(IaOption.BATCH);
+    String servePortOption = options.getOption(IaOption.SERVE);
+    if (batchSpecification != null && servePortOption != null) {
+      err.println("You cannot use --serve together with --batch.");
+      return 1;
+    }
+    boolean daemon = options.hasOption(IaOption.DAEMON);
+    if (daemon && (batchSpecification != null || servePortOption != null)) {
+      err.println("You cannot use --daemon together with --batch or --serve.");
+      return 1;
+    }
+    boolean profileArgumentExpected =
+        batchSpecification == null && servePortOption == null && !daemon;
+    if (profileArgumentExpected && options.getArguments().length != 1) {
+      err.println(
           "You need to pass a valid path of a Bazel profile as the first and only argument.");
-      System.exit(1);
+      return 1;
+    }
+    if (!profileArgumentExpected && options.getArguments().length != 0) {
+      err.println(
+          String.format(
+              "You cannot pass the path of a Bazel profile when using --%s.",
+              batchSpecification != null ? "batch" : servePortOption != null ? "serve" : "daemon"));
+      return 1;
+    }
+    String diffProfilePath = options.getOption(IaOption.DIFF);
+    if (diffProfilePath != null && !profileArgumentExpected) {
+      err.println("You cannot use --diff together with --batch, --serve or --daemon.");
+      return 1;
+    }
+    boolean aggregate = options.hasOption(IaOption.AGGREGATE);
+    if (aggregate && batchSpecification == null) {
+      err.println("You can only use --aggregate together with --batch.");
+      return 1;
     }
 
+    final boolean verbose = options.hasOption(IaOption.OUTPUT_VERBOSE);
+
     HashSet<Mode> modes = new HashSet<Mode>();
     var modeOptions = options.getOptions(IaOption.OUTPUT_MODE);
     if (modeOptions != null && modeOptions.length > 0) {
@@ -56,79 +153,314 @@ public class Main {
           var mode = Mode.valueOf(modeStr.toUpperCase(Locale.US));
           modes.add(mode);
         } catch (IllegalArgumentException ex) {
-          System.err.println(String.format("Invalid mode \"%s\" specified.", modeStr));
-          System.exit(1);
+          err.println(String.format("Invalid mode \"%s\" specified.", modeStr));
+          return 1;
         }
       }
     } else {
       modes.add(Mode.SUGGESTIONS);
     }
 
-    final boolean verbose = options.hasOption(IaOption.OUTPUT_VERBOSE);
-    ConsoleOutput consoleOutput =
-        new ConsoleOutput(options.hasOption(IaOption.OUTPUT_PLAINTEXT), verbose);
-    consoleOutput.outputHeader();
+    List<SuggestionProvider> suggestionProviders =
+        SuggestionProviderUtil.getAllSuggestionProviders(verbose);
+    var suggestionsOptions = options.getOptions(IaOption.SUGGESTIONS);
+    if (suggestionsOptions != null && suggestionsOptions.length > 0) {
+      try {
+        suggestionProviders =
+            SuggestionProviderUtil.selectSuggestionProviders(
+                suggestionProviders, Arrays.asList(suggestionsOptions));
+      } catch (IllegalArgumentException ex) {
+        err.println(ex.getMessage());
+        return 1;
+      }
+    }
 
-    try {
-      String bazelProfilePath = options.getArguments()[0];
-      File file = new File(bazelProfilePath);
-      if (!file.isAbsolute()) {
-        String buildWorkingDirectory = System.getenv(BUILD_WORKING_DIRECTORY);
-        if (buildWorkingDirectory != null) {
-          String absoluteBazelProfilePath =
-              buildWorkingDirectory + FileSystems.getDefault().getSeparator() + bazelProfilePath;
-          String relativePathWarning =
-              String.format(
-                  "The relative path\n\t%s\nwas resolved to\n\t%s\nusing the value of the"
-                      + " environment variable\n\t%s=%s\nIf this is undesired, specify"
-                      + " an absolute path instead.",
-                  bazelProfilePath,
-                  absoluteBazelProfilePath,
-                  BUILD_WORKING_DIRECTORY,
-                  buildWorkingDirectory);
-          consoleOutput.outputNote(relativePathWarning);
-          bazelProfilePath = absoluteBazelProfilePath;
-          file = new File(bazelProfilePath);
-        }
+    Integer suggestionParallelism = null;
+    String suggestionParallelismOption = options.getOption(IaOption.SUGGESTION_PARALLELISM);
+    if (suggestionParallelismOption != null) {
+      suggestionParallelism = parseInt(suggestionParallelismOption);
+      if (suggestionParallelism <= 0) {
+        err.println(
+            String.format(
+                "Invalid suggestion parallelism \"%s\" specified.", suggestionParallelismOption));
+        return 1;
       }
-      consoleOutput.outputAnalysisInput(file.getCanonicalPath());
+    }
+
+    Duration suggestionTimeout = null;
+    String suggestionTimeoutOption = options.getOption(IaOption.SUGGESTION_TIMEOUT);
+    if (suggestionTimeoutOption != null) {
+      int seconds = parseInt(suggestionTimeoutOption);
+      if (seconds <= 0) {
+        err.println(
+            String.format("Invalid suggestion timeout \"%s\" specified.", suggestionTimeoutOption));
+        return 1;
+      }
+      suggestionTimeout = Duration.ofSeconds(seconds);
+    }
 
-      DataManager dataManager = new DataManager();
-      BazelProfile bazelProfile = BazelProfile.createFromPath(bazelProfilePath);
-      bazelProfile.registerWithDataManager(dataManager);
+    String cacheDirectory = options.getOption(IaOption.CACHE_DIR);
+    long cacheSizeBytes = DEFAULT_CACHE_SIZE_MB * 1024 * 1024;
+    String cacheSizeOption = options.getOption(IaOption.CACHE_SIZE);
+    if (cacheSizeOption != null) {
+      int megabytes = parseInt(cacheSizeOption);
+      if (megabytes <= 0) {
+        err.println(String.format("Invalid cache size \"%s\" specified.", cacheSizeOption));
+        return 1;
+      }
+      cacheSizeBytes = megabytes * 1024L * 1024;
+    }
 
-      // We do not use forEach to retain the checked DuplicateProviderException.
-      for (DataProvider dataProvider : DataProviderUtil.getAllDataProviders()) {
-        dataProvider.register(dataManager);
+    int batchJobs = Runtime.getRuntime().availableProcessors();
+    String batchJobsOption = options.getOption(IaOption.BATCH_JOBS);
+    if (batchJobsOption != null) {
+      batchJobs = parseInt(batchJobsOption);
+      if (batchJobs <= 0) {
+        err.println(
+            String.format("Invalid number of batch jobs \"%s\" specified.", batchJobsOption));
+        return 1;
       }
+    }
 
-      // Only gather suggestions if they're requested, or if USED_DATA is requested without ALL_DATA
-      if (modes.contains(Mode.SUGGESTIONS)
-          || (modes.contains(Mode.USED_DATA) && !modes.contains(Mode.ALL_DATA))) {
-        List<SuggestionProvider> suggestionProviders =
-            SuggestionProviderUtil.getAllSuggestionProviders(verbose);
+    // Leave room for the JVM and the output that is buffered per profile.
+    long batchMemoryBytes = Runtime.getRuntime().maxMemory() / 4 * 3;
+    String batchMemoryOption = options.getOption(IaOption.BATCH_MEMORY);
+    if (batchMemoryOption != null) {
+      int megabytes = parseInt(batchMemoryOption);
+      if (megabytes <= 0) {
+        err.println(String.format("Invalid batch memory \"%s\" specified.", batchMemoryOption));
+        return 1;
+      }
+      batchMemoryBytes = megabytes * 1024L * 1024;
+    }
 
-        var suggestionStream =
-            suggestionProviders.stream().map((a) -> a.getSuggestions(dataManager));
-        if (modes.contains(Mode.SUGGESTIONS)) {
-          consoleOutput.outputSuggestions(suggestionStream.collect(Collectors.toList()));
+    int servePort = -1;
+    if (servePortOption != null) {
+      servePort = parseInt(servePortOption);
+      if (servePort < 0 || servePort > 65535) {
+        err.println(String.format("Invalid port \"%s\" specified.", servePortOption));
+        return 1;
+      }
+    }
+
+    int serveThreads = Runtime.getRuntime().availableProcessors();
+    String serveThreadsOption = options.getOption(IaOption.SERVE_THREADS);
+    if (serveThreadsOption != null) {
+      serveThreads = parseInt(serveThreadsOption);
+      if (serveThreads <= 0) {
+        err.println(
+            String.format(
+                "Invalid number of server threads \"%s\" specified.", serveThreadsOption));
+        return 1;
+      }
+    }
+
+    int serveQueue = DEFAULT_SERVE_QUEUE;
+    String serveQueueOption = options.getOption(IaOption.SERVE_QUEUE);
+    if (serveQueueOption != null) {
+      serveQueue = parseInt(serveQueueOption);
+      if (serveQueue <= 0) {
+        err.println(
+            String.format("Invalid server queue size \"%s\" specified.", serveQueueOption));
+        return 1;
+      }
+    }
+
+    Duration daemonIdleTimeout = AnalyzerDaemon.DEFAULT_IDLE_TIMEOUT;
+    String daemonIdleTimeoutOption = options.getOption(IaOption.DAEMON_IDLE_TIMEOUT);
+    if (daemonIdleTimeoutOption != null) {
+      int seconds = parseInt(daemonIdleTimeoutOption);
+      if (seconds <= 0) {
+        err.println(
+            String.format(
+                "Invalid daemon idle timeout \"%s\" specified.", daemonIdleTimeoutOption));
+        return 1;
+      }
+      daemonIdleTimeout = Duration.ofSeconds(seconds);
+    }
+
+    String selfProfileOption = options.getOption(IaOption.SELF_PROFILE);
+    Path selfProfilePath = null;
+    TraceEventRecorder selfProfile = null;
+    Tracer tracer = Tracer.NOOP;
+    if (selfProfileOption != null) {
+      selfProfilePath = workingDirectory.resolve(selfProfileOption);
+      selfProfile = new TraceEventRecorder(Map.of());
+      // Allow analyzing the profile like a Bazel profile, which requires a main thread.
+      selfProfile.setThreadName(BazelProfileConstants.THREAD_MAIN);
+      tracer = selfProfile;
+    }
+
+    ProfileCache cache = null;
+    if (cacheDirectory != null) {
+      cache = new ProfileCache(workingDirectory.resolve(cacheDirectory), cacheSizeBytes);
+    }
+    // In batch and server mode, profiles are analyzed concurrently, so a single profile need not
+    // use all processors.
+    int defaultParallelism =
+        profileArgumentExpected ? Runtime.getRuntime().availableProcessors() : 1;
+    ProfileAnalyzer analyzer =
+        ProfileAnalyzer.newBuilder()
+            .setModes(modes)
+            .setSuggestionProviders(suggestionProviders)
+            .setVerbose(verbose)
+            .setDataParallelism(defaultParallelism)
+            .setSuggestionParallelism(
+                suggestionParallelism == null ? defaultParallelism : suggestionParallelism)
+            .setSuggestionTimeout(suggestionTimeout)
+            .setCache(cache)
+            .setTracer(tracer)
+            .build();
+
+    boolean plaintext = options.hasOption(IaOption.OUTPUT_PLAINTEXT);
+    ConsoleOutput consoleOutput = new ConsoleOutput(plaintext, verbose, out, err);
+    consoleOutput.outputHeader();
+
+    try {
+      if (servePortOption != null) {
+        AnalysisServer server =
+            new AnalysisServer(analyzer, servePort, serveThreads, serveQueue, consoleOutput);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        consoleOutput.outputNote(
+            String.format(
+                "Serving analyses at http://localhost:%d%s until interrupted.",
+                server.getPort(), AnalysisServer.ANALYZE_PATH));
+        return 0;
+      }
+      if (daemon) {
+        Path socketPath = AnalyzerDaemon.getDefaultSocketPath();
+        AnalyzerDaemon analyzerDaemon =
+            new AnalyzerDaemon(
+                socketPath, ProfileAnalyzer.getVersion(), daemonIdleTimeout, Main::run);
+        Runtime.getRuntime().addShutdownHook(new Thread(analyzerDaemon::stop));
+        consoleOutput.outputNote(
+            String.format(
+                "Running invocations forwarded to %s until idle for %s.",
+                socketPath, DurationUtil.formatDuration(daemonIdleTimeout)));
+        analyzerDaemon.run();
+        return 0;
+      }
+      if (batchSpecification != null) {
+        List<Path> profiles =
+            BatchAnalysis.findProfiles(
+                batchSpecification,
+                getWorkingDirectory(workingDirectory, buildWorkingDirectory, consoleOutput));
+        BatchAnalysis batchAnalysis =
+            new BatchAnalysis(analyzer, batchJobs, batchMemoryBytes, plaintext, verbose, out);
+        long failures;
+        if (aggregate) {
+          FleetSummary fleetSummary = batchAnalysis.aggregate(profiles);
+          consoleOutput.outputFleetSummary(fleetSummary);
+          failures = fleetSummary.getFailures();
         } else {
-          // USED_DATA was requested; just cycle through them to allow the DataManager to record
-          // which data was used
-          suggestionStream.forEach(output -> {});
+          failures = batchAnalysis.run(profiles);
+          consoleOutput.outputNote(
+              String.format(
+                  "Analyzed %d profiles, %d of which failed.", profiles.size(), failures));
         }
+        consoleOutput.outputFeedbackOptions();
+        writeSelfProfile(selfProfile, selfProfilePath, consoleOutput);
+        return failures > 0 ? 1 : 0;
       }
 
-      if (modes.contains(Mode.ALL_DATA)) {
-        consoleOutput.outputAnalysisData(dataManager.getAllDataByProvider());
-      } else if (modes.contains(Mode.USED_DATA)) {
-        consoleOutput.outputAnalysisData(dataManager.getUsedDataByProvider());
+      File file =
+          resolveProfilePath(
+              options.getArguments()[0], workingDirectory, buildWorkingDirectory, consoleOutput);
+      if (diffProfilePath != null) {
+        File beforeFile =
+            resolveProfilePath(
+                diffProfilePath, workingDirectory, buildWorkingDirectory, consoleOutput);
+        consoleOutput.outputAnalysisInput(
+            String.format(
+                "the differences from %s to %s",
+                beforeFile.getCanonicalPath(), file.getCanonicalPath()));
+        consoleOutput.outputProfileDiff(analyzer.diff(beforeFile.toPath(), file.toPath()));
+        consoleOutput.outputFeedbackOptions();
+        writeSelfProfile(selfProfile, selfProfilePath, consoleOutput);
+        return 0;
       }
+      consoleOutput.outputAnalysisInput(file.getCanonicalPath());
+
+      analyzer.output(analyzer.analyze(file.toPath(), consoleOutput), consoleOutput);
       consoleOutput.outputFeedbackOptions();
+      writeSelfProfile(selfProfile, selfProfilePath, consoleOutput);
+      return 0;
     } catch (Throwable t) {
       consoleOutput.outputError(t);
       consoleOutput.outputFeedbackOptions();
-      System.exit(1);
+      writeSelfProfile(selfProfile, selfProfilePath, consoleOutput);
+      return 1;
+    }
+  }
+
+  /**
+   * Returns the file of a Bazel profile passed on the command line. When run with `bazel run`,
+   * relative paths are resolved against the directory `bazel run` was called from.
+   */
+  private static File resolveProfilePath(
+      String bazelProfilePath,
+      Path workingDirectory,
+      @Nullable String buildWorkingDirectory,
+      ConsoleOutput consoleOutput) {
+    File file = new File(bazelProfilePath);
+    if (!file.isAbsolute()) {
+      if (buildWorkingDirectory != null) {
+        String absoluteBazelProfilePath =
+            buildWorkingDirectory + FileSystems.getDefault().getSeparator() + bazelProfilePath;
+        String relativePathWarning =
+            String.format(
+                "The relative path\n\t%s\nwas resolved to\n\t%s\nusing the value of the"
+                    + " environment variable\n\t%s=%s\nIf this is undesired, specify"
+                    + " an absolute path instead.",
+                bazelProfilePath,
+                absoluteBazelProfilePath,
+                BUILD_WORKING_DIRECTORY,
+                buildWorkingDirectory);
+        consoleOutput.outputNote(relativePathWarning);
+        file = new File(absoluteBazelProfilePath);
+      } else {
+        file = workingDirectory.resolve(bazelProfilePath).toFile();
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Returns the directory relative paths are resolved against. When run with `bazel run`, this is
+   * the directory `bazel run` was called from.
+   */
+  private static Path getWorkingDirectory(
+      Path workingDirectory, @Nullable String buildWorkingDirectory, ConsoleOutput consoleOutput) {
+    if (buildWorkingDirectory != null) {
+      consoleOutput.outputNote(
+          String.format(
+              "Relative paths are resolved against the value of the environment variable"
+                  + "\n\t%s=%s",
+              BUILD_WORKING_DIRECTORY, buildWorkingDirectory));
+      return Path.of(buildWorkingDirectory);
+    }
+    return workingDirectory;
+  }
+
+  private static void writeSelfProfile(
+      @Nullable TraceEventRecorder selfProfile, Path path, ConsoleOutput consoleOutput) {
+    if (selfProfile == null) {
+      return;
+    }
+    try {
+      selfProfile.writeTo(path);
+    } catch (IOException ex) {
+      consoleOutput.outputError(ex);
+    }
+  }
+
+  /** Returns the passed-in value as an integer, or -1 if it is not a number. */
+  private static int parseInt(String value) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException ex) {
+      return -1;
     }
   }
 }
@@ -0,0 +1,499 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.ParseOptions;
+import com.engflow.bazel.invocation.analyzer.cache.ProfileCache;
+import com.engflow.bazel.invocation.analyzer.consoleoutput.ConsoleOutput;
+import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.DataProvider;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
+import com.engflow.bazel.invocation.analyzer.core.DuplicateProviderException;
+import com.engflow.bazel.invocation.analyzer.core.InvalidProfileException;
+import com.engflow.bazel.invocation.analyzer.core.MissingInputException;
+import com.engflow.bazel.invocation.analyzer.core.NullDatumException;
+import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
+import com.engflow.bazel.invocation.analyzer.core.Tracer;
+import com.engflow.bazel.invocation.analyzer.dataproviders.DataProviderUtil;
+import com.engflow.bazel.invocation.analyzer.diff.ProfileDiff;
+import com.engflow.bazel.invocation.analyzer.diff.ProfileDiffer;
+import com.engflow.bazel.invocation.analyzer.fleet.FleetMetric;
+import com.engflow.bazel.invocation.analyzer.fleet.ProfileSummary;
+import com.engflow.bazel.invocation.analyzer.options.Mode;
+import com.engflow.bazel.invocation.analyzer.suggestionproviders.SuggestionProviderUtil;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * Analyzes Bazel profiles with a fixed configuration. Each profile is analyzed with its own {@link
+ * DataManager}, so a single analyzer can be used to analyze several profiles concurrently.
+ */
+public final class ProfileAnalyzer {
+  /** The number of changes reported per category when comparing profiles in verbose mode. */
+  private static final int DIFF_LIMIT_VERBOSE = 100;
+
+  private static final Supplier<String> VERSION =
+      Suppliers.memoize(
+          () -> {
+            try {
+              return ProfileCache.getAnalyzerVersion(System.getProperty("java.class.path"));
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+
+  private final Set<Mode> modes;
+  private final List<SuggestionProvider> suggestionProviders;
+  private final boolean verbose;
+  private final int dataParallelism;
+  private final int suggestionParallelism;
+  @Nullable private final Duration suggestionTimeout;
+  @Nullable private final ProfileCache cache;
+  private final Tracer tracer;
+
+  private ProfileAnalyzer(Builder builder) {
+    this.modes = ImmutableSet.copyOf(builder.modes);
+    this.suggestionProviders = ImmutableList.copyOf(builder.suggestionProviders);
+    this.verbose = builder.verbose;
+    this.dataParallelism = builder.dataParallelism;
+    this.suggestionParallelism = builder.suggestionParallelism;
+    this.suggestionTimeout = builder.suggestionTimeout;
+    this.cache = builder.cache;
+    this.tracer = builder.tracer;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the version of the analyzer, which changes whenever any of the code on its class path
+   * is rebuilt. It is computed once, as the code that is running does not change afterwards.
+   *
+   * @throws UncheckedIOException If the class path cannot be read.
+   */
+  public static String getVersion() {
+    return VERSION.get();
+  }
+
+  /**
+   * Analyzes the passed-in profile. If a cache is configured and includes all requested results
+   * for the profile, the profile is not parsed.
+   *
+   * @param profile The path of the Bazel profile.
+   * @param consoleOutput The output for notes, e.g. about failing to use the cache.
+   * @return The requested results.
+   * @throws DuplicateProviderException If the data providers are inconsistent.
+   * @throws IllegalArgumentException If the profile cannot be parsed.
+   * @throws InterruptedException If interrupted while calculating data.
+   */
+  public Result analyze(Path profile, ConsoleOutput consoleOutput)
+      throws DuplicateProviderException, InterruptedException {
+    String dataCacheName = getDataCacheName();
+
+    boolean useCache = cache != null;
+    String cacheKey = null;
+    List<SuggestionOutput> suggestionOutputs = null;
+    Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> data = null;
+    if (useCache) {
+      try (Tracer.Span span = tracer.startSpan(Tracer.CATEGORY_PARSE, "Read cache", Map.of())) {
+        cacheKey = ProfileCache.computeKey(profile, getVersion());
+        if (modes.contains(Mode.SUGGESTIONS)) {
+          suggestionOutputs = cache.getSuggestionOutputs(cacheKey, suggestionProviders, verbose);
+        }
+        if (dataCacheName != null) {
+          data = cache.getData(cacheKey, dataCacheName);
+        }
+      } catch (IOException ex) {
+        consoleOutput.outputNote("Not using the cache: " + ex.getMessage());
+        useCache = false;
+      }
+    }
+
+    if ((modes.contains(Mode.SUGGESTIONS) && suggestionOutputs == null)
+        || (dataCacheName != null && data == null)) {
+      Result result = calculate(createDataManager(profile, getRequiredData()));
+      suggestionOutputs = result.getSuggestionOutputs();
+      data = result.getData();
+
+      if (useCache) {
+        try (Tracer.Span span = tracer.startSpan(Tracer.CATEGORY_OUTPUT, "Write cache", Map.of())) {
+          if (suggestionOutputs != null) {
+            cache.putSuggestionOutputs(cacheKey, suggestionProviders, verbose, suggestionOutputs);
+          }
+          if (dataCacheName != null && !isUsedDataIncomplete(suggestionOutputs)) {
+            cache.putData(cacheKey, dataCacheName, data);
+          }
+        } catch (IOException ex) {
+          consoleOutput.outputNote("Could not write to the cache: " + ex.getMessage());
+        }
+      }
+    }
+    return new Result(modes.contains(Mode.SUGGESTIONS) ? suggestionOutputs : null, data);
+  }
+
+  /**
+   * Analyzes the profile read from the passed-in stream, e.g. one that was uploaded. Its results
+   * are not cached.
+   *
+   * @param profile The stream of the uncompressed Bazel profile.
+   * @return The requested results.
+   * @throws DuplicateProviderException If the data providers are inconsistent.
+   * @throws IllegalArgumentException If the profile cannot be parsed.
+   * @throws InterruptedException If interrupted while calculating data.
+   */
+  public Result analyze(InputStream profile)
+      throws DuplicateProviderException, InterruptedException {
+    Result result =
+        calculate(
+            createDataManager(
+                options -> BazelProfile.createFromInputStream(profile, options),
+                getRequiredData()));
+    return new Result(
+        modes.contains(Mode.SUGGESTIONS) ? result.getSuggestionOutputs() : null, result.getData());
+  }
+
+  /**
+   * Returns whether the used data may be missing data, because a suggestion provider failed before
+   * requesting all the data it uses, e.g. because it ran out of time. Like the outputs of failed
+   * providers, such data is not cached, as the failure may not recur.
+   */
+  private boolean isUsedDataIncomplete(@Nullable List<SuggestionOutput> suggestionOutputs) {
+    return !modes.contains(Mode.ALL_DATA)
+        && suggestionOutputs != null
+        && suggestionOutputs.stream().anyMatch(SuggestionOutput::hasFailure);
+  }
+
+  /**
+   * Calculates the requested results for the profile registered with the passed-in data manager.
+   * The returned suggestions may also have been needed for determining the used data only.
+   */
+  private Result calculate(DataManager dataManager) throws InterruptedException {
+    // Suggestions are also needed if only USED_DATA is requested, as running the providers allows
+    // the DataManager to record which data was used.
+    boolean suggestionsNeeded =
+        modes.contains(Mode.SUGGESTIONS)
+            || (modes.contains(Mode.USED_DATA) && !modes.contains(Mode.ALL_DATA));
+    // Calculate independent data concurrently, before the suggestions are generated. With a time
+    // budget, the data is calculated by the suggestion providers instead, so that calculating it
+    // counts towards their budgets rather than running without a deadline.
+    if (!suggestionsNeeded || suggestionTimeout == null) {
+      Set<Class<? extends Datum>> requiredData = getRequiredData();
+      dataManager.prefetch(requiredData == null ? dataManager.getRegisteredData() : requiredData);
+    }
+
+    List<SuggestionOutput> suggestionOutputs = null;
+    if (suggestionsNeeded) {
+      suggestionOutputs =
+          SuggestionProviderUtil.getSuggestions(
+              suggestionProviders, dataManager, suggestionParallelism, suggestionTimeout);
+    }
+    Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> data = null;
+    if (modes.contains(Mode.ALL_DATA)) {
+      data = dataManager.getAllDataByProvider();
+    } else if (modes.contains(Mode.USED_DATA)) {
+      data = dataManager.getUsedDataByProvider();
+    }
+    return new Result(suggestionOutputs, data);
+  }
+
+  /**
+   * Returns the data that is requested when analyzing a profile, or null if any data may be
+   * requested. Unless all data is requested, only the data the suggestion providers consume is.
+   */
+  @Nullable
+  private Set<Class<? extends Datum>> getRequiredData() {
+    return modes.contains(Mode.ALL_DATA)
+        ? null
+        : SuggestionProviderUtil.getConsumedData(suggestionProviders);
+  }
+
+  /**
+   * Analyzes the passed-in profile and reduces it to the values of the {@link FleetMetric}s, for
+   * aggregating them across many profiles. Only the data these metrics consume is calculated.
+   *
+   * @param profile The path of the Bazel profile.
+   * @return The summary of the profile.
+   * @throws DuplicateProviderException If the data providers are inconsistent.
+   * @throws IllegalArgumentException If the profile cannot be parsed.
+   * @throws InterruptedException If interrupted while calculating data.
+   */
+  public ProfileSummary summarize(Path profile)
+      throws DuplicateProviderException, InterruptedException {
+    DataManager dataManager = createDataManager(profile, FleetMetric.getConsumedData());
+    dataManager.prefetch(FleetMetric.getConsumedData());
+    return ProfileSummary.of(dataManager);
+  }
+
+  /**
+   * Compares two profiles, e.g. of a build before and after it regressed. The profiles are loaded
+   * concurrently, and only the data needed for comparing them is calculated.
+   *
+   * @param before The path of the first Bazel profile.
+   * @param after The path of the second Bazel profile.
+   * @return The differences between the profiles.
+   * @throws DuplicateProviderException If the data providers are inconsistent.
+   * @throws IllegalArgumentException If a profile cannot be parsed.
+   * @throws InterruptedException If interrupted while calculating data.
+   * @throws InvalidProfileException If a profile lacks data needed for comparing it.
+   * @throws MissingInputException If a profile lacks data needed for comparing it.
+   * @throws NullDatumException If a profile lacks data needed for comparing it.
+   */
+  public ProfileDiff diff(Path before, Path after)
+      throws DuplicateProviderException,
+          InterruptedException,
+          InvalidProfileException,
+          MissingInputException,
+          NullDatumException {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // Load the first profile on another thread, while this thread loads the second one.
+      Future<DataManager> beforeLoading = executor.submit(() -> loadForDiff(before));
+      DataManager afterDataManager = loadForDiff(after);
+      DataManager beforeDataManager;
+      try {
+        beforeDataManager = beforeLoading.get();
+      } catch (ExecutionException e) {
+        Throwables.throwIfInstanceOf(e.getCause(), DuplicateProviderException.class);
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new IllegalStateException(e.getCause());
+      }
+      return new ProfileDiffer(verbose ? DIFF_LIMIT_VERBOSE : ProfileDiffer.DEFAULT_LIMIT)
+          .diff(beforeDataManager, afterDataManager);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private DataManager loadForDiff(Path profile)
+      throws DuplicateProviderException, InterruptedException {
+    DataManager dataManager = createDataManager(profile, ProfileDiffer.getConsumedData());
+    dataManager.prefetch(ProfileDiffer.getConsumedData());
+    return dataManager;
+  }
+
+  /**
+   * Outputs the results of {@link #analyze(Path, ConsoleOutput)}.
+   *
+   * @param result The results to output.
+   * @param consoleOutput The output to print the results to.
+   */
+  public void output(Result result, ConsoleOutput consoleOutput) {
+    if (result.getSuggestionOutputs() != null) {
+      try (Tracer.Span span =
+          tracer.startSpan(Tracer.CATEGORY_OUTPUT, "Output suggestions", Map.of())) {
+        consoleOutput.outputSuggestions(result.getSuggestionOutputs());
+      }
+    }
+    if (result.getData() != null) {
+      try (Tracer.Span span = tracer.startSpan(Tracer.CATEGORY_OUTPUT, "Output data", Map.of())) {
+        consoleOutput.outputAnalysisData(result.getData());
+      }
+    }
+  }
+
+  /**
+   * Parses the profile and registers it and the data providers needed for the passed-in data with
+   * a new data manager.
+   */
+  private DataManager createDataManager(
+      Path profile, @Nullable Set<Class<? extends Datum>> requiredData)
+      throws DuplicateProviderException {
+    return createDataManager(
+        options -> BazelProfile.createFromPath(profile.toString(), options), requiredData);
+  }
+
+  /**
+   * Parses a profile with the passed-in function and registers it and the data providers needed
+   * for the passed-in data with a new data manager.
+   *
+   * @param parser The function that parses the profile with the passed-in options.
+   * @param requiredData The data that will be requested, or null if any data may be requested.
+   */
+  private DataManager createDataManager(
+      Function<ParseOptions, BazelProfile> parser,
+      @Nullable Set<Class<? extends Datum>> requiredData)
+      throws DuplicateProviderException {
+    DataManager dataManager = new DataManager(dataParallelism, tracer);
+    List<DataProvider> dataProviders =
+        DataProviderUtil.getRequiredDataProviders(
+            DataProviderUtil.getAllDataProviders(), requiredData);
+    BazelProfile bazelProfile;
+    try (Tracer.Span span = tracer.startSpan(Tracer.CATEGORY_PARSE, "Parse profile", Map.of())) {
+      // Only keep the events of the profile that the registered data providers use.
+      bazelProfile =
+          parser.apply(
+              ParseOptions.newBuilder()
+                  .setLazyArguments(true)
+                  .setProjection(DataProviderUtil.getProfileProjection(dataProviders))
+                  .setTracer(tracer)
+                  .build());
+    }
+    bazelProfile.registerWithDataManager(dataManager);
+
+    // We do not use forEach to retain the checked DuplicateProviderException.
+    for (DataProvider dataProvider : dataProviders) {
+      dataProvider.register(dataManager);
+    }
+    return dataManager;
+  }
+
+  /**
+   * Returns the name under which the requested data is cached, or null if no data is requested.
+   * Which data is used depends on the suggestion providers that were run.
+   */
+  @Nullable
+  private String getDataCacheName() {
+    if (modes.contains(Mode.ALL_DATA)) {
+      return "all";
+    }
+    if (!modes.contains(Mode.USED_DATA)) {
+      return null;
+    }
+    String providers =
+        suggestionProviders.stream()
+            .map(suggestionProvider -> suggestionProvider.getClass().getName())
+            .sorted()
+            .collect(Collectors.joining(","));
+    return String.format(
+        "used-%s%s",
+        Hashing.sha256().hashString(providers, StandardCharsets.UTF_8),
+        verbose ? "-verbose" : "");
+  }
+
+  /** The results of analyzing a profile. */
+  public static final class Result {
+    @Nullable private final List<SuggestionOutput> suggestionOutputs;
+
+    @Nullable
+    private final Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> data;
+
+    private Result(
+        @Nullable List<SuggestionOutput> suggestionOutputs,
+        @Nullable Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> data) {
+      this.suggestionOutputs = suggestionOutputs;
+      this.data = data;
+    }
+
+    /**
+     * Returns the outputs of the suggestion providers, or null if no suggestions were requested.
+     */
+    @Nullable
+    public List<SuggestionOutput> getSuggestionOutputs() {
+      return suggestionOutputs;
+    }
+
+    /** Returns the data organized by provider, or null if no data was requested. */
+    @Nullable
+    public Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> getData() {
+      return data;
+    }
+  }
+
+  public static class Builder {
+    private Set<Mode> modes = Set.of(Mode.SUGGESTIONS);
+    private List<SuggestionProvider> suggestionProviders =
+        SuggestionProviderUtil.getAllSuggestionProviders(false);
+    private boolean verbose = false;
+    private int dataParallelism = Runtime.getRuntime().availableProcessors();
+    private int suggestionParallelism = Runtime.getRuntime().availableProcessors();
+    @Nullable private Duration suggestionTimeout = null;
+    @Nullable private ProfileCache cache = null;
+    private Tracer tracer = Tracer.NOOP;
+
+    private Builder() {}
+
+    /** Sets what information to generate. Defaults to suggestions only. */
+    public Builder setModes(Set<Mode> modes) {
+      Preconditions.checkArgument(!modes.isEmpty(), "modes must not be empty");
+      this.modes = modes;
+      return this;
+    }
+
+    /** Sets the suggestion providers to run. Defaults to all non-verbose providers. */
+    public Builder setSuggestionProviders(List<SuggestionProvider> suggestionProviders) {
+      this.suggestionProviders = suggestionProviders;
+      return this;
+    }
+
+    /** Sets whether the suggestion providers were created in verbose mode. */
+    public Builder setVerbose(boolean verbose) {
+      this.verbose = verbose;
+      return this;
+    }
+
+    /** Sets the number of threads data is calculated on. Defaults to the number of processors. */
+    public Builder setDataParallelism(int dataParallelism) {
+      Preconditions.checkArgument(dataParallelism > 0, "dataParallelism must be positive");
+      this.dataParallelism = dataParallelism;
+      return this;
+    }
+
+    /** Sets the number of suggestion providers that run concurrently. */
+    public Builder setSuggestionParallelism(int suggestionParallelism) {
+      Preconditions.checkArgument(
+          suggestionParallelism > 0, "suggestionParallelism must be positive");
+      this.suggestionParallelism = suggestionParallelism;
+      return this;
+    }
+
+    /**
+     * Sets the time each suggestion provider may run for, or null to not limit it. The time
+     * includes calculating the data the provider requests, which is then not prefetched.
+     */
+    public Builder setSuggestionTimeout(@Nullable Duration suggestionTimeout) {
+      this.suggestionTimeout = suggestionTimeout;
+      return this;
+    }
+
+    /** Sets the cache to reuse results from, or null to not use a cache. */
+    public Builder setCache(@Nullable ProfileCache cache) {
+      this.cache = cache;
+      return this;
+    }
+
+    /** Sets the tracer that records the spans of the analysis. */
+    public Builder setTracer(Tracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
+    public ProfileAnalyzer build() {
+      return new ProfileAnalyzer(this);
+    }
+  }
+}
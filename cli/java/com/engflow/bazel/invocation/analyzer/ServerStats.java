@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import com.engflow.bazel.invocation.analyzer.fleet.Histogram;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Counts the requests an {@link AnalysisServer} handles and keeps track of how long they take, from
+ * being received until their response has been sent.
+ */
+final class ServerStats {
+  private static final double[] PERCENTILES = {50, 90, 99};
+
+  private final long startNanos = System.nanoTime();
+  private long received;
+  private long succeeded;
+  private long failed;
+  private long rejected;
+  private final Histogram latencyMillis = new Histogram();
+
+  synchronized void recordReceived() {
+    received++;
+  }
+
+  synchronized void recordRejected() {
+    rejected++;
+  }
+
+  synchronized void recordFinished(Duration latency, boolean success) {
+    if (success) {
+      succeeded++;
+    } else {
+      failed++;
+    }
+    latencyMillis.add(latency.toNanos() / 1_000_000d);
+  }
+
+  synchronized long getReceived() {
+    return received;
+  }
+
+  synchronized long getSucceeded() {
+    return succeeded;
+  }
+
+  synchronized long getFailed() {
+    return failed;
+  }
+
+  synchronized long getRejected() {
+    return rejected;
+  }
+
+  /**
+   * Writes the stats as a JSON object.
+   *
+   * @param writer The writer to write the object to.
+   * @param active The number of requests currently being analyzed.
+   * @param queued The number of requests currently waiting to be analyzed.
+   */
+  synchronized void write(JsonWriter writer, int active, int queued) throws IOException {
+    double uptimeSeconds = (System.nanoTime() - startNanos) / 1e9;
+    writer.beginObject();
+    writer.name("uptimeSeconds").value(uptimeSeconds);
+    writer.name("received").value(received);
+    writer.name("succeeded").value(succeeded);
+    writer.name("failed").value(failed);
+    writer.name("rejected").value(rejected);
+    writer.name("active").value(active);
+    writer.name("queued").value(queued);
+    writer.name("throughputPerSecond").value((succeeded + failed) / uptimeSeconds);
+    writer.name("latencyMillis").beginObject();
+    if (latencyMillis.getCount() > 0) {
+      writer.name("min").value(latencyMillis.getMin());
+      writer.name("mean").value(latencyMillis.getMean());
+      for (double percentile : PERCENTILES) {
+        writer.name("p" + (int) percentile).value(latencyMillis.getPercentile(percentile));
+      }
+      writer.name("max").value(latencyMillis.getMax());
+    }
+    writer.endObject();
+    writer.endObject();
+  }
+}
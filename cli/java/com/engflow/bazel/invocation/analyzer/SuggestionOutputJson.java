@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes {@link SuggestionOutput}s as JSON, following the canonical proto3 JSON mapping: fields
+ * are named in lowerCamelCase, enums are written by name, and fields with default values are
+ * omitted.
+ */
+final class SuggestionOutputJson {
+  private SuggestionOutputJson() {}
+
+  /** Writes the passed-in suggestion outputs as a JSON array. */
+  static void write(List<SuggestionOutput> suggestionOutputs, JsonWriter writer)
+      throws IOException {
+    writer.beginArray();
+    for (SuggestionOutput suggestionOutput : suggestionOutputs) {
+      write(suggestionOutput, writer);
+    }
+    writer.endArray();
+  }
+
+  private static void write(SuggestionOutput suggestionOutput, JsonWriter writer)
+      throws IOException {
+    writer.beginObject();
+    writeString(writer, "analyzerClassname", suggestionOutput.getAnalyzerClassname());
+    if (suggestionOutput.getSuggestionCount() > 0) {
+      writer.name("suggestion").beginArray();
+      for (Suggestion suggestion : suggestionOutput.getSuggestionList()) {
+        write(suggestion, writer);
+      }
+      writer.endArray();
+    }
+    writeCaveats(writer, suggestionOutput.getCaveatList());
+    writeStrings(writer, "missingInput", suggestionOutput.getMissingInputList());
+    if (suggestionOutput.hasFailure()) {
+      SuggestionOutput.Failure failure = suggestionOutput.getFailure();
+      writer.name("failure").beginObject();
+      writeString(writer, "message", failure.getMessage());
+      writeString(writer, "stackTrace", failure.getStackTrace());
+      writer.endObject();
+    }
+    writer.endObject();
+  }
+
+  private static void write(Suggestion suggestion, JsonWriter writer) throws IOException {
+    writer.beginObject();
+    if (suggestion.getCategory() != SuggestionCategory.UNKNOWN) {
+      writer.name("category").value(suggestion.getCategory().name());
+    }
+    writeString(writer, "id", suggestion.getId());
+    writeString(writer, "title", suggestion.getTitle());
+    writeString(writer, "recommendation", suggestion.getRecommendation());
+    writeStrings(writer, "rationale", suggestion.getRationaleList());
+    if (suggestion.hasPotentialImprovement()) {
+      PotentialImprovement potentialImprovement = suggestion.getPotentialImprovement();
+      writer.name("potentialImprovement").beginObject();
+      writeString(writer, "message", potentialImprovement.getMessage());
+      if (potentialImprovement.getDurationReductionPercentage() != 0) {
+        writer
+            .name("durationReductionPercentage")
+            .value(potentialImprovement.getDurationReductionPercentage());
+      }
+      writer.endObject();
+    }
+    writeCaveats(writer, suggestion.getCaveatList());
+    writer.endObject();
+  }
+
+  private static void writeCaveats(JsonWriter writer, List<Caveat> caveats) throws IOException {
+    if (caveats.isEmpty()) {
+      return;
+    }
+    writer.name("caveat").beginArray();
+    for (Caveat caveat : caveats) {
+      writer.beginObject();
+      writeString(writer, "message", caveat.getMessage());
+      if (caveat.getSuggestVerboseMode()) {
+        writer.name("suggestVerboseMode").value(true);
+      }
+      writer.endObject();
+    }
+    writer.endArray();
+  }
+
+  private static void writeString(JsonWriter writer, String name, String value)
+      throws IOException {
+    if (!value.isEmpty()) {
+      writer.name(name).value(value);
+    }
+  }
+
+  private static void writeStrings(JsonWriter writer, String name, List<String> values)
+      throws IOException {
+    if (values.isEmpty()) {
+      return;
+    }
+    writer.name(name).beginArray();
+    for (String value : values) {
+      writer.value(value);
+    }
+    writer.endArray();
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import com.engflow.bazel.invocation.analyzer.core.Tracer;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.TraceEventFormatConstants;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Tracer} that records spans as complete events, which can be written as a Trace Event
+ * Format profile. The profile can be opened in the same tools as Bazel profiles, or be analyzed
+ * itself.
+ *
+ * <p>Each Java thread becomes a thread of the profile, named like the Java thread unless another
+ * name is set.
+ */
+final class TraceEventRecorder implements Tracer {
+  private static final int PROCESS_ID = 1;
+
+  private final long startNanos = System.nanoTime();
+  private final Map<String, String> otherData;
+  private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+  private final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<>();
+
+  /**
+   * Creates a recorder whose profile includes the passed-in metadata.
+   *
+   * @param otherData The entries of the "otherData" section of the profile.
+   */
+  public TraceEventRecorder(Map<String, String> otherData) {
+    this.otherData = ImmutableMap.copyOf(otherData);
+  }
+
+  /** Sets the name of the current thread in the profile. */
+  public void setThreadName(String name) {
+    threadNames.put(Thread.currentThread().getId(), name);
+  }
+
+  @Override
+  public Tracer.Span startSpan(String category, String name, Map<String, String> args) {
+    Thread thread = Thread.currentThread();
+    threadNames.putIfAbsent(thread.getId(), thread.getName());
+    return new Span(thread.getId(), category, name, args, System.nanoTime());
+  }
+
+  /** Writes the spans that have ended so far to the passed-in file. */
+  public void writeTo(Path path) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      writeTo(writer);
+    }
+  }
+
+  /** Writes the spans that have ended so far to the passed-in writer. */
+  public void writeTo(Writer writer) throws IOException {
+    List<Span> ended = new ArrayList<>(spans);
+    ended.sort(Comparator.comparingLong(span -> span.startNanos));
+
+    JsonWriter json = new JsonWriter(writer);
+    json.beginObject();
+    json.name(TraceEventFormatConstants.SECTION_OTHER_DATA).beginObject();
+    for (var entry : otherData.entrySet()) {
+      json.name(entry.getKey()).value(entry.getValue());
+    }
+    json.endObject();
+    json.name(TraceEventFormatConstants.SECTION_TRACE_EVENTS).beginArray();
+    for (var entry : threadNames.entrySet()) {
+      json.beginObject();
+      json.name(TraceEventFormatConstants.EVENT_NAME)
+          .value(TraceEventFormatConstants.METADATA_THREAD_NAME);
+      json.name(TraceEventFormatConstants.EVENT_PHASE)
+          .value(TraceEventFormatConstants.PHASE_METADATA);
+      json.name(TraceEventFormatConstants.EVENT_PROCESS_ID).value(PROCESS_ID);
+      json.name(TraceEventFormatConstants.EVENT_THREAD_ID).value(entry.getKey());
+      json.name(TraceEventFormatConstants.EVENT_ARGUMENTS).beginObject();
+      json.name("name").value(entry.getValue());
+      json.endObject();
+      json.endObject();
+    }
+    for (Span span : ended) {
+      json.beginObject();
+      json.name(TraceEventFormatConstants.EVENT_CATEGORY).value(span.category);
+      json.name(TraceEventFormatConstants.EVENT_NAME).value(span.name);
+      json.name(TraceEventFormatConstants.EVENT_PHASE)
+          .value(TraceEventFormatConstants.PHASE_COMPLETE);
+      json.name(TraceEventFormatConstants.EVENT_TIMESTAMP)
+          .value(TimeUnit.NANOSECONDS.toMicros(span.startNanos - startNanos));
+      json.name(TraceEventFormatConstants.EVENT_DURATION)
+          .value(TimeUnit.NANOSECONDS.toMicros(span.endNanos - span.startNanos));
+      json.name(TraceEventFormatConstants.EVENT_PROCESS_ID).value(PROCESS_ID);
+      json.name(TraceEventFormatConstants.EVENT_THREAD_ID).value(span.threadId);
+      if (!span.args.isEmpty()) {
+        json.name(TraceEventFormatConstants.EVENT_ARGUMENTS).beginObject();
+        for (var entry : span.args.entrySet()) {
+          json.name(entry.getKey()).value(entry.getValue());
+        }
+        json.endObject();
+      }
+      json.endObject();
+    }
+    json.endArray();
+    json.endObject();
+    json.flush();
+  }
+
+  private class Span implements Tracer.Span {
+    private final long threadId;
+    private final String category;
+    private final String name;
+    private final Map<String, String> args;
+    private final long startNanos;
+    private long endNanos;
+
+    private Span(
+        long threadId, String category, String name, Map<String, String> args, long startNanos) {
+      this.threadId = threadId;
+      this.category = category;
+      this.name = name;
+      this.args = args;
+      this.startNanos = startNanos;
+    }
+
+    @Override
+    public void close() {
+      endNanos = System.nanoTime();
+      spans.add(this);
+    }
+  }
+}
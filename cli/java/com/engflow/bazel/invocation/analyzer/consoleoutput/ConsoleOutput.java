@@ -20,10 +20,16 @@ import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.Datum;
+import com.engflow.bazel.invocation.analyzer.diff.ProfileDiff;
+import com.engflow.bazel.invocation.analyzer.diff.ProfileDiff.ActionChange;
+import com.engflow.bazel.invocation.analyzer.fleet.FleetSummary;
 import com.engflow.bazel.invocation.analyzer.suggestionproviders.SuggestionProviderUtil;
+import com.engflow.bazel.invocation.analyzer.time.DurationUtil;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.base.Throwables;
+import java.io.PrintStream;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -37,6 +43,13 @@ public class ConsoleOutput {
   private static final String CONSOLE_FORMAT_DELIMITER = ";";
   private static final String CONSOLE_FORMAT_STRING = "\u001B[%sm%s\u001B[0m";
   private static final String DATA_HEADER = "Data from analysis";
+  private static final String FLEET_SUMMARY_HEADER = "Fleet summary";
+  private static final String DIFF_HEADER = "Comparison of profiles";
+  private static final String HEADING_DIFF_ACTIONS = "Local actions";
+  private static final String HEADING_DIFF_CACHE_HITS = "Remote cache hit changes";
+  private static final String HEADING_DIFF_CRITICAL_PATH = "Critical path";
+  private static final String HEADING_DIFF_PHASES = "Phases";
+  private static final String DIFF_MISSING_DURATION = "none";
   private static final String ERROR = "An error occurred while trying to analyze your profile.";
   private static final String HEADING_CAVEATS = "Caveats";
   private static final String HEADING_FAILURES = "Failures";
@@ -67,45 +80,62 @@ public class ConsoleOutput {
 
   private final boolean disableFormatting;
   private final boolean verbose;
+  private final PrintStream out;
+  private final PrintStream err;
 
   public ConsoleOutput(boolean disableFormatting, boolean verbose) {
+    this(disableFormatting, verbose, System.out, System.err);
+  }
+
+  /**
+   * Creates an output that prints to the passed-in streams instead of standard output and error.
+   *
+   * @param disableFormatting Whether to output unformatted text.
+   * @param verbose Whether to output verbose text.
+   * @param out The stream to print output to.
+   * @param err The stream to print errors to.
+   */
+  public ConsoleOutput(
+      boolean disableFormatting, boolean verbose, PrintStream out, PrintStream err) {
     this.disableFormatting = disableFormatting;
     this.verbose = verbose;
+    this.out = out;
+    this.err = err;
   }
 
   public void outputHeader() {
-    System.out.println();
-    System.out.println(
+    out.println();
+    out.println(
         format(TITLE, ConsoleOutputStyle.TEXT_BOLD, ConsoleOutputStyle.TEXT_UNDERLINE));
-    System.out.println();
+    out.println();
   }
 
   public void outputNote(String warning) {
-    System.out.println(format(NOTE, ConsoleOutputStyle.TEXT_BOLD));
-    System.out.println(warning);
-    System.out.println();
+    out.println(format(NOTE, ConsoleOutputStyle.TEXT_BOLD));
+    out.println(warning);
+    out.println();
   }
 
   public void outputFeedbackOptions() {
-    System.out.println();
-    System.out.println(formatAsHeading(FEEDBACK_TITLE));
-    System.out.println(FEEDBACK_OPTIONS_INTRO);
-    System.out.println(
+    out.println();
+    out.println(formatAsHeading(FEEDBACK_TITLE));
+    out.println(FEEDBACK_OPTIONS_INTRO);
+    out.println(
         String.format(
             FEEDBACK_OPTION_GITHUB_FORMAT,
             TAB,
             format(FEEDBACK_OPEN_NEW_ISSUE, ConsoleOutputStyle.TEXT_UNDERLINE)));
-    System.out.println(
+    out.println(
         String.format(
             FEEDBACK_OPTION_EMAIL_FORMAT,
             TAB,
             format(FEEDBACK_EMAIL_ADDRESS, ConsoleOutputStyle.TEXT_UNDERLINE)));
-    System.out.println(FEEDBACK_CONTRIBUTE);
-    System.out.println();
+    out.println(FEEDBACK_CONTRIBUTE);
+    out.println();
   }
 
   public void outputAnalysisInput(String inputDescription) {
-    System.out.println(
+    out.println(
         format(String.format("Analyzing %s", inputDescription), ConsoleOutputStyle.TEXT_UNDERLINE));
   }
 
@@ -116,8 +146,8 @@ public class ConsoleOutput {
                 .flatMap(suggestionOutput -> suggestionOutput.getCaveatList().stream())
                 .collect(Collectors.toList()));
     if (!Strings.isNullOrEmpty(topLevelCaveats)) {
-      System.out.println();
-      System.out.print(topLevelCaveats);
+      out.println();
+      out.print(topLevelCaveats);
     }
     ;
 
@@ -128,8 +158,8 @@ public class ConsoleOutput {
                 .map(suggestionOutput -> suggestionOutput.getFailure())
                 .collect(Collectors.toList()));
     if (!Strings.isNullOrEmpty(failures)) {
-      System.out.println();
-      System.out.print(failures);
+      out.println();
+      out.print(failures);
     }
 
     List<Suggestion> suggestions =
@@ -138,25 +168,159 @@ public class ConsoleOutput {
             .collect(Collectors.toList());
     String formattedSuggestions = formatSuggestions(suggestions);
     if (!Strings.isNullOrEmpty(formattedSuggestions)) {
-      System.out.println(formattedSuggestions);
+      out.println(formattedSuggestions);
     } else {
       outputNote(NO_SUGGESTIONS);
     }
   }
 
   public void outputError(Throwable throwable) {
-    System.err.println(format(ERROR, ConsoleOutputStyle.TEXT_RED));
-    System.err.println(throwable.getMessage());
+    err.println(format(ERROR, ConsoleOutputStyle.TEXT_RED));
+    err.println(throwable.getMessage());
     if (verbose) {
-      System.err.println(Throwables.getStackTraceAsString(throwable));
+      err.println(Throwables.getStackTraceAsString(throwable));
     }
   }
 
   public void outputAnalysisData(
       Map<Class<? extends DataProvider>, Map<Class<? extends Datum>, Datum>> dataByProvider) {
-    System.out.println();
-    System.out.println(formatAsHeading(DATA_HEADER));
-    System.out.println(formatAnalysisData(dataByProvider));
+    out.println();
+    out.println(formatAsHeading(DATA_HEADER));
+    out.println(formatAnalysisData(dataByProvider));
+  }
+
+  public void outputFleetSummary(FleetSummary fleetSummary) {
+    out.println();
+    out.println(formatAsHeading(FLEET_SUMMARY_HEADER));
+    out.println(formatFleetSummary(fleetSummary));
+  }
+
+  @VisibleForTesting
+  String formatFleetSummary(FleetSummary fleetSummary) {
+    StringBuilder builder = new StringBuilder();
+    builder.append(
+        String.format(
+            "Summarized %d profiles, %d of which could not be analyzed.",
+            fleetSummary.getProfiles(), fleetSummary.getFailures()));
+    builder.append(NEWLINE);
+    fleetSummary
+        .getHistograms()
+        .forEach(
+            (metric, histogram) -> {
+              builder.append(NEWLINE);
+              builder.append(
+                  String.format(
+                      "%s %s%s",
+                      format(metric.getDisplayName(), ConsoleOutputStyle.TEXT_GREEN),
+                      format(
+                          String.format("(%d profiles)", histogram.getCount()),
+                          ConsoleOutputStyle.TEXT_DIM),
+                      NEWLINE));
+              builder.append(
+                  String.format(
+                      "min %s, p50 %s, p90 %s, p99 %s, max %s, mean %s%s",
+                      metric.format(histogram.getMin()),
+                      metric.format(histogram.getPercentile(50)),
+                      metric.format(histogram.getPercentile(90)),
+                      metric.format(histogram.getPercentile(99)),
+                      metric.format(histogram.getMax()),
+                      metric.format(histogram.getMean()),
+                      NEWLINE));
+            });
+    return builder.toString();
+  }
+
+  public void outputProfileDiff(ProfileDiff profileDiff) {
+    out.println();
+    out.println(formatAsHeading(DIFF_HEADER));
+    out.println(formatProfileDiff(profileDiff));
+  }
+
+  @VisibleForTesting
+  String formatProfileDiff(ProfileDiff profileDiff) {
+    StringBuilder sb = new StringBuilder();
+    profileDiff
+        .getTotalDurationChange()
+        .ifPresent(change -> sb.append(formatChange(change)).append(NEWLINE).append(NEWLINE));
+    addSection(
+        sb,
+        HEADING_DIFF_PHASES,
+        profileDiff.getPhaseChanges().stream()
+            .map(change -> LIST_ITEM_PREFIX + formatChange(change))
+            .collect(Collectors.toList()));
+    addSection(
+        sb,
+        HEADING_DIFF_CRITICAL_PATH,
+        profileDiff.getCriticalPathChanges().stream()
+            .map(change -> LIST_ITEM_PREFIX + formatChange(change))
+            .collect(Collectors.toList()));
+    List<String> actions = new ArrayList<>();
+    actions.add(
+        String.format(
+            "%d matched (%s), %d added (%s), %d removed (%s), %d lost remote cache hits (%s),"
+                + " %d gained remote cache hits (%s)",
+            profileDiff.getActionCount(ActionChange.Kind.MATCHED),
+            formatDelta(profileDiff.getActionDelta(ActionChange.Kind.MATCHED)),
+            profileDiff.getActionCount(ActionChange.Kind.ADDED),
+            formatDelta(profileDiff.getActionDelta(ActionChange.Kind.ADDED)),
+            profileDiff.getActionCount(ActionChange.Kind.REMOVED),
+            formatDelta(profileDiff.getActionDelta(ActionChange.Kind.REMOVED)),
+            profileDiff.getActionCount(ActionChange.Kind.CACHE_HIT_LOST),
+            formatDelta(profileDiff.getActionDelta(ActionChange.Kind.CACHE_HIT_LOST)),
+            profileDiff.getActionCount(ActionChange.Kind.CACHE_HIT_GAINED),
+            formatDelta(profileDiff.getActionDelta(ActionChange.Kind.CACHE_HIT_GAINED))));
+    profileDiff.getActionChanges().stream()
+        .map(change -> LIST_ITEM_PREFIX + formatActionChange(change))
+        .forEach(actions::add);
+    addSection(sb, HEADING_DIFF_ACTIONS, actions);
+    addSection(
+        sb,
+        HEADING_DIFF_CACHE_HITS,
+        profileDiff.getCacheHitChanges().stream()
+            .map(change -> LIST_ITEM_PREFIX + formatActionChange(change))
+            .collect(Collectors.toList()));
+    return sb.toString();
+  }
+
+  private static String formatChange(ProfileDiff.Change change) {
+    return String.format(
+        "%s: %s -> %s (%s)",
+        change.getDescription(),
+        change.getBefore().map(DurationUtil::formatDuration).orElse(DIFF_MISSING_DURATION),
+        change.getAfter().map(DurationUtil::formatDuration).orElse(DIFF_MISSING_DURATION),
+        formatDelta(change.getDelta()));
+  }
+
+  private static String formatActionChange(ActionChange change) {
+    StringBuilder sb = new StringBuilder(formatChange(change));
+    String details =
+        Stream.of(change.getMnemonic(), change.getTarget())
+            .filter(detail -> !Strings.isNullOrEmpty(detail))
+            .collect(Collectors.joining(", "));
+    if (!details.isEmpty()) {
+      sb.append(" [").append(details).append("]");
+    }
+    switch (change.getKind()) {
+      case ADDED:
+        sb.append(", added");
+        break;
+      case REMOVED:
+        sb.append(", removed");
+        break;
+      case CACHE_HIT_LOST:
+        sb.append(", lost remote cache hit");
+        break;
+      case CACHE_HIT_GAINED:
+        sb.append(", gained remote cache hit");
+        break;
+      default:
+        break;
+    }
+    return sb.toString();
+  }
+
+  private static String formatDelta(Duration delta) {
+    return (delta.isNegative() ? "-" : "+") + DurationUtil.formatDuration(delta.abs());
   }
 
   @VisibleForTesting
@@ -52,6 +52,171 @@ public enum IaOption {
                       .collect(Collectors.joining(","))
                   + " separated by commas.")
           .type(String.class)
+          .build()),
+  SUGGESTIONS(
+      Option.builder()
+          .longOpt("suggestions")
+          .hasArgs()
+          .valueSeparator(',')
+          .argName("NAMES")
+          .desc(
+              "Only run the specified suggestion providers, e.g. Bottleneck,Jobs, and only"
+                  + " calculate the data they use. By default, all suggestion providers are run.")
+          .type(String.class)
+          .build()),
+  SUGGESTION_PARALLELISM(
+      Option.builder()
+          .longOpt("suggestion_parallelism")
+          .hasArg()
+          .argName("N")
+          .desc(
+              "The maximum number of suggestion providers that run concurrently. Defaults to the"
+                  + " number of available processors.")
+          .type(String.class)
+          .build()),
+  SUGGESTION_TIMEOUT(
+      Option.builder()
+          .longOpt("suggestion_timeout")
+          .hasArg()
+          .argName("SECONDS")
+          .desc(
+              "The time in seconds each suggestion provider may run for. Providers that take longer"
+                  + " are reported as failed. By default, providers run until they finish.")
+          .type(String.class)
+          .build()),
+  CACHE_DIR(
+      Option.builder()
+          .longOpt("cache_dir")
+          .hasArg()
+          .argName("PATH")
+          .desc(
+              "Store the results of the analysis in the specified directory, and reuse them when"
+                  + " the same profile is analyzed again.")
+          .type(String.class)
+          .build()),
+  CACHE_SIZE(
+      Option.builder()
+          .longOpt("cache_size")
+          .hasArg()
+          .argName("MB")
+          .desc(
+              "The size in megabytes the cache directory may take up. The least recently used"
+                  + " results are deleted when it is exceeded. Defaults to 256.")
+          .type(String.class)
+          .build()),
+  BATCH(
+      Option.builder()
+          .longOpt("batch")
+          .hasArg()
+          .argName("@LIST_FILE|GLOB")
+          .desc(
+              "Analyze many profiles instead of a single one, either those listed in a file with"
+                  + " one path per line, or those matching a glob pattern such as"
+                  + " '/tmp/profiles/**.json.gz'. The output of each profile is printed as soon as"
+                  + " its analysis finishes.")
+          .type(String.class)
+          .build()),
+  BATCH_JOBS(
+      Option.builder()
+          .longOpt("batch_jobs")
+          .hasArg()
+          .argName("N")
+          .desc(
+              "The maximum number of profiles analyzed concurrently with --batch. Defaults to the"
+                  + " number of available processors.")
+          .type(String.class)
+          .build()),
+  BATCH_MEMORY(
+      Option.builder()
+          .longOpt("batch_memory")
+          .hasArg()
+          .argName("MB")
+          .desc(
+              "The memory in megabytes that the profiles analyzed concurrently with --batch may"
+                  + " take up, estimated from their file sizes. Defaults to three quarters of the"
+                  + " maximum heap size.")
+          .type(String.class)
+          .build()),
+  AGGREGATE(
+      Option.builder()
+          .longOpt("aggregate")
+          .desc(
+              "With --batch, output the distribution of key metrics across all profiles, such as"
+                  + " the remote cache hit rate and the total queuing duration, instead of the"
+                  + " output of each profile.")
+          .type(Boolean.class)
+          .build()),
+  DIFF(
+      Option.builder()
+          .longOpt("diff")
+          .hasArg()
+          .argName("PATH")
+          .desc(
+              "Compare the Bazel profile at the specified path, e.g. of a build before it"
+                  + " regressed, with the Bazel profile passed as argument. Reports the phases,"
+                  + " critical path components, actions and remote cache hits whose changes"
+                  + " contribute most to the difference in duration.")
+          .type(String.class)
+          .build()),
+  SERVE(
+      Option.builder()
+          .longOpt("serve")
+          .hasArg()
+          .argName("PORT")
+          .desc(
+              "Instead of analyzing a single profile, serve analyses over HTTP on the specified"
+                  + " port of localhost. POST a profile, or its absolute path as the 'path' query"
+                  + " parameter, to /analyze; GET /stats for latency and throughput.")
+          .type(String.class)
+          .build()),
+  SERVE_THREADS(
+      Option.builder()
+          .longOpt("serve_threads")
+          .hasArg()
+          .argName("N")
+          .desc(
+              "The maximum number of profiles analyzed concurrently with --serve. Defaults to the"
+                  + " number of available processors.")
+          .type(String.class)
+          .build()),
+  SERVE_QUEUE(
+      Option.builder()
+          .longOpt("serve_queue")
+          .hasArg()
+          .argName("N")
+          .desc(
+              "The maximum number of requests waiting to be analyzed with --serve. Further"
+                  + " requests are rejected until the queue drains. Defaults to 16.")
+          .type(String.class)
+          .build()),
+  DAEMON(
+      Option.builder()
+          .longOpt("daemon")
+          .desc(
+              "Run a resident analyzer that later invocations are forwarded to, which saves"
+                  + " starting a JVM for each of them. Invocations are forwarded automatically"
+                  + " while a daemon of the same version is running.")
+          .type(Boolean.class)
+          .build()),
+  DAEMON_IDLE_TIMEOUT(
+      Option.builder()
+          .longOpt("daemon_idle_timeout")
+          .hasArg()
+          .argName("SECONDS")
+          .desc(
+              "The time in seconds after which a daemon started with --daemon shuts down if no"
+                  + " invocation was forwarded to it. Defaults to 10800, i.e. three hours.")
+          .type(String.class)
+          .build()),
+  SELF_PROFILE(
+      Option.builder()
+          .longOpt("self_profile")
+          .hasArg()
+          .argName("PATH")
+          .desc(
+              "Write a profile of the analysis itself to the specified path, in the same Trace"
+                  + " Event Format as Bazel profiles.")
+          .type(String.class)
           .build());
 
   public final Option option;
@@ -14,6 +14,10 @@
 
 package com.engflow.bazel.invocation.analyzer.options;
 
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
@@ -81,9 +85,19 @@ public final class IaOptions {
     return commandLine.getArgs();
   }
 
-  public void printHelp() {
+  public void printHelp(PrintStream out) {
     final var helpFormatter = new HelpFormatter();
     helpFormatter.setLongOptSeparator("=");
-    helpFormatter.printHelp("bazel-invocation-analyzer [OPTIONS...] FILE", options);
+    PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    helpFormatter.printHelp(
+        writer,
+        helpFormatter.getWidth(),
+        "bazel-invocation-analyzer [OPTIONS...] FILE",
+        null,
+        options,
+        helpFormatter.getLeftPadding(),
+        helpFormatter.getDescPadding(),
+        null);
+    writer.flush();
   }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.engflow.bazel.invocation.analyzer.consoleoutput.ConsoleOutput;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AnalysisServerTest {
+  private static final String PROFILE =
+      "{\"otherData\":{},\"traceEvents\":[{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,"
+          + "\"tid\":0,\"args\":{\"name\":\"Main Thread\"}}]}";
+
+  private final HttpClient client = HttpClient.newHttpClient();
+  private AnalysisServer server;
+
+  @Before
+  public void startServer() throws Exception {
+    PrintStream stream = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+    server =
+        new AnalysisServer(
+            ProfileAnalyzer.newBuilder().setSuggestionProviders(List.of()).build(),
+            0,
+            1,
+            1,
+            new ConsoleOutput(true, false, stream, stream));
+    server.start();
+  }
+
+  @After
+  public void stopServer() {
+    server.stop();
+  }
+
+  @Test
+  public void shouldRejectGetRequestsToAnalyze() throws Exception {
+    HttpResponse<String> response = send(HttpRequest.newBuilder(uri(AnalysisServer.ANALYZE_PATH)));
+
+    assertThat(response.statusCode()).isEqualTo(405);
+    assertThat(server.getStats().getFailed()).isEqualTo(1L);
+  }
+
+  @Test
+  public void shouldAnalyzeUploadedCompressedProfile() throws Exception {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(PROFILE.getBytes(StandardCharsets.UTF_8));
+    }
+
+    HttpResponse<String> response =
+        send(
+            HttpRequest.newBuilder(uri(AnalysisServer.ANALYZE_PATH + "?format=json"))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(compressed.toByteArray())));
+
+    assertThat(response.statusCode()).isEqualTo(200);
+    assertThat(response.body()).isEqualTo("[]");
+    assertThat(server.getStats().getSucceeded()).isEqualTo(1L);
+  }
+
+  @Test
+  public void shouldRespondWithBadRequestForInvalidFormat() throws Exception {
+    HttpResponse<String> response =
+        send(
+            HttpRequest.newBuilder(uri(AnalysisServer.ANALYZE_PATH + "?format=xml"))
+                .POST(HttpRequest.BodyPublishers.ofString(PROFILE)));
+
+    assertThat(response.statusCode()).isEqualTo(400);
+  }
+
+  @Test
+  public void shouldRespondWithBadRequestForInvalidProfile() throws Exception {
+    HttpResponse<String> response =
+        send(
+            HttpRequest.newBuilder(uri(AnalysisServer.ANALYZE_PATH))
+                .POST(HttpRequest.BodyPublishers.ofString("not a profile")));
+
+    assertThat(response.statusCode()).isEqualTo(400);
+  }
+
+  @Test
+  public void shouldRespondWithBadRequestForRelativePath() throws Exception {
+    HttpResponse<String> response =
+        send(
+            HttpRequest.newBuilder(uri(AnalysisServer.ANALYZE_PATH + "?path=profile.json"))
+                .POST(HttpRequest.BodyPublishers.noBody()));
+
+    assertThat(response.statusCode()).isEqualTo(400);
+    assertThat(response.body()).contains("absolute");
+  }
+
+  @Test
+  public void shouldReportStats() throws Exception {
+    send(HttpRequest.newBuilder(uri(AnalysisServer.ANALYZE_PATH)));
+
+    HttpResponse<String> response = send(HttpRequest.newBuilder(uri(AnalysisServer.STATS_PATH)));
+
+    assertThat(response.statusCode()).isEqualTo(200);
+    assertThat(response.body()).contains("\"received\":1");
+    assertThat(response.body()).contains("\"failed\":1");
+    assertThat(response.body()).contains("\"p99\":");
+  }
+
+  @Test
+  public void parseQueryShouldDecodeParameters() {
+    assertThat(AnalysisServer.parseQuery("path=%2Ftmp%2Fa+b.json&format=proto&flag"))
+        .containsExactly("path", "/tmp/a b.json", "format", "proto", "flag", "");
+    assertThat(AnalysisServer.parseQuery(null)).isEmpty();
+  }
+
+  @Test
+  public void decompressIfNeededShouldDetectGzip() throws Exception {
+    byte[] content = "{\"traceEvents\":[]}".getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+      out.write(content);
+    }
+
+    try (InputStream in =
+        AnalysisServer.decompressIfNeeded(new ByteArrayInputStream(compressed.toByteArray()))) {
+      assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+    try (InputStream in = AnalysisServer.decompressIfNeeded(new ByteArrayInputStream(content))) {
+      assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+  }
+
+  private URI uri(String path) {
+    return URI.create("http://localhost:" + server.getPort() + path);
+  }
+
+  private HttpResponse<String> send(HttpRequest.Builder request) throws Exception {
+    return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+  }
+}
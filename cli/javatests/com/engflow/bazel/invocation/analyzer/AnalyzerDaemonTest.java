@@ -0,0 +1,225 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.OptionalInt;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AnalyzerDaemonTest {
+  private static final String VERSION = "1";
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private final ByteArrayOutputStream outBuffer = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream errBuffer = new ByteArrayOutputStream();
+  private final PrintStream out = new PrintStream(outBuffer, true, StandardCharsets.UTF_8);
+  private final PrintStream err = new PrintStream(errBuffer, true, StandardCharsets.UTF_8);
+  private Path socketPath;
+
+  @Before
+  public void setUp() throws Exception {
+    socketPath = tempFolder.getRoot().toPath().resolve("daemon").resolve("daemon.sock");
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void forwardShouldReturnEmptyWithoutDaemon() throws Exception {
+    assertThat(forward(VERSION, "profile.json")).isEqualTo(OptionalInt.empty());
+  }
+
+  @Test
+  public void forwardShouldStreamOutputAndExitCode() throws Exception {
+    AnalyzerDaemon daemon =
+        new AnalyzerDaemon(
+            socketPath,
+            VERSION,
+            Duration.ofMinutes(1),
+            (args, workingDirectory, buildWorkingDirectory, out, err) -> {
+              out.print(String.join(",", args));
+              err.print(workingDirectory + ":" + buildWorkingDirectory);
+              return 3;
+            });
+    Future<?> running = start(daemon);
+
+    assertThat(forward(VERSION, "--verbose", "profile.json")).isEqualTo(OptionalInt.of(3));
+    assertThat(outBuffer.toString(StandardCharsets.UTF_8)).isEqualTo("--verbose,profile.json");
+    assertThat(errBuffer.toString(StandardCharsets.UTF_8)).isEqualTo("/work:null");
+
+    daemon.stop();
+    running.get(10, TimeUnit.SECONDS);
+    assertThat(Files.exists(socketPath)).isFalse();
+  }
+
+  @Test
+  public void forwardShouldPassLongArguments() throws Exception {
+    AnalyzerDaemon daemon =
+        new AnalyzerDaemon(
+            socketPath,
+            VERSION,
+            Duration.ofMinutes(1),
+            (args, workingDirectory, buildWorkingDirectory, out, err) -> args[0].length());
+    start(daemon);
+    String longArgument = "\u00e9".repeat(100_000);
+
+    assertThat(forward(VERSION, longArgument)).isEqualTo(OptionalInt.of(100_000));
+    daemon.stop();
+  }
+
+  @Test
+  public void disconnectShouldCancelInvocation() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch cancelled = new CountDownLatch(1);
+    AnalyzerDaemon daemon =
+        new AnalyzerDaemon(
+            socketPath,
+            VERSION,
+            Duration.ofMinutes(1),
+            (args, workingDirectory, buildWorkingDirectory, out, err) -> {
+              started.countDown();
+              try {
+                Thread.sleep(Long.MAX_VALUE);
+              } catch (InterruptedException e) {
+                cancelled.countDown();
+              }
+              return 0;
+            });
+    start(daemon);
+    Thread client =
+        new Thread(
+            () -> {
+              try {
+                forward(VERSION, "profile.json");
+              } catch (Exception e) {
+                // Interrupting the client closes its connection.
+              }
+            });
+    client.start();
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+    client.interrupt();
+
+    assertThat(cancelled.await(10, TimeUnit.SECONDS)).isTrue();
+    client.join();
+    daemon.stop();
+  }
+
+  @Test
+  public void daemonAndClientShouldRejectDirectoryAccessibleToOthers() throws Exception {
+    Files.createDirectories(
+        socketPath.getParent(),
+        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwxrwxrwx")));
+    Files.setPosixFilePermissions(
+        socketPath.getParent(), PosixFilePermissions.fromString("rwxrwxrwx"));
+    AnalyzerDaemon daemon =
+        new AnalyzerDaemon(
+            socketPath,
+            VERSION,
+            Duration.ofMinutes(1),
+            (args, workingDirectory, buildWorkingDirectory, out, err) -> 0);
+
+    assertThrows(IOException.class, daemon::run);
+    Files.createFile(socketPath);
+    assertThat(forward(VERSION, "profile.json")).isEqualTo(OptionalInt.empty());
+    assertThat(errBuffer.toString(StandardCharsets.UTF_8)).contains("accessible to other users");
+  }
+
+  @Test
+  public void daemonShouldStopOnVersionMismatch() throws Exception {
+    AnalyzerDaemon daemon =
+        new AnalyzerDaemon(
+            socketPath,
+            VERSION,
+            Duration.ofMinutes(1),
+            (args, workingDirectory, buildWorkingDirectory, out, err) -> 0);
+    Future<?> running = start(daemon);
+
+    assertThat(forward("2", "profile.json")).isEqualTo(OptionalInt.empty());
+    running.get(10, TimeUnit.SECONDS);
+    assertThat(Files.exists(socketPath)).isFalse();
+  }
+
+  @Test
+  public void daemonShouldStopWhenIdle() throws Exception {
+    AnalyzerDaemon daemon =
+        new AnalyzerDaemon(
+            socketPath,
+            VERSION,
+            Duration.ofMillis(100),
+            (args, workingDirectory, buildWorkingDirectory, out, err) -> 0);
+
+    start(daemon).get(10, TimeUnit.SECONDS);
+    assertThat(Files.exists(socketPath)).isFalse();
+  }
+
+  @Test
+  public void commandFailureShouldBeReported() throws Exception {
+    AnalyzerDaemon daemon =
+        new AnalyzerDaemon(
+            socketPath,
+            VERSION,
+            Duration.ofMinutes(1),
+            (args, workingDirectory, buildWorkingDirectory, out, err) -> {
+              throw new IllegalStateException("broken");
+            });
+    start(daemon);
+
+    assertThat(forward(VERSION)).isEqualTo(OptionalInt.of(1));
+    assertThat(errBuffer.toString(StandardCharsets.UTF_8)).contains("broken");
+    daemon.stop();
+  }
+
+  /** Runs the daemon in the background and waits until it accepts connections on its socket. */
+  private Future<?> start(AnalyzerDaemon daemon) throws Exception {
+    Future<?> running =
+        executor.submit(
+            () -> {
+              daemon.run();
+              return null;
+            });
+    while (!AnalyzerDaemon.isListening(socketPath) && !running.isDone()) {
+      Thread.sleep(10);
+    }
+    return running;
+  }
+
+  private OptionalInt forward(String version, String... args) throws Exception {
+    return AnalyzerDaemon.forward(socketPath, version, args, Path.of("/work"), null, out, err);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.engflow.bazel.invocation.analyzer.fleet.FleetSummary;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchAnalysisTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void findProfilesShouldReadListFile() throws Exception {
+    File folder = tempFolder.newFolder();
+    Path list = folder.toPath().resolve("profiles.txt");
+    Files.writeString(list, "# comment\na.json\n\n  /abs/b.json.gz  \n");
+
+    assertThat(BatchAnalysis.findProfiles("@" + list, Path.of("/unused")))
+        .containsExactly(folder.toPath().resolve("a.json"), Path.of("/abs/b.json.gz"))
+        .inOrder();
+  }
+
+  @Test
+  public void findProfilesShouldMatchGlob() throws Exception {
+    Path folder = tempFolder.newFolder().toPath();
+    Path nested = Files.createDirectories(folder.resolve("x").resolve("y"));
+    Path first = Files.createFile(folder.resolve("a.json.gz"));
+    Path second = Files.createFile(nested.resolve("b.json.gz"));
+    Files.createFile(folder.resolve("c.txt"));
+
+    assertThat(BatchAnalysis.findProfiles("**.json.gz", folder))
+        .containsExactly(first, second)
+        .inOrder();
+    assertThat(BatchAnalysis.findProfiles(folder + "/*.txt", Path.of("/unused")))
+        .containsExactly(folder.resolve("c.txt"));
+  }
+
+  @Test
+  public void findProfilesShouldAcceptPathWithoutWildcards() throws Exception {
+    Path profile = tempFolder.newFile().toPath();
+
+    assertThat(BatchAnalysis.findProfiles(profile.toString(), Path.of("/unused")))
+        .containsExactly(profile);
+    assertThat(BatchAnalysis.findProfiles(profile + ".missing", Path.of("/unused"))).isEmpty();
+  }
+
+  @Test
+  public void getPermitsShouldBeCappedByBudget() throws Exception {
+    Path folder = tempFolder.newFolder().toPath();
+    Path small = Files.write(folder.resolve("small.json"), new byte[1]);
+    Path compressed = Files.write(folder.resolve("large.json.gz"), new byte[1024 * 1024]);
+    BatchAnalysis batch =
+        new BatchAnalysis(
+            ProfileAnalyzer.newBuilder().build(), 1, 8 * 1024 * 1024, true, false, System.out);
+
+    assertThat(BatchAnalysis.estimateMemoryCost(small)).isEqualTo(4L);
+    assertThat(BatchAnalysis.estimateMemoryCost(compressed)).isEqualTo(40L * 1024 * 1024);
+    assertThat(batch.getPermits(small)).isEqualTo(1);
+    assertThat(batch.getPermits(compressed)).isEqualTo(8);
+  }
+
+  @Test
+  public void runShouldCountFailures() throws Exception {
+    Path missing = tempFolder.getRoot().toPath().resolve("missing.json");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BatchAnalysis batch =
+        new BatchAnalysis(
+            ProfileAnalyzer.newBuilder().build(),
+            2,
+            1024 * 1024,
+            true,
+            false,
+            new PrintStream(out, true, StandardCharsets.UTF_8));
+
+    assertThat(batch.run(List.of(missing, missing))).isEqualTo(2);
+    assertThat(out.toString(StandardCharsets.UTF_8)).contains(missing.toString());
+  }
+
+  @Test
+  public void aggregateShouldCountFailures() throws Exception {
+    Path missing = tempFolder.getRoot().toPath().resolve("missing.json");
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BatchAnalysis batch =
+        new BatchAnalysis(
+            ProfileAnalyzer.newBuilder().build(),
+            2,
+            1024 * 1024,
+            true,
+            false,
+            new PrintStream(out, true, StandardCharsets.UTF_8));
+
+    FleetSummary fleetSummary = batch.aggregate(List.of(missing, missing, missing));
+    assertThat(fleetSummary.getProfiles()).isEqualTo(3L);
+    assertThat(fleetSummary.getFailures()).isEqualTo(3L);
+    assertThat(fleetSummary.getHistograms()).isEmpty();
+    assertThat(out.toString(StandardCharsets.UTF_8)).contains(missing.toString());
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.engflow.bazel.invocation.analyzer.cache.ProfileCache;
+import com.engflow.bazel.invocation.analyzer.consoleoutput.ConsoleOutput;
+import com.engflow.bazel.invocation.analyzer.core.DataManager;
+import com.engflow.bazel.invocation.analyzer.core.Datum;
+import com.engflow.bazel.invocation.analyzer.core.SuggestionProvider;
+import com.engflow.bazel.invocation.analyzer.dataproviders.BazelVersion;
+import com.engflow.bazel.invocation.analyzer.options.Mode;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProfileAnalyzerTest {
+  private static final String PROFILE =
+      "{\"otherData\":{},\"traceEvents\":[{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,"
+          + "\"tid\":0,\"args\":{\"name\":\"Main Thread\"}}]}";
+
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private final PrintStream stream =
+      new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+  private Path profile;
+  private Path cacheDirectory;
+
+  @Before
+  public void setUp() throws Exception {
+    profile = tempFolder.newFile("profile.json").toPath();
+    Files.writeString(profile, PROFILE);
+    cacheDirectory = tempFolder.getRoot().toPath().resolve("cache");
+  }
+
+  @Test
+  public void analyzeShouldCacheUsedData() throws Exception {
+    analyze(new VersionSuggestionProvider(false));
+
+    assertThat(getCachedDataItems()).hasSize(1);
+  }
+
+  @Test
+  public void analyzeShouldNotCacheUsedDataOfTimedOutProvider() throws Exception {
+    ProfileAnalyzer.Result result = analyze(new VersionSuggestionProvider(true));
+
+    assertThat(result.getData()).isNotNull();
+    assertThat(getCachedDataItems()).isEmpty();
+  }
+
+  private ProfileAnalyzer.Result analyze(SuggestionProvider suggestionProvider) throws Exception {
+    ProfileAnalyzer analyzer =
+        ProfileAnalyzer.newBuilder()
+            .setModes(Set.of(Mode.USED_DATA))
+            .setSuggestionProviders(List.of(suggestionProvider))
+            .setSuggestionTimeout(Duration.ofMillis(100))
+            .setCache(new ProfileCache(cacheDirectory, 1024 * 1024))
+            .build();
+    return analyzer.analyze(profile, new ConsoleOutput(true, false, stream, stream));
+  }
+
+  private List<Path> getCachedDataItems() throws Exception {
+    if (!Files.exists(cacheDirectory)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.walk(cacheDirectory)) {
+      return files
+          .filter(file -> file.getFileName().toString().startsWith("data-"))
+          .collect(Collectors.toList());
+    }
+  }
+
+  /** Requests the Bazel version and then, optionally, runs until it is interrupted. */
+  private static class VersionSuggestionProvider implements SuggestionProvider {
+    private final boolean hang;
+
+    VersionSuggestionProvider(boolean hang) {
+      this.hang = hang;
+    }
+
+    @Override
+    public SuggestionOutput getSuggestions(DataManager dataManager) {
+      try {
+        dataManager.getDatum(BazelVersion.class);
+        if (hang) {
+          Thread.sleep(Long.MAX_VALUE);
+        }
+      } catch (Exception e) {
+        // The output does not depend on the data.
+      }
+      return SuggestionOutput.newBuilder()
+          .setAnalyzerClassname(VersionSuggestionProvider.class.getName())
+          .build();
+    }
+
+    @Override
+    public Set<Class<? extends Datum>> getConsumedData() {
+      return Set.of(BazelVersion.class);
+    }
+  }
+}
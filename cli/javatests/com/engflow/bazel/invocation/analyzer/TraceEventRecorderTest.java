@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 EngFlow Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.engflow.bazel.invocation.analyzer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfile;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfileConstants;
+import com.engflow.bazel.invocation.analyzer.core.Tracer;
+import com.engflow.bazel.invocation.analyzer.traceeventformat.TraceEventFormatConstants;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class TraceEventRecorderTest {
+  @Test
+  public void shouldWriteSpansAsCompleteEvents() throws Exception {
+    var recorder = new TraceEventRecorder(Map.of("key", "value"));
+    recorder.setThreadName("Main Thread");
+
+    try (Tracer.Span outer = recorder.startSpan("parse", "outer", Map.of())) {
+      try (Tracer.Span inner = recorder.startSpan("datum", "inner", Map.of("datum", "Foo"))) {
+        Thread.sleep(1);
+      }
+    }
+    // Spans that have not ended are not written.
+    recorder.startSpan("output", "unfinished", Map.of());
+
+    JsonObject profile = write(recorder);
+
+    assertThat(
+            profile
+                .getAsJsonObject(TraceEventFormatConstants.SECTION_OTHER_DATA)
+                .get("key")
+                .getAsString())
+        .isEqualTo("value");
+    List<JsonObject> completeEvents = new ArrayList<>();
+    List<JsonObject> metadataEvents = new ArrayList<>();
+    for (JsonElement element :
+        profile.getAsJsonArray(TraceEventFormatConstants.SECTION_TRACE_EVENTS)) {
+      JsonObject event = element.getAsJsonObject();
+      String phase = event.get(TraceEventFormatConstants.EVENT_PHASE).getAsString();
+      if (phase.equals(TraceEventFormatConstants.PHASE_COMPLETE)) {
+        completeEvents.add(event);
+      } else if (phase.equals(TraceEventFormatConstants.PHASE_METADATA)) {
+        metadataEvents.add(event);
+      }
+    }
+
+    assertThat(completeEvents).hasSize(2);
+    JsonObject outer = completeEvents.get(0);
+    JsonObject inner = completeEvents.get(1);
+    assertThat(outer.get(TraceEventFormatConstants.EVENT_NAME).getAsString()).isEqualTo("outer");
+    assertThat(outer.get(TraceEventFormatConstants.EVENT_CATEGORY).getAsString())
+        .isEqualTo("parse");
+    assertThat(inner.get(TraceEventFormatConstants.EVENT_NAME).getAsString()).isEqualTo("inner");
+    assertThat(
+            inner
+                .getAsJsonObject(TraceEventFormatConstants.EVENT_ARGUMENTS)
+                .get("datum")
+                .getAsString())
+        .isEqualTo("Foo");
+    assertThat(inner.get(TraceEventFormatConstants.EVENT_DURATION).getAsLong()).isAtLeast(1000L);
+    assertThat(outer.get(TraceEventFormatConstants.EVENT_DURATION).getAsLong())
+        .isAtLeast(inner.get(TraceEventFormatConstants.EVENT_DURATION).getAsLong());
+    assertThat(outer.get(TraceEventFormatConstants.EVENT_THREAD_ID))
+        .isEqualTo(inner.get(TraceEventFormatConstants.EVENT_THREAD_ID));
+
+    assertThat(metadataEvents).hasSize(1);
+    assertThat(
+            metadataEvents
+                .get(0)
+                .getAsJsonObject(TraceEventFormatConstants.EVENT_ARGUMENTS)
+                .get("name")
+                .getAsString())
+        .isEqualTo("Main Thread");
+  }
+
+  @Test
+  public void shouldNameThreadsLikeJavaThreads() throws Exception {
+    var recorder = new TraceEventRecorder(Map.of());
+    Thread thread =
+        new Thread(() -> recorder.startSpan("datum", "span", Map.of()).close(), "worker");
+    thread.start();
+    thread.join();
+
+    JsonObject profile = write(recorder);
+
+    JsonObject metadata =
+        profile
+            .getAsJsonArray(TraceEventFormatConstants.SECTION_TRACE_EVENTS)
+            .get(0)
+            .getAsJsonObject();
+    assertThat(metadata.get(TraceEventFormatConstants.EVENT_NAME).getAsString())
+        .isEqualTo(TraceEventFormatConstants.METADATA_THREAD_NAME);
+    assertThat(
+            metadata
+                .getAsJsonObject(TraceEventFormatConstants.EVENT_ARGUMENTS)
+                .get("name")
+                .getAsString())
+        .isEqualTo("worker");
+  }
+
+  @Test
+  public void shouldWriteProfileThatCanBeAnalyzed() throws Exception {
+    var recorder = new TraceEventRecorder(Map.of());
+    recorder.setThreadName(BazelProfileConstants.THREAD_MAIN);
+    recorder.startSpan("parse", "span", Map.of()).close();
+    var writer = new StringWriter();
+    recorder.writeTo(writer);
+
+    var profile =
+        BazelProfile.createFromInputStream(
+            new ByteArrayInputStream(writer.toString().getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(profile.getMainThread().getCompleteEvents()).hasSize(1);
+    assertThat(profile.getMainThread().getCompleteEvents().get(0).name).isEqualTo("span");
+  }
+
+  private static JsonObject write(TraceEventRecorder recorder) throws Exception {
+    var writer = new StringWriter();
+    recorder.writeTo(writer);
+    return JsonParser.parseString(writer.toString()).getAsJsonObject();
+  }
+}
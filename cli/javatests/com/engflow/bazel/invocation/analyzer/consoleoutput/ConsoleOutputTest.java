@@ -21,6 +21,7 @@ import com.engflow.bazel.invocation.analyzer.PotentialImprovement;
 import com.engflow.bazel.invocation.analyzer.Suggestion;
 import com.engflow.bazel.invocation.analyzer.SuggestionCategory;
 import com.engflow.bazel.invocation.analyzer.SuggestionOutput;
+import com.engflow.bazel.invocation.analyzer.bazelprofile.BazelProfilePhase;
 import com.engflow.bazel.invocation.analyzer.core.DataProvider;
 import com.engflow.bazel.invocation.analyzer.core.Datum;
 import com.engflow.bazel.invocation.analyzer.core.DatumSupplierSpecification;
@@ -28,8 +29,18 @@ import com.engflow.bazel.invocation.analyzer.core.TestDatum.CharDatum;
 import com.engflow.bazel.invocation.analyzer.core.TestDatum.DoubleDatum;
 import com.engflow.bazel.invocation.analyzer.core.TestDatum.IntegerDatum;
 import com.engflow.bazel.invocation.analyzer.core.TestDatum.StringDatum;
+import com.engflow.bazel.invocation.analyzer.dataproviders.BazelPhaseDescription;
+import com.engflow.bazel.invocation.analyzer.dataproviders.BazelPhaseDescriptions;
+import com.engflow.bazel.invocation.analyzer.dataproviders.LocalActions;
+import com.engflow.bazel.invocation.analyzer.dataproviders.TotalDuration;
+import com.engflow.bazel.invocation.analyzer.diff.ProfileDiffer;
+import com.engflow.bazel.invocation.analyzer.fleet.FleetMetric;
+import com.engflow.bazel.invocation.analyzer.fleet.FleetSummary;
+import com.engflow.bazel.invocation.analyzer.fleet.ProfileSummary;
+import com.engflow.bazel.invocation.analyzer.time.Timestamp;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -280,6 +291,51 @@ public class ConsoleOutputTest {
     assertThat(result).contains(TestDataProvider2.class.getSimpleName());
   }
 
+  @Test
+  public void shouldFormatFleetSummary() {
+    FleetSummary fleetSummary = new FleetSummary();
+    fleetSummary.add(ProfileSummary.of(Map.of(FleetMetric.REMOTE_CACHE_HIT_RATE, 80.0)));
+    fleetSummary.add(ProfileSummary.of(Map.of(FleetMetric.REMOTE_CACHE_HIT_RATE, 40.0)));
+    fleetSummary.addFailure();
+    ConsoleOutput consoleOutput = new ConsoleOutput(true, false);
+
+    var result = consoleOutput.formatFleetSummary(fleetSummary);
+    assertThat(result).contains("Summarized 3 profiles, 1 of which could not be analyzed.");
+    assertThat(result).contains(FleetMetric.REMOTE_CACHE_HIT_RATE.getDisplayName());
+    assertThat(result).contains("(2 profiles)");
+    assertThat(result).contains("min 40.0%");
+    assertThat(result).contains("max 80.0%, mean 60.0%");
+    assertThat(result).doesNotContain(FleetMetric.TOTAL_DURATION.getDisplayName());
+  }
+
+  @Test
+  public void shouldFormatProfileDiff() {
+    var before =
+        new ProfileDiffer.Input(
+            new TotalDuration(Duration.ofSeconds(20)),
+            BazelPhaseDescriptions.newBuilder()
+                .add(
+                    BazelProfilePhase.EXECUTE,
+                    new BazelPhaseDescription(Timestamp.ofSeconds(0), Timestamp.ofSeconds(20)))
+                .build(),
+            LocalActions.create(List.of()),
+            List.of());
+    var after =
+        new ProfileDiffer.Input(
+            new TotalDuration(Duration.ofSeconds(12)),
+            BazelPhaseDescriptions.newBuilder().build(),
+            LocalActions.create(List.of()),
+            List.of());
+    ConsoleOutput consoleOutput = new ConsoleOutput(true, false);
+
+    var result =
+        consoleOutput.formatProfileDiff(
+            new ProfileDiffer(ProfileDiffer.DEFAULT_LIMIT).diff(before, after));
+    assertThat(result).contains("Total duration: 20s -> 12s (-8000ms)");
+    assertThat(result).contains("- " + BazelProfilePhase.EXECUTE.name + ": 20s -> none (-20s)");
+    assertThat(result).contains("0 matched (+0ms), 0 added (+0ms)");
+  }
+
   // These are just dummy DataProviders used as place-holders for formatting testing
   private static class TestDataProvider extends DataProvider {
     @Override